@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Tests the rule handling shared by the plugin configurations. Lives in the plugin package, as the configuration
+ * classes are package-private.
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class BasePluginConfigTest {
+
+    @Test
+    public void testRuleKeysInAlphabeticalOrder() {
+
+        Properties props = new Properties();
+        props.setProperty(".*Mapper#update.*", "c");
+        props.setProperty(".*BlogMapper#.*", "b");
+        props.setProperty("supportPackage", "com.mycompany");
+        props.setProperty(BasePluginConfig.excludeClassNamesRegexpKey, ".*Excluded.*");
+        props.setProperty(".*#select.*", "a");
+
+        List<String> keys = BasePluginConfig.getRuleKeys(props, Collections.singletonList("supportPackage"));
+        Assert.assertEquals(Arrays.asList(".*#select.*", ".*BlogMapper#.*", ".*Mapper#update.*"), keys);
+    }
+
+    @Test
+    public void testMemoizedMatches() {
+
+        BasePluginConfig.Rules<String> rules = new BasePluginConfig.Rules<String>();
+        rules.add(Pattern.compile(".*Mapper"), Pattern.compile("select.*"), "first");
+        rules.add(Pattern.compile(".*UserMapper"), Pattern.compile("selectByExample"), "second");
+        rules.add(Pattern.compile(".*UserMapper"), null, "class");
+
+        Assert.assertEquals("first", rules.getFirstMatch("UserMapper", "selectByExample"));
+        Assert.assertEquals(Arrays.asList("first", "second"), rules.getAllMatches("UserMapper", "selectByExample"));
+        Assert.assertEquals(Collections.singletonList("first"), rules.getAllMatches("BlogMapper", "selectByExample"));
+        Assert.assertEquals(Collections.singletonList("class"), rules.getAllMatches("UserMapper", null));
+        Assert.assertNull(rules.getFirstMatch("UserMapper", "insert"));
+
+        // the matches are computed once per class and method
+        List<String> matches = rules.getAllMatches("UserMapper", "selectByExample");
+        Assert.assertSame(matches, rules.getAllMatches("UserMapper", "selectByExample"));
+        Assert.assertNotSame(matches, rules.getAllMatches("UserMapper", "selectByPrimaryKey"));
+
+        // a new rule invalidates the memoized matches
+        rules.add(Pattern.compile(".*"), Pattern.compile(".*"), "any");
+        Assert.assertEquals(Arrays.asList("first", "second", "any"), rules.getAllMatches("UserMapper", "selectByExample"));
+        Assert.assertEquals("any", rules.getFirstMatch("UserMapper", "insert"));
+    }
+
+    @Test
+    public void testExclusions() {
+
+        Properties props = new Properties();
+        props.setProperty(BasePluginConfig.excludeClassNamesRegexpKey, ".*Blog.*");
+        BasePluginConfig config = new BasePluginConfig(props) {
+        };
+
+        Assert.assertTrue(config.shouldExclude("com.mycompany.BlogMapper"));
+        Assert.assertTrue(config.shouldExclude("com.mycompany.BlogMapper"));
+        Assert.assertFalse(config.shouldExclude("com.mycompany.UserMapper"));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the statements rendered by the dialects lacking a database in the test environment, the HSQLDB dialect is
+ * run against the test database by the DatabaseTest.
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class DialectTest {
+
+    private static final List<String> columns = Arrays.asList("ID", "USERNAME");
+
+    @Test
+    public void testReturning() {
+
+        String insert = "insert into T_USER (USERNAME) values (?)";
+        Assert.assertNull(new Dialect.Generic().returning(insert, "ID"));
+        Assert.assertNull(new Dialect.Hsqldb().returning(insert, "ID"));
+        Assert.assertNull(new Dialect.MySql().returning(insert, "ID"));
+        Assert.assertEquals(insert + " returning ID, USERNAME",
+                new Dialect.PostgreSql().returning(insert, "ID, USERNAME"));
+    }
+
+    @Test
+    public void testPostgreSql() {
+
+        Dialect dialect = new Dialect.PostgreSql();
+        Assert.assertEquals("insert into T_USER (ID, USERNAME) values (?, ?) on conflict (ID) do update set "
+                + "USERNAME = excluded.USERNAME", dialect.merge("T_USER", columns, Arrays.asList("?", "?"),
+                Arrays.asList("ID")));
+        Assert.assertEquals("insert into T_USER (ID, USERNAME) values (?, ?) on conflict (ID, USERNAME) do nothing",
+                dialect.merge("T_USER", columns, Arrays.asList("?", "?"), columns));
+        Assert.assertEquals("not (ID = ANY (?))", dialect.arrayCondition("ID", true, "?"));
+        Assert.assertEquals("/*+ SeqScan(T_USER) */ select ID from T_USER",
+                dialect.hint("select ID from T_USER", "SeqScan(T_USER)"));
+    }
+
+    @Test
+    public void testMySql() {
+
+        Dialect dialect = new Dialect.MySql();
+        Assert.assertEquals("insert into T_USER (ID, USERNAME) values (?, ?) on duplicate key update "
+                + "USERNAME = values(USERNAME)", dialect.merge("T_USER", columns, Arrays.asList("?", "?"),
+                Arrays.asList("ID")));
+        Assert.assertEquals("insert ignore into T_USER (ID, USERNAME) values (?, ?)",
+                dialect.merge("T_USER", columns, Arrays.asList("?", "?"), columns));
+        Assert.assertEquals("select /*+ NO_INDEX(T_USER) */ ID from T_USER",
+                dialect.hint("select ID from T_USER", "NO_INDEX(T_USER)"));
+    }
+}
@@ -0,0 +1,678 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins.test;
+
+import com.google.code.mybatis.generator.plugins.Dialect;
+import com.google.code.mybatis.generator.plugins.gen.*;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the generated mappers and support classes against the test database. The database files are opened read-only,
+ * the rows of every test are kept in memory.
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class DatabaseTest {
+
+    private static SqlSessionFactory sqlSessionFactory;
+
+    private SqlSession session;
+
+    @BeforeClass
+    public static void createSqlSessionFactory() {
+        UnpooledDataSource dataSource = new UnpooledDataSource("org.hsqldb.jdbc.JDBCDriver",
+                "jdbc:hsqldb:file:src/test/resources/database/testdb;files_readonly=true", "sa", "");
+        Configuration configuration = new Configuration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addInterceptor(new TableDependencyInterceptor());
+        configuration.addInterceptor(new ExampleCacheKeyInterceptor());
+        configuration.addMapper(UserMapper.class);
+        configuration.addMapper(BlogMapper.class);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @Before
+    public void insertRows() throws Exception {
+        session = sqlSessionFactory.openSession();
+        UserMapper userMapper = session.getMapper(UserMapper.class);
+        BlogMapper blogMapper = session.getMapper(BlogMapper.class);
+        for (int i = 1; i <= 5; i++) {
+            User user = new User.Builder().username("user" + i).password("secret" + i).email("user" + i + "@test")
+                    .alias(i % 2 == 0 ? null : "\u00dcser " + i).build();
+            userMapper.insert(user);
+
+            Blog blog = new Blog();
+            blog.setName("blog" + i);
+            blog.setUrl("url" + i);
+            blog.setDescription(i == 1 ? repeat("a long description ", 200) : "short" + i);
+            blog.setOwnerId(user.getId());
+            blogMapper.insert(blog);
+        }
+        session.commit();
+    }
+
+    @After
+    public void deleteRows() throws Exception {
+        session.close();
+        Connection connection = sqlSessionFactory.openSession().getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("delete from t_blog");
+            statement.execute("delete from t_user");
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+        for (Cache cache : sqlSessionFactory.getConfiguration().getCaches()) {
+            cache.clear();
+        }
+    }
+
+
+    @Test
+    public void testBinaryModelCodec() throws Exception {
+
+        List<User> users = session.getMapper(UserMapper.class).selectByExample(new UserExample());
+        Assert.assertEquals(5, users.size());
+        for (User user : users) {
+            User decoded = new User();
+            decoded.readFrom(new DataInputStream(new ByteArrayInputStream(encode(user))));
+            assertEquals(user, decoded);
+
+            User copy = user.copy();
+            assertEquals(user, copy);
+            copy.setAlias("changed");
+            Assert.assertFalse("changed".equals(user.getAlias()));
+        }
+
+        List<Blog> blogs = session.getMapper(BlogMapper.class).selectByExample(new BlogExample());
+        Assert.assertEquals(5, blogs.size());
+        for (Blog blog : blogs) {
+            byte[] bytes = encode(blog);
+            if (blog.getDescription().length() > 1024)
+                Assert.assertTrue(bytes.length < blog.getDescription().length() / 2);
+
+            Blog decoded = new Blog();
+            decoded.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+            Assert.assertEquals(blog.getId(), decoded.getId());
+            Assert.assertEquals(blog.getName(), decoded.getName());
+            Assert.assertEquals(blog.getUrl(), decoded.getUrl());
+            Assert.assertEquals(blog.getDescription(), decoded.getDescription());
+            Assert.assertEquals(blog.getOwnerId(), decoded.getOwnerId());
+            Assert.assertEquals(blog.getDescription(), blog.copy().getDescription());
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Blog> decoded = (List<Blog>) BinaryModelCache.decode(BinaryModelCache.encode(blogs));
+        Assert.assertEquals(blogs.size(), decoded.size());
+        Assert.assertNotSame(blogs.get(0), decoded.get(0));
+        Assert.assertEquals(blogs.get(0).getDescription(), decoded.get(0).getDescription());
+    }
+
+
+    @Test
+    public void testLazyInflation() throws Exception {
+
+        BlogExample example = new BlogExample();
+        example.createCriteria().andUrlEqualTo("url1");
+        Blog blog = session.getMapper(BlogMapper.class).selectByExample(example).get(0);
+
+        long[] histogram = BinaryModelCodec.getCompressionRatioHistogram();
+        Blog decoded = new Blog();
+        decoded.readFrom(new DataInputStream(new ByteArrayInputStream(encode(blog))));
+        Assert.assertEquals(sum(histogram) + 1, sum(BinaryModelCodec.getCompressionRatioHistogram()));
+
+        // the deflated form is encoded again and copied as it is, nothing is inflated before the getter is called
+        byte[] reencoded = encode(decoded);
+        Blog copy = decoded.copy();
+        Assert.assertEquals(sum(histogram) + 1, sum(BinaryModelCodec.getCompressionRatioHistogram()));
+        Assert.assertEquals(encode(blog).length, reencoded.length);
+        Assert.assertEquals(blog.getDescription(), copy.getDescription());
+        Assert.assertEquals(blog.getDescription(), decoded.getDescription());
+
+        decoded.setDescription("short");
+        copy = new Blog();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(encode(decoded))));
+        Assert.assertEquals("short", copy.getDescription());
+
+        // copies of a shared model taken while another thread inflates see the deflated form or the inflated value
+        byte[] encoded = encode(blog);
+        for (int round = 0; round < 100; round++) {
+            final Blog shared = new Blog();
+            shared.readFrom(new DataInputStream(new ByteArrayInputStream(encoded)));
+            Thread inflating = new Thread() {
+                @Override
+                public void run() {
+                    shared.getDescription();
+                }
+            };
+            inflating.start();
+            copy = shared.copy();
+            inflating.join();
+            Assert.assertEquals(blog.getDescription(), copy.getDescription());
+        }
+    }
+
+
+    @Test
+    public void testWeightedCache() {
+
+        LruCache lruCache = new LruCache(new PerpetualCache("weighted"));
+        lruCache.setSize(2);
+        WeightedCache cache = new WeightedCache(lruCache, 1024L * 1024L, 1024L);
+        cache.putObject("a", "aaaa");
+        cache.putObject("b", "bbbb");
+        cache.putObject("c", "cccc");
+        Assert.assertEquals(2, lruCache.getSize());
+
+        // the weight of the entry evicted by the lru cache is dropped by the next miss of its key
+        Assert.assertEquals(3 * SizeEstimator.sizeOf("cccc"), cache.getTotalBytes());
+        Assert.assertNull(cache.getObject("a"));
+        Assert.assertEquals(2 * SizeEstimator.sizeOf("cccc"), cache.getTotalBytes());
+
+        cache.removeObject("b");
+        Assert.assertEquals(SizeEstimator.sizeOf("cccc"), cache.getTotalBytes());
+
+        cache.putObject("d", repeat("d", 1024));
+        Assert.assertNull(cache.getObject("d"));
+        Assert.assertEquals(SizeEstimator.sizeOf("cccc"), cache.getTotalBytes());
+
+        // every 256 puts the weights exceeding the size of the lru cache are dropped
+        lruCache = new LruCache(new PerpetualCache("reconciled"));
+        lruCache.setSize(2);
+        cache = new WeightedCache(lruCache, 1024L * 1024L, 1024L);
+        for (int i = 0; i < 256; i++) {
+            cache.putObject("key" + i, "vvvv");
+        }
+        Assert.assertEquals(2 * SizeEstimator.sizeOf("vvvv"), cache.getTotalBytes());
+    }
+
+
+    @Test
+    public void testCachedMapper() throws Exception {
+
+        UserMapperCached cached = new UserMapperCached(session.getMapper(UserMapper.class));
+        Long id = cached.selectByExample(new UserExample()).get(0).getId();
+        Assert.assertEquals("user1", cached.selectByPrimaryKey(id).getUsername());
+
+        // served from the cache while the row is changed behind its back
+        updateUsername(id, "changed");
+        Assert.assertEquals("user1", cached.selectByPrimaryKey(id).getUsername());
+
+        // the writing thread reads its own write, which is not cached if rolled back
+        User user = new User();
+        user.setId(id);
+        user.setUsername("written");
+        cached.updateByPrimaryKeySelective(user);
+        Assert.assertEquals("written", cached.selectByPrimaryKey(id).getUsername());
+        session.rollback();
+        cached.rollback();
+        Assert.assertEquals("changed", cached.selectByPrimaryKey(id).getUsername());
+
+        // the entity read after the write is cached on commit
+        cached.updateByPrimaryKeySelective(user);
+        Assert.assertEquals("written", cached.selectByPrimaryKey(id).getUsername());
+        session.commit();
+        cached.commit();
+        updateUsername(id, "changed again");
+        Assert.assertEquals("written", cached.selectByPrimaryKey(id).getUsername());
+
+        // the mapper caches of the session missed the update as well
+        session.clearCache();
+        for (Cache cache : sqlSessionFactory.getConfiguration().getCaches()) {
+            cache.clear();
+        }
+        cached.evict(id);
+        Assert.assertEquals("changed again", cached.selectByPrimaryKey(id).getUsername());
+
+        // a transaction left without commit() is dropped after its timeout and the entities are cached again
+        cached.updateByPrimaryKeySelective(user);
+        session.commit();
+        Thread.sleep(1100);
+        Assert.assertEquals("written", cached.selectByPrimaryKey(id).getUsername());
+        updateUsername(id, "behind");
+        Assert.assertEquals("written", cached.selectByPrimaryKey(id).getUsername());
+    }
+
+
+    @Test
+    public void testEvictMatching() throws Exception {
+
+        UserMapperCached cached = new UserMapperCached(session.getMapper(UserMapper.class));
+        UserExample all = new UserExample();
+        all.setOrderByClause("id");
+        List<User> users = cached.selectByExample(all);
+        for (int i = 0; i < users.size(); i++) {
+            updateUsername(users.get(i).getId(), "changed" + i);
+        }
+        // only the mapper cache keeps the old usernames
+        session.clearCache();
+        for (Cache cache : sqlSessionFactory.getConfiguration().getCaches()) {
+            cache.clear();
+        }
+
+        // an evaluable example evicts the matching entities only
+        UserExample example = new UserExample();
+        example.createCriteria().andIdBetween(users.get(0).getId(), users.get(1).getId());
+        example.or().andIdEqualTo(users.get(3).getId());
+        Assert.assertTrue(example.isEvaluable());
+        cached.evictMatching(example);
+        String[] expected = {"changed0", "changed1", "user3", "changed3", "user5"};
+        for (int i = 0; i < users.size(); i++) {
+            Assert.assertEquals(expected[i], cached.selectByPrimaryKey(users.get(i).getId()).getUsername());
+        }
+
+        // string conditions are not evaluable by default, which evicts all entities
+        example = new UserExample();
+        example.createCriteria().andUsernameEqualTo("user3");
+        Assert.assertFalse(example.isEvaluable());
+        example = new UserExample();
+        example.createCriteria().andUsernameLike("user%").andIdEqualTo(users.get(4).getId());
+        Assert.assertFalse(example.isEvaluable());
+        cached.evictMatching(example);
+        for (int i = 0; i < users.size(); i++) {
+            Assert.assertEquals("changed" + i, cached.selectByPrimaryKey(users.get(i).getId()).getUsername());
+        }
+
+        // the transaction keeps the criteria of the write, not the ones of the example reused afterwards
+        updateUsername(users.get(1).getId(), "behind");
+        example = new UserExample();
+        example.createCriteria().andIdEqualTo(users.get(0).getId());
+        User record = new User();
+        record.setUsername("written");
+        cached.updateByExampleSelective(record, example);
+        example.clear();
+        example.createCriteria().andIdEqualTo(users.get(1).getId());
+        Assert.assertEquals("written", cached.selectByPrimaryKey(users.get(0).getId()).getUsername());
+        Assert.assertEquals("changed1", cached.selectByPrimaryKey(users.get(1).getId()).getUsername());
+        session.rollback();
+        cached.rollback();
+    }
+
+
+    @Test
+    public void testCacheWarmUp() throws Exception {
+
+        for (Cache cache : sqlSessionFactory.getConfiguration().getCaches()) {
+            cache.clear();
+        }
+        Assert.assertEquals(10, new CacheWarmUp(sqlSessionFactory).run());
+
+        // the rows are served from the cache although changed behind its back
+        Long id = session.getMapper(UserMapper.class).selectByExample(new UserExample()).get(0).getId();
+        updateUsername(id, "changed");
+        SqlSession other = sqlSessionFactory.openSession();
+        try {
+            Assert.assertEquals("user1", other.getMapper(UserMapper.class).selectByPrimaryKey(id).getUsername());
+        } finally {
+            other.close();
+        }
+
+        // the warmed up entries depend on the table of their statement only, a write of t_blog keeps them
+        TableDependencyCache.tableWritten("T_BLOG");
+        other = sqlSessionFactory.openSession();
+        try {
+            Assert.assertEquals("user1", other.getMapper(UserMapper.class).selectByPrimaryKey(id).getUsername());
+        } finally {
+            other.close();
+        }
+    }
+
+
+    @Test
+    public void testCacheStatistics() throws Exception {
+
+        List<User> users = session.getMapper(UserMapper.class).selectByExample(new UserExample());
+        CacheStatistics statistics = CacheStatistics.getInstance(UserMapper.class.getName());
+        statistics.reset();
+
+        // every miss committed counts as load, the miss of a session rolled back is not credited
+        SqlSession other = sqlSessionFactory.openSession();
+        other.getMapper(UserMapper.class).selectByPrimaryKey(users.get(0).getId());
+        other.getMapper(UserMapper.class).selectByPrimaryKey(users.get(1).getId());
+        other.commit();
+        other.close();
+        other = sqlSessionFactory.openSession();
+        other.getMapper(UserMapper.class).selectByPrimaryKey(users.get(2).getId());
+        other.rollback(true);
+        other.close();
+        other = sqlSessionFactory.openSession();
+        other.getMapper(UserMapper.class).selectByPrimaryKey(users.get(3).getId());
+        other.commit();
+        other.close();
+        Assert.assertEquals(4, statistics.getMisses());
+        Assert.assertEquals(3, statistics.getPuts());
+        Assert.assertEquals(3, statistics.getLoads());
+
+        // the evictions of the budget count at once, the ones of the decorated cache once a miss notices them
+        long size = SizeEstimator.sizeOf("a");
+        WeightedCache weighted = new WeightedCache(new PerpetualCache("statistics"), 2 * size, size);
+        statistics = new CacheStatistics(weighted, weighted.getEvictionCounter());
+        for (String key : new String[]{"a", "b", "c"}) {
+            Assert.assertNull(statistics.getObject(key));
+            statistics.putObject(key, key);
+        }
+        statistics.putObject("c", "c");
+        Assert.assertEquals(1, statistics.getEvictions());
+        LruCache lruCache = new LruCache(new PerpetualCache("statistics"));
+        lruCache.setSize(2);
+        weighted = new WeightedCache(lruCache, 1024L * 1024L, 1024L);
+        statistics = new CacheStatistics(weighted, weighted.getEvictionCounter());
+        for (String key : new String[]{"a", "b", "c"}) {
+            Assert.assertNull(statistics.getObject(key));
+            statistics.putObject(key, key);
+        }
+        Assert.assertEquals(0, statistics.getEvictions());
+        Assert.assertNull(statistics.getObject("a"));
+        Assert.assertEquals(1, statistics.getEvictions());
+        statistics.reset();
+        Assert.assertEquals(0, statistics.snapshot().getEvictions());
+    }
+
+
+    @Test
+    public void testInvalidationBus() throws Exception {
+
+        InvalidationBus sender = new InvalidationBus(60000L);
+        InvalidationBus receiver = new InvalidationBus(60000L);
+        Cache local = new InvalidatingCache(new PerpetualCache("invalidation"), sender);
+        Cache remote = new InvalidatingCache(new PerpetualCache("invalidation"), receiver);
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        sender.connect(new LoopbackInvalidationTransport());
+        receiver.connect(transport);
+        try {
+            transport.start(receiver);
+            Assert.fail("second start should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        try {
+            remote.putObject("a", "a");
+            remote.putObject("b", "b");
+            local.removeObject("a");
+            sender.flush();
+            Assert.assertNull(remote.getObject("a"));
+            Assert.assertEquals("b", remote.getObject("b"));
+
+            // the message sent while the receiver is disconnected is lost, the next one reveals the gap
+            receiver.disconnect();
+            local.removeObject("b");
+            sender.flush();
+            receiver.connect(new LoopbackInvalidationTransport());
+            Assert.assertEquals("b", remote.getObject("b"));
+            remote.putObject("c", "c");
+            local.removeObject("d");
+            sender.flush();
+            Assert.assertEquals(0, remote.getSize());
+        } finally {
+            sender.disconnect();
+            receiver.disconnect();
+        }
+    }
+
+
+    @Test
+    public void testTableDependencyCache() throws Exception {
+
+        // the generated queries of the user namespace depend on t_user only, a write of t_blog keeps them cached
+        CacheStatistics statistics = CacheStatistics.getInstance(UserMapper.class.getName());
+        SqlSession other = sqlSessionFactory.openSession();
+        other.getMapper(UserMapper.class).selectByExample(new UserExample());
+        other.commit();
+        other.close();
+        statistics.reset();
+        TableDependencyCache.tableWritten("T_BLOG");
+        other = sqlSessionFactory.openSession();
+        other.getMapper(UserMapper.class).selectByExample(new UserExample());
+        other.close();
+        Assert.assertEquals(1, statistics.getHits());
+
+        // removed and evicted entries (the ehcache adapter stores them by hash code) leave the index instead of
+        // growing it until the namespace is cleared
+        Cache cache = sqlSessionFactory.getConfiguration().getCache(BlogMapper.class.getName());
+        Ehcache ehcache = CacheManager.getInstance().getCache(BlogMapper.class.getName());
+        cache.putObject("sentinel", "sentinel");
+        for (int i = 0; i < 12000; i++) {
+            cache.putObject("removed" + i, "removed");
+            cache.removeObject("removed" + i);
+            cache.putObject("evicted" + i, "evicted");
+            ehcache.remove(("evicted" + i).hashCode());
+        }
+        Assert.assertEquals("sentinel", cache.getObject("sentinel"));
+        TableDependencyCache.tableWritten("T_USER");
+        Assert.assertNull(cache.getObject("sentinel"));
+    }
+
+
+    @Test
+    public void testExampleFingerprintPaging() throws Exception {
+
+        UserExample example = new UserExample();
+        example.setOrderByClause("id");
+        List<User> users = session.getMapper(UserMapper.class).selectByExample(example);
+        example.setLimit(2);
+
+        // the pages differ in the offset only, which is covered by the fingerprint keying the local and the second
+        // level cache
+        for (int round = 0; round < 2; round++) {
+            SqlSession other = sqlSessionFactory.openSession();
+            List<User> paged = new ArrayList<User>();
+            for (int offset = 0; offset < users.size(); offset += 2) {
+                example.setOffset(offset);
+                paged.addAll(other.getMapper(UserMapper.class).selectByExamplePaged(example));
+            }
+            other.commit();
+            other.close();
+            Assert.assertEquals(users.size(), paged.size());
+            for (int i = 0; i < users.size(); i++) {
+                assertEquals(users.get(i), paged.get(i));
+            }
+        }
+    }
+
+
+    @Test
+    public void testLeanExample() throws Exception {
+
+        // an example without conditions shares the empty list until the first criteria is added
+        UserMapper userMapper = session.getMapper(UserMapper.class);
+        UserExample example = new UserExample();
+        Assert.assertSame(Collections.emptyList(), example.getOredCriteria());
+        int users = userMapper.selectByExample(example).size();
+        UserExample.Criteria criteria = example.createCriteria();
+        Assert.assertSame(Collections.emptyList(), criteria.getAllCriteria());
+        criteria.andUsernameEqualTo("user1");
+        Assert.assertEquals(1, example.getOredCriteria().size());
+        Assert.assertEquals(1, userMapper.selectByExample(example).size());
+
+        // the criteria are reused after a reset
+        example.reset();
+        Assert.assertSame(criteria, example.or());
+        Assert.assertEquals(users, userMapper.selectByExample(example).size());
+    }
+
+
+    @Test
+    public void testExampleSimplifier() throws Exception {
+
+        UserMapper userMapper = session.getMapper(UserMapper.class);
+        UserExample all = new UserExample();
+        all.setOrderByClause("id");
+        List<User> users = userMapper.selectByExample(all);
+        Long first = users.get(0).getId();
+        Long second = users.get(1).getId();
+
+        // ored equalities of a column are merged into an in list
+        UserExample merged = new UserExample();
+        merged.or().andIdEqualTo(first);
+        merged.or().andIdEqualTo(second);
+        Assert.assertEquals(2, userMapper.countByExample(merged));
+        List<UserExample.Criteria> simplified = merged.getSimplified().getOredCriteria();
+        Assert.assertEquals(1, simplified.size());
+        Assert.assertEquals("ID in", simplified.get(0).getCriteria().get(0).getCondition());
+
+        // ranges of a column are folded to the tightest bound
+        UserExample folded = new UserExample();
+        folded.createCriteria().andIdGreaterThan(first).andIdGreaterThan(second);
+        Assert.assertEquals(users.size() - 2, userMapper.countByExample(folded));
+        Assert.assertEquals(1, folded.getSimplified().getOredCriteria().get(0).getCriteria().size());
+        Assert.assertEquals(second, folded.getSimplified().getOredCriteria().get(0).getCriteria().get(0).getValue());
+
+        // contradicting criteria match no row
+        UserExample contradicting = new UserExample();
+        contradicting.createCriteria().andIdEqualTo(first).andIdEqualTo(second);
+        Assert.assertEquals(0, userMapper.countByExample(contradicting));
+        Assert.assertFalse(contradicting.simplifyCopy());
+
+        // the examples passed to the mapper are left unchanged
+        Assert.assertEquals(2, merged.getOredCriteria().size());
+        Assert.assertEquals(2, folded.getOredCriteria().get(0).getCriteria().size());
+        Assert.assertEquals(first, folded.getOredCriteria().get(0).getCriteria().get(0).getValue());
+        Assert.assertEquals(2, contradicting.getOredCriteria().get(0).getCriteria().size());
+    }
+
+
+    @Test
+    public void testHsqldbDialect() throws Exception {
+
+        Dialect dialect = new Dialect.Hsqldb();
+        Connection connection = session.getConnection();
+
+        List<Long> ids = new ArrayList<Long>();
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet rs = statement.executeQuery(dialect.limit("select ID from T_USER order by ID", 2));
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        } finally {
+            statement.close();
+        }
+        Assert.assertEquals(2, ids.size());
+
+        Object[] array = ids.toArray();
+        Assert.assertEquals(2, count(connection, "select count(*) from T_USER where "
+                + dialect.arrayCondition("ID", false, "?"), connection.createArrayOf("BIGINT", array)));
+        Assert.assertEquals(3, count(connection, "select count(*) from T_USER where "
+                + dialect.arrayCondition("ID", true, "?"), connection.createArrayOf("BIGINT", array)));
+
+        // the parameters of the key condition, the update and the insert
+        String merge = dialect.merge("T_USER", Arrays.asList("USERNAME", "PASSWORD", "EMAIL"),
+                Arrays.asList("?", "?", "?"), Arrays.asList("USERNAME"));
+        PreparedStatement ps = connection.prepareStatement(merge);
+        try {
+            for (String username : new String[]{"user1", "user6"}) {
+                Object[] values = {username, "merged", "merged@test", username, "merged", "merged@test"};
+                for (int i = 0; i < values.length; i++) {
+                    ps.setObject(i + 1, values[i]);
+                }
+                Assert.assertEquals(1, ps.executeUpdate());
+            }
+        } finally {
+            ps.close();
+        }
+        Assert.assertEquals(6, count(connection, "select count(*) from T_USER", null));
+        Assert.assertEquals(2, count(connection, "select count(*) from T_USER where PASSWORD = ?", "merged"));
+    }
+
+
+    private static int count(Connection connection, String select, Object parameter) throws Exception {
+        PreparedStatement ps = connection.prepareStatement(select);
+        try {
+            if (parameter != null) {
+                ps.setObject(1, parameter);
+            }
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            ps.close();
+        }
+    }
+
+    private static void updateUsername(Long id, String username) throws Exception {
+        Connection connection = sqlSessionFactory.openSession().getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("update t_user set username = '" + username + "' where id = " + id);
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static byte[] encode(BinaryModel model) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static void assertEquals(User expected, User actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getUsername(), actual.getUsername());
+        Assert.assertEquals(expected.getAlias(), actual.getAlias());
+        Assert.assertEquals(expected.getPassword(), actual.getPassword());
+        Assert.assertEquals(expected.getEmail(), actual.getEmail());
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+}
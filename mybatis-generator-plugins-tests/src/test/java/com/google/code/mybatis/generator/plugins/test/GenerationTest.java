@@ -19,6 +19,8 @@ package com.google.code.mybatis.generator.plugins.test;
 import japa.parser.JavaParser;
 import japa.parser.ast.CompilationUnit;
 import japa.parser.ast.body.ClassOrInterfaceDeclaration;
+import japa.parser.ast.body.MethodDeclaration;
+import japa.parser.ast.expr.AnnotationExpr;
 import japa.parser.ast.visitor.VoidVisitorAdapter;
 import org.junit.Assert;
 import org.junit.Test;
@@ -53,6 +55,439 @@ public class GenerationTest {
     }
 
 
+    @Test
+    public void testModelCodecPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("User.java");
+            new MethodDeclarationVisitor("writeTo").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("readFrom").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("copy").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("Blog.java");
+            new MethodDeclarationVisitor("writeTo").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("copy").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("BinaryModelCodec.java");
+            new MethodDeclarationVisitor("getCompressionRatioHistogram").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("UserMapperCache.java");
+            new MethodDeclarationVisitor("putObject").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testCachePluginByteBudget() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("Blog.java");
+            new MethodDeclarationVisitor("estimatedSizeInBytes").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("BlogMapperCache.java");
+            new MethodDeclarationVisitor("putObject").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testCachePluginWarmUp() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("CacheWarmUp.java");
+            new MethodDeclarationVisitor("run").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("warmUpUserMapper").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("warmUpBlogMapper").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testCachePluginStatistics() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("CacheStatistics.java");
+            new MethodDeclarationVisitor("getObject").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("reset").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("snapshot").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("getInstance").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testCachePluginInvalidation() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("InvalidationBus.java");
+            new MethodDeclarationVisitor("invalidate").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("flush").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("receive").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("MulticastInvalidationTransport.java");
+            new MethodDeclarationVisitor("send").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("LoopbackInvalidationTransport.java");
+            new MethodDeclarationVisitor("send").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testTableDependencyCachePlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("TableDependencies.java");
+            new MethodDeclarationVisitor("forNamespace").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("getTables").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("TableDependencyCache.java");
+            new MethodDeclarationVisitor("tableWritten").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("invalidate").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("TableDependencyInterceptor.java");
+            new MethodDeclarationVisitor("intercept").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testExampleFingerprintPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserExample.java");
+            new MethodDeclarationVisitor("fingerprint").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("ExampleFingerprint.java");
+            new MethodDeclarationVisitor("addValue").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("build").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("ExampleCacheKeyInterceptor.java");
+            new MethodDeclarationVisitor("intercept").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testExampleMatcherPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserExample.java");
+            new MethodDeclarationVisitor("matches").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("isEvaluable").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("CriterionMatcher.java");
+            new MethodDeclarationVisitor("matches").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("UserMapperCached.java");
+            new MethodDeclarationVisitor("evictMatching").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testOptionsPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserMapper.java");
+
+            String options = new MethodAnnotationVisitor("selectByExample", "Options").visitAndGet(cu, null).replace(" ", "");
+            Assert.assertTrue(options, options.contains("useCache=true"));
+            Assert.assertTrue(options, options.matches(".*fetchSize=\\d+.*"));
+            Assert.assertFalse(options, options.contains("flushCache"));
+
+            options = new MethodAnnotationVisitor("insert", "Options").visitAndGet(cu, null).replace(" ", "");
+            Assert.assertTrue(options, options.contains("useGeneratedKeys=true"));
+            Assert.assertTrue(options, options.contains("flushCache=true"));
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testAdaptiveFetchSizePlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("BlogMapper.java");
+
+            String options = new MethodAnnotationVisitor("selectByExample", "Options").visitAndGet(cu, null).replace(" ", "");
+            Assert.assertTrue(options, options.contains("fetchSize=6"));
+
+            cu = loadCompilationUnit("UserMapper.java");
+
+            options = new MethodAnnotationVisitor("selectByExample", "Options").visitAndGet(cu, null).replace(" ", "");
+            Assert.assertTrue(options, options.contains("fetchSize=422"));
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testMapperDecoratorPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserMapper.java");
+            new MethodDeclarationVisitor("selectByExampleDecorated").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("updateByExampleSelective2").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("UserSqlProvider.java");
+            new MethodDeclarationVisitor("selectByExampleDecorated").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("updateByExampleSelective2").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("selectByExamplePaged").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("UserExample.java");
+            new MethodDeclarationVisitor("getA").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("getLimit").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("BlogSqlProvider.java");
+            new MethodDeclarationVisitor("selectByExampleDecorated").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testCompiledExamplePlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserExample.java");
+            new InnerClassVisitor("Compiled").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("compile").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("bind").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("UserMapper.java");
+            new MethodDeclarationVisitor("selectByCompiledExample").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("countByCompiledExample").visitAndAssert(cu, null);
+            String provider = new MethodAnnotationVisitor("selectByCompiledExample", "SelectProvider")
+                    .visitAndGet(cu, null).replace(" ", "");
+            Assert.assertTrue(provider, provider.contains("method=\"selectByCompiledExample\""));
+            new MethodAnnotationVisitor("selectByCompiledExample", "Results").visitAndGet(cu, null);
+
+            cu = loadCompilationUnit("UserSqlProvider.java");
+            new MethodDeclarationVisitor("selectByCompiledExample").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("countByCompiledExample").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testNamedQueryPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("BlogMapper.java");
+            String select = new MethodAnnotationVisitor("selectByOwnerId", "Select").visitAndGet(cu, null);
+            Assert.assertTrue(select, select.contains("where OWNER_ID = #{ownerId,jdbcType=BIGINT} order by ID desc"));
+            new MethodAnnotationVisitor("selectByOwnerId", "Results").visitAndGet(cu, null);
+
+            cu = loadCompilationUnit("UserMapper.java");
+            select = new MethodAnnotationVisitor("selectByUsernameLike", "Select").visitAndGet(cu, null);
+            Assert.assertTrue(select, select.contains("where USERNAME like #{username,jdbcType=VARCHAR} and EMAIL is not null"));
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testLeanExamplePlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserExample.java");
+            new MethodDeclarationVisitor("reset").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("BlogExample.java");
+            new MethodDeclarationVisitor("reset").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testSharedCriteriaPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("AbstractCriteria.java");
+            new MethodDeclarationVisitor("getAllCriteria").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("addCriterion").visitAndAssert(cu, null);
+            Assert.assertTrue(cu.toString(), cu.toString().contains("class AbstractCriteria<T extends Criterion>"));
+
+            cu = loadCompilationUnit("Criterion.java");
+            new MethodDeclarationVisitor("isBetweenValue").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("UserExample.java");
+            new MethodDeclarationVisitor("andUsernameEqualTo").visitAndAssert(cu, null);
+            Assert.assertTrue(cu.toString(), cu.toString().contains("extends AbstractCriteria<Criterion>"));
+            Assert.assertFalse(cu.toString(), cu.toString().contains("List<Criterion> getAllCriteria()"));
+            Assert.assertFalse(cu.toString(), cu.toString().contains("boolean isBetweenValue()"));
+            Assert.assertFalse(cu.toString(), cu.toString().contains("void addCriterion(String condition)"));
+            new MethodDeclarationVisitor("newCriterion").visitAndAssert(cu, null);
+            Assert.assertTrue(cu.toString(), cu.toString().contains("class Criterion extends "
+                    + "com.google.code.mybatis.generator.plugins.gen.Criterion"));
+
+            cu = loadCompilationUnit("UserSqlProvider.java");
+            Assert.assertTrue(cu.toString(), cu.toString().contains("import com.google.code.mybatis.generator.plugins"
+                    + ".gen.UserExample.Criterion;"));
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testExampleSimplifierPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("CriteriaSimplifier.java");
+            new MethodDeclarationVisitor("simplify").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("getMergeIndex").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("Criterion.java");
+            Assert.assertTrue(cu.toString(), cu.toString().contains("implements SimplifiableCriterion"));
+
+            cu = loadCompilationUnit("UserExample.java");
+            new MethodDeclarationVisitor("simplify").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("UserSqlProvider.java");
+            Assert.assertTrue(cu.toString(), cu.toString().contains("example.simplifyCopy()"));
+            Assert.assertTrue(cu.toString(), cu.toString().contains("#{simplified.oredCriteria["));
+            Assert.assertFalse(cu.toString(), cu.toString().contains("#{oredCriteria["));
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testInListStrategyPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("InListStrategy.java");
+            new MethodDeclarationVisitor("append").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("ListArrayTypeHandler.java");
+            new MethodDeclarationVisitor("setNonNullParameter").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("UserSqlProvider.java");
+            Assert.assertTrue(cu.toString(), cu.toString().contains("InListStrategy.array(\"BIGINT\""));
+            Assert.assertTrue(cu.toString(), cu.toString().contains("InListStrategy.expanded(true, 3)"));
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testDialect() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserMapper.java");
+            new MethodDeclarationVisitor("selectFirstByUsernameLike").visitAndAssert(cu, null);
+            Assert.assertTrue(cu.toString(), cu.toString().contains("order by USERNAME limit 2"));
+
+            cu = loadCompilationUnit("UserSqlProvider.java");
+            Assert.assertTrue(cu.toString(), cu.toString().contains("ID in (UNNEST(%s))"));
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testQueryHintPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserSqlProvider.java");
+            new MethodDeclarationVisitor("selectByExample").visitAndAssert(cu, null);
+            Assert.assertTrue(cu.toString(), cu.toString().contains("SELECT /*+ INDEX(T_USER) */"));
+
+            cu = loadCompilationUnit("UserMapper.java");
+            new MethodDeclarationVisitor("selectByPrimaryKey").visitAndAssert(cu, null);
+            Assert.assertTrue(cu.toString(), cu.toString().contains("select /*+ FIRST_ROWS(1) */"));
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testCachedMapperPlugin() {
+        try {
+
+            CompilationUnit cu = loadCompilationUnit("UserMapperCached.java");
+            new MethodDeclarationVisitor("selectByPrimaryKey").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("evict").visitAndAssert(cu, null);
+            new MethodDeclarationVisitor("getAll").visitAndAssert(cu, null);
+
+            cu = loadCompilationUnit("BlogMapperCached.java");
+            new MethodDeclarationVisitor("deleteByPrimaryKey").visitAndAssert(cu, null);
+
+        } catch (Throwable t) {
+
+            Assert.fail(t.getMessage());
+        }
+    }
+
+
     private static class InnerClassVisitor extends VoidVisitorAdapter {
         private String innerClassName;
 
@@ -83,6 +518,70 @@ public class GenerationTest {
 
     }
 
+    private static class MethodDeclarationVisitor extends VoidVisitorAdapter {
+        private String methodName;
+
+        private boolean found = false;
+
+        private MethodDeclarationVisitor(String methodName) {
+            this.methodName = methodName;
+        }
+
+
+        public void visitAndAssert(CompilationUnit n, Object arg) {
+            found = false;
+            visit(n, arg);
+            Assert.assertTrue("No method '" + methodName + "' found in compilation unit: " +
+                    n.getTypes().get(0).getName(), found);
+        }
+
+        @Override
+        public void visit(MethodDeclaration n, Object arg) {
+
+            if (this.methodName.equals(n.getName()))
+                found = true;
+
+            super.visit(n, arg);
+        }
+
+    }
+
+    private static class MethodAnnotationVisitor extends VoidVisitorAdapter {
+        private String methodName;
+
+        private String annotationName;
+
+        private String annotation;
+
+        private MethodAnnotationVisitor(String methodName, String annotationName) {
+            this.methodName = methodName;
+            this.annotationName = annotationName;
+        }
+
+
+        public String visitAndGet(CompilationUnit n, Object arg) {
+            annotation = null;
+            visit(n, arg);
+            Assert.assertNotNull("No annotation '" + annotationName + "' found at method '" + methodName + "' in " +
+                    "compilation unit: " + n.getTypes().get(0).getName(), annotation);
+            return annotation;
+        }
+
+        @Override
+        public void visit(MethodDeclaration n, Object arg) {
+
+            if (this.methodName.equals(n.getName()) && n.getAnnotations() != null) {
+                for (AnnotationExpr a : n.getAnnotations()) {
+                    if (this.annotationName.equals(a.getName().getName()))
+                        annotation = a.toString();
+                }
+            }
+
+            super.visit(n, arg);
+        }
+
+    }
+
     private static class MethodVisitor extends VoidVisitorAdapter {
 
 
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.FullyQualifiedJavaType;
+import org.mybatis.generator.api.dom.java.Interface;
+import org.mybatis.generator.api.dom.java.Method;
+import org.mybatis.generator.api.dom.java.TopLevelClass;
+import org.mybatis.generator.api.dom.xml.Attribute;
+import org.mybatis.generator.api.dom.xml.XmlElement;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Derives the fetch size of every generated select from the width of the fetched rows, so narrow tables are read with
+ * few round trips while tables with wide columns do not blow up the driver's row buffer. The row width is estimated
+ * from the declared column lengths and types, the fetch size is the number of rows fitting into the configured
+ * bytes-per-fetch budget. The value is added to the @Options annotation of the select methods of annotated mappers
+ * (keeping a fetch size set by an earlier plugin, e.g. {@link OptionsPlugin}) and to the select elements of XML
+ * mappers. Streaming selects (methods taking a <tt>ResultHandler</tt>) additionally get a <tt>FORWARD_ONLY</tt>
+ * result set.<br/><br/> Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.AdaptiveFetchSizePlugin"&gt;
+ *          &lt;property name="fetchBufferSize" value="65536" /&gt;
+ *          &lt;property name="maxFetchSize" value="1000" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt> <br/> Properties:<br/> <ul> <li><strong>fetchBufferSize</strong> (optional) : bytes to fetch per round trip.
+ * Default: <strong>65536</strong></li> <li><strong>minFetchSize</strong> (optional) : lower bound of the fetch
+ * sizes. Default: <strong>1</strong></li> <li><strong>maxFetchSize</strong> (optional) : upper bound of the fetch
+ * sizes. Default: <strong>1000</strong></li> <li><strong>lobColumnBytes</strong> (optional) : assumed width of LOB
+ * columns and columns without declared length. Default: <strong>4096</strong></li>
+ * <li><strong>excludeClassNamesRegexp</strong> (optional): mappers to exclude from generation as regular expression.
+ * Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class AdaptiveFetchSizePlugin extends PluginAdapter {
+
+    private Config config;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clientGenerated(Interface interfaze, TopLevelClass topLevelClass,
+                                   IntrospectedTable introspectedTable) {
+
+        if (interfaze == null || config.shouldExclude(interfaze.getType()))
+            return true;
+
+        for (Method m : interfaze.getMethods()) {
+
+            String kind = OptionsPlugin.getStatementKind(m);
+            boolean streaming = OptionsPlugin.streamingKind.equals(kind);
+            if (!streaming && !OptionsPlugin.selectKind.equals(kind))
+                continue;
+
+            Map<String, String> options = new LinkedHashMap<String, String>();
+            options.put("fetchSize", String.valueOf(getFetchSize(introspectedTable, m.getName())));
+            if (streaming) {
+                interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.mapping.ResultSetType"));
+                options.put("resultSetType", "ResultSetType.FORWARD_ONLY");
+            }
+            interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Options"));
+            PluginUtils.mergeAnnotation(m, "Options", options, false);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sqlMapSelectByExampleWithoutBLOBsElementGenerated(XmlElement element,
+                                                                     IntrospectedTable introspectedTable) {
+        addFetchSizeAttribute(element, introspectedTable, introspectedTable.getSelectByExampleStatementId());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sqlMapSelectByExampleWithBLOBsElementGenerated(XmlElement element,
+                                                                  IntrospectedTable introspectedTable) {
+        addFetchSizeAttribute(element, introspectedTable, introspectedTable.getSelectByExampleWithBLOBsStatementId());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sqlMapSelectByPrimaryKeyElementGenerated(XmlElement element, IntrospectedTable introspectedTable) {
+        addFetchSizeAttribute(element, introspectedTable, introspectedTable.getSelectByPrimaryKeyStatementId());
+        return true;
+    }
+
+    private void addFetchSizeAttribute(XmlElement element, IntrospectedTable introspectedTable, String statementId) {
+
+        if (config.shouldExclude(introspectedTable.getMyBatis3JavaMapperType()))
+            return;
+
+        for (Attribute attribute : element.getAttributes()) {
+            if ("fetchSize".equals(attribute.getName()))
+                return;
+        }
+        element.addAttribute(new Attribute("fetchSize", String.valueOf(getFetchSize(introspectedTable, statementId))));
+    }
+
+    private int getFetchSize(IntrospectedTable introspectedTable, String statementId) {
+        int rowBytes = PluginUtils.estimateRowBytes(introspectedTable, statementId, config.lobColumnBytes);
+        return Math.max(config.minFetchSize, Math.min(config.fetchBufferSize / Math.max(rowBytes, 1),
+                config.maxFetchSize));
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String fetchBufferSizeKey = "fetchBufferSize";
+
+        private static final String minFetchSizeKey = "minFetchSize";
+
+        private static final String maxFetchSizeKey = "maxFetchSize";
+
+        private static final String lobColumnBytesKey = "lobColumnBytes";
+
+        private int fetchBufferSize;
+
+        private int minFetchSize;
+
+        private int maxFetchSize;
+
+        private int lobColumnBytes;
+
+        private Config(Properties props) {
+            super(props);
+            this.fetchBufferSize = Integer.parseInt(props.getProperty(fetchBufferSizeKey, "65536"));
+            this.minFetchSize = Integer.parseInt(props.getProperty(minFetchSizeKey, "1"));
+            this.maxFetchSize = Integer.parseInt(props.getProperty(maxFetchSizeKey, "1000"));
+            this.lobColumnBytes = Integer.parseInt(props.getProperty(lobColumnBytesKey, "4096"));
+            if (fetchBufferSize <= 0 || minFetchSize <= 0 || maxFetchSize < minFetchSize)
+                throw new IllegalArgumentException("Wrong fetch size configuration found! Expected: fetchBufferSize > 0"
+                        + " and 0 < minFetchSize <= maxFetchSize");
+        }
+    }
+}
@@ -16,21 +16,33 @@
 
 package com.google.code.mybatis.generator.plugins;
 
+import org.mybatis.generator.api.IntrospectedTable;
 import org.mybatis.generator.api.dom.java.FullyQualifiedJavaType;
 
-import java.util.Properties;
+import java.util.*;
 import java.util.regex.Pattern;
 
 /**
+ * Base of the plugin configurations. Regular expressions are compiled once when the configuration is created and
+ * every decision is memoized by class (and method) name, so each is taken once per table no matter how many callbacks
+ * ask for it. Plugins resolve the decisions for a table up front by calling {@link #resolve(IntrospectedTable)} from
+ * <tt>initialized()</tt>. Rule properties are applied in the alphabetical order of their names, so the first match is
+ * the same for every plugin and every run.
+ *
  * @author Maxim Kalina
  * @version $Id$
  */
 public abstract class BasePluginConfig {
 
-    private static final String excludeClassNamesRegexpKey = "excludeClassNamesRegexp";
+    static final String excludeClassNamesRegexpKey = "excludeClassNamesRegexp";
 
     private Pattern excludeClassNamesRegexp;
 
+    /**
+     * exclusion decisions by class name
+     */
+    private Map<String, Boolean> exclusions = new HashMap<String, Boolean>();
+
     protected BasePluginConfig(Properties props) {
         String regexp = props.getProperty(excludeClassNamesRegexpKey, null);
         if (regexp != null)
@@ -42,6 +54,150 @@ public abstract class BasePluginConfig {
     }
 
     boolean shouldExclude(String className) {
-        return excludeClassNamesRegexp != null && excludeClassNamesRegexp.matcher(className).matches();
+        if (excludeClassNamesRegexp == null)
+            return false;
+
+        Boolean excluded = exclusions.get(className);
+        if (excluded == null) {
+            excluded = excludeClassNamesRegexp.matcher(className).matches();
+            exclusions.put(className, excluded);
+        }
+        return excluded;
+    }
+
+    /**
+     * Resolves the decisions for the classes generated for the given table. Subclasses resolve their rules as well.
+     */
+    void resolve(IntrospectedTable introspectedTable) {
+        for (String className : getGeneratedClassNames(introspectedTable)) {
+            shouldExclude(className);
+        }
+    }
+
+    /**
+     * Returns the names of the classes generated for the table and its sql map namespace.
+     */
+    static List<String> getGeneratedClassNames(IntrospectedTable introspectedTable) {
+
+        List<String> names = new ArrayList<String>();
+        for (String name : new String[]{introspectedTable.getMyBatis3JavaMapperType(),
+                introspectedTable.getMyBatis3SqlMapNamespace(), introspectedTable.getExampleType(),
+                introspectedTable.getBaseRecordType(), introspectedTable.getPrimaryKeyType(),
+                introspectedTable.getRecordWithBLOBsType()}) {
+            if (name != null && !names.contains(name))
+                names.add(name);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the names of the rule properties, i.e. all but the reserved ones and excludeClassNamesRegexp, in
+     * alphabetical order.
+     */
+    static List<String> getRuleKeys(Properties props, Collection<String> reservedKeys) {
+
+        List<String> keys = new ArrayList<String>();
+        Enumeration<?> e = props.propertyNames();
+        while (e.hasMoreElements()) {
+            String key = (String) e.nextElement();
+            if (!reservedKeys.contains(key) && !excludeClassNamesRegexpKey.equals(key))
+                keys.add(key);
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Ordered rules matching a class name and optionally a method name. The rules applying to a class are selected
+     * once per class, the matches once per class and method.
+     */
+    static final class Rules<T> {
+
+        private List<Rule<T>> rules = new ArrayList<Rule<T>>();
+
+        private Map<String, List<Rule<T>>> rulesByClass = new HashMap<String, List<Rule<T>>>();
+
+        private Map<String, List<T>> matches = new HashMap<String, List<T>>();
+
+        /**
+         * Adds a rule, a null method regexp matches the class itself only.
+         */
+        void add(Pattern classRegexp, Pattern methodRegexp, T value) {
+            rules.add(new Rule<T>(classRegexp, methodRegexp, value));
+            rulesByClass.clear();
+            matches.clear();
+        }
+
+        boolean isEmpty() {
+            return rules.isEmpty();
+        }
+
+        List<T> getValues() {
+            List<T> values = new ArrayList<T>();
+            for (Rule<T> rule : rules) {
+                values.add(rule.value);
+            }
+            return values;
+        }
+
+        void resolve(String className) {
+            getRules(className);
+        }
+
+        /**
+         * Returns the value of the first rule matching the class / method or null.
+         */
+        T getFirstMatch(String className, String methodName) {
+            List<T> values = getAllMatches(className, methodName);
+            return values.isEmpty() ? null : values.get(0);
+        }
+
+        /**
+         * Returns the values of all rules matching the class / method in rule order.
+         */
+        List<T> getAllMatches(String className, String methodName) {
+
+            String key = methodName == null ? className : className + "#" + methodName;
+            List<T> values = matches.get(key);
+            if (values == null) {
+                values = new ArrayList<T>();
+                for (Rule<T> rule : getRules(className)) {
+                    if (methodName == null ? rule.methodRegexp == null
+                            : rule.methodRegexp != null && rule.methodRegexp.matcher(methodName).matches())
+                        values.add(rule.value);
+                }
+                values = Collections.unmodifiableList(values);
+                matches.put(key, values);
+            }
+            return values;
+        }
+
+        private List<Rule<T>> getRules(String className) {
+            List<Rule<T>> classRules = rulesByClass.get(className);
+            if (classRules == null) {
+                classRules = new ArrayList<Rule<T>>();
+                for (Rule<T> rule : rules) {
+                    if (rule.classRegexp.matcher(className).matches())
+                        classRules.add(rule);
+                }
+                rulesByClass.put(className, classRules);
+            }
+            return classRules;
+        }
+    }
+
+    private static final class Rule<T> {
+
+        private Pattern classRegexp;
+
+        private Pattern methodRegexp;
+
+        private T value;
+
+        private Rule(Pattern classRegexp, Pattern methodRegexp, T value) {
+            this.classRegexp = classRegexp;
+            this.methodRegexp = methodRegexp;
+            this.value = value;
+        }
     }
 }
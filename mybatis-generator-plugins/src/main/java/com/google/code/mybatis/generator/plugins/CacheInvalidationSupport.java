@@ -0,0 +1,748 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.dom.java.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the cross-node cache invalidation classes of the {@link CachePlugin}: the <tt>InvalidatingCache</tt>
+ * decorator, the <tt>InvalidationBus</tt> batching and deduplicating the invalidations, the
+ * <tt>InvalidationTransport</tt> interface and its loopback and UDP multicast implementations.
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+final class CacheInvalidationSupport {
+
+    static final String invalidatingCacheClassName = "InvalidatingCache";
+    static final String invalidationBusClassName = "InvalidationBus";
+    static final String invalidationTransportClassName = "InvalidationTransport";
+    static final String loopbackTransportClassName = "LoopbackInvalidationTransport";
+    static final String multicastTransportClassName = "MulticastInvalidationTransport";
+
+    private static final FullyQualifiedJavaType cacheType = new FullyQualifiedJavaType("org.apache.ibatis.cache.Cache");
+    private static final FullyQualifiedJavaType logType = new FullyQualifiedJavaType("org.apache.ibatis.logging.Log");
+    private static final FullyQualifiedJavaType logFactoryType =
+            new FullyQualifiedJavaType("org.apache.ibatis.logging.LogFactory");
+    private static final FullyQualifiedJavaType ioExceptionType = new FullyQualifiedJavaType("java.io.IOException");
+    private static final FullyQualifiedJavaType bytesType = new FullyQualifiedJavaType("byte[]");
+
+    private final FullyQualifiedJavaType invalidatingCacheType;
+    private final FullyQualifiedJavaType busType;
+    private final FullyQualifiedJavaType transportType;
+    private final FullyQualifiedJavaType loopbackTransportType;
+    private final FullyQualifiedJavaType multicastTransportType;
+
+    CacheInvalidationSupport(String supportPackage) {
+        this.invalidatingCacheType = new FullyQualifiedJavaType(supportPackage + "." + invalidatingCacheClassName);
+        this.busType = new FullyQualifiedJavaType(supportPackage + "." + invalidationBusClassName);
+        this.transportType = new FullyQualifiedJavaType(supportPackage + "." + invalidationTransportClassName);
+        this.loopbackTransportType = new FullyQualifiedJavaType(supportPackage + "." + loopbackTransportClassName);
+        this.multicastTransportType = new FullyQualifiedJavaType(supportPackage + "." + multicastTransportClassName);
+    }
+
+    FullyQualifiedJavaType getInvalidatingCacheType() {
+        return invalidatingCacheType;
+    }
+
+    List<CompilationUnit> generate() {
+        List<CompilationUnit> units = new ArrayList<CompilationUnit>();
+        units.add(generateTransportInterface());
+        units.add(generateInvalidatingCacheClass());
+        units.add(generateBusClass());
+        units.add(generateLoopbackTransportClass());
+        units.add(generateMulticastTransportClass());
+        return units;
+    }
+
+    private Interface generateTransportInterface() {
+
+        Interface interfaze = new Interface(transportType);
+        interfaze.setVisibility(JavaVisibility.PUBLIC);
+        interfaze.addImportedType(ioExceptionType);
+        interfaze.addJavaDocLine("/**");
+        interfaze.addJavaDocLine(" * Transport of the encoded invalidation batches between the nodes. Received messages (including");
+        interfaze.addJavaDocLine(" * the own ones) are passed to " + busType.getShortName() + ".receive(byte[]).");
+        interfaze.addJavaDocLine(" */");
+
+        Method m = new Method("start");
+        m.addParameter(new Parameter(busType, "bus"));
+        m.addException(ioExceptionType);
+        interfaze.addMethod(m);
+
+        m = new Method("send");
+        m.addParameter(new Parameter(bytesType, "message"));
+        m.addException(ioExceptionType);
+        interfaze.addMethod(m);
+
+        interfaze.addMethod(new Method("stop"));
+
+        return interfaze;
+    }
+
+    private TopLevelClass generateInvalidatingCacheClass() {
+
+        String bus = busType.getShortName();
+
+        TopLevelClass clazz = new TopLevelClass(invalidatingCacheType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(cacheType);
+        clazz.addImportedType(cacheType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.locks.ReadWriteLock"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Cache decorator publishing removals and clears to the other nodes through the " + bus + ".");
+        clazz.addJavaDocLine(" */");
+
+        Field delegate = new Field("delegate", cacheType);
+        delegate.setVisibility(JavaVisibility.PRIVATE);
+        delegate.setFinal(true);
+        clazz.addField(delegate);
+
+        Field busField = new Field("bus", busType);
+        busField.setVisibility(JavaVisibility.PRIVATE);
+        busField.setFinal(true);
+        clazz.addField(busField);
+
+        Method m = new Method(clazz.getType().getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(cacheType, "delegate"));
+        m.addBodyLine("this(delegate, " + bus + ".getDefault());");
+        clazz.addMethod(m);
+
+        m = new Method(clazz.getType().getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(cacheType, "delegate"));
+        m.addParameter(new Parameter(busType, "bus"));
+        m.addBodyLine("this.delegate = delegate;");
+        m.addBodyLine("this.bus = bus;");
+        m.addBodyLine("bus.register(this);");
+        clazz.addMethod(m);
+
+        Method removeObject = new Method("removeObject");
+        removeObject.setVisibility(JavaVisibility.PUBLIC);
+        removeObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        removeObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        removeObject.addBodyLine("Object value = delegate.removeObject(key);");
+        removeObject.addBodyLine("bus.invalidate(delegate.getId(), key);");
+        removeObject.addBodyLine("return value;");
+
+        Method clear = new Method("clear");
+        clear.setVisibility(JavaVisibility.PUBLIC);
+        clear.addBodyLine("delegate.clear();");
+        clear.addBodyLine("bus.invalidateAll(delegate.getId());");
+
+        PluginUtils.addDelegateMethods(clazz, removeObject, clear);
+
+        m = new Method("removeLocally");
+        m.setVisibility(JavaVisibility.DEFAULT);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        m.addBodyLine("delegate.removeObject(key);");
+        clazz.addMethod(m);
+
+        m = new Method("clearLocally");
+        m.setVisibility(JavaVisibility.DEFAULT);
+        m.addBodyLine("delegate.clear();");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private TopLevelClass generateBusClass() {
+
+        String bus = busType.getShortName();
+        String cache = invalidatingCacheType.getShortName();
+        FullyQualifiedJavaType pendingType =
+                new FullyQualifiedJavaType("java.util.Map<java.lang.String, java.util.Set<java.lang.Object>>");
+
+        TopLevelClass clazz = new TopLevelClass(busType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addImportedType(logType);
+        clazz.addImportedType(logFactoryType);
+        clazz.addImportedType(ioExceptionType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.ByteArrayInputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.ByteArrayOutputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.DataInputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.DataOutputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.security.SecureRandom"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.HashMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.HashSet"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Map"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ConcurrentHashMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ConcurrentMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.Executors"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ScheduledExecutorService"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ThreadFactory"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.TimeUnit"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.atomic.AtomicLong"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Collects the invalidations of the local " + cache + "s and publishes them to the other nodes");
+        clazz.addJavaDocLine(" * through an " + transportType.getShortName() + ". Invalidations are deduplicated and sent as one");
+        clazz.addJavaDocLine(" * batch every batchMillis, a namespace clear supersedes the keys of the namespace. Only String,");
+        clazz.addJavaDocLine(" * Long and Integer keys are sent as such, any other key (e.g. a CacheKey) is published as a clear");
+        clazz.addJavaDocLine(" * of its namespace, so received messages never need to be deserialized into arbitrary objects.");
+        clazz.addJavaDocLine(" * <p/>");
+        clazz.addJavaDocLine(" * The caches register at the default bus, connect it once at start-up:");
+        clazz.addJavaDocLine(" * <pre>");
+        clazz.addJavaDocLine(" * " + bus + ".getDefault().connect(new " + multicastTransportType.getShortName() + "());");
+        clazz.addJavaDocLine(" * </pre>");
+        clazz.addJavaDocLine(" * Invalidations are dropped while the bus is not connected. Every message carries a sequence number");
+        clazz.addJavaDocLine(" * of its node, a gap in the received numbers reveals a lost message and clears all local caches.");
+        clazz.addJavaDocLine(" */");
+
+        Field log = new Field("log", logType);
+        log.setVisibility(JavaVisibility.PRIVATE);
+        log.setStatic(true);
+        log.setFinal(true);
+        log.setInitializationString("LogFactory.getLog(" + bus + ".class)");
+        clazz.addField(log);
+
+        PluginUtils.addConstant(clazz, "int", "VERSION", "2");
+        PluginUtils.addConstant(clazz, "byte", "STRING_KEY", "1");
+        PluginUtils.addConstant(clazz, "byte", "LONG_KEY", "2");
+        PluginUtils.addConstant(clazz, "byte", "INTEGER_KEY", "3");
+        PluginUtils.addConstant(clazz, "int", "CLEAR", "-1");
+        PluginUtils.addConstant(clazz, "int", "MAX_KEYS_PER_NAMESPACE", "256");
+        PluginUtils.addConstant(clazz, "int", "MAX_MESSAGE_SIZE", "60000");
+        Field defaultBatchMillis = new Field("DEFAULT_BATCH_MILLIS", new FullyQualifiedJavaType("long"));
+        defaultBatchMillis.setVisibility(JavaVisibility.PUBLIC);
+        defaultBatchMillis.setStatic(true);
+        defaultBatchMillis.setFinal(true);
+        defaultBatchMillis.setInitializationString("50L");
+        clazz.addField(defaultBatchMillis);
+
+        Field defaultBus = new Field("defaultBus", busType);
+        defaultBus.setVisibility(JavaVisibility.PRIVATE);
+        defaultBus.setStatic(true);
+        defaultBus.setFinal(true);
+        defaultBus.setInitializationString("new " + bus + "(DEFAULT_BATCH_MILLIS)");
+        clazz.addField(defaultBus);
+
+        Field nodeId = new Field("nodeId", new FullyQualifiedJavaType("long"));
+        nodeId.setVisibility(JavaVisibility.PRIVATE);
+        nodeId.setFinal(true);
+        nodeId.setInitializationString("new SecureRandom().nextLong()");
+        clazz.addField(nodeId);
+
+        Field sequence = new Field("sequence", new FullyQualifiedJavaType("java.util.concurrent.atomic.AtomicLong"));
+        sequence.setVisibility(JavaVisibility.PRIVATE);
+        sequence.setFinal(true);
+        sequence.setInitializationString("new AtomicLong()");
+        clazz.addField(sequence);
+
+        Field sequences = new Field("sequences", new FullyQualifiedJavaType("java.util.Map<Long, Long>"));
+        sequences.setVisibility(JavaVisibility.PRIVATE);
+        sequences.setFinal(true);
+        sequences.setInitializationString("new HashMap<Long, Long>()");
+        clazz.addField(sequences);
+
+        Field batchMillis = new Field("batchMillis", new FullyQualifiedJavaType("long"));
+        batchMillis.setVisibility(JavaVisibility.PRIVATE);
+        batchMillis.setFinal(true);
+        clazz.addField(batchMillis);
+
+        Field caches = new Field("caches", new FullyQualifiedJavaType(
+                "java.util.concurrent.ConcurrentMap<String, " + cache + ">"));
+        caches.setVisibility(JavaVisibility.PRIVATE);
+        caches.setFinal(true);
+        caches.setInitializationString("new ConcurrentHashMap<String, " + cache + ">()");
+        clazz.addField(caches);
+
+        Field lock = new Field("lock", FullyQualifiedJavaType.getObjectInstance());
+        lock.setVisibility(JavaVisibility.PRIVATE);
+        lock.setFinal(true);
+        lock.setInitializationString("new Object()");
+        clazz.addField(lock);
+
+        Field pending = new Field("pending", pendingType);
+        pending.setVisibility(JavaVisibility.PRIVATE);
+        pending.setInitializationString("new HashMap<String, Set<Object>>()");
+        clazz.addField(pending);
+
+        Field transport = new Field("transport", transportType);
+        transport.setVisibility(JavaVisibility.PRIVATE);
+        transport.setVolatile(true);
+        clazz.addField(transport);
+
+        Field scheduler = new Field("scheduler",
+                new FullyQualifiedJavaType("java.util.concurrent.ScheduledExecutorService"));
+        scheduler.setVisibility(JavaVisibility.PRIVATE);
+        clazz.addField(scheduler);
+
+        Method m = new Method(bus);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("long"), "batchMillis"));
+        m.addBodyLine("this.batchMillis = batchMillis;");
+        clazz.addMethod(m);
+
+        m = new Method("getDefault");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the bus the generated namespace caches register at.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(busType);
+        m.addBodyLine("return defaultBus;");
+        clazz.addMethod(m);
+
+        m = new Method("register");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(invalidatingCacheType, "cache"));
+        m.addBodyLine("caches.put(cache.getId(), cache);");
+        clazz.addMethod(m);
+
+        m = new Method("connect");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Starts the given transport and the periodic publishing, replaces a previously connected transport.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setSynchronized(true);
+        m.addParameter(new Parameter(transportType, "transport"));
+        m.addException(ioExceptionType);
+        m.addBodyLine("disconnect();");
+        m.addBodyLine("transport.start(this);");
+        m.addBodyLine("this.transport = transport;");
+        m.addBodyLine("scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {");
+        m.addBodyLine("public Thread newThread(Runnable r) {");
+        m.addBodyLine("Thread thread = new Thread(r, \"" + bus + "\");");
+        m.addBodyLine("thread.setDaemon(true);");
+        m.addBodyLine("return thread;");
+        m.addBodyLine("}");
+        m.addBodyLine("});");
+        m.addBodyLine("scheduler.scheduleWithFixedDelay(new Runnable() {");
+        m.addBodyLine("public void run() {");
+        m.addBodyLine("flush();");
+        m.addBodyLine("}");
+        m.addBodyLine("}, batchMillis, batchMillis, TimeUnit.MILLISECONDS);");
+        clazz.addMethod(m);
+
+        m = new Method("disconnect");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Publishes the pending invalidations and stops the transport.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setSynchronized(true);
+        m.addBodyLine("if (transport == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("scheduler.shutdown();");
+        m.addBodyLine("flush();");
+        m.addBodyLine("transport.stop();");
+        m.addBodyLine("transport = null;");
+        m.addBodyLine("scheduler = null;");
+        clazz.addMethod(m);
+
+        m = new Method("invalidate");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "namespace"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        m.addBodyLine("if (!(key instanceof String || key instanceof Long || key instanceof Integer)) {");
+        m.addBodyLine("invalidateAll(namespace);");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (transport == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("synchronized (lock) {");
+        m.addBodyLine("Set<Object> keys = pending.get(namespace);");
+        m.addBodyLine("if (keys == null) {");
+        m.addBodyLine("if (pending.containsKey(namespace)) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("keys = new HashSet<Object>();");
+        m.addBodyLine("pending.put(namespace, keys);");
+        m.addBodyLine("}");
+        m.addBodyLine("keys.add(key);");
+        m.addBodyLine("if (keys.size() > MAX_KEYS_PER_NAMESPACE) {");
+        m.addBodyLine("pending.put(namespace, null);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("invalidateAll");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "namespace"));
+        m.addBodyLine("if (transport == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("synchronized (lock) {");
+        m.addBodyLine("pending.put(namespace, null);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("flush");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Publishes the pending invalidations as one message. Failures are logged, the other nodes clear");
+        m.addJavaDocLine(" * their caches on the gap in the sequence numbers their next message from this node reveals.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addBodyLine("Map<String, Set<Object>> batch;");
+        m.addBodyLine("synchronized (lock) {");
+        m.addBodyLine("if (pending.isEmpty()) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("batch = pending;");
+        m.addBodyLine("pending = new HashMap<String, Set<Object>>();");
+        m.addBodyLine("}");
+        m.addBodyLine(transportType.getShortName() + " transport = this.transport;");
+        m.addBodyLine("if (transport == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("long number = sequence.incrementAndGet();");
+        m.addBodyLine("try {");
+        m.addBodyLine("byte[] message = encode(batch, number, true);");
+        m.addBodyLine("if (message.length > MAX_MESSAGE_SIZE) {");
+        m.addBodyLine("message = encode(batch, number, false);");
+        m.addBodyLine("}");
+        m.addBodyLine("transport.send(message);");
+        m.addBodyLine("} catch (IOException e) {");
+        m.addBodyLine("log.warn(\"Cache invalidations of \" + batch.keySet() + \" not published: \" + e.getMessage());");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("receive");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Applies a message received by the transport to the local caches, own messages are ignored. All");
+        m.addJavaDocLine(" * local caches are cleared if the sequence number shows that messages of the sender were lost.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(bytesType, "message"));
+        m.addBodyLine("try {");
+        m.addBodyLine("DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));");
+        m.addBodyLine("if (in.readInt() != VERSION) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("long sender = in.readLong();");
+        m.addBodyLine("if (sender == nodeId) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("long number = in.readLong();");
+        m.addBodyLine("long lost;");
+        m.addBodyLine("synchronized (sequences) {");
+        m.addBodyLine("Long last = sequences.get(sender);");
+        m.addBodyLine("lost = last == null ? 0 : number - last - 1;");
+        m.addBodyLine("if (last == null || number > last) {");
+        m.addBodyLine("sequences.put(sender, number);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("if (lost > 0) {");
+        m.addBodyLine("log.warn(lost + \" cache invalidation message(s) of node \" + sender + \" lost, clearing the local caches\");");
+        m.addBodyLine("for (" + cache + " cache : caches.values()) {");
+        m.addBodyLine("cache.clearLocally();");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("for (int namespaces = in.readInt(); namespaces > 0; namespaces--) {");
+        m.addBodyLine(cache + " cache = caches.get(in.readUTF());");
+        m.addBodyLine("int keys = in.readInt();");
+        m.addBodyLine("if (keys == CLEAR) {");
+        m.addBodyLine("if (cache != null) {");
+        m.addBodyLine("cache.clearLocally();");
+        m.addBodyLine("}");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("for (; keys > 0; keys--) {");
+        m.addBodyLine("Object key = readKey(in);");
+        m.addBodyLine("if (cache != null) {");
+        m.addBodyLine("cache.removeLocally(key);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("} catch (IOException e) {");
+        m.addBodyLine("log.warn(\"Malformed cache invalidation message ignored: \" + e.getMessage());");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("encode");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(bytesType);
+        m.addParameter(new Parameter(pendingType, "batch"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("long"), "number"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getBooleanPrimitiveInstance(), "withKeys"));
+        m.addException(ioExceptionType);
+        m.addBodyLine("ByteArrayOutputStream bytes = new ByteArrayOutputStream();");
+        m.addBodyLine("DataOutputStream out = new DataOutputStream(bytes);");
+        m.addBodyLine("out.writeInt(VERSION);");
+        m.addBodyLine("out.writeLong(nodeId);");
+        m.addBodyLine("out.writeLong(number);");
+        m.addBodyLine("out.writeInt(batch.size());");
+        m.addBodyLine("for (Map.Entry<String, Set<Object>> entry : batch.entrySet()) {");
+        m.addBodyLine("out.writeUTF(entry.getKey());");
+        m.addBodyLine("Set<Object> keys = entry.getValue();");
+        m.addBodyLine("if (keys == null || !withKeys) {");
+        m.addBodyLine("out.writeInt(CLEAR);");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("out.writeInt(keys.size());");
+        m.addBodyLine("for (Object key : keys) {");
+        m.addBodyLine("if (key instanceof String) {");
+        m.addBodyLine("out.writeByte(STRING_KEY);");
+        m.addBodyLine("out.writeUTF((String) key);");
+        m.addBodyLine("} else if (key instanceof Long) {");
+        m.addBodyLine("out.writeByte(LONG_KEY);");
+        m.addBodyLine("out.writeLong((Long) key);");
+        m.addBodyLine("} else {");
+        m.addBodyLine("out.writeByte(INTEGER_KEY);");
+        m.addBodyLine("out.writeInt((Integer) key);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("out.flush();");
+        m.addBodyLine("return bytes.toByteArray();");
+        clazz.addMethod(m);
+
+        m = new Method("readKey");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.io.DataInputStream"), "in"));
+        m.addException(ioExceptionType);
+        m.addBodyLine("byte kind = in.readByte();");
+        m.addBodyLine("if (kind == STRING_KEY) {");
+        m.addBodyLine("return in.readUTF();");
+        m.addBodyLine("}");
+        m.addBodyLine("if (kind == LONG_KEY) {");
+        m.addBodyLine("return in.readLong();");
+        m.addBodyLine("}");
+        m.addBodyLine("if (kind == INTEGER_KEY) {");
+        m.addBodyLine("return in.readInt();");
+        m.addBodyLine("}");
+        m.addBodyLine("throw new IOException(\"Unknown key kind \" + kind);");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private TopLevelClass generateLoopbackTransportClass() {
+
+        String loopback = loopbackTransportType.getShortName();
+
+        TopLevelClass clazz = new TopLevelClass(loopbackTransportType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(transportType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.List"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.CopyOnWriteArrayList"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * In-process transport delivering every message synchronously to all started loopback transports of");
+        clazz.addJavaDocLine(" * the class loader, e.g. to connect several buses (nodes) within one test.");
+        clazz.addJavaDocLine(" */");
+
+        Field transports = new Field("transports", new FullyQualifiedJavaType("java.util.List<" + loopback + ">"));
+        transports.setVisibility(JavaVisibility.PRIVATE);
+        transports.setStatic(true);
+        transports.setFinal(true);
+        transports.setInitializationString("new CopyOnWriteArrayList<" + loopback + ">()");
+        clazz.addField(transports);
+
+        Field bus = new Field("bus", busType);
+        bus.setVisibility(JavaVisibility.PRIVATE);
+        bus.setVolatile(true);
+        clazz.addField(bus);
+
+        Method m = new Method("start");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setSynchronized(true);
+        m.addParameter(new Parameter(busType, "bus"));
+        m.addBodyLine("if (this.bus != null) {");
+        m.addBodyLine("throw new IllegalStateException(\"" + loopback + " already started\");");
+        m.addBodyLine("}");
+        m.addBodyLine("this.bus = bus;");
+        m.addBodyLine("transports.add(this);");
+        clazz.addMethod(m);
+
+        m = new Method("send");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(bytesType, "message"));
+        m.addBodyLine("for (" + loopback + " transport : transports) {");
+        m.addBodyLine(busType.getShortName() + " bus = transport.bus;");
+        m.addBodyLine("if (bus != null) {");
+        m.addBodyLine("bus.receive(message);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("stop");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addBodyLine("transports.remove(this);");
+        m.addBodyLine("bus = null;");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private TopLevelClass generateMulticastTransportClass() {
+
+        String multicast = multicastTransportType.getShortName();
+        FullyQualifiedJavaType inetAddressType = new FullyQualifiedJavaType("java.net.InetAddress");
+        FullyQualifiedJavaType socketType = new FullyQualifiedJavaType("java.net.MulticastSocket");
+
+        TopLevelClass clazz = new TopLevelClass(multicastTransportType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(transportType);
+        clazz.addImportedType(logType);
+        clazz.addImportedType(logFactoryType);
+        clazz.addImportedType(ioExceptionType);
+        clazz.addImportedType(inetAddressType);
+        clazz.addImportedType(socketType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.net.DatagramPacket"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.net.UnknownHostException"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * UDP multicast transport, every node joins the same group and port. Datagrams are not acknowledged,");
+        clazz.addJavaDocLine(" * a lost message is detected by the bus with the next message of its sender, the flush interval of");
+        clazz.addJavaDocLine(" * the caches bounds the staleness until then. Receive failures are retried with an exponential");
+        clazz.addJavaDocLine(" * back-off. The default group is organization-local, the default time to live of 1 keeps the");
+        clazz.addJavaDocLine(" * messages within the subnet.");
+        clazz.addJavaDocLine(" */");
+
+        Field log = new Field("log", logType);
+        log.setVisibility(JavaVisibility.PRIVATE);
+        log.setStatic(true);
+        log.setFinal(true);
+        log.setInitializationString("LogFactory.getLog(" + multicast + ".class)");
+        clazz.addField(log);
+
+        Field defaultGroup = new Field("DEFAULT_GROUP", FullyQualifiedJavaType.getStringInstance());
+        defaultGroup.setVisibility(JavaVisibility.PUBLIC);
+        defaultGroup.setStatic(true);
+        defaultGroup.setFinal(true);
+        defaultGroup.setInitializationString("\"239.255.27.1\"");
+        clazz.addField(defaultGroup);
+
+        Field defaultPort = new Field("DEFAULT_PORT", FullyQualifiedJavaType.getIntInstance());
+        defaultPort.setVisibility(JavaVisibility.PUBLIC);
+        defaultPort.setStatic(true);
+        defaultPort.setFinal(true);
+        defaultPort.setInitializationString("45327");
+        clazz.addField(defaultPort);
+
+        PluginUtils.addConstant(clazz, "long", "MIN_BACK_OFF_MILLIS", "100L");
+        PluginUtils.addConstant(clazz, "long", "MAX_BACK_OFF_MILLIS", "10000L");
+
+        Field group = new Field("group", inetAddressType);
+        group.setVisibility(JavaVisibility.PRIVATE);
+        group.setFinal(true);
+        clazz.addField(group);
+
+        Field port = new Field("port", FullyQualifiedJavaType.getIntInstance());
+        port.setVisibility(JavaVisibility.PRIVATE);
+        port.setFinal(true);
+        clazz.addField(port);
+
+        Field socket = new Field("socket", socketType);
+        socket.setVisibility(JavaVisibility.PRIVATE);
+        socket.setVolatile(true);
+        clazz.addField(socket);
+
+        Method m = new Method(multicast);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addException(new FullyQualifiedJavaType("java.net.UnknownHostException"));
+        m.addBodyLine("this(DEFAULT_GROUP, DEFAULT_PORT);");
+        clazz.addMethod(m);
+
+        m = new Method(multicast);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "group"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getIntInstance(), "port"));
+        m.addException(new FullyQualifiedJavaType("java.net.UnknownHostException"));
+        m.addBodyLine("this.group = InetAddress.getByName(group);");
+        m.addBodyLine("this.port = port;");
+        clazz.addMethod(m);
+
+        m = new Method("start");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setSynchronized(true);
+        m.addParameter(new Parameter(busType, "bus"));
+        m.addException(ioExceptionType);
+        m.addBodyLine("if (this.socket != null) {");
+        m.addBodyLine("throw new IllegalStateException(\"" + multicast + " already started\");");
+        m.addBodyLine("}");
+        m.addBodyLine("final " + busType.getShortName() + " receiver = bus;");
+        m.addBodyLine("final MulticastSocket socket = new MulticastSocket(port);");
+        m.addBodyLine("socket.joinGroup(group);");
+        m.addBodyLine("this.socket = socket;");
+        m.addBodyLine("Thread thread = new Thread(new Runnable() {");
+        m.addBodyLine("public void run() {");
+        m.addBodyLine("byte[] buffer = new byte[65536];");
+        m.addBodyLine("long backOff = 0;");
+        m.addBodyLine("while (!socket.isClosed()) {");
+        m.addBodyLine("DatagramPacket packet = new DatagramPacket(buffer, buffer.length);");
+        m.addBodyLine("try {");
+        m.addBodyLine("socket.receive(packet);");
+        m.addBodyLine("backOff = 0;");
+        m.addBodyLine("} catch (IOException e) {");
+        m.addBodyLine("if (socket.isClosed()) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (backOff == 0) {");
+        m.addBodyLine("log.warn(\"Receiving cache invalidations failed, retrying with back-off: \" + e.getMessage());");
+        m.addBodyLine("}");
+        m.addBodyLine("backOff = Math.min(MAX_BACK_OFF_MILLIS, Math.max(MIN_BACK_OFF_MILLIS, backOff * 2));");
+        m.addBodyLine("try {");
+        m.addBodyLine("Thread.sleep(backOff);");
+        m.addBodyLine("} catch (InterruptedException interrupted) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("byte[] message = new byte[packet.getLength()];");
+        m.addBodyLine("System.arraycopy(buffer, packet.getOffset(), message, 0, message.length);");
+        m.addBodyLine("receiver.receive(message);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("}, \"" + multicast + "\");");
+        m.addBodyLine("thread.setDaemon(true);");
+        m.addBodyLine("thread.start();");
+        clazz.addMethod(m);
+
+        m = new Method("send");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(bytesType, "message"));
+        m.addException(ioExceptionType);
+        m.addBodyLine("MulticastSocket socket = this.socket;");
+        m.addBodyLine("if (socket == null) {");
+        m.addBodyLine("throw new IOException(\"Transport not started\");");
+        m.addBodyLine("}");
+        m.addBodyLine("socket.send(new DatagramPacket(message, message.length, group, port));");
+        clazz.addMethod(m);
+
+        m = new Method("stop");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setSynchronized(true);
+        m.addBodyLine("MulticastSocket socket = this.socket;");
+        m.addBodyLine("if (socket == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("this.socket = null;");
+        m.addBodyLine("try {");
+        m.addBodyLine("socket.leaveGroup(group);");
+        m.addBodyLine("} catch (IOException e) {");
+        m.addBodyLine("log.debug(\"Leaving multicast group failed: \" + e.getMessage());");
+        m.addBodyLine("}");
+        m.addBodyLine("socket.close();");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+}
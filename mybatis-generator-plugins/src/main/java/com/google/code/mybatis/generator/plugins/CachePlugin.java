@@ -16,16 +16,14 @@
 
 package com.google.code.mybatis.generator.plugins;
 
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedColumn;
 import org.mybatis.generator.api.IntrospectedTable;
 import org.mybatis.generator.api.PluginAdapter;
-import org.mybatis.generator.api.dom.java.FullyQualifiedJavaType;
-import org.mybatis.generator.api.dom.java.Interface;
-import org.mybatis.generator.api.dom.java.TopLevelClass;
-
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.List;
-import java.util.Properties;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.internal.util.JavaBeansUtil;
+
+import java.util.*;
 import java.util.regex.Pattern;
 
 /**
@@ -41,7 +39,7 @@ import java.util.regex.Pattern;
  *          &lt;property name=".*FooMapper"
  *                     value="implementation=org.mybatis.caches.ehcache.LoggingEhcache.class,eviction=org.apache.ibatis.cache.decorators.LruCache.class,flushInterval=100,size=100" /&gt;
  *          &lt;property name=".*BarMapper"
- *                     value="implementation=org.mybatis.caches.ehcache.LoggingEhcache.class" /&gt;
+ *                     value="implementation=org.mybatis.caches.ehcache.LoggingEhcache.class,maxBytes=64M" /&gt;
  *          ...
  * <p/>
  *      &lt;/plugin&gt;
@@ -55,26 +53,127 @@ import java.util.regex.Pattern;
  * <li><strong>name</strong> is a regular expression to match a fully qualified name of the class.</li>
  * <li><strong>value</strong> is the value of the @CacheNamespace annotation</li>
  * </ol>
+ * Besides the attributes of the @CacheNamespace annotation the value may contain following plugin attributes:<br/>
+ * <ul>
+ * <li><strong>maxBytes</strong> : byte budget of the namespace (suffixes K, M and G are supported). Entries are
+ * weighted using the generated <tt>estimatedSizeInBytes()</tt> of the models and the least recently used ones are
+ * evicted once the budget is exceeded. Entries evicted or removed by the inner caches are not observable, their
+ * weights are dropped by the next miss of their key, by the budget (they are the least recently used) or every 256
+ * puts, when the eldest weights exceeding the size of the inner cache are dropped without touching the cache.</li>
+ * <li><strong>maxEntryBytes</strong> (optional) : results weighting more are not cached at all. Default: a tenth of
+ * <tt>maxBytes</tt></li>
+ * <li><strong>decorator</strong> (optional, repeatable) : fully qualified class of a cache decorator having a
+ * constructor taking the decorated cache, e.g. the <tt>BinaryModelCache</tt> generated by the
+ * {@link ModelCodecPlugin}. Decorators are applied in the order of declaration, unlike the <tt>eviction</tt>
+ * attribute they wrap custom cache implementations as well. If a <tt>BinaryModelCache</tt> is declared,
+ * <tt>readWrite</tt> defaults to false, as the decorator hands out copies already.</li>
+ * <li><strong>warmUpLimit</strong>, <strong>warmUpOrderBy</strong> (optional) : the number of rows and their order
+ * (columns separated by <tt>;</tt>) to load into the cache by the generated <tt>CacheWarmUp</tt> class</li>
+ * <li><strong>warmUpKeys</strong> (optional) : classpath resource or file listing the primary keys (one per line) to
+ * load into the cache by the generated <tt>CacheWarmUp</tt> class, takes precedence over the attributes above</li>
+ * <li><strong>invalidation</strong> (optional) : <tt>true</tt> to publish removals and clears of the namespace to the
+ * other nodes, which drop the affected entries of their local caches. Invalidations are batched and deduplicated by
+ * the generated <tt>InvalidationBus</tt> and sent through a pluggable <tt>InvalidationTransport</tt>, a loopback and a
+ * UDP multicast implementation are generated. Connect the bus once at start-up, e.g.
+ * <tt>InvalidationBus.getDefault().connect(new MulticastInvalidationTransport())</tt>. Messages are numbered per
+ * node, a receiver seeing a gap clears its local caches. As the loss of the last message of a node is noticed with
+ * its next message only, <tt>flushInterval</tt> defaults to 300000 (5 minutes) for these namespaces. Default:
+ * false</li>
+ * </ul>
+ * For every namespace using plugin attributes a <tt>XXXMapperCache</tt> class is generated next to the mapper. It
+ * builds the cache described by the annotation attributes (<tt>implementation</tt>, <tt>eviction</tt>,
+ * <tt>flushInterval</tt>, <tt>size</tt> and <tt>readWrite</tt> as <tt>name=value</tt>, other values are passed to the
+ * annotation unchanged) and wraps it with the plugin decorators. The mapper is
+ * annotated with <tt>@CacheNamespace(implementation = XXXMapperCache.class)</tt> then.<br/> If any namespace has a
+ * warm-up spec a <tt>CacheWarmUp</tt> class is generated. Its <tt>run()</tt> streams the rows of all namespaces in
+ * parallel by <tt>selectByExample</tt> (the listed keys by chunked <tt>IN</tt> queries) and puts every row into the
+ * cache under the key of its <tt>selectByPrimaryKey</tt> (recording the statement for a declared
+ * <tt>TableDependencyCache</tt> decorator), so the primary key lookups are served from the cache
+ * afterwards. It logs progress and timing at info level through <tt>java.util.logging</tt> (the MyBatis log has no
+ * info level) and returns once all namespaces are done. Call it before the application reports to be ready. Only
+ * tables having a single column primary key are supported, a warning is issued for the others.<br/> If
+ * <strong>statistics</strong> is enabled every configured namespace is wrapped (outermost) with the generated
+ * <tt>CacheStatistics</tt> decorator counting hits, misses, puts, removals, clears, evictions and load time. Loads are
+ * timed per key from the miss until the put, which the transactional cache of the session defers until commit, so
+ * the load time includes the rest of the transaction. Evictions are counted by the <tt>maxBytes</tt> budget, which
+ * notices the entries evicted by the inner caches (LRU, flush interval) as well, namespaces without a budget report
+ * none. Each instance is
+ * registered as MBean <tt>&lt;supportPackage&gt;:type=CacheStatistics,id=&lt;namespace&gt;</tt> at the platform
+ * MBean server, offers a
+ * <tt>reset()</tt> operation and a <tt>snapshot()</tt> of all counters and can be looked up by
+ * <tt>CacheStatistics.getInstance(namespace)</tt>.<br/> Properties:<br/> <ul>
+ * <li><strong>supportPackage</strong> (optional) : the package of the generated support classes. Default: target
+ * package of the java model generator</li> <li><strong>statistics</strong> (optional) : whether to collect and publish
+ * cache statistics of all configured namespaces. Default: false</li> <li><strong>excludeClassNamesRegexp</strong>
+ * (optional): mappers to exclude from generation as regular expression. Default: none</li> </ul>
  *
  * @author Maxim Kalina
  * @version $Id$
  */
 public class CachePlugin extends PluginAdapter {
 
+    static final String sizeEstimableClassName = "SizeEstimable";
+    static final String sizeEstimatorClassName = "SizeEstimator";
+    static final String weightedCacheClassName = "WeightedCache";
+    static final String cacheWarmUpClassName = "CacheWarmUp";
+    static final String cacheStatisticsClassName = "CacheStatistics";
+
     private static final String cacheNamespaceFQN = "org.apache.ibatis.annotations.CacheNamespace";
 
+    private static final FullyQualifiedJavaType cacheType = new FullyQualifiedJavaType("org.apache.ibatis.cache.Cache");
+    private static final FullyQualifiedJavaType cacheBuilderType =
+            new FullyQualifiedJavaType("org.apache.ibatis.mapping.CacheBuilder");
+    private static final FullyQualifiedJavaType longType = new FullyQualifiedJavaType("long");
+
+    /**
+     * counters of the generated statistics decorator
+     */
+    private static final String[] statisticsCounters = {"hits", "misses", "puts", "removals", "clears", "evictions",
+            "loads", "loadTimeNanos"};
+
+    /**
+     * primitive java type of a field -> estimated size of the field in bytes
+     */
+    private static final Map<String, Integer> primitiveSizes = new HashMap<String, Integer>();
+
+    static {
+        primitiveSizes.put("long", 8);
+        primitiveSizes.put("double", 8);
+        primitiveSizes.put("int", 4);
+        primitiveSizes.put("float", 4);
+        primitiveSizes.put("short", 2);
+        primitiveSizes.put("char", 2);
+        primitiveSizes.put("byte", 1);
+        primitiveSizes.put("boolean", 1);
+    }
+
     private Config config;
 
+    private List<String> warnings;
+
+    /**
+     * tables to generate a cache warm-up for
+     */
+    private List<IntrospectedTable> warmUpTables = new ArrayList<IntrospectedTable>();
+
     /**
      * {@inheritDoc}
      */
     public boolean validate(List<String> warnings) {
         if (config == null)
-            config = new Config(getProperties());
-
+            config = new Config(getProperties(), context.getJavaModelGeneratorConfiguration().getTargetPackage());
+        this.warnings = warnings;
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        config.resolve(introspectedTable);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -83,12 +182,16 @@ public class CachePlugin extends PluginAdapter {
                                    IntrospectedTable introspectedTable) {
 
 
-        String cacheValue = config.getCacheValue(interfaze.getType().getFullyQualifiedName());
-        if (cacheValue == null)
+        CacheConfigItem item = getCacheConfigItem(interfaze.getType());
+        if (item == null)
             return true;
 
         interfaze.addImportedType(new FullyQualifiedJavaType(cacheNamespaceFQN));
 
+        String cacheValue = item.cacheValue;
+        if (item.isDecorated())
+            cacheValue = "implementation = " + getNamespaceCacheType(interfaze.getType()).getShortName() + ".class";
+
         StringBuilder sb = new StringBuilder();
         sb.append("@CacheNamespace(\n").append(cacheValue).append("\n)");
         interfaze.addAnnotation(sb.toString());
@@ -96,52 +199,1274 @@ public class CachePlugin extends PluginAdapter {
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelBaseRecordClassGenerated(TopLevelClass topLevelClass,
+                                                 IntrospectedTable introspectedTable) {
+        addSizeEstimate(topLevelClass, introspectedTable);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelPrimaryKeyClassGenerated(TopLevelClass topLevelClass,
+                                                 IntrospectedTable introspectedTable) {
+        addSizeEstimate(topLevelClass, introspectedTable);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelRecordWithBLOBsClassGenerated(TopLevelClass topLevelClass,
+                                                      IntrospectedTable introspectedTable) {
+        addSizeEstimate(topLevelClass, introspectedTable);
+        return true;
+    }
 
-    private static final class Config {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles() {
 
-        private List<CacheConfigItem> items;
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        String targetProject = context.getJavaModelGeneratorConfiguration().getTargetProject();
 
-        private Config(Properties props) {
+        if (config.isWeighted()) {
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateSizeEstimableInterface(), targetProject));
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateSizeEstimatorClass(), targetProject));
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateWeightedCacheClass(), targetProject));
+        }
 
-            this.items = new ArrayList<CacheConfigItem>();
+        if (!warmUpTables.isEmpty())
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateCacheWarmUpClass(), targetProject));
 
-            Enumeration e = props.propertyNames();
-            while (e.hasMoreElements()) {
-                String key = (String) e.nextElement();
-                items.add(CacheConfigItem.valueOf(key, props.getProperty(key)));
+        if (config.hasInvalidation()) {
+            for (CompilationUnit unit : config.invalidationSupport.generate()) {
+                files.add(PluginUtils.newGeneratedJavaFile(context, unit, targetProject));
             }
         }
 
-        private String getCacheValue(String classFQN) {
+        if (config.statistics && !config.items.isEmpty()) {
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateCacheStatisticsMBeanInterface(),
+                    targetProject));
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateCacheStatisticsClass(), targetProject));
+        }
 
-            for (CacheConfigItem item : items) {
-                if (item.classRegexp.matcher(classFQN).matches())
-                    return item.cacheValue;
-            }
+        return files;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles(IntrospectedTable introspectedTable) {
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        if (context.getJavaClientGeneratorConfiguration() == null)
+            return files;
+
+        FullyQualifiedJavaType mapperType = new FullyQualifiedJavaType(introspectedTable.getMyBatis3JavaMapperType());
+        CacheConfigItem item = getCacheConfigItem(mapperType);
+        if (item == null)
+            return files;
+
+        if (item.hasWarmUp()) {
+            boolean query = introspectedTable.hasBLOBColumns()
+                    ? introspectedTable.getRules().generateSelectByExampleWithBLOBs()
+                    : introspectedTable.getRules().generateSelectByExampleWithoutBLOBs();
+            if (introspectedTable.getPrimaryKeyColumns().size() == 1 && query
+                    && introspectedTable.getRules().generateSelectByPrimaryKey())
+                warmUpTables.add(introspectedTable);
+            else
+                warnings.add("CachePlugin: no cache warm-up generated for " + mapperType.getShortName() + ", it "
+                        + "requires a single column primary key, selectByPrimaryKey and selectByExample");
+        }
+
+        if (item.isDecorated()) {
+            String targetProject = context.getJavaClientGeneratorConfiguration().getTargetProject();
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateNamespaceCacheClass(mapperType, item),
+                    targetProject));
+        }
+        return files;
+    }
+
+    private CacheConfigItem getCacheConfigItem(FullyQualifiedJavaType mapperType) {
+        if (config.shouldExclude(mapperType))
             return null;
+        return config.getCacheConfigItem(mapperType.getFullyQualifiedName());
+    }
+
+    private static FullyQualifiedJavaType getNamespaceCacheType(FullyQualifiedJavaType mapperType) {
+        return new FullyQualifiedJavaType(mapperType.getFullyQualifiedName() + "Cache");
+    }
+
+    private void addSizeEstimate(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (!config.isWeighted() || config.shouldExclude(introspectedTable.getMyBatis3JavaMapperType())
+                || config.shouldExclude(introspectedTable.getBaseRecordType()))
+            return;
+
+        FullyQualifiedJavaType type = topLevelClass.getType();
+        boolean superClass = PluginUtils.getGeneratedSuperType(type, introspectedTable) != null;
+
+        if (!superClass) {
+            topLevelClass.addImportedType(config.sizeEstimableType);
+            topLevelClass.addSuperInterface(config.sizeEstimableType);
+        }
+        topLevelClass.addImportedType(config.sizeEstimatorType);
+
+        Method m = new Method("estimatedSizeInBytes");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(longType);
+        m.addBodyLine(superClass ? "long size = super.estimatedSizeInBytes();" : "long size = 16L;");
+
+        String estimator = config.sizeEstimatorType.getShortName();
+        for (Field field : topLevelClass.getFields()) {
+            if (field.isStatic())
+                continue;
+
+            Integer primitiveSize = primitiveSizes.get(field.getType().getFullyQualifiedName());
+            if (primitiveSize != null)
+                m.addBodyLine("size += " + primitiveSize + ";");
+            else
+                m.addBodyLine("size += " + estimator + ".sizeOf(this." + field.getName() + ");");
+        }
+        m.addBodyLine("return size;");
+
+        context.getCommentGenerator().addGeneralMethodComment(m, introspectedTable);
+        topLevelClass.addMethod(m);
+    }
+
+    private Interface generateSizeEstimableInterface() {
+
+        Interface interfaze = new Interface(config.sizeEstimableType);
+        interfaze.setVisibility(JavaVisibility.PUBLIC);
+        interfaze.addJavaDocLine("/**");
+        interfaze.addJavaDocLine(" * Object able to estimate its own heap footprint, used to weigh cache entries.");
+        interfaze.addJavaDocLine(" */");
+
+        Method m = new Method("estimatedSizeInBytes");
+        m.setReturnType(longType);
+        interfaze.addMethod(m);
+
+        return interfaze;
+    }
+
+    private TopLevelClass generateSizeEstimatorClass() {
+
+        String sizeEstimable = config.sizeEstimableType.getShortName();
+
+        TopLevelClass clazz = new TopLevelClass(config.sizeEstimatorType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setFinal(true);
+        clazz.addImportedType(config.sizeEstimableType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigDecimal"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Collection"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Rough heap footprint estimates (64 bit VM, compressed references) of field values and cached");
+        clazz.addJavaDocLine(" * results. Every estimate includes the reference pointing to the value.");
+        clazz.addJavaDocLine(" */");
+
+        PluginUtils.addConstant(clazz, "int", "REFERENCE", "4");
+        PluginUtils.addConstant(clazz, "int", "OBJECT_HEADER", "16");
+        PluginUtils.addConstant(clazz, "int", "ARRAY_HEADER", "16");
+
+        Method constructor = new Method(clazz.getType().getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PRIVATE);
+        constructor.addBodyLine("super();");
+        clazz.addMethod(constructor);
+
+        Method m = newSizeOfMethod("java.lang.String");
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("return REFERENCE;");
+        m.addBodyLine("}");
+        m.addBodyLine("return REFERENCE + OBJECT_HEADER + 8 + ARRAY_HEADER + 2L * value.length();");
+        clazz.addMethod(m);
+
+        m = newSizeOfMethod("byte[]");
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("return REFERENCE;");
+        m.addBodyLine("}");
+        m.addBodyLine("return REFERENCE + ARRAY_HEADER + value.length;");
+        clazz.addMethod(m);
+
+        m = newSizeOfMethod("java.lang.Object");
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("return REFERENCE;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (value instanceof " + sizeEstimable + ") {");
+        m.addBodyLine("return REFERENCE + ((" + sizeEstimable + ") value).estimatedSizeInBytes();");
+        m.addBodyLine("}");
+        m.addBodyLine("if (value instanceof String) {");
+        m.addBodyLine("return sizeOf((String) value);");
+        m.addBodyLine("}");
+        m.addBodyLine("if (value instanceof byte[]) {");
+        m.addBodyLine("return sizeOf((byte[]) value);");
+        m.addBodyLine("}");
+        m.addBodyLine("if (value instanceof Collection) {");
+        m.addBodyLine("long size = REFERENCE + OBJECT_HEADER + 16 + ARRAY_HEADER;");
+        m.addBodyLine("for (Object element : (Collection<?>) value) {");
+        m.addBodyLine("size += sizeOf(element);");
+        m.addBodyLine("}");
+        m.addBodyLine("return size;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (value instanceof BigDecimal) {");
+        m.addBodyLine("return REFERENCE + 2 * OBJECT_HEADER + 24 + ARRAY_HEADER"
+                + " + ((BigDecimal) value).unscaledValue().bitLength() / 8;");
+        m.addBodyLine("}");
+        m.addBodyLine("return REFERENCE + OBJECT_HEADER + 8;");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private static Method newSizeOfMethod(String valueType) {
+        Method m = new Method("sizeOf");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(longType);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType(valueType), "value"));
+        return m;
+    }
+
+    private TopLevelClass generateWeightedCacheClass() {
+
+        TopLevelClass clazz = new TopLevelClass(config.weightedCacheType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(cacheType);
+        clazz.addImportedType(cacheType);
+        clazz.addImportedType(config.sizeEstimatorType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Iterator"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.LinkedHashMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Map"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.atomic.AtomicLong"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.locks.ReadWriteLock"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Cache decorator limiting the estimated heap footprint of the cached values instead of their count.");
+        clazz.addJavaDocLine(" * The least recently used entries are evicted once the byte budget is exceeded, values weighting");
+        clazz.addJavaDocLine(" * more than the entry limit are not cached at all. The weights of entries evicted by the decorated cache");
+        clazz.addJavaDocLine(" * are dropped on the next miss of their key or by the periodic reconciliation with its size, both count");
+        clazz.addJavaDocLine(" * as eviction like the ones of the budget.");
+        clazz.addJavaDocLine(" */");
+
+        PluginUtils.addConstant(clazz, "int", "RECONCILE_INTERVAL", "256");
+
+        Field delegate = new Field("delegate", cacheType);
+        delegate.setVisibility(JavaVisibility.PRIVATE);
+        delegate.setFinal(true);
+        clazz.addField(delegate);
+
+        Field maxBytes = new Field("maxBytes", longType);
+        maxBytes.setVisibility(JavaVisibility.PRIVATE);
+        maxBytes.setFinal(true);
+        clazz.addField(maxBytes);
+
+        Field maxEntryBytes = new Field("maxEntryBytes", longType);
+        maxEntryBytes.setVisibility(JavaVisibility.PRIVATE);
+        maxEntryBytes.setFinal(true);
+        clazz.addField(maxEntryBytes);
+
+        Field weights = new Field("weights", new FullyQualifiedJavaType("java.util.LinkedHashMap<Object, Long>"));
+        weights.setVisibility(JavaVisibility.PRIVATE);
+        weights.setFinal(true);
+        weights.setInitializationString("new LinkedHashMap<Object, Long>(16, 0.75f, true)");
+        clazz.addField(weights);
+
+        Field totalBytes = new Field("totalBytes", longType);
+        totalBytes.setVisibility(JavaVisibility.PRIVATE);
+        clazz.addField(totalBytes);
+
+        Field putsSinceReconcile = new Field("putsSinceReconcile", FullyQualifiedJavaType.getIntInstance());
+        putsSinceReconcile.setVisibility(JavaVisibility.PRIVATE);
+        clazz.addField(putsSinceReconcile);
+
+        Field evictions = new Field("evictions", new FullyQualifiedJavaType("java.util.concurrent.atomic.AtomicLong"));
+        evictions.setVisibility(JavaVisibility.PRIVATE);
+        evictions.setFinal(true);
+        evictions.setInitializationString("new AtomicLong()");
+        clazz.addField(evictions);
+
+        Method constructor = new Method(clazz.getType().getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PUBLIC);
+        constructor.addParameter(new Parameter(cacheType, "delegate"));
+        constructor.addParameter(new Parameter(longType, "maxBytes"));
+        constructor.addParameter(new Parameter(longType, "maxEntryBytes"));
+        constructor.addBodyLine("this.delegate = delegate;");
+        constructor.addBodyLine("this.maxBytes = maxBytes;");
+        constructor.addBodyLine("this.maxEntryBytes = maxEntryBytes;");
+        clazz.addMethod(constructor);
+
+        Method putObject = new Method("putObject");
+        putObject.setVisibility(JavaVisibility.PUBLIC);
+        putObject.setSynchronized(true);
+        putObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        putObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        putObject.addBodyLine("forget(key);");
+        putObject.addBodyLine("if (value == null) {");
+        putObject.addBodyLine("delegate.putObject(key, null);");
+        putObject.addBodyLine("return;");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("long weight = " + config.sizeEstimatorType.getShortName() + ".sizeOf(value);");
+        putObject.addBodyLine("if (weight > maxEntryBytes) {");
+        putObject.addBodyLine("delegate.removeObject(key);");
+        putObject.addBodyLine("return;");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("weights.put(key, weight);");
+        putObject.addBodyLine("totalBytes += weight;");
+        putObject.addBodyLine("delegate.putObject(key, value);");
+        putObject.addBodyLine("if (++putsSinceReconcile >= RECONCILE_INTERVAL) {");
+        putObject.addBodyLine("putsSinceReconcile = 0;");
+        putObject.addBodyLine("forgetEvicted();");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("Iterator<Map.Entry<Object, Long>> it = weights.entrySet().iterator();");
+        putObject.addBodyLine("while (totalBytes > maxBytes && it.hasNext()) {");
+        putObject.addBodyLine("Map.Entry<Object, Long> eldest = it.next();");
+        putObject.addBodyLine("it.remove();");
+        putObject.addBodyLine("totalBytes -= eldest.getValue();");
+        putObject.addBodyLine("delegate.removeObject(eldest.getKey());");
+        putObject.addBodyLine("evictions.incrementAndGet();");
+        putObject.addBodyLine("}");
+
+        Method getObject = new Method("getObject");
+        getObject.setVisibility(JavaVisibility.PUBLIC);
+        getObject.setSynchronized(true);
+        getObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        getObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        getObject.addBodyLine("Object value = delegate.getObject(key);");
+        getObject.addBodyLine("if (value == null) {");
+        getObject.addBodyLine("if (forget(key)) {");
+        getObject.addBodyLine("evictions.incrementAndGet();");
+        getObject.addBodyLine("}");
+        getObject.addBodyLine("} else if (weights.get(key) == null) {");
+        getObject.addBodyLine("long weight = " + config.sizeEstimatorType.getShortName() + ".sizeOf(value);");
+        getObject.addBodyLine("weights.put(key, weight);");
+        getObject.addBodyLine("totalBytes += weight;");
+        getObject.addBodyLine("}");
+        getObject.addBodyLine("return value;");
+
+        Method removeObject = new Method("removeObject");
+        removeObject.setVisibility(JavaVisibility.PUBLIC);
+        removeObject.setSynchronized(true);
+        removeObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        removeObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        removeObject.addBodyLine("forget(key);");
+        removeObject.addBodyLine("return delegate.removeObject(key);");
+
+        Method clear = new Method("clear");
+        clear.setVisibility(JavaVisibility.PUBLIC);
+        clear.setSynchronized(true);
+        clear.addBodyLine("weights.clear();");
+        clear.addBodyLine("totalBytes = 0;");
+        clear.addBodyLine("delegate.clear();");
+
+        PluginUtils.addDelegateMethods(clazz, putObject, getObject, removeObject, clear);
+
+        Method m = new Method("getTotalBytes");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setSynchronized(true);
+        m.setReturnType(longType);
+        m.addBodyLine("return totalBytes;");
+        clazz.addMethod(m);
+
+        m = new Method("getEvictionCounter");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the number of entries evicted by the budget or noticed as evicted by the decorated cache.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(new FullyQualifiedJavaType("java.util.concurrent.atomic.AtomicLong"));
+        m.addBodyLine("return evictions;");
+        clazz.addMethod(m);
+
+        m = new Method("forget");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        m.addBodyLine("Long weight = weights.remove(key);");
+        m.addBodyLine("if (weight == null) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("totalBytes -= weight;");
+        m.addBodyLine("return true;");
+        clazz.addMethod(m);
+
+        m = new Method("forgetEvicted");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Drops the weights exceeding the size of the decorated cache, which evicted or removed entries on its");
+        m.addJavaDocLine(" * own, so the total does not drift upwards. The least recently used weights are dropped, as they");
+        m.addJavaDocLine(" * belong to the entries evicted by an LRU or size bounded cache. The cache is not probed: a live entry");
+        m.addJavaDocLine(" * losing its weight this way is weighted again on its next hit.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("int evicted = weights.size() - delegate.getSize();");
+        m.addBodyLine("Iterator<Map.Entry<Object, Long>> it = weights.entrySet().iterator();");
+        m.addBodyLine("while (evicted > 0 && it.hasNext()) {");
+        m.addBodyLine("Map.Entry<Object, Long> entry = it.next();");
+        m.addBodyLine("it.remove();");
+        m.addBodyLine("totalBytes -= entry.getValue();");
+        m.addBodyLine("evictions.incrementAndGet();");
+        m.addBodyLine("evicted--;");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private TopLevelClass generateNamespaceCacheClass(FullyQualifiedJavaType mapperType, CacheConfigItem item) {
+
+        TopLevelClass clazz = new TopLevelClass(getNamespaceCacheType(mapperType));
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(cacheType);
+        clazz.addImportedType(cacheType);
+        clazz.addImportedType(cacheBuilderType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.locks.ReadWriteLock"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Cache of the " + mapperType.getShortName() + " namespace. Builds the cache described by the");
+        clazz.addJavaDocLine(" * @CacheNamespace attributes and wraps it with the decorators generated by the CachePlugin.");
+        clazz.addJavaDocLine(" */");
+
+        Field delegate = new Field("delegate", cacheType);
+        delegate.setVisibility(JavaVisibility.PRIVATE);
+        delegate.setFinal(true);
+        clazz.addField(delegate);
+
+        Method constructor = new Method(clazz.getType().getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PUBLIC);
+        constructor.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "id"));
+        constructor.addBodyLine("CacheBuilder builder = new CacheBuilder(id);");
+        for (String builderCall : item.builderCalls) {
+            constructor.addBodyLine("builder." + builderCall + ";");
+        }
+        constructor.addBodyLine("Cache cache = builder.build();");
+        for (String decorator : item.decorators) {
+            FullyQualifiedJavaType decoratorType = new FullyQualifiedJavaType(decorator);
+            clazz.addImportedType(decoratorType);
+            constructor.addBodyLine("cache = new " + decoratorType.getShortName() + "(cache);");
+        }
+        if (item.maxBytes > 0) {
+            clazz.addImportedType(config.weightedCacheType);
+            String weighted = config.weightedCacheType.getShortName();
+            constructor.addBodyLine(weighted + " weighted = new " + weighted + "(cache, " + item.maxBytes + "L, "
+                    + item.maxEntryBytes + "L);");
+            constructor.addBodyLine("cache = weighted;");
+        }
+        if (item.invalidation) {
+            FullyQualifiedJavaType invalidatingCacheType = config.invalidationSupport.getInvalidatingCacheType();
+            clazz.addImportedType(invalidatingCacheType);
+            constructor.addBodyLine("cache = new " + invalidatingCacheType.getShortName() + "(cache);");
+        }
+        if (item.statistics) {
+            clazz.addImportedType(config.cacheStatisticsType);
+            constructor.addBodyLine("cache = new " + config.cacheStatisticsType.getShortName()
+                    + (item.maxBytes > 0 ? "(cache, weighted.getEvictionCounter());" : "(cache);"));
+        }
+        constructor.addBodyLine("this.delegate = cache;");
+        clazz.addMethod(constructor);
+
+        PluginUtils.addDelegateMethods(clazz);
+
+        return clazz;
+    }
+
+    private Interface generateCacheStatisticsMBeanInterface() {
+
+        Interface interfaze = new Interface(config.cacheStatisticsMBeanType);
+        interfaze.setVisibility(JavaVisibility.PUBLIC);
+        interfaze.addJavaDocLine("/**");
+        interfaze.addJavaDocLine(" * Management interface of the " + cacheStatisticsClassName + " decorator.");
+        interfaze.addJavaDocLine(" */");
 
+        for (String counter : statisticsCounters) {
+            Method m = new Method(JavaBeansUtil.getGetterMethodName(counter, longType));
+            m.setReturnType(longType);
+            interfaze.addMethod(m);
+        }
+
+        Method m = new Method("getHitRatio");
+        m.setReturnType(new FullyQualifiedJavaType("double"));
+        interfaze.addMethod(m);
+
+        m = new Method("getAverageLoadTimeMillis");
+        m.setReturnType(new FullyQualifiedJavaType("double"));
+        interfaze.addMethod(m);
+
+        m = new Method("getSize");
+        m.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        interfaze.addMethod(m);
+
+        interfaze.addMethod(new Method("reset"));
+
+        return interfaze;
+    }
+
+    private TopLevelClass generateCacheStatisticsClass() {
+
+        FullyQualifiedJavaType atomicLongType = new FullyQualifiedJavaType("java.util.concurrent.atomic.AtomicLong");
+        FullyQualifiedJavaType doubleType = new FullyQualifiedJavaType("double");
+        String statistics = config.cacheStatisticsType.getShortName();
+        FullyQualifiedJavaType snapshotType = new FullyQualifiedJavaType(statistics + ".Snapshot");
+
+        TopLevelClass clazz = new TopLevelClass(config.cacheStatisticsType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(cacheType);
+        clazz.addSuperInterface(config.cacheStatisticsMBeanType);
+        clazz.addImportedType(cacheType);
+        clazz.addImportedType(atomicLongType);
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.logging.Log"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.logging.LogFactory"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.lang.management.ManagementFactory"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ConcurrentHashMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ConcurrentMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.locks.ReadWriteLock"));
+        clazz.addImportedType(new FullyQualifiedJavaType("javax.management.JMException"));
+        clazz.addImportedType(new FullyQualifiedJavaType("javax.management.MBeanServer"));
+        clazz.addImportedType(new FullyQualifiedJavaType("javax.management.ObjectName"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Cache decorator counting hits, misses, puts, removals, clears, evictions and the time spent loading");
+        clazz.addJavaDocLine(" * missed values (from the miss of a key until its put, which sessions defer until commit). Evictions");
+        clazz.addJavaDocLine(" * are counted by the " + weightedCacheClassName + " decorated, if any. The counters are published as MBean");
+        clazz.addJavaDocLine(" * per namespace.");
+        clazz.addJavaDocLine(" */");
+
+        Field log = new Field("log", new FullyQualifiedJavaType("org.apache.ibatis.logging.Log"));
+        log.setVisibility(JavaVisibility.PRIVATE);
+        log.setStatic(true);
+        log.setFinal(true);
+        log.setInitializationString("LogFactory.getLog(" + statistics + ".class)");
+        clazz.addField(log);
+
+        Field instances = new Field("instances", new FullyQualifiedJavaType(
+                "java.util.concurrent.ConcurrentMap<String, " + statistics + ">"));
+        instances.setVisibility(JavaVisibility.PRIVATE);
+        instances.setStatic(true);
+        instances.setFinal(true);
+        instances.setInitializationString("new ConcurrentHashMap<String, " + statistics + ">()");
+        clazz.addField(instances);
+
+        Field delegate = new Field("delegate", cacheType);
+        delegate.setVisibility(JavaVisibility.PRIVATE);
+        delegate.setFinal(true);
+        clazz.addField(delegate);
+
+        for (String counter : statisticsCounters) {
+            Field f = new Field(counter, atomicLongType);
+            f.setVisibility(JavaVisibility.PRIVATE);
+            f.setFinal(true);
+            if ("evictions".equals(counter)) {
+                f.addJavaDocLine("/**");
+                f.addJavaDocLine(" * maintained by the decorated " + weightedCacheClassName + ", if any");
+                f.addJavaDocLine(" */");
+            } else {
+                f.setInitializationString("new AtomicLong()");
+            }
+            clazz.addField(f);
+        }
+
+        PluginUtils.addConstant(clazz, "int", "MAX_PENDING_LOADS", "10000");
+
+        Field missedAt = new Field("missedAt", new FullyQualifiedJavaType(
+                "java.util.concurrent.ConcurrentMap<Object, Long>"));
+        missedAt.addJavaDocLine("/**");
+        missedAt.addJavaDocLine(" * time of the first miss of the keys not put yet, cleared once it gets too large");
+        missedAt.addJavaDocLine(" */");
+        missedAt.setVisibility(JavaVisibility.PRIVATE);
+        missedAt.setFinal(true);
+        missedAt.setInitializationString("new ConcurrentHashMap<Object, Long>()");
+        clazz.addField(missedAt);
+
+        Method m = new Method(statistics);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(cacheType, "delegate"));
+        m.addBodyLine("this(delegate, new AtomicLong());");
+        clazz.addMethod(m);
+
+        m = new Method(statistics);
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Decorates the cache, reporting the evictions of the given counter, e.g. the one of the");
+        m.addJavaDocLine(" * " + weightedCacheClassName + " decorated.");
+        m.addJavaDocLine(" */");
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(cacheType, "delegate"));
+        m.addParameter(new Parameter(atomicLongType, "evictions"));
+        m.addBodyLine("this.delegate = delegate;");
+        m.addBodyLine("this.evictions = evictions;");
+        m.addBodyLine("instances.put(delegate.getId(), this);");
+        m.addBodyLine("try {");
+        m.addBodyLine("ObjectName name = new ObjectName(\"" + config.cacheStatisticsType.getPackageName()
+                + ":type=" + statistics + ",id=\" + ObjectName.quote(delegate.getId()));");
+        m.addBodyLine("MBeanServer server = ManagementFactory.getPlatformMBeanServer();");
+        m.addBodyLine("if (server.isRegistered(name)) {");
+        m.addBodyLine("server.unregisterMBean(name);");
+        m.addBodyLine("}");
+        m.addBodyLine("server.registerMBean(this, name);");
+        m.addBodyLine("} catch (JMException e) {");
+        m.addBodyLine("log.warn(\"Cache statistics of \" + delegate.getId() + \" not published: \" + e.getMessage());");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("getInstance");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the statistics of the given namespace or null if its cache has not been created yet.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(config.cacheStatisticsType);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "id"));
+        m.addBodyLine("return instances.get(id);");
+        clazz.addMethod(m);
+
+        Method putObject = new Method("putObject");
+        putObject.setVisibility(JavaVisibility.PUBLIC);
+        putObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        putObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        putObject.addBodyLine("Long start = missedAt.remove(key);");
+        putObject.addBodyLine("if (start != null) {");
+        putObject.addBodyLine("loads.incrementAndGet();");
+        putObject.addBodyLine("loadTimeNanos.addAndGet(System.nanoTime() - start);");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("puts.incrementAndGet();");
+        putObject.addBodyLine("delegate.putObject(key, value);");
+
+        Method getObject = new Method("getObject");
+        getObject.setVisibility(JavaVisibility.PUBLIC);
+        getObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        getObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        getObject.addBodyLine("Object value = delegate.getObject(key);");
+        getObject.addBodyLine("if (value == null) {");
+        getObject.addBodyLine("misses.incrementAndGet();");
+        getObject.addBodyLine("if (missedAt.size() >= MAX_PENDING_LOADS) {");
+        getObject.addBodyLine("missedAt.clear();");
+        getObject.addBodyLine("}");
+        getObject.addBodyLine("missedAt.putIfAbsent(key, System.nanoTime());");
+        getObject.addBodyLine("} else {");
+        getObject.addBodyLine("hits.incrementAndGet();");
+        getObject.addBodyLine("}");
+        getObject.addBodyLine("return value;");
+
+        Method removeObject = new Method("removeObject");
+        removeObject.setVisibility(JavaVisibility.PUBLIC);
+        removeObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        removeObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        removeObject.addBodyLine("removals.incrementAndGet();");
+        removeObject.addBodyLine("return delegate.removeObject(key);");
+
+        Method clear = new Method("clear");
+        clear.setVisibility(JavaVisibility.PUBLIC);
+        clear.addBodyLine("clears.incrementAndGet();");
+        clear.addBodyLine("delegate.clear();");
+
+        PluginUtils.addDelegateMethods(clazz, putObject, getObject, removeObject, clear);
+
+        for (String counter : statisticsCounters) {
+            m = new Method(JavaBeansUtil.getGetterMethodName(counter, longType));
+            m.setVisibility(JavaVisibility.PUBLIC);
+            m.setReturnType(longType);
+            m.addBodyLine("return " + counter + ".get();");
+            clazz.addMethod(m);
+        }
+
+        m = new Method("getHitRatio");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(doubleType);
+        m.addBodyLine("return snapshot().getHitRatio();");
+        clazz.addMethod(m);
+
+        m = new Method("getAverageLoadTimeMillis");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(doubleType);
+        m.addBodyLine("return snapshot().getAverageLoadTimeMillis();");
+        clazz.addMethod(m);
+
+        m = new Method("reset");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        for (String counter : statisticsCounters) {
+            m.addBodyLine(counter + ".set(0);");
+        }
+        m.addBodyLine("missedAt.clear();");
+        clazz.addMethod(m);
+
+        m = new Method("snapshot");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the current values of all counters. The counters are read one by one without locking,");
+        m.addJavaDocLine(" * concurrent updates may be contained partially.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(snapshotType);
+        StringBuilder sb = new StringBuilder();
+        for (String counter : statisticsCounters) {
+            sb.append(", ").append(counter).append(".get()");
+        }
+        m.addBodyLine("return new Snapshot(delegate.getId()" + sb + ");");
+        clazz.addMethod(m);
+
+        InnerClass snapshot = new InnerClass(snapshotType);
+        snapshot.addJavaDocLine("/**");
+        snapshot.addJavaDocLine(" * Immutable copy of the counters.");
+        snapshot.addJavaDocLine(" */");
+        snapshot.setVisibility(JavaVisibility.PUBLIC);
+        snapshot.setStatic(true);
+        snapshot.setFinal(true);
+        Method constructor = new Method(snapshotType.getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PRIVATE);
+        snapshot.addMethod(constructor);
+
+        Field id = new Field("id", FullyQualifiedJavaType.getStringInstance());
+        id.setVisibility(JavaVisibility.PRIVATE);
+        id.setFinal(true);
+        snapshot.addField(id);
+        constructor.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "id"));
+        constructor.addBodyLine("this.id = id;");
+        m = new Method("getId");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getStringInstance());
+        m.addBodyLine("return id;");
+        snapshot.addMethod(m);
+
+        for (String counter : statisticsCounters) {
+            Field f = new Field(counter, longType);
+            f.setVisibility(JavaVisibility.PRIVATE);
+            f.setFinal(true);
+            snapshot.addField(f);
+            constructor.addParameter(new Parameter(longType, counter));
+            constructor.addBodyLine("this." + counter + " = " + counter + ";");
+            m = new Method(JavaBeansUtil.getGetterMethodName(counter, longType));
+            m.setVisibility(JavaVisibility.PUBLIC);
+            m.setReturnType(longType);
+            m.addBodyLine("return " + counter + ";");
+            snapshot.addMethod(m);
+        }
+
+        m = new Method("getHitRatio");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(doubleType);
+        m.addBodyLine("long requests = hits + misses;");
+        m.addBodyLine("return requests == 0 ? 0d : (double) hits / requests;");
+        snapshot.addMethod(m);
+
+        m = new Method("getAverageLoadTimeMillis");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(doubleType);
+        m.addBodyLine("return loads == 0 ? 0d : loadTimeNanos / 1000000d / loads;");
+        snapshot.addMethod(m);
+
+        m = new Method("toString");
+        m.addAnnotation("@Override");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getStringInstance());
+        m.addBodyLine("return id + \"[hits=\" + hits + \", misses=\" + misses + \", hitRatio=\" + getHitRatio()");
+        m.addBodyLine("+ \", puts=\" + puts + \", removals=\" + removals + \", clears=\" + clears + \", evictions=\" + evictions");
+        m.addBodyLine("+ \", loads=\" + loads + \", averageLoadTimeMillis=\" + getAverageLoadTimeMillis() + \"]\";");
+        snapshot.addMethod(m);
+        clazz.addInnerClass(snapshot);
+
+        return clazz;
+    }
+
+    private TopLevelClass generateCacheWarmUpClass() {
+
+        FullyQualifiedJavaType sqlSessionFactoryType =
+                new FullyQualifiedJavaType("org.apache.ibatis.session.SqlSessionFactory");
+        FullyQualifiedJavaType ioExceptionType = new FullyQualifiedJavaType("java.io.IOException");
+
+        TopLevelClass clazz = new TopLevelClass(config.cacheWarmUpType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addImportedType(sqlSessionFactoryType);
+        clazz.addImportedType(ioExceptionType);
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.cache.CacheKey"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.executor.Executor"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.mapping.BoundSql"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.mapping.MappedStatement"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.ResultContext"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.ResultHandler"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.RowBounds"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.SqlSession"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.transaction.jdbc.JdbcTransaction"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.logging.Level"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.logging.Logger"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.BufferedReader"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.FileInputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.InputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.InputStreamReader"));
+        clazz.addImportedType(FullyQualifiedJavaType.getNewArrayListInstance());
+        clazz.addImportedType(FullyQualifiedJavaType.getNewListInstance());
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.Callable"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ExecutionException"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ExecutorService"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.Executors"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.Future"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Loads the configured rows into the second level caches, the namespaces are warmed up in parallel.");
+        clazz.addJavaDocLine(" * The rows are streamed once and put under the cache keys of selectByPrimaryKey. Progress is logged");
+        clazz.addJavaDocLine(" * at info level through java.util.logging. Call run() before the application reports to be ready.");
+        clazz.addJavaDocLine(" */");
+
+        Field log = new Field("log", new FullyQualifiedJavaType("java.util.logging.Logger"));
+        log.setVisibility(JavaVisibility.PRIVATE);
+        log.setStatic(true);
+        log.setFinal(true);
+        log.setInitializationString("Logger.getLogger(" + config.cacheWarmUpType.getShortName() + ".class.getName())");
+        clazz.addField(log);
+
+        Field batchSize = new Field("BATCH_SIZE", FullyQualifiedJavaType.getIntInstance());
+        batchSize.setVisibility(JavaVisibility.PRIVATE);
+        batchSize.setStatic(true);
+        batchSize.setFinal(true);
+        batchSize.setInitializationString("100");
+        clazz.addField(batchSize);
+
+        Field sqlSessionFactory = new Field("sqlSessionFactory", sqlSessionFactoryType);
+        sqlSessionFactory.setVisibility(JavaVisibility.PRIVATE);
+        sqlSessionFactory.setFinal(true);
+        clazz.addField(sqlSessionFactory);
+
+        Method m = new Method(clazz.getType().getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(sqlSessionFactoryType, "sqlSessionFactory"));
+        m.addBodyLine("this.sqlSessionFactory = sqlSessionFactory;");
+        clazz.addMethod(m);
+
+        m = new Method("run");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Warms up all caches and returns the number of loaded rows once all of them are done. Failures");
+        m.addJavaDocLine(" * are logged and do not stop the other namespaces.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        m.addException(new FullyQualifiedJavaType("java.lang.InterruptedException"));
+        m.addBodyLine("long start = System.currentTimeMillis();");
+        m.addBodyLine("List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();");
+        for (IntrospectedTable table : warmUpTables) {
+            String mapper = new FullyQualifiedJavaType(table.getMyBatis3JavaMapperType()).getShortName();
+            m.addBodyLine("tasks.add(new Callable<Integer>() {");
+            m.addBodyLine("public Integer call() throws Exception {");
+            m.addBodyLine("return warmUp" + mapper + "();");
+            m.addBodyLine("}");
+            m.addBodyLine("});");
+        }
+        m.addBodyLine("ExecutorService executor = Executors.newFixedThreadPool(tasks.size());");
+        m.addBodyLine("int rows = 0;");
+        m.addBodyLine("try {");
+        m.addBodyLine("for (Future<Integer> future : executor.invokeAll(tasks)) {");
+        m.addBodyLine("try {");
+        m.addBodyLine("rows += future.get();");
+        m.addBodyLine("} catch (ExecutionException e) {");
+        m.addBodyLine("log.log(Level.SEVERE, \"Cache warm-up failed: \" + e.getCause().getMessage(), e.getCause());");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("} finally {");
+        m.addBodyLine("executor.shutdown();");
+        m.addBodyLine("}");
+        m.addBodyLine("log.info(\"Cache warm-up finished: \" + rows + \" rows in \""
+                + " + (System.currentTimeMillis() - start) + \" ms\");");
+        m.addBodyLine("return rows;");
+        clazz.addMethod(m);
+
+        for (IntrospectedTable table : warmUpTables)
+            clazz.addMethod(generateWarmUpMethod(clazz, table));
+
+        FullyQualifiedJavaType executorType = new FullyQualifiedJavaType("org.apache.ibatis.executor.Executor");
+        FullyQualifiedJavaType statementType = new FullyQualifiedJavaType("org.apache.ibatis.mapping.MappedStatement");
+        FullyQualifiedJavaType tableDependencyCacheType = getWarmUpTableDependencyCacheType();
+        m = new Method("put");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Puts the entity into the cache of the statement under the key of the statement for the given parameter.");
+        if (tableDependencyCacheType != null)
+            m.addJavaDocLine(" * The statement is recorded for a tracked namespace, so the entry depends on the tables it reads.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.addParameter(new Parameter(executorType, "executor"));
+        m.addParameter(new Parameter(statementType, "statement"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "parameter"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "entity"));
+        m.addBodyLine("BoundSql boundSql = statement.getBoundSql(parameter);");
+        m.addBodyLine("CacheKey key = executor.createCacheKey(statement, parameter, RowBounds.DEFAULT, boundSql);");
+        if (tableDependencyCacheType != null) {
+            clazz.addImportedType(tableDependencyCacheType);
+            m.addParameter(new Parameter(FullyQualifiedJavaType.getBooleanPrimitiveInstance(), "tracked"));
+            m.addBodyLine("if (tracked) {");
+            m.addBodyLine(tableDependencyCacheType.getShortName() + ".queried(key, statement.getId());");
+            m.addBodyLine("}");
+        }
+        m.addBodyLine("List<Object> result = new ArrayList<Object>(1);");
+        m.addBodyLine("result.add(entity);");
+        m.addBodyLine("statement.getCache().putObject(key, result);");
+        clazz.addMethod(m);
+
+        m = new Method("readKeys");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(new FullyQualifiedJavaType("java.util.List<java.lang.String>"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "resource"));
+        m.addException(ioExceptionType);
+        m.addBodyLine("InputStream in = " + config.cacheWarmUpType.getShortName()
+                + ".class.getClassLoader().getResourceAsStream(resource);");
+        m.addBodyLine("if (in == null) {");
+        m.addBodyLine("in = new FileInputStream(resource);");
+        m.addBodyLine("}");
+        m.addBodyLine("BufferedReader reader = new BufferedReader(new InputStreamReader(in, \"UTF-8\"));");
+        m.addBodyLine("try {");
+        m.addBodyLine("List<String> keys = new ArrayList<String>();");
+        m.addBodyLine("String line;");
+        m.addBodyLine("while ((line = reader.readLine()) != null) {");
+        m.addBodyLine("line = line.trim();");
+        m.addBodyLine("if (line.length() > 0 && !line.startsWith(\"#\")) {");
+        m.addBodyLine("keys.add(line);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return keys;");
+        m.addBodyLine("} finally {");
+        m.addBodyLine("reader.close();");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    /**
+     * Returns the TableDependencyCache decorating any warmed up namespace, null if there is none.
+     */
+    private FullyQualifiedJavaType getWarmUpTableDependencyCacheType() {
+        for (IntrospectedTable table : warmUpTables) {
+            String decorator = getCacheConfigItem(new FullyQualifiedJavaType(table.getMyBatis3JavaMapperType()))
+                    .getTableDependencyCache();
+            if (decorator != null)
+                return new FullyQualifiedJavaType(decorator);
+        }
+        return null;
+    }
+
+    private Method generateWarmUpMethod(TopLevelClass clazz, IntrospectedTable table) {
+
+        CacheConfigItem item = getCacheConfigItem(new FullyQualifiedJavaType(table.getMyBatis3JavaMapperType()));
+        FullyQualifiedJavaType mapperType = new FullyQualifiedJavaType(table.getMyBatis3JavaMapperType());
+        FullyQualifiedJavaType exampleType = new FullyQualifiedJavaType(table.getExampleType());
+        FullyQualifiedJavaType entityType = table.getRules().calculateAllFieldsClass();
+        IntrospectedColumn keyColumn = table.getPrimaryKeyColumns().get(0);
+        FullyQualifiedJavaType keyType = keyColumn.getFullyQualifiedJavaType();
+        String key = keyType.getShortName();
+        String mapper = mapperType.getShortName();
+        String example = exampleType.getShortName();
+        String keyGetter = JavaBeansUtil.getGetterMethodName(keyColumn.getJavaProperty(), keyType) + "()";
+        String selectByExample = mapperType.getFullyQualifiedName() + "." + (table.hasBLOBColumns()
+                ? table.getSelectByExampleWithBLOBsStatementId() : table.getSelectByExampleStatementId());
+
+        clazz.addImportedType(keyType);
+        clazz.addImportedType(exampleType);
+        clazz.addImportedType(entityType);
+
+        Method m = new Method("warmUp" + mapper);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        m.addException(new FullyQualifiedJavaType("java.io.IOException"));
+        m.addBodyLine("long start = System.currentTimeMillis();");
+        m.addBodyLine("final MappedStatement statement = sqlSessionFactory.getConfiguration().getMappedStatement(\""
+                + mapperType.getFullyQualifiedName() + "." + table.getSelectByPrimaryKeyStatementId() + "\");");
+        m.addBodyLine("if (statement.getCache() == null) {");
+        m.addBodyLine("return 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("SqlSession session = sqlSessionFactory.openSession();");
+        m.addBodyLine("try {");
+        m.addBodyLine("final Executor executor = statement.getConfiguration().newExecutor("
+                + "new JdbcTransaction(session.getConnection()));");
+        m.addBodyLine("final int[] rows = {0};");
+        m.addBodyLine("ResultHandler handler = new ResultHandler() {");
+        m.addBodyLine("public void handleResult(ResultContext context) {");
+        m.addBodyLine(entityType.getShortName() + " entity = (" + entityType.getShortName()
+                + ") context.getResultObject();");
+        m.addBodyLine("put(executor, statement, entity." + keyGetter + ", entity"
+                + (getWarmUpTableDependencyCacheType() == null ? ");"
+                : ", " + (item.getTableDependencyCache() != null) + ");"));
+        m.addBodyLine("if (++rows[0] % BATCH_SIZE == 0) {");
+        m.addBodyLine("log.info(\"" + mapper + " cache warm-up: \" + rows[0] + \" rows\");");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("};");
+
+        if (item.warmUpKeys != null) {
+            StringBuilder inCriterion = new StringBuilder(keyColumn.getJavaProperty());
+            inCriterion.setCharAt(0, Character.toUpperCase(inCriterion.charAt(0)));
+            inCriterion.insert(0, "and").append("In");
+
+            m.addBodyLine("List<" + key + "> keys = new ArrayList<" + key + ">();");
+            m.addBodyLine("for (String key : readKeys(\"" + item.warmUpKeys + "\")) {");
+            m.addBodyLine("keys.add(new " + key + "(key));");
+            m.addBodyLine("}");
+            m.addBodyLine("for (int i = 0; i < keys.size(); i += BATCH_SIZE) {");
+            m.addBodyLine(example + " example = new " + example + "();");
+            m.addBodyLine("example.createCriteria()." + inCriterion
+                    + "(keys.subList(i, Math.min(i + BATCH_SIZE, keys.size())));");
+            m.addBodyLine("session.select(\"" + selectByExample + "\", example, handler);");
+            m.addBodyLine("}");
+        } else {
+            m.addBodyLine(example + " example = new " + example + "();");
+            if (item.warmUpOrderBy != null)
+                m.addBodyLine("example.setOrderByClause(\"" + item.warmUpOrderBy + "\");");
+            String rowBounds = item.warmUpLimit > 0 ? "new RowBounds(0, " + item.warmUpLimit + ")"
+                    : "RowBounds.DEFAULT";
+            m.addBodyLine("session.select(\"" + selectByExample + "\", example, " + rowBounds + ", handler);");
+        }
+
+        m.addBodyLine("log.info(\"" + mapper + " cache warm-up: \" + rows[0] + \" rows in \""
+                + " + (System.currentTimeMillis() - start) + \" ms\");");
+        m.addBodyLine("return rows[0];");
+        m.addBodyLine("} finally {");
+        m.addBodyLine("session.close();");
+        m.addBodyLine("}");
+        return m;
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String supportPackageKey = "supportPackage";
+        private static final String statisticsKey = "statistics";
+        private static final List<String> reservedKeys = Arrays.asList("excludeClassNamesRegexp", supportPackageKey,
+                statisticsKey);
+
+        private Rules<CacheConfigItem> items;
+
+        private FullyQualifiedJavaType sizeEstimableType;
+        private FullyQualifiedJavaType sizeEstimatorType;
+        private FullyQualifiedJavaType weightedCacheType;
+        private FullyQualifiedJavaType cacheWarmUpType;
+        private FullyQualifiedJavaType cacheStatisticsType;
+        private FullyQualifiedJavaType cacheStatisticsMBeanType;
+        private CacheInvalidationSupport invalidationSupport;
+
+        private boolean statistics;
+
+        private Config(Properties props, String defaultSupportPackage) {
+            super(props);
+
+            this.items = new Rules<CacheConfigItem>();
+            this.statistics = Boolean.valueOf(props.getProperty(statisticsKey, "false"));
+
+            for (String key : getRuleKeys(props, reservedKeys)) {
+                items.add(Pattern.compile(key), null, CacheConfigItem.valueOf(key, props.getProperty(key), statistics));
+            }
+
+            String supportPackage = props.getProperty(supportPackageKey, defaultSupportPackage);
+            this.sizeEstimableType = new FullyQualifiedJavaType(supportPackage + "." + sizeEstimableClassName);
+            this.sizeEstimatorType = new FullyQualifiedJavaType(supportPackage + "." + sizeEstimatorClassName);
+            this.weightedCacheType = new FullyQualifiedJavaType(supportPackage + "." + weightedCacheClassName);
+            this.cacheWarmUpType = new FullyQualifiedJavaType(supportPackage + "." + cacheWarmUpClassName);
+            this.cacheStatisticsType = new FullyQualifiedJavaType(supportPackage + "." + cacheStatisticsClassName);
+            this.cacheStatisticsMBeanType =
+                    new FullyQualifiedJavaType(supportPackage + "." + cacheStatisticsClassName + "MBean");
+            this.invalidationSupport = new CacheInvalidationSupport(supportPackage);
+        }
+
+        @Override
+        void resolve(IntrospectedTable introspectedTable) {
+            super.resolve(introspectedTable);
+            items.resolve(introspectedTable.getMyBatis3JavaMapperType());
+        }
+
+        private CacheConfigItem getCacheConfigItem(String classFQN) {
+            return items.getFirstMatch(classFQN, null);
+        }
+
+        private boolean isWeighted() {
+            for (CacheConfigItem item : items.getValues()) {
+                if (item.maxBytes > 0)
+                    return true;
+            }
+            return false;
+        }
+
+        private boolean hasInvalidation() {
+            for (CacheConfigItem item : items.getValues()) {
+                if (item.invalidation)
+                    return true;
+            }
+            return false;
         }
     }
 
 
     private static final class CacheConfigItem {
 
-        private Pattern classRegexp;
+        private static final String maxBytesKey = "maxBytes";
+        private static final String maxEntryBytesKey = "maxEntryBytes";
+        private static final String decoratorKey = "decorator";
+        private static final String warmUpLimitKey = "warmUpLimit";
+        private static final String warmUpOrderByKey = "warmUpOrderBy";
+        private static final String warmUpKeysKey = "warmUpKeys";
+        private static final String invalidationKey = "invalidation";
+
+        /**
+         * flush interval (ms) of namespaces with invalidation, bounds the staleness left by lost invalidations
+         */
+        private static final String defaultInvalidationFlushInterval = "300000";
 
         private String cacheValue;
 
-        private CacheConfigItem(Pattern classRegexp, String cacheValue) {
-            this.classRegexp = classRegexp;
-            this.cacheValue = cacheValue;
+        /**
+         * CacheBuilder calls reproducing the @CacheNamespace attributes within a generated cache class
+         */
+        private List<String> builderCalls = new ArrayList<String>();
+
+        /**
+         * fully qualified names of the decorators to wrap the cache with
+         */
+        private List<String> decorators = new ArrayList<String>();
+
+        private long maxBytes;
+
+        private long maxEntryBytes;
+
+        private int warmUpLimit;
+
+        private String warmUpOrderBy;
+
+        private String warmUpKeys;
+
+        private boolean statistics;
+
+        private boolean invalidation;
+
+        private CacheConfigItem() {
+        }
+
+        private boolean isDecorated() {
+            return maxBytes > 0 || !decorators.isEmpty() || statistics || invalidation;
+        }
+
+        private boolean isBinaryEncoded() {
+            for (String decorator : decorators) {
+                if (decorator.replaceAll(".*\\.", "").equals(ModelCodecPlugin.binaryModelCacheClassName))
+                    return true;
+            }
+            return false;
+        }
+
+        private String getTableDependencyCache() {
+            for (String decorator : decorators) {
+                if (decorator.replaceAll(".*\\.", "").equals(TableDependencyCachePlugin.tableDependencyCacheClassName))
+                    return decorator;
+            }
+            return null;
+        }
+
+        private boolean hasWarmUp() {
+            return warmUpLimit > 0 || warmUpOrderBy != null || warmUpKeys != null;
         }
 
-        public static final CacheConfigItem valueOf(String key, String value) {
+        public static final CacheConfigItem valueOf(String key, String value, boolean statistics) {
 
             if (key == null) throw new IllegalArgumentException("Property's key should be specified!");
             if (value == null) throw new IllegalArgumentException("Property's value should be specified!");
 
-            return new CacheConfigItem(Pattern.compile(key), value);
+            CacheConfigItem item = new CacheConfigItem();
+            item.statistics = statistics;
+            StringBuilder cacheValue = new StringBuilder();
+
+            List<String> annotationAttributes = new ArrayList<String>();
 
+            // only the plugin attributes are parsed, the annotation attributes are kept as they are
+            for (String attribute : value.split(",")) {
+                int index = attribute.indexOf('=');
+                String name = index < 0 ? "" : attribute.substring(0, index).trim();
+                String attributeValue = attribute.substring(index + 1).trim();
+                if (maxBytesKey.equals(name))
+                    item.maxBytes = parseBytes(attributeValue);
+                else if (maxEntryBytesKey.equals(name))
+                    item.maxEntryBytes = parseBytes(attributeValue);
+                else if (decoratorKey.equals(name))
+                    item.decorators.add(attributeValue.replaceAll("\\.class$", ""));
+                else if (warmUpLimitKey.equals(name))
+                    item.warmUpLimit = Integer.parseInt(attributeValue);
+                else if (warmUpOrderByKey.equals(name))
+                    item.warmUpOrderBy = attributeValue.replace(";", ", ");
+                else if (warmUpKeysKey.equals(name))
+                    item.warmUpKeys = attributeValue;
+                else if (invalidationKey.equals(name))
+                    item.invalidation = Boolean.valueOf(attributeValue);
+                else {
+                    annotationAttributes.add(attribute);
+                    if (cacheValue.length() > 0)
+                        cacheValue.append(",");
+                    cacheValue.append(attribute);
+                }
+            }
+            item.cacheValue = cacheValue.toString();
+
+            if (!item.isDecorated())
+                return item;
+
+            if (item.maxEntryBytes <= 0)
+                item.maxEntryBytes = item.maxBytes / 10;
+
+            // the generated cache class reproduces the annotation attributes, which requires to understand them
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            for (String attribute : annotationAttributes) {
+                int index = attribute.indexOf('=');
+                if (index < 0) throw new IllegalArgumentException("Wrong format for cache attribute '" + attribute
+                        + "' of '" + key + "' found! Expected: name=value");
+                attributes.put(attribute.substring(0, index).trim(), attribute.substring(index + 1).trim());
+            }
+
+            // @CacheNamespace default, a binary model cache isolates the callers without java serialization
+            if (!attributes.containsKey("readWrite"))
+                attributes.put("readWrite", String.valueOf(!item.isBinaryEncoded()));
+
+            if (item.invalidation && !attributes.containsKey("flushInterval"))
+                attributes.put("flushInterval", defaultInvalidationFlushInterval);
+
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                String name = attribute.getKey();
+                String attributeValue = attribute.getValue();
+                if ("implementation".equals(name))
+                    item.builderCalls.add("implementation(" + attributeValue + ")");
+                else if ("eviction".equals(name))
+                    item.builderCalls.add("addDecorator(" + attributeValue + ")");
+                else if ("flushInterval".equals(name) && !"0".equals(attributeValue))
+                    item.builderCalls.add("clearInterval(Long.valueOf(" + attributeValue + "))");
+                else if ("size".equals(name))
+                    item.builderCalls.add("size(Integer.valueOf(" + attributeValue + "))");
+                else if ("readWrite".equals(name))
+                    item.builderCalls.add("readWrite(" + attributeValue + ")");
+                else if (!"flushInterval".equals(name))
+                    throw new IllegalArgumentException("Unsupported cache attribute '" + name + "' found for '"
+                            + key + "'!");
+            }
+            return item;
+
+        }
+
+        private static long parseBytes(String value) {
+
+            String number = value.toUpperCase();
+            long unit = 1;
+            if (number.endsWith("K"))
+                unit = 1024L;
+            else if (number.endsWith("M"))
+                unit = 1024L * 1024L;
+            else if (number.endsWith("G"))
+                unit = 1024L * 1024L * 1024L;
+
+            if (unit > 1)
+                number = number.substring(0, number.length() - 1);
+
+            try {
+                return Long.parseLong(number.trim()) * unit;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Wrong format for byte size '" + value + "' found! Expected: "
+                        + "number optionally followed by K, M or G");
+            }
         }
     }
 
@@ -0,0 +1,781 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedColumn;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.internal.util.JavaBeansUtil;
+
+import java.util.*;
+
+/**
+ * Generates a read-through primary key cache wrapper (e.g. <tt>UserMapperCached</tt>) for every mapper interface of a
+ * table having a single column primary key. The wrapper implements the mapper interface and delegates to the mapper
+ * passed to its constructor. <tt>selectByPrimaryKey</tt> is served from a synchronized, access ordered primary key ->
+ * entity map, which is populated by the select by primary key and select by example results as well. Update / delete
+ * by primary key evicts the affected key only, any other write evicts all entities of the wrapper. Delete / update by
+ * example evict only the entities matching the example if the {@link ExampleMatcherPlugin} is declared before this
+ * plugin and the example can be evaluated in memory.<br/> The wrapper does not see the transactions of the session, so
+ * its <tt>commit()</tt> / <tt>rollback()</tt> methods have to be called after the ones of the session by the threads
+ * writing through it: writes evict at once and again on commit, so entities loaded by other threads in between are
+ * not kept, and entities read after a write of the same thread are cached on commit only. A transaction neither
+ * committed nor rolled back within <tt>transactionTimeout</tt> is dropped on the next access of its thread, evicting
+ * its writes again, so a forgotten commit does not disable the cache for a pooled thread. Evictions increment a
+ * version, entities loaded before an eviction are not cached. Additionally the wrapper provides
+ * <tt>getAll(Collection)</tt>, which looks up all keys in the cache first and loads the misses using chunked
+ * <tt>IN</tt> queries.<br/><br/> Example
+ * configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.CachedMapperPlugin"&gt;
+ *          &lt;property name="maxEntries" value="10000" /&gt;
+ *          &lt;property name="chunkSize" value="500" /&gt;
+ *          &lt;property name="transactionTimeout" value="60000" /&gt;
+ *          &lt;property name="excludeClassNamesRegexp" value="com.mycompany.*My.*Mapper" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt> <br/> Properties:<br/> <ul> <li><strong>maxEntries</strong> (optional) : the maximum number of cached
+ * entities per wrapper. The least recently used entities are evicted once it is reached. Default:
+ * <strong>10000</strong></li>
+ * <li><strong>timeToLive</strong> (optional) : milliseconds after which a cached entity is loaded again, 0 keeps the
+ * entities until they are evicted. Default: <strong>0</strong></li>
+ * <li><strong>chunkSize</strong> (optional) : the maximum number of keys per <tt>IN</tt> query of
+ * <tt>getAll</tt>. Default: <strong>500</strong></li>
+ * <li><strong>transactionTimeout</strong> (optional) : milliseconds after which the writes of a thread not followed by
+ * <tt>commit()</tt> / <tt>rollback()</tt> are dropped, 0 keeps them until then. Default: <strong>60000</strong></li>
+ * <li><strong>excludeClassNamesRegexp</strong> (optional): mappers to exclude from generation as regular expression.
+ * Default: none</li> </ul>
+ * If the plugin is declared after the {@link ModelCodecPlugin}, entities are copied on their way in and out of the
+ * cache, otherwise callers share the cached instances and must not modify them.
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class CachedMapperPlugin extends PluginAdapter {
+
+    private static final String wrapperClassNameSuffix = "Cached";
+
+    private Config config;
+
+    /**
+     * mapper interfaces by fully qualified name, kept until the wrappers are generated
+     */
+    private Map<String, Interface> mappers = new HashMap<String, Interface>();
+
+    /**
+     * fully qualified names of the model classes providing a copy() method
+     */
+    private Set<String> copyableModels = new HashSet<String>();
+
+    /**
+     * fully qualified names of the example classes providing an in-memory matches() predicate
+     */
+    private Set<String> evaluableExamples = new HashSet<String>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelBaseRecordClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+        registerCopyableModel(topLevelClass);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelRecordWithBLOBsClassGenerated(TopLevelClass topLevelClass,
+                                                      IntrospectedTable introspectedTable) {
+        registerCopyableModel(topLevelClass);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelExampleClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+        for (Method m : topLevelClass.getMethods()) {
+            if ("isEvaluable".equals(m.getName()) && m.getParameters().isEmpty())
+                evaluableExamples.add(topLevelClass.getType().getFullyQualifiedName());
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clientGenerated(Interface interfaze, TopLevelClass topLevelClass,
+                                   IntrospectedTable introspectedTable) {
+
+        if (interfaze != null && !config.shouldExclude(interfaze.getType()))
+            mappers.put(interfaze.getType().getFullyQualifiedName(), interfaze);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles(IntrospectedTable introspectedTable) {
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+
+        Interface mapper = mappers.remove(introspectedTable.getMyBatis3JavaMapperType());
+        if (mapper == null || introspectedTable.getPrimaryKeyColumns().size() != 1)
+            return files;
+
+        String targetProject = context.getJavaClientGeneratorConfiguration().getTargetProject();
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateWrapperClass(mapper, introspectedTable),
+                targetProject));
+        return files;
+    }
+
+    private void registerCopyableModel(TopLevelClass topLevelClass) {
+        for (Method m : topLevelClass.getMethods()) {
+            if ("copy".equals(m.getName()) && m.getParameters().isEmpty())
+                copyableModels.add(topLevelClass.getType().getFullyQualifiedName());
+        }
+    }
+
+    private TopLevelClass generateWrapperClass(Interface mapper, IntrospectedTable introspectedTable) {
+
+        IntrospectedColumn keyColumn = introspectedTable.getPrimaryKeyColumns().get(0);
+        FullyQualifiedJavaType keyType = keyColumn.getFullyQualifiedJavaType();
+        FullyQualifiedJavaType entityType = introspectedTable.getRules().calculateAllFieldsClass();
+        String keyGetter = JavaBeansUtil.getGetterMethodName(keyColumn.getJavaProperty(), keyType) + "()";
+        boolean copyable = copyableModels.contains(entityType.getFullyQualifiedName());
+
+        FullyQualifiedJavaType entryType = new FullyQualifiedJavaType("Entry");
+        FullyQualifiedJavaType transactionType = new FullyQualifiedJavaType("Transaction");
+        FullyQualifiedJavaType mapType = FullyQualifiedJavaType.getNewMapInstance();
+        mapType.addTypeArgument(keyType);
+        mapType.addTypeArgument(entryType);
+
+        TopLevelClass clazz = new TopLevelClass(mapper.getType().getFullyQualifiedName() + wrapperClassNameSuffix);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(mapper.getType());
+        clazz.addImportedType(mapper.getType());
+        clazz.addImportedType(entityType);
+        clazz.addImportedType(keyType);
+        clazz.addImportedType(mapType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.LinkedHashMap"));
+        clazz.addImportedType(FullyQualifiedJavaType.getNewIteratorInstance());
+        clazz.addImportedType(FullyQualifiedJavaType.getNewListInstance());
+        clazz.addImportedType(FullyQualifiedJavaType.getNewArrayListInstance());
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.HashSet"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Read-through primary key cache in front of " + mapper.getType().getShortName() + ".");
+        clazz.addJavaDocLine(" * The writes of a thread evict the affected entities at once and again on commit(). Entities read");
+        clazz.addJavaDocLine(" * after a write are cached on commit() and dropped on rollback(). Call commit() / rollback() after");
+        clazz.addJavaDocLine(" * the ones of the session" + (config.transactionTimeout > 0
+                ? ", a transaction left open is dropped after " + config.transactionTimeout + " ms." : "."));
+        clazz.addJavaDocLine(" */");
+
+        PluginUtils.addConstant(clazz, "int", "MAX_ENTRIES", String.valueOf(config.maxEntries));
+        PluginUtils.addConstant(clazz, "long", "TIME_TO_LIVE", config.timeToLive + "L");
+        PluginUtils.addConstant(clazz, "int", "CHUNK_SIZE", String.valueOf(config.chunkSize));
+        PluginUtils.addConstant(clazz, "long", "TRANSACTION_TIMEOUT", config.transactionTimeout + "L");
+
+        Field delegate = new Field("delegate", mapper.getType());
+        delegate.setVisibility(JavaVisibility.PRIVATE);
+        delegate.setFinal(true);
+        clazz.addField(delegate);
+
+        Field entities = new Field("entities", mapType);
+        entities.addJavaDocLine("/**");
+        entities.addJavaDocLine(" * cached entities in access order, guarded by itself");
+        entities.addJavaDocLine(" */");
+        entities.setVisibility(JavaVisibility.PRIVATE);
+        entities.setFinal(true);
+        entities.setInitializationString("new LinkedHashMap<" + keyType.getShortName() + ", Entry>(16, 0.75f, true)");
+        clazz.addField(entities);
+
+        Field version = new Field("version", new FullyQualifiedJavaType("long"));
+        version.addJavaDocLine("/**");
+        version.addJavaDocLine(" * incremented by every eviction, entities loaded before are not cached anymore");
+        version.addJavaDocLine(" */");
+        version.setVisibility(JavaVisibility.PRIVATE);
+        version.setVolatile(true);
+        clazz.addField(version);
+
+        FullyQualifiedJavaType threadLocalType = new FullyQualifiedJavaType("java.lang.ThreadLocal");
+        threadLocalType.addTypeArgument(transactionType);
+        Field transaction = new Field("transaction", threadLocalType);
+        transaction.setVisibility(JavaVisibility.PRIVATE);
+        transaction.setFinal(true);
+        transaction.setInitializationString("new ThreadLocal<Transaction>()");
+        clazz.addField(transaction);
+
+        Method m = new Method(clazz.getType().getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(mapper.getType(), "delegate"));
+        m.addBodyLine("this.delegate = delegate;");
+        clazz.addMethod(m);
+
+        String selectByPrimaryKey = introspectedTable.getSelectByPrimaryKeyStatementId();
+        String selectByExample = null;
+        if (introspectedTable.hasBLOBColumns() && introspectedTable.getRules().generateSelectByExampleWithBLOBs())
+            selectByExample = introspectedTable.getSelectByExampleWithBLOBsStatementId();
+        else if (!introspectedTable.hasBLOBColumns()
+                && introspectedTable.getRules().generateSelectByExampleWithoutBLOBs())
+            selectByExample = introspectedTable.getSelectByExampleStatementId();
+        List<String> evictingByKey = Arrays.asList(introspectedTable.getUpdateByPrimaryKeyStatementId(),
+                introspectedTable.getUpdateByPrimaryKeySelectiveStatementId(),
+                introspectedTable.getUpdateByPrimaryKeyWithBLOBsStatementId(),
+                introspectedTable.getDeleteByPrimaryKeyStatementId());
+        FullyQualifiedJavaType exampleType = new FullyQualifiedJavaType(introspectedTable.getExampleType());
+        List<String> evictingByExample = !evaluableExamples.contains(exampleType.getFullyQualifiedName())
+                ? Collections.<String>emptyList()
+                : Arrays.asList(introspectedTable.getDeleteByExampleStatementId(),
+                introspectedTable.getUpdateByExampleStatementId(),
+                introspectedTable.getUpdateByExampleSelectiveStatementId(),
+                introspectedTable.getUpdateByExampleWithBLOBsStatementId());
+        boolean evictingMatching = false;
+        List<String> notEvicting = Arrays.asList(introspectedTable.getInsertStatementId(),
+                introspectedTable.getInsertSelectiveStatementId());
+
+        for (Method method : mapper.getMethods()) {
+
+            m = new Method(method.getName());
+            m.setVisibility(JavaVisibility.PUBLIC);
+            m.setReturnType(method.getReturnType());
+            if (method.getReturnType() != null)
+                clazz.addImportedType(method.getReturnType());
+
+            StringBuilder call = new StringBuilder("delegate.").append(method.getName()).append("(");
+            for (Parameter p : method.getParameters()) {
+                m.addParameter(new Parameter(p.getType(), p.getName()));
+                clazz.addImportedType(p.getType());
+                if (call.charAt(call.length() - 1) != '(')
+                    call.append(", ");
+                call.append(p.getName());
+            }
+            call.append(")");
+
+            Parameter firstParameter = method.getParameters().isEmpty() ? null : method.getParameters().get(0);
+            Parameter exampleParameter = null;
+            for (Parameter p : method.getParameters()) {
+                if (exampleType.equals(p.getType()))
+                    exampleParameter = p;
+            }
+            String name = method.getName();
+            boolean returnsValue = method.getReturnType() != null;
+
+            if (name.equals(selectByPrimaryKey) && firstParameter != null) {
+                m.addBodyLine(entityType.getShortName() + " entity = lookup(" + firstParameter.getName() + ");");
+                m.addBodyLine("if (entity == null) {");
+                m.addBodyLine("long version = this.version;");
+                m.addBodyLine("return cache(" + call + ", version);");
+                m.addBodyLine("}");
+                m.addBodyLine(copyable ? "return entity.copy();" : "return entity;");
+            } else if (name.equals(selectByExample)) {
+                m.addBodyLine("long version = this.version;");
+                m.addBodyLine(method.getReturnType().getShortName() + " result = " + call + ";");
+                m.addBodyLine("for (" + entityType.getShortName() + " entity : result) {");
+                m.addBodyLine("cache(entity, version);");
+                m.addBodyLine("}");
+                m.addBodyLine("return result;");
+            } else if (evictingByKey.contains(name) && firstParameter != null) {
+                String key = keyType.equals(firstParameter.getType()) ? firstParameter.getName()
+                        : firstParameter.getName() + "." + keyGetter;
+                addDelegateCall(m, call, returnsValue, "invalidate(" + key + ");");
+            } else if (evictingByExample.contains(name) && exampleParameter != null) {
+                addDelegateCall(m, call, returnsValue, "invalidateMatching(" + exampleParameter.getName() + ");");
+                evictingMatching = true;
+            } else if (notEvicting.contains(name) || name.startsWith("select") || name.startsWith("count")) {
+                m.addBodyLine((returnsValue ? "return " : "") + call + ";");
+            } else {
+                addDelegateCall(m, call, returnsValue, "invalidateAll();");
+            }
+            clazz.addMethod(m);
+        }
+
+        if (selectByExample != null)
+            clazz.addMethod(generateGetAllMethod(clazz, introspectedTable, selectByExample, copyable));
+
+        String key = keyType.getShortName();
+
+        m = new Method("commit");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Evicts the entities written by the current thread again and caches the entities it read after its");
+        m.addJavaDocLine(" * first write unless they were evicted meanwhile. To be called after the commit of the session.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addBodyLine("Transaction tx = current();");
+        m.addBodyLine("if (tx == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("transaction.remove();");
+        m.addBodyLine("synchronized (entities) {");
+        m.addBodyLine("long version = this.version;");
+        m.addBodyLine("evictWritten(tx);");
+        m.addBodyLine("for (Entry entry : tx.loaded) {");
+        m.addBodyLine("if (entry.version == version) {");
+        m.addBodyLine("store(entry);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("rollback");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Drops the entities read by the current thread after its first write. To be called after the rollback");
+        m.addJavaDocLine(" * of the session.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addBodyLine("transaction.remove();");
+        clazz.addMethod(m);
+
+        m = new Method("evict");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Removes the entity with the given key from the cache.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(keyType, "key"));
+        m.addBodyLine("if (key == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("synchronized (entities) {");
+        m.addBodyLine("version++;");
+        m.addBodyLine("entities.remove(key);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("evictAll");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Removes all entities from the cache.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addBodyLine("synchronized (entities) {");
+        m.addBodyLine("version++;");
+        m.addBodyLine("entities.clear();");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        if (evictingMatching) {
+            m = new Method("evictMatching");
+            m.addJavaDocLine("/**");
+            m.addJavaDocLine(" * Removes the entities matching the example, all entities if it cannot be evaluated in memory.");
+            m.addJavaDocLine(" */");
+            m.setVisibility(JavaVisibility.PUBLIC);
+            m.addParameter(new Parameter(exampleType, "example"));
+            m.addBodyLine("if (example == null || !example.isEvaluable()) {");
+            m.addBodyLine("evictAll();");
+            m.addBodyLine("return;");
+            m.addBodyLine("}");
+            m.addBodyLine("synchronized (entities) {");
+            m.addBodyLine("version++;");
+            m.addBodyLine("try {");
+            m.addBodyLine("Iterator<Entry> it = entities.values().iterator();");
+            m.addBodyLine("while (it.hasNext()) {");
+            m.addBodyLine("if (example.matches(it.next().entity)) {");
+            m.addBodyLine("it.remove();");
+            m.addBodyLine("}");
+            m.addBodyLine("}");
+            m.addBodyLine("} catch (IllegalArgumentException e) {");
+            m.addBodyLine("entities.clear();");
+            m.addBodyLine("}");
+            m.addBodyLine("}");
+            clazz.addMethod(m);
+        }
+
+        m = new Method("lookup");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the cached entity or null if it is missing, expired or written by the current thread.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(entityType);
+        m.addParameter(new Parameter(keyType, "key"));
+        m.addBodyLine("if (key == null) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("Entry entry;");
+        m.addBodyLine("synchronized (entities) {");
+        m.addBodyLine("entry = entities.get(key);");
+        m.addBodyLine("if (entry != null && entry.expires < System.currentTimeMillis()) {");
+        m.addBodyLine("entities.remove(key);");
+        m.addBodyLine("entry = null;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("Transaction tx = current();");
+        m.addBodyLine("if (entry == null || tx != null && tx.isWritten(key, entry.entity)) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("return entry.entity;");
+        clazz.addMethod(m);
+
+        m = new Method("cache");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Caches the entity loaded at the given version unless it has been evicted since. The entities read");
+        m.addJavaDocLine(" * after a write of the current thread are kept until its commit.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(entityType);
+        m.addParameter(new Parameter(entityType, "entity"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("long"), "version"));
+        m.addBodyLine("if (entity == null || entity." + keyGetter + " == null) {");
+        m.addBodyLine("return entity;");
+        m.addBodyLine("}");
+        m.addBodyLine("Entry entry = new Entry(" + (copyable ? "entity.copy()" : "entity") + ", version);");
+        m.addBodyLine("Transaction tx = current();");
+        m.addBodyLine("if (tx != null) {");
+        m.addBodyLine("if (tx.loaded.size() < MAX_ENTRIES) {");
+        m.addBodyLine("tx.loaded.add(entry);");
+        m.addBodyLine("}");
+        m.addBodyLine("return entity;");
+        m.addBodyLine("}");
+        m.addBodyLine("synchronized (entities) {");
+        m.addBodyLine("if (version == this.version) {");
+        m.addBodyLine("store(entry);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return entity;");
+        clazz.addMethod(m);
+
+        m = new Method("store");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Puts the entry and evicts the least recently used one if there are too many. Requires the lock.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(entryType, "entry"));
+        m.addBodyLine("entities.put(entry.entity." + keyGetter + ", entry);");
+        m.addBodyLine("if (entities.size() > MAX_ENTRIES) {");
+        m.addBodyLine("Iterator<" + key + "> it = entities.keySet().iterator();");
+        m.addBodyLine("it.next();");
+        m.addBodyLine("it.remove();");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("current");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the transaction of the current thread, null if there is none. A transaction that has timed out");
+        m.addJavaDocLine(" * without commit() / rollback() is dropped, evicting its writes again.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(transactionType);
+        m.addBodyLine("Transaction tx = transaction.get();");
+        m.addBodyLine("if (tx != null && tx.expires < System.currentTimeMillis()) {");
+        m.addBodyLine("transaction.remove();");
+        m.addBodyLine("evictWritten(tx);");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("return tx;");
+        clazz.addMethod(m);
+
+        m = new Method("evictWritten");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Evicts the entities written in the transaction.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(transactionType, "tx"));
+        m.addBodyLine("if (tx.all) {");
+        m.addBodyLine("evictAll();");
+        m.addBodyLine("}");
+        m.addBodyLine("for (" + key + " key : tx.keys) {");
+        m.addBodyLine("evict(key);");
+        m.addBodyLine("}");
+        if (evictingMatching) {
+            m.addBodyLine("for (" + exampleType.getShortName() + " example : tx.examples) {");
+            m.addBodyLine("evictMatching(example);");
+            m.addBodyLine("}");
+        }
+        clazz.addMethod(m);
+
+        m = new Method("begin");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(transactionType);
+        m.addBodyLine("Transaction tx = current();");
+        m.addBodyLine("if (tx == null) {");
+        m.addBodyLine("tx = new Transaction();");
+        m.addBodyLine("transaction.set(tx);");
+        m.addBodyLine("}");
+        m.addBodyLine("return tx;");
+        clazz.addMethod(m);
+
+        m = new Method("invalidate");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(keyType, "key"));
+        m.addBodyLine("if (key != null) {");
+        m.addBodyLine("begin().keys.add(key);");
+        m.addBodyLine("evict(key);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("invalidateAll");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("begin().all = true;");
+        m.addBodyLine("evictAll();");
+        clazz.addMethod(m);
+
+        if (evictingMatching) {
+            m = new Method("invalidateMatching");
+            m.setVisibility(JavaVisibility.PRIVATE);
+            m.addParameter(new Parameter(exampleType, "example"));
+            m.addBodyLine("if (example == null || !example.isEvaluable()) {");
+            m.addBodyLine("invalidateAll();");
+            m.addBodyLine("return;");
+            m.addBodyLine("}");
+            m.addBodyLine("begin().examples.add(copyOf(example));");
+            m.addBodyLine("evictMatching(example);");
+            clazz.addMethod(m);
+
+            String criteria = exampleType.getShortName() + ".Criteria";
+            m = new Method("copyOf");
+            m.addJavaDocLine("/**");
+            m.addJavaDocLine(" * Copies the criteria of the example, so reusing it after the write does not change the evictions of");
+            m.addJavaDocLine(" * the transaction.");
+            m.addJavaDocLine(" */");
+            m.setVisibility(JavaVisibility.PRIVATE);
+            m.setStatic(true);
+            m.setReturnType(exampleType);
+            m.addParameter(new Parameter(exampleType, "example"));
+            m.addBodyLine(exampleType.getShortName() + " copy = new " + exampleType.getShortName() + "();");
+            m.addBodyLine("for (" + criteria + " criteria : example.getOredCriteria()) {");
+            m.addBodyLine("copy.or().getCriteria().addAll(criteria.getCriteria());");
+            m.addBodyLine("}");
+            m.addBodyLine("return copy;");
+            clazz.addMethod(m);
+        }
+
+        InnerClass entry = new InnerClass(entryType);
+        entry.setVisibility(JavaVisibility.PRIVATE);
+        entry.setStatic(true);
+        entry.setFinal(true);
+        addFinalField(entry, "entity", entityType);
+        addFinalField(entry, "version", new FullyQualifiedJavaType("long"));
+        addFinalField(entry, "expires", new FullyQualifiedJavaType("long"));
+        m = new Method("Entry");
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(entityType, "entity"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("long"), "version"));
+        m.addBodyLine("this.entity = entity;");
+        m.addBodyLine("this.version = version;");
+        m.addBodyLine("this.expires = TIME_TO_LIVE > 0 ? System.currentTimeMillis() + TIME_TO_LIVE : Long.MAX_VALUE;");
+        entry.addMethod(m);
+        clazz.addInnerClass(entry);
+
+        InnerClass tx = new InnerClass(transactionType);
+        tx.addJavaDocLine("/**");
+        tx.addJavaDocLine(" * Writes of a thread and the entities it read after the first one.");
+        tx.addJavaDocLine(" */");
+        tx.setVisibility(JavaVisibility.PRIVATE);
+        tx.setStatic(true);
+        tx.setFinal(true);
+        FullyQualifiedJavaType keysType = new FullyQualifiedJavaType("java.util.Set");
+        keysType.addTypeArgument(keyType);
+        Field f = new Field("keys", keysType);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        f.setInitializationString("new HashSet<" + key + ">()");
+        tx.addField(f);
+        if (evictingMatching) {
+            FullyQualifiedJavaType examplesType = FullyQualifiedJavaType.getNewListInstance();
+            examplesType.addTypeArgument(exampleType);
+            f = new Field("examples", examplesType);
+            f.setVisibility(JavaVisibility.PRIVATE);
+            f.setFinal(true);
+            f.setInitializationString("new ArrayList<" + exampleType.getShortName() + ">()");
+            tx.addField(f);
+        }
+        FullyQualifiedJavaType loadedType = FullyQualifiedJavaType.getNewListInstance();
+        loadedType.addTypeArgument(entryType);
+        f = new Field("loaded", loadedType);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        f.setInitializationString("new ArrayList<Entry>()");
+        tx.addField(f);
+        f = new Field("all", FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        f.setVisibility(JavaVisibility.PRIVATE);
+        tx.addField(f);
+        f = new Field("expires", new FullyQualifiedJavaType("long"));
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        f.setInitializationString(
+                "TRANSACTION_TIMEOUT > 0 ? System.currentTimeMillis() + TRANSACTION_TIMEOUT : Long.MAX_VALUE");
+        tx.addField(f);
+
+        m = new Method("isWritten");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addParameter(new Parameter(keyType, "key"));
+        m.addParameter(new Parameter(entityType, "entity"));
+        m.addBodyLine("if (all || keys.contains(key)) {");
+        m.addBodyLine("return true;");
+        m.addBodyLine("}");
+        if (evictingMatching) {
+            m.addBodyLine("try {");
+            m.addBodyLine("for (" + exampleType.getShortName() + " example : examples) {");
+            m.addBodyLine("if (example.matches(entity)) {");
+            m.addBodyLine("return true;");
+            m.addBodyLine("}");
+            m.addBodyLine("}");
+            m.addBodyLine("} catch (IllegalArgumentException e) {");
+            m.addBodyLine("return true;");
+            m.addBodyLine("}");
+        }
+        m.addBodyLine("return false;");
+        tx.addMethod(m);
+        clazz.addInnerClass(tx);
+
+        return clazz;
+    }
+
+    private static void addFinalField(InnerClass clazz, String name, FullyQualifiedJavaType type) {
+        Field f = new Field(name, type);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        clazz.addField(f);
+    }
+
+    private Method generateGetAllMethod(TopLevelClass clazz, IntrospectedTable introspectedTable,
+                                        String selectByExample, boolean copyable) {
+
+        IntrospectedColumn keyColumn = introspectedTable.getPrimaryKeyColumns().get(0);
+        String key = keyColumn.getFullyQualifiedJavaType().getShortName();
+        String keyGetter = JavaBeansUtil.getGetterMethodName(keyColumn.getJavaProperty(),
+                keyColumn.getFullyQualifiedJavaType()) + "()";
+        String entity = introspectedTable.getRules().calculateAllFieldsClass().getShortName();
+        FullyQualifiedJavaType exampleType = new FullyQualifiedJavaType(introspectedTable.getExampleType());
+
+        StringBuilder inCriterion = new StringBuilder(keyColumn.getJavaProperty());
+        inCriterion.setCharAt(0, Character.toUpperCase(inCriterion.charAt(0)));
+        inCriterion.insert(0, "and").append("In");
+
+        FullyQualifiedJavaType keysType = new FullyQualifiedJavaType("java.util.Collection");
+        keysType.addTypeArgument(keyColumn.getFullyQualifiedJavaType());
+        FullyQualifiedJavaType resultType = FullyQualifiedJavaType.getNewListInstance();
+        resultType.addTypeArgument(introspectedTable.getRules().calculateAllFieldsClass());
+
+        clazz.addImportedType(exampleType);
+        clazz.addImportedType(keysType);
+        clazz.addImportedType(resultType);
+        clazz.addImportedType(FullyQualifiedJavaType.getNewArrayListInstance());
+        clazz.addImportedType(FullyQualifiedJavaType.getNewHashMapInstance());
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.LinkedHashSet"));
+
+        Method m = new Method("getAll");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the entities with the given keys in the order of the keys, unknown keys are skipped. Cache");
+        m.addJavaDocLine(" * misses are loaded using IN queries of at most " + config.chunkSize + " keys each.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(resultType);
+        m.addParameter(new Parameter(keysType, "keys"));
+        m.addBodyLine("Map<" + key + ", " + entity + "> found = new HashMap<" + key + ", " + entity + ">();");
+        m.addBodyLine("Set<" + key + "> misses = new LinkedHashSet<" + key + ">();");
+        m.addBodyLine("for (" + key + " key : keys) {");
+        m.addBodyLine("if (key == null || found.containsKey(key)) {");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine(entity + " entity = lookup(key);");
+        m.addBodyLine("if (entity != null) {");
+        m.addBodyLine("found.put(key, entity);");
+        m.addBodyLine("} else {");
+        m.addBodyLine("misses.add(key);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("List<" + key + "> chunk = new ArrayList<" + key + ">();");
+        m.addBodyLine("Iterator<" + key + "> it = misses.iterator();");
+        m.addBodyLine("while (it.hasNext()) {");
+        m.addBodyLine("chunk.add(it.next());");
+        m.addBodyLine("if (chunk.size() == CHUNK_SIZE || !it.hasNext()) {");
+        m.addBodyLine(exampleType.getShortName() + " example = new " + exampleType.getShortName() + "();");
+        m.addBodyLine("example.createCriteria()." + inCriterion + "(chunk);");
+        m.addBodyLine("long version = this.version;");
+        m.addBodyLine("for (" + entity + " entity : delegate." + selectByExample + "(example)) {");
+        m.addBodyLine("cache(entity, version);");
+        m.addBodyLine("found.put(entity." + keyGetter + ", entity);");
+        m.addBodyLine("}");
+        m.addBodyLine("chunk = new ArrayList<" + key + ">();");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("List<" + entity + "> result = new ArrayList<" + entity + ">(keys.size());");
+        m.addBodyLine("for (" + key + " key : keys) {");
+        m.addBodyLine(entity + " entity = key == null ? null : found.get(key);");
+        m.addBodyLine("if (entity != null) {");
+        m.addBodyLine(copyable ? "result.add(entity.copy());" : "result.add(entity);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return result;");
+        return m;
+    }
+
+    private static void addDelegateCall(Method m, CharSequence call, boolean returnsValue, String eviction) {
+        if (returnsValue) {
+            m.addBodyLine(m.getReturnType().getShortName() + " result = " + call + ";");
+            m.addBodyLine(eviction);
+            m.addBodyLine("return result;");
+        } else {
+            m.addBodyLine(call + ";");
+            m.addBodyLine(eviction);
+        }
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String maxEntriesKey = "maxEntries";
+        private static final String defaultMaxEntries = "10000";
+        private static final String chunkSizeKey = "chunkSize";
+        private static final String defaultChunkSize = "500";
+        private static final String timeToLiveKey = "timeToLive";
+        private static final String defaultTimeToLive = "0";
+        private static final String transactionTimeoutKey = "transactionTimeout";
+        private static final String defaultTransactionTimeout = "60000";
+
+        private int maxEntries;
+
+        private long timeToLive;
+
+        private int chunkSize;
+
+        private long transactionTimeout;
+
+        protected Config(Properties props) {
+            super(props);
+            this.maxEntries = Integer.parseInt(props.getProperty(maxEntriesKey, defaultMaxEntries));
+            this.chunkSize = Integer.parseInt(props.getProperty(chunkSizeKey, defaultChunkSize));
+            this.timeToLive = Long.parseLong(props.getProperty(timeToLiveKey, defaultTimeToLive));
+            this.transactionTimeout = Long.parseLong(props.getProperty(transactionTimeoutKey,
+                    defaultTransactionTimeout));
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.IntrospectedColumn;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.api.dom.xml.Attribute;
+import org.mybatis.generator.api.dom.xml.Document;
+import org.mybatis.generator.api.dom.xml.TextElement;
+import org.mybatis.generator.api.dom.xml.XmlElement;
+import org.mybatis.generator.codegen.mybatis3.MyBatis3FormattingUtilities;
+import org.mybatis.generator.internal.util.StringUtility;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Adds a <tt>compile()</tt> method to the generated example classes, turning the example into an immutable and thread
+ * safe <tt>XXXExample.Compiled</tt> query. The text of the select and count statements is built once by
+ * <tt>compile()</tt>, its values are bound as parameters <tt>#{values[n]}</tt> in the order of their appearance in the
+ * criteria (every element of an IN list being a value of its own). <tt>bind(values...)</tt> returns a query of the same
+ * statements with other values, so compiled queries can be kept in static final fields and executed without building
+ * an example and walking its criteria on every call:<br/>
+ * <tt>
+ * <pre>
+ * static final UserExample.Compiled BY_LOGIN = new UserExample().createCriteria().andLoginEqualTo("").example().compile();
+ * ...
+ * List&lt;User&gt; users = userMapper.selectByCompiledExample(BY_LOGIN.bind(login));
+ * </pre>
+ * </tt>
+ * (<tt>example()</tt> being added by {@link CriteriaBuilderPlugin}). The mappers get the methods
+ * <tt>selectByCompiledExample</tt> and <tt>countByCompiledExample</tt>, executing the statements of a compiled query
+ * through the sql provider of annotated mappers or through a select element of XML mappers.<br/>
+ * Only the Java side is saved: MyBatis 3.2 still hands the statement text to its <tt>SqlSourceBuilder</tt> on every
+ * call, the <tt>ProviderSqlSource</tt> as well as the dynamic sql source of the <tt>${}</tt> select element re-parsing
+ * the <tt>#{values[n]}</tt> parameters each time, so the statements are not free of rendering cost.<br/>
+ * The statements are rendered by <tt>compile()</tt> from the criteria alone: they are not passed through the provider
+ * methods and thus skip the rewrites of other plugins, i.e. the IN list handling of {@link InListStrategyPlugin}, the
+ * simplification of {@link ExampleSimplifierPlugin} and the hints of {@link QueryHintPlugin}.<br/><br/>
+ * Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.CompiledExamplePlugin"/&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * <br/> Properties:<br/> <ul> <li><strong>excludeClassNamesRegexp</strong> (optional): example classes to exclude
+ * from generation as regular expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class CompiledExamplePlugin extends PluginAdapter {
+
+    static final String compiledClassName = "Compiled";
+
+    static final String selectByCompiledExampleMethodName = "selectByCompiledExample";
+
+    static final String countByCompiledExampleMethodName = "countByCompiledExample";
+
+    private Config config;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        config.resolve(introspectedTable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelExampleClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(topLevelClass.getType()))
+            return true;
+
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.Arrays"));
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.Collections"));
+        topLevelClass.addInnerClass(generateCompiledClass(introspectedTable));
+
+        Method m = new Method("compile");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Builds the statement text of this example once into an immutable query, binding the current values.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(new FullyQualifiedJavaType(compiledClassName));
+        m.addBodyLine("StringBuilder where = new StringBuilder();");
+        m.addBodyLine("List<Object> values = new ArrayList<Object>();");
+        m.addBodyLine("for (Criteria criteria : oredCriteria) {");
+        m.addBodyLine("if (!criteria.isValid()) {");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("where.append(where.length() == 0 ? \" where (\" : \" or (\");");
+        m.addBodyLine("List<Criterion> criterions = criteria.getAllCriteria();");
+        m.addBodyLine("for (int i = 0; i < criterions.size(); i++) {");
+        m.addBodyLine("Criterion criterion = criterions.get(i);");
+        m.addBodyLine("if (i > 0) {");
+        m.addBodyLine("where.append(\" and \");");
+        m.addBodyLine("}");
+        m.addBodyLine("where.append(criterion.getCondition());");
+        m.addBodyLine("if (criterion.isSingleValue()) {");
+        m.addBodyLine("where.append(' ');");
+        m.addBodyLine(compiledClassName + ".appendParameter(where, values, criterion.getValue(), criterion.getTypeHandler());");
+        m.addBodyLine("} else if (criterion.isBetweenValue()) {");
+        m.addBodyLine("where.append(' ');");
+        m.addBodyLine(compiledClassName + ".appendParameter(where, values, criterion.getValue(), criterion.getTypeHandler());");
+        m.addBodyLine("where.append(\" and \");");
+        m.addBodyLine(compiledClassName + ".appendParameter(where, values, criterion.getSecondValue(), criterion.getTypeHandler());");
+        m.addBodyLine("} else if (criterion.isListValue()) {");
+        m.addBodyLine("where.append(\" (\");");
+        m.addBodyLine("List<?> items = (List<?>) criterion.getValue();");
+        m.addBodyLine("for (int j = 0; j < items.size(); j++) {");
+        m.addBodyLine("if (j > 0) {");
+        m.addBodyLine("where.append(\", \");");
+        m.addBodyLine("}");
+        m.addBodyLine(compiledClassName + ".appendParameter(where, values, items.get(j), criterion.getTypeHandler());");
+        m.addBodyLine("}");
+        m.addBodyLine("where.append(')');");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("where.append(')');");
+        m.addBodyLine("}");
+        m.addBodyLine("String orderBy = orderByClause == null ? \"\" : \" order by \" + orderByClause;");
+        m.addBodyLine("return new " + compiledClassName + "((distinct ? " + compiledClassName + ".SELECT_DISTINCT : "
+                + compiledClassName + ".SELECT) + where + orderBy,");
+        m.addBodyLine(compiledClassName + ".COUNT + where, values.toArray());");
+        topLevelClass.addMethod(m);
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clientSelectByExampleWithBLOBsMethodGenerated(Method method, Interface interfaze,
+                                                                 IntrospectedTable introspectedTable) {
+
+        if (!config.shouldExclude(introspectedTable.getExampleType()))
+            interfaze.addMethod(generateCompiledMethod(selectByCompiledExampleMethodName, method, interfaze,
+                    introspectedTable));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clientSelectByExampleWithoutBLOBsMethodGenerated(Method method, Interface interfaze,
+                                                                    IntrospectedTable introspectedTable) {
+
+        if (!config.shouldExclude(introspectedTable.getExampleType())
+                && !introspectedTable.getRules().generateSelectByExampleWithBLOBs())
+            interfaze.addMethod(generateCompiledMethod(selectByCompiledExampleMethodName, method, interfaze,
+                    introspectedTable));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clientCountByExampleMethodGenerated(Method method, Interface interfaze,
+                                                       IntrospectedTable introspectedTable) {
+
+        if (!config.shouldExclude(introspectedTable.getExampleType()))
+            interfaze.addMethod(generateCompiledMethod(countByCompiledExampleMethodName, method, interfaze,
+                    introspectedTable));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean providerGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(introspectedTable.getExampleType()))
+            return true;
+
+        FullyQualifiedJavaType compiledType = getCompiledType(introspectedTable);
+        topLevelClass.addImportedType(compiledType);
+        if (isSelectByExampleGenerated(introspectedTable))
+            topLevelClass.addMethod(generateProviderMethod(selectByCompiledExampleMethodName, "getSelectSql",
+                    compiledType, introspectedTable));
+        if (introspectedTable.getRules().generateCountByExample())
+            topLevelClass.addMethod(generateProviderMethod(countByCompiledExampleMethodName, "getCountSql",
+                    compiledType, introspectedTable));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sqlMapDocumentGenerated(Document document, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(introspectedTable.getExampleType()))
+            return true;
+
+        if (isSelectByExampleGenerated(introspectedTable)) {
+            String resultMap = introspectedTable.getRules().generateSelectByExampleWithBLOBs()
+                    ? introspectedTable.getResultMapWithBLOBsId() : introspectedTable.getBaseResultMapId();
+            document.getRootElement().addElement(generateSelectElement(selectByCompiledExampleMethodName,
+                    "resultMap", resultMap, "selectSql"));
+        }
+        if (introspectedTable.getRules().generateCountByExample())
+            document.getRootElement().addElement(generateSelectElement(countByCompiledExampleMethodName,
+                    "resultType", "java.lang.Integer", "countSql"));
+        return true;
+    }
+
+    private InnerClass generateCompiledClass(IntrospectedTable introspectedTable) {
+
+        FullyQualifiedJavaType compiledType = new FullyQualifiedJavaType(compiledClassName);
+        FullyQualifiedJavaType stringType = FullyQualifiedJavaType.getStringInstance();
+        FullyQualifiedJavaType objectType = FullyQualifiedJavaType.getObjectInstance();
+        FullyQualifiedJavaType objectListType = new FullyQualifiedJavaType("List<Object>");
+
+        List<IntrospectedColumn> columns = introspectedTable.getRules().generateSelectByExampleWithBLOBs()
+                ? introspectedTable.getAllColumns() : introspectedTable.getNonBLOBColumns();
+        StringBuilder selectList = new StringBuilder();
+        for (IntrospectedColumn column : columns) {
+            if (selectList.length() > 0)
+                selectList.append(", ");
+            selectList.append(MyBatis3FormattingUtilities.getSelectListPhrase(column));
+        }
+        String from = " from " + introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime();
+
+        InnerClass clazz = new InnerClass(compiledType);
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Immutable query compiled from an example. The statement text is built once, the values are bound");
+        clazz.addJavaDocLine(" * as parameters in the order of their appearance in the criteria, elements of IN lists counting as");
+        clazz.addJavaDocLine(" * single values. Instances are thread safe and can be shared. MyBatis still parses the statement text");
+        clazz.addJavaDocLine(" * on every execution, and the rewrites of the provider methods (IN list strategies, simplification,");
+        clazz.addJavaDocLine(" * hints) do not apply to it.");
+        clazz.addJavaDocLine(" */");
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setStatic(true);
+        clazz.setFinal(true);
+
+        PluginUtils.addConstant(clazz, "String", "SELECT",
+                "\"" + StringUtility.escapeStringForJava("select " + selectList + from) + "\"");
+        PluginUtils.addConstant(clazz, "String", "SELECT_DISTINCT",
+                "\"" + StringUtility.escapeStringForJava("select distinct " + selectList + from) + "\"");
+        PluginUtils.addConstant(clazz, "String", "COUNT",
+                "\"" + StringUtility.escapeStringForJava("select count(*)" + from) + "\"");
+
+        Field f = new Field("selectSql", stringType);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        clazz.addField(f);
+
+        f = new Field("countSql", stringType);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        clazz.addField(f);
+
+        f = new Field("values", objectListType);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        clazz.addField(f);
+
+        Method m = new Method(compiledClassName);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(stringType, "selectSql"));
+        m.addParameter(new Parameter(stringType, "countSql"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("Object[]"), "values"));
+        m.addBodyLine("this.selectSql = selectSql;");
+        m.addBodyLine("this.countSql = countSql;");
+        m.addBodyLine("this.values = Collections.unmodifiableList(Arrays.asList(values));");
+        clazz.addMethod(m);
+
+        m = new Method("getSelectSql");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(stringType);
+        m.addBodyLine("return selectSql;");
+        clazz.addMethod(m);
+
+        m = new Method("getCountSql");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(stringType);
+        m.addBodyLine("return countSql;");
+        clazz.addMethod(m);
+
+        m = new Method("getValues");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(objectListType);
+        m.addBodyLine("return values;");
+        clazz.addMethod(m);
+
+        m = new Method("bind");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns a query of the same statements binding the given values instead.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(compiledType);
+        m.addParameter(new Parameter(objectType, "values", true));
+        m.addBodyLine("if (values.length != this.values.size()) {");
+        m.addBodyLine("throw new IllegalArgumentException(\"Expected \" + this.values.size() + \" values but got \" + values.length);");
+        m.addBodyLine("}");
+        m.addBodyLine("return new " + compiledClassName + "(selectSql, countSql, values.clone());");
+        clazz.addMethod(m);
+
+        m = new Method("appendParameter");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("StringBuilder"), "sql"));
+        m.addParameter(new Parameter(objectListType, "values"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(stringType, "typeHandler"));
+        m.addBodyLine("sql.append(\"#{values[\").append(values.size()).append(']');");
+        m.addBodyLine("if (typeHandler != null) {");
+        m.addBodyLine("sql.append(\",typeHandler=\").append(typeHandler);");
+        m.addBodyLine("}");
+        m.addBodyLine("sql.append('}');");
+        m.addBodyLine("values.add(value);");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private Method generateCompiledMethod(String name, Method method, Interface interfaze,
+                                          IntrospectedTable introspectedTable) {
+
+        FullyQualifiedJavaType compiledType = getCompiledType(introspectedTable);
+        interfaze.addImportedType(compiledType);
+
+        Method m = new Method(name);
+        m.setVisibility(method.getVisibility());
+        m.setReturnType(method.getReturnType());
+        m.addParameter(new Parameter(compiledType, "query"));
+        for (String annotation : method.getAnnotations()) {
+            if (annotation.startsWith("@SelectProvider"))
+                annotation = annotation.replaceFirst("method=\"\\w+\"", "method=\"" + name + "\"");
+            m.addAnnotation(annotation);
+        }
+        context.getCommentGenerator().addGeneralMethodComment(m, introspectedTable);
+        return m;
+    }
+
+    private Method generateProviderMethod(String name, String getter, FullyQualifiedJavaType compiledType,
+                                          IntrospectedTable introspectedTable) {
+
+        Method m = new Method(name);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getStringInstance());
+        m.addParameter(new Parameter(compiledType, "query"));
+        m.addBodyLine("return query." + getter + "();");
+        context.getCommentGenerator().addGeneralMethodComment(m, introspectedTable);
+        return m;
+    }
+
+    private XmlElement generateSelectElement(String id, String resultAttribute, String result, String sqlProperty) {
+
+        // the statement text holds #{} parameters, which MyBatis parses after substituting ${}
+        XmlElement element = new XmlElement("select");
+        element.addAttribute(new Attribute("id", id));
+        element.addAttribute(new Attribute(resultAttribute, result));
+        context.getCommentGenerator().addComment(element);
+        element.addElement(new TextElement("${" + sqlProperty + "}"));
+        return element;
+    }
+
+    private static boolean isSelectByExampleGenerated(IntrospectedTable introspectedTable) {
+        return introspectedTable.getRules().generateSelectByExampleWithBLOBs()
+                || introspectedTable.getRules().generateSelectByExampleWithoutBLOBs();
+    }
+
+    private static FullyQualifiedJavaType getCompiledType(IntrospectedTable introspectedTable) {
+        return new FullyQualifiedJavaType(introspectedTable.getExampleType() + "." + compiledClassName);
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private Config(Properties props) {
+            super(props);
+        }
+    }
+}
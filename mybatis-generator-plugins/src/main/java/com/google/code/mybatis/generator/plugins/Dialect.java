@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.config.Context;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The sql syntax differing between the databases, consulted by the plugins rendering statements. The dialect is
+ * selected by the context property <tt>dialect</tt>:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *      &lt;property name="dialect" value="postgresql" /&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * Supported are <strong>hsqldb</strong>, <strong>postgresql</strong>, <strong>mysql</strong> and
+ * <strong>generic</strong> (the default, restricted to standard sql) or the fully qualified name of a subclass with
+ * a public no argument constructor. Methods returning null denote syntax the database does not support, the plugins
+ * then fall back to portable statements or skip the feature with a warning.
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public abstract class Dialect {
+
+    static final String dialectKey = "dialect";
+
+    private static final Pattern verbPattern = Pattern.compile("(?i)^\\s*(select|insert|update|delete|merge)\\b");
+
+    /**
+     * Returns the dialect configured for the given context.
+     */
+    static Dialect getDialect(Context context) {
+
+        String name = context.getProperty(dialectKey);
+        if (name == null || "generic".equalsIgnoreCase(name))
+            return new Generic();
+        if ("hsqldb".equalsIgnoreCase(name))
+            return new Hsqldb();
+        if ("postgresql".equalsIgnoreCase(name))
+            return new PostgreSql();
+        if ("mysql".equalsIgnoreCase(name))
+            return new MySql();
+
+        try {
+            return (Dialect) Class.forName(name).newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unknown dialect '" + name + "' found! Expected: hsqldb, postgresql,"
+                    + " mysql, generic or the class name of a dialect", e);
+        }
+    }
+
+    /**
+     * Returns the select returning at most the given number of rows.
+     */
+    public String limit(String select, int rows) {
+        return select + " fetch first " + rows + " rows only";
+    }
+
+    /**
+     * Returns the select locking the selected rows and skipping the ones locked by other transactions or null if not
+     * supported.
+     */
+    public String forUpdateSkipLocked(String select) {
+        return null;
+    }
+
+    /**
+     * Returns the insert returning the given comma separated columns of the inserted row or null if not supported.
+     */
+    public String returning(String insert, String columns) {
+        return null;
+    }
+
+    /**
+     * Returns the statement inserting a row or updating the row with the same key, the values being the sql
+     * expressions (e.g. placeholders) of the columns.
+     */
+    public String merge(String table, List<String> columns, List<String> values, List<String> keyColumns) {
+
+        StringBuilder sb = new StringBuilder("merge into ").append(table).append(" using (values (0)) on ");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            if (i > 0)
+                sb.append(" and ");
+            sb.append(table).append('.').append(keyColumns.get(i)).append(" = ")
+                    .append(values.get(columns.indexOf(keyColumns.get(i))));
+        }
+        String separator = " when matched then update set ";
+        for (int i = 0; i < columns.size(); i++) {
+            if (keyColumns.contains(columns.get(i)))
+                continue;
+            sb.append(separator).append(columns.get(i)).append(" = ").append(values.get(i));
+            separator = ", ";
+        }
+        sb.append(" when not matched then insert (").append(join(columns)).append(") values (").append(join(values))
+                .append(')');
+        return sb.toString();
+    }
+
+    /**
+     * Returns the condition comparing the column with the elements of an array parameter (<tt>in</tt> or <tt>not
+     * in</tt> if negated) or null if arrays are not supported.
+     */
+    public String arrayCondition(String column, boolean negated, String parameter) {
+        return null;
+    }
+
+    /**
+     * Returns the statement (or its beginning) with the given optimizer hint, e.g. <tt>INDEX(T_USER IDX_USERNAME)</tt>,
+     * placed where the database expects it. The default is a hint comment following the verb, as expected by Oracle
+     * and MySQL and ignored by databases without hints.
+     */
+    public String hint(String statement, String hint) {
+        Matcher matcher = verbPattern.matcher(statement);
+        if (!matcher.find())
+            return statement;
+        return statement.substring(0, matcher.end()) + " /*+ " + hint + " */" + statement.substring(matcher.end());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    static String join(List<String> items) {
+        StringBuilder sb = new StringBuilder();
+        for (String item : items) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(item);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Standard sql: fetch first, merge, hints following the verb and no arrays.
+     */
+    public static class Generic extends Dialect {
+    }
+
+    /**
+     * HSQLDB 2.x: limit, merge and arrays by unnest, hints are ignored.
+     */
+    public static class Hsqldb extends Dialect {
+
+        @Override
+        public String limit(String select, int rows) {
+            return select + " limit " + rows;
+        }
+
+        @Override
+        public String arrayCondition(String column, boolean negated, String parameter) {
+            return column + (negated ? " not in" : " in") + " (UNNEST(" + parameter + "))";
+        }
+    }
+
+    /**
+     * PostgreSQL 9.5+: limit, skip locked, returning, insert on conflict, arrays by any and hints of pg_hint_plan.
+     */
+    public static class PostgreSql extends Dialect {
+
+        @Override
+        public String limit(String select, int rows) {
+            return select + " limit " + rows;
+        }
+
+        @Override
+        public String forUpdateSkipLocked(String select) {
+            return select + " for update skip locked";
+        }
+
+        @Override
+        public String returning(String insert, String columns) {
+            return insert + " returning " + columns;
+        }
+
+        @Override
+        public String merge(String table, List<String> columns, List<String> values, List<String> keyColumns) {
+
+            StringBuilder sb = new StringBuilder("insert into ").append(table).append(" (").append(join(columns))
+                    .append(") values (").append(join(values)).append(") on conflict (").append(join(keyColumns))
+                    .append(')');
+            String separator = " do update set ";
+            for (String column : columns) {
+                if (keyColumns.contains(column))
+                    continue;
+                sb.append(separator).append(column).append(" = excluded.").append(column);
+                separator = ", ";
+            }
+            return separator.startsWith(",") ? sb.toString() : sb.append(" do nothing").toString();
+        }
+
+        @Override
+        public String hint(String statement, String hint) {
+            return "/*+ " + hint + " */ " + statement;
+        }
+
+        @Override
+        public String arrayCondition(String column, boolean negated, String parameter) {
+            String condition = column + " = ANY (" + parameter + ")";
+            return negated ? "not (" + condition + ")" : condition;
+        }
+    }
+
+    /**
+     * MySQL 8: limit, skip locked, insert on duplicate key update and optimizer hints, no arrays.
+     */
+    public static class MySql extends Dialect {
+
+        @Override
+        public String limit(String select, int rows) {
+            return select + " limit " + rows;
+        }
+
+        @Override
+        public String forUpdateSkipLocked(String select) {
+            return select + " for update skip locked";
+        }
+
+        @Override
+        public String merge(String table, List<String> columns, List<String> values, List<String> keyColumns) {
+
+            StringBuilder sb = new StringBuilder("insert into ").append(table).append(" (").append(join(columns))
+                    .append(") values (").append(join(values)).append(')');
+            String separator = " on duplicate key update ";
+            for (String column : columns) {
+                if (keyColumns.contains(column))
+                    continue;
+                sb.append(separator).append(column).append(" = values(").append(column).append(')');
+                separator = ", ";
+            }
+            return separator.startsWith(",") ? sb.toString() : "insert ignore" + sb.substring("insert".length());
+        }
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Adds a structural 128 bit <tt>fingerprint()</tt> method to the generated example classes, covering the shape of the
+ * criteria (conditions, type handlers, number of criteria) as well as their values, the order by clause and the
+ * distinct flag. Additionally the plugin generates the <tt>ExampleCacheKeyInterceptor</tt>, a MyBatis interceptor
+ * which replaces the cache key of queries taking an example by <tt>statement id, offset, limit, fingerprint</tt>.
+ * Thus a query with a 2000 element IN list is cached under a key of 5 elements, which is cheap to hash, to compare and
+ * to retain, instead of a key holding all 2000 bound values.<br/><br/> Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.ExampleFingerprintPlugin"&gt;
+ *          &lt;property name="supportPackage" value="com.mycompany.cache" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * The interceptor is registered in the MyBatis configuration before other interceptors of <tt>Executor.query</tt>
+ * (only the <tt>TableDependencyInterceptor</tt> of the {@link TableDependencyCachePlugin} precedes it):
+ * <tt>&lt;plugins&gt;&lt;plugin interceptor="com.mycompany.cache.ExampleCacheKeyInterceptor"/&gt;&lt;/plugins&gt;</tt>.
+ * Examples holding values of types the fingerprint does not cover (anything but strings, numbers, booleans,
+ * characters, dates, enums, byte arrays and collections of those) are cached under the regular MyBatis key. All non
+ * transient fields are covered, including the ones added by other plugins (e.g. <tt>limit</tt> and <tt>offset</tt> of
+ * the {@link MapperDecoratorPlugin}), as the fingerprints are completed once all examples are generated.<br/>
+ * Properties:<br/> <ul>
+ * <li><strong>supportPackage</strong> (optional) : the package of the generated support classes. Default: target
+ * package of the java model generator</li> <li><strong>excludeClassNamesRegexp</strong> (optional): classes to exclude
+ * from generation as regular expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class ExampleFingerprintPlugin extends PluginAdapter {
+
+    static final String exampleFingerprintClassName = "ExampleFingerprint";
+    static final String fingerprintedExampleClassName = "FingerprintedExample";
+    static final String cacheKeyInterceptorClassName = "ExampleCacheKeyInterceptor";
+
+    /**
+     * fields of the generated example classes covered explicitly
+     */
+    private static final List<String> exampleFields = Arrays.asList("orderByClause", "distinct", "oredCriteria");
+
+    private Config config;
+
+    /**
+     * example class -> its fingerprint method, completed by contextGenerateAdditionalJavaFiles()
+     */
+    private Map<TopLevelClass, Method> fingerprintMethods = new LinkedHashMap<TopLevelClass, Method>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties(), context.getJavaModelGeneratorConfiguration().getTargetPackage());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelExampleClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(topLevelClass.getType()))
+            return true;
+
+        String fingerprint = config.exampleFingerprintType.getShortName();
+        topLevelClass.addImportedType(config.exampleFingerprintType);
+        topLevelClass.addImportedType(config.fingerprintedExampleType);
+        topLevelClass.addSuperInterface(config.fingerprintedExampleType);
+
+        Method m = new Method("fingerprint");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(config.exampleFingerprintType);
+        m.addBodyLine(fingerprint + ".Builder builder = new " + fingerprint + ".Builder();");
+        m.addBodyLine("builder.addString(orderByClause);");
+        m.addBodyLine("builder.addLong(distinct ? 1 : 0);");
+        m.addBodyLine("builder.addLong(oredCriteria.size());");
+        m.addBodyLine("for (Criteria criteria : oredCriteria) {");
+        m.addBodyLine("List<Criterion> criterions = criteria.getAllCriteria();");
+        m.addBodyLine("builder.addLong(criterions.size());");
+        m.addBodyLine("for (Criterion criterion : criterions) {");
+        m.addBodyLine("builder.addString(criterion.getCondition());");
+        m.addBodyLine("builder.addString(criterion.getTypeHandler());");
+        m.addBodyLine("if (!builder.addValue(criterion.getValue()) || !builder.addValue(criterion.getSecondValue())) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+
+        context.getCommentGenerator().addGeneralMethodComment(m, introspectedTable);
+        topLevelClass.addMethod(m);
+
+        // the fields are covered once all plugins have added theirs, see contextGenerateAdditionalJavaFiles()
+        fingerprintMethods.put(topLevelClass, m);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles() {
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        if (fingerprintMethods.isEmpty())
+            return files;
+
+        // the example classes are written after all plugins are done, so the fields of later plugins are known now
+        for (Map.Entry<TopLevelClass, Method> entry : fingerprintMethods.entrySet()) {
+            Method m = entry.getValue();
+            for (Field field : entry.getKey().getFields()) {
+                if (field.isStatic() || field.isTransient() || exampleFields.contains(field.getName()))
+                    continue;
+                m.addBodyLine("if (!builder.addValue(" + field.getName() + ")) {");
+                m.addBodyLine("return null;");
+                m.addBodyLine("}");
+            }
+            m.addBodyLine("return builder.build();");
+        }
+
+        String targetProject = context.getJavaModelGeneratorConfiguration().getTargetProject();
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateFingerprintedExampleInterface(), targetProject));
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateExampleFingerprintClass(), targetProject));
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateCacheKeyInterceptorClass(), targetProject));
+        return files;
+    }
+
+    private Interface generateFingerprintedExampleInterface() {
+
+        Interface interfaze = new Interface(config.fingerprintedExampleType);
+        interfaze.setVisibility(JavaVisibility.PUBLIC);
+        interfaze.addJavaDocLine("/**");
+        interfaze.addJavaDocLine(" * Example able to compute a structural fingerprint of its criteria.");
+        interfaze.addJavaDocLine(" */");
+
+        Method m = new Method("fingerprint");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the fingerprint or null if a value is not supported by " + config.exampleFingerprintType.getShortName() + ".");
+        m.addJavaDocLine(" */");
+        m.setReturnType(config.exampleFingerprintType);
+        interfaze.addMethod(m);
+
+        return interfaze;
+    }
+
+    private TopLevelClass generateExampleFingerprintClass() {
+
+        FullyQualifiedJavaType longType = new FullyQualifiedJavaType("long");
+        String fingerprint = config.exampleFingerprintType.getShortName();
+
+        TopLevelClass clazz = new TopLevelClass(config.exampleFingerprintType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setFinal(true);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigDecimal"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigInteger"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.sql.Timestamp"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Collection"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Date"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * 128 bit fingerprint of an example (MurmurHash3 style mixing of two 64 bit lanes).");
+        clazz.addJavaDocLine(" */");
+
+        Field high = new Field("high", longType);
+        high.setVisibility(JavaVisibility.PRIVATE);
+        high.setFinal(true);
+        clazz.addField(high);
+
+        Field low = new Field("low", longType);
+        low.setVisibility(JavaVisibility.PRIVATE);
+        low.setFinal(true);
+        clazz.addField(low);
+
+        Method m = new Method(fingerprint);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(longType, "high"));
+        m.addParameter(new Parameter(longType, "low"));
+        m.addBodyLine("this.high = high;");
+        m.addBodyLine("this.low = low;");
+        clazz.addMethod(m);
+
+        m = new Method("getHigh");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(longType);
+        m.addBodyLine("return high;");
+        clazz.addMethod(m);
+
+        m = new Method("getLow");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(longType);
+        m.addBodyLine("return low;");
+        clazz.addMethod(m);
+
+        m = new Method("equals");
+        m.addAnnotation("@Override");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "that"));
+        m.addBodyLine("if (!(that instanceof " + fingerprint + ")) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine(fingerprint + " other = (" + fingerprint + ") that;");
+        m.addBodyLine("return high == other.high && low == other.low;");
+        clazz.addMethod(m);
+
+        m = new Method("hashCode");
+        m.addAnnotation("@Override");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        m.addBodyLine("return (int) (low ^ (low >>> 32));");
+        clazz.addMethod(m);
+
+        m = new Method("toString");
+        m.addAnnotation("@Override");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getStringInstance());
+        m.addBodyLine("return String.format(\"%016x%016x\", high, low);");
+        clazz.addMethod(m);
+
+        clazz.addInnerClass(generateBuilderClass(longType));
+
+        return clazz;
+    }
+
+    private InnerClass generateBuilderClass(FullyQualifiedJavaType longType) {
+
+        String fingerprint = config.exampleFingerprintType.getShortName();
+        FullyQualifiedJavaType builderType = new FullyQualifiedJavaType("Builder");
+
+        InnerClass builder = new InnerClass(builderType);
+        builder.addJavaDocLine("/**");
+        builder.addJavaDocLine(" * Accumulates the components of a fingerprint, every value is preceded by a type tag.");
+        builder.addJavaDocLine(" */");
+        builder.setVisibility(JavaVisibility.PUBLIC);
+        builder.setStatic(true);
+        builder.setFinal(true);
+
+        PluginUtils.addConstant(builder, "long", "C1", "0x87c37b91114253d5L");
+        PluginUtils.addConstant(builder, "long", "C2", "0x4cf5ad432745937fL");
+        String[] tags = {"NULL", "STRING", "LONG", "INTEGER", "SHORT", "BYTE", "BOOLEAN", "DOUBLE", "FLOAT", "BIG_DECIMAL",
+                "BIG_INTEGER", "DATE", "CHARACTER", "ENUM", "BYTES", "COLLECTION"};
+        for (int i = 0; i < tags.length; i++) {
+            PluginUtils.addConstant(builder, "long", tags[i], String.valueOf(i));
+        }
+
+        Field h1 = new Field("h1", longType);
+        h1.setVisibility(JavaVisibility.PRIVATE);
+        h1.setInitializationString("0x9368e53c2f6af274L");
+        builder.addField(h1);
+
+        Field h2 = new Field("h2", longType);
+        h2.setVisibility(JavaVisibility.PRIVATE);
+        h2.setInitializationString("0x586dcd208f7cd3fdL");
+        builder.addField(h2);
+
+        Field length = new Field("length", longType);
+        length.setVisibility(JavaVisibility.PRIVATE);
+        builder.addField(length);
+
+        Method m = new Method("addLong");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(builderType);
+        m.addParameter(new Parameter(longType, "value"));
+        m.addBodyLine("long k1 = Long.rotateLeft(value * C1, 31) * C2;");
+        m.addBodyLine("h1 = Long.rotateLeft(h1 ^ k1, 27) + h2;");
+        m.addBodyLine("h1 = h1 * 5 + 0x52dce729;");
+        m.addBodyLine("long k2 = Long.rotateLeft(value * C2, 33) * C1;");
+        m.addBodyLine("h2 = Long.rotateLeft(h2 ^ k2, 31) + h1;");
+        m.addBodyLine("h2 = h2 * 5 + 0x38495ab5;");
+        m.addBodyLine("length++;");
+        m.addBodyLine("return this;");
+        builder.addMethod(m);
+
+        m = new Method("addString");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(builderType);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "value"));
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("return addLong(NULL);");
+        m.addBodyLine("}");
+        m.addBodyLine("addLong(STRING).addLong(value.length());");
+        m.addBodyLine("long chars = 0;");
+        m.addBodyLine("for (int i = 0; i < value.length(); i++) {");
+        m.addBodyLine("chars = chars << 16 | value.charAt(i);");
+        m.addBodyLine("if (i % 4 == 3) {");
+        m.addBodyLine("addLong(chars);");
+        m.addBodyLine("chars = 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return addLong(chars);");
+        builder.addMethod(m);
+
+        m = new Method("addValue");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Adds a criterion value, returns false if its type is not supported.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("addLong(NULL);");
+        m.addBodyLine("} else if (value instanceof String) {");
+        m.addBodyLine("addString((String) value);");
+        m.addBodyLine("} else if (value instanceof Long) {");
+        m.addBodyLine("addLong(LONG).addLong((Long) value);");
+        m.addBodyLine("} else if (value instanceof Integer) {");
+        m.addBodyLine("addLong(INTEGER).addLong((Integer) value);");
+        m.addBodyLine("} else if (value instanceof Short) {");
+        m.addBodyLine("addLong(SHORT).addLong((Short) value);");
+        m.addBodyLine("} else if (value instanceof Byte) {");
+        m.addBodyLine("addLong(BYTE).addLong((Byte) value);");
+        m.addBodyLine("} else if (value instanceof Boolean) {");
+        m.addBodyLine("addLong(BOOLEAN).addLong((Boolean) value ? 1 : 0);");
+        m.addBodyLine("} else if (value instanceof Double) {");
+        m.addBodyLine("addLong(DOUBLE).addLong(Double.doubleToLongBits((Double) value));");
+        m.addBodyLine("} else if (value instanceof Float) {");
+        m.addBodyLine("addLong(FLOAT).addLong(Float.floatToIntBits((Float) value));");
+        m.addBodyLine("} else if (value instanceof BigDecimal) {");
+        m.addBodyLine("addLong(BIG_DECIMAL).addString(value.toString());");
+        m.addBodyLine("} else if (value instanceof BigInteger) {");
+        m.addBodyLine("addLong(BIG_INTEGER).addString(value.toString());");
+        m.addBodyLine("} else if (value instanceof Date) {");
+        m.addBodyLine("addLong(DATE).addString(value.getClass().getName()).addLong(((Date) value).getTime());");
+        m.addBodyLine("if (value instanceof Timestamp) {");
+        m.addBodyLine("addLong(((Timestamp) value).getNanos());");
+        m.addBodyLine("}");
+        m.addBodyLine("} else if (value instanceof Character) {");
+        m.addBodyLine("addLong(CHARACTER).addLong((Character) value);");
+        m.addBodyLine("} else if (value instanceof Enum) {");
+        m.addBodyLine("addLong(ENUM).addString(((Enum<?>) value).getDeclaringClass().getName()).addString(((Enum<?>) value).name());");
+        m.addBodyLine("} else if (value instanceof byte[]) {");
+        m.addBodyLine("byte[] bytes = (byte[]) value;");
+        m.addBodyLine("addLong(BYTES).addLong(bytes.length);");
+        m.addBodyLine("for (byte b : bytes) {");
+        m.addBodyLine("addLong(b);");
+        m.addBodyLine("}");
+        m.addBodyLine("} else if (value instanceof Collection) {");
+        m.addBodyLine("Collection<?> values = (Collection<?>) value;");
+        m.addBodyLine("addLong(COLLECTION).addLong(values.size());");
+        m.addBodyLine("for (Object element : values) {");
+        m.addBodyLine("if (!addValue(element)) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("} else {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        builder.addMethod(m);
+
+        m = new Method("build");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(config.exampleFingerprintType);
+        m.addBodyLine("long high = h1 ^ length;");
+        m.addBodyLine("long low = h2 ^ length;");
+        m.addBodyLine("high += low;");
+        m.addBodyLine("low += high;");
+        m.addBodyLine("high = mix(high);");
+        m.addBodyLine("low = mix(low);");
+        m.addBodyLine("high += low;");
+        m.addBodyLine("low += high;");
+        m.addBodyLine("return new " + fingerprint + "(high, low);");
+        builder.addMethod(m);
+
+        m = new Method("mix");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(longType);
+        m.addParameter(new Parameter(longType, "k"));
+        m.addBodyLine("k ^= k >>> 33;");
+        m.addBodyLine("k *= 0xff51afd7ed558ccdL;");
+        m.addBodyLine("k ^= k >>> 33;");
+        m.addBodyLine("k *= 0xc4ceb9fe1a85ec53L;");
+        m.addBodyLine("return k ^ (k >>> 33);");
+        builder.addMethod(m);
+
+        return builder;
+    }
+
+    private TopLevelClass generateCacheKeyInterceptorClass() {
+
+        FullyQualifiedJavaType invocationType = new FullyQualifiedJavaType("org.apache.ibatis.plugin.Invocation");
+
+        TopLevelClass clazz = new TopLevelClass(config.cacheKeyInterceptorType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Interceptor"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Interceptor"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Intercepts"));
+        clazz.addImportedType(invocationType);
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Plugin"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Signature"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.cache.CacheKey"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.executor.Executor"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.mapping.MappedStatement"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.ResultHandler"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.RowBounds"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Properties"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Caches queries taking a " + config.fingerprintedExampleType.getShortName() + " under a compact key (statement id,");
+        clazz.addJavaDocLine(" * offset, limit, fingerprint) instead of the key holding all bound values. Register it before other");
+        clazz.addJavaDocLine(" * interceptors of Executor.query but a TableDependencyInterceptor, it passes the query on to the 6");
+        clazz.addJavaDocLine(" * argument variant.");
+        clazz.addJavaDocLine(" */");
+        clazz.addAnnotation("@Intercepts({@Signature(type = Executor.class, method = \"query\", args = {MappedStatement.class,"
+                + " Object.class, RowBounds.class, ResultHandler.class})})");
+
+        Method m = new Method("intercept");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(invocationType, "invocation"));
+        m.addException(new FullyQualifiedJavaType("java.lang.Throwable"));
+        m.addBodyLine("Object[] args = invocation.getArgs();");
+        m.addBodyLine("if (!(args[1] instanceof " + config.fingerprintedExampleType.getShortName() + ")) {");
+        m.addBodyLine("return invocation.proceed();");
+        m.addBodyLine("}");
+        m.addBodyLine(config.exampleFingerprintType.getShortName() + " fingerprint = (("
+                + config.fingerprintedExampleType.getShortName() + ") args[1]).fingerprint();");
+        m.addBodyLine("if (fingerprint == null) {");
+        m.addBodyLine("return invocation.proceed();");
+        m.addBodyLine("}");
+        m.addBodyLine("MappedStatement ms = (MappedStatement) args[0];");
+        m.addBodyLine("RowBounds rowBounds = (RowBounds) args[2];");
+        m.addBodyLine("CacheKey key = new CacheKey();");
+        m.addBodyLine("key.update(ms.getId());");
+        m.addBodyLine("key.update(rowBounds.getOffset());");
+        m.addBodyLine("key.update(rowBounds.getLimit());");
+        m.addBodyLine("key.update(fingerprint.getHigh());");
+        m.addBodyLine("key.update(fingerprint.getLow());");
+        m.addBodyLine("Executor executor = (Executor) invocation.getTarget();");
+        m.addBodyLine("return executor.query(ms, args[1], rowBounds, (ResultHandler) args[3], key, ms.getBoundSql(args[1]));");
+        clazz.addMethod(m);
+
+        m = new Method("plugin");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "target"));
+        m.addBodyLine("return Plugin.wrap(target, this);");
+        clazz.addMethod(m);
+
+        m = new Method("setProperties");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.util.Properties"), "properties"));
+        m.addBodyLine("// no properties");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String supportPackageKey = "supportPackage";
+
+        private FullyQualifiedJavaType exampleFingerprintType;
+        private FullyQualifiedJavaType fingerprintedExampleType;
+        private FullyQualifiedJavaType cacheKeyInterceptorType;
+
+        private Config(Properties props, String defaultSupportPackage) {
+            super(props);
+            String supportPackage = props.getProperty(supportPackageKey, defaultSupportPackage);
+            this.exampleFingerprintType = new FullyQualifiedJavaType(supportPackage + "." + exampleFingerprintClassName);
+            this.fingerprintedExampleType =
+                    new FullyQualifiedJavaType(supportPackage + "." + fingerprintedExampleClassName);
+            this.cacheKeyInterceptorType =
+                    new FullyQualifiedJavaType(supportPackage + "." + cacheKeyInterceptorClassName);
+        }
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedColumn;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.codegen.mybatis3.MyBatis3FormattingUtilities;
+import org.mybatis.generator.internal.util.JavaBeansUtil;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Adds an in-memory predicate <tt>matches(record)</tt> to the generated example classes and their criteria. It
+ * evaluates the conditions rendered by the where clause of the example against a model instance, so caches can evict
+ * exactly the entities affected by <tt>deleteByExample</tt> / <tt>updateByExample</tt> (see
+ * {@link CachedMapperPlugin}). <tt>isEvaluable()</tt> tells whether all conditions can be evaluated, otherwise callers
+ * have to assume that any record matches.<br/> Supported are <tt>is null</tt> / <tt>is not null</tt> on all columns,
+ * <tt>=</tt>, <tt>&lt;&gt;</tt>, <tt>in</tt>, <tt>not in</tt>, ranges and <tt>between</tt> on numeric, boolean and
+ * timestamp columns as well as, if enabled by <tt>matchStrings</tt>, <tt>=</tt>, <tt>in</tt> and <tt>like</tt> on
+ * string columns. The predicate errs on the side of matching: strings are compared ignoring case and trailing
+ * spaces, timestamps with a tolerance of a second for the precision of the database. Negated and range conditions on
+ * strings, floating point values, dates without time, custom type handlers and case insensitive conditions are not
+ * evaluable.<br/><br/> Example
+ * configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.ExampleMatcherPlugin"&gt;
+ *          &lt;property name="supportPackage" value="com.mycompany.cache" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * The plugin generates the <tt>CriterionMatcher</tt> helper class evaluating single conditions.<br/> Properties:<br/>
+ * <ul> <li><strong>supportPackage</strong> (optional) : the package of the generated support classes. Default: target
+ * package of the java model generator</li> <li><strong>matchStrings</strong> (optional) : <tt>true</tt> to evaluate
+ * the string conditions. Only safe if the collations of the database do not equate strings beyond case and trailing
+ * spaces, e.g. accent insensitive ones would let the predicate miss records the database selects. Default:
+ * false</li> <li><strong>excludeClassNamesRegexp</strong> (optional): classes to exclude from generation as regular
+ * expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class ExampleMatcherPlugin extends PluginAdapter {
+
+    static final String criterionMatcherClassName = "CriterionMatcher";
+
+    /**
+     * tolerance in milliseconds of timestamp comparisons
+     */
+    private static final long timestampTolerance = 1000L;
+
+    private Config config;
+
+    private boolean generated;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties(), context.getJavaModelGeneratorConfiguration().getTargetPackage());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelExampleClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(topLevelClass.getType()))
+            return true;
+
+        FullyQualifiedJavaType recordType = introspectedTable.getRules().calculateAllFieldsClass();
+        topLevelClass.addImportedType(recordType);
+        topLevelClass.addImportedType(config.criterionMatcherType);
+
+        for (InnerClass innerClass : topLevelClass.getInnerClasses()) {
+            if ("GeneratedCriteria".equals(innerClass.getType().getShortName()))
+                addCriteriaMatcher(innerClass, introspectedTable, recordType);
+        }
+
+        Method m = new Method("isEvaluable");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns whether matches() can evaluate all criteria of this example.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addBodyLine("for (Criteria criteria : oredCriteria) {");
+        m.addBodyLine("if (!criteria.isEvaluable()) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        topLevelClass.addMethod(m);
+
+        m = new Method("matches");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns whether the where clause of this example (possibly) selects the given record. Only valid if");
+        m.addJavaDocLine(" * isEvaluable().");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addParameter(new Parameter(recordType, "record"));
+        m.addBodyLine("boolean restricted = false;");
+        m.addBodyLine("for (Criteria criteria : oredCriteria) {");
+        m.addBodyLine("if (!criteria.isValid()) {");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (criteria.matches(record)) {");
+        m.addBodyLine("return true;");
+        m.addBodyLine("}");
+        m.addBodyLine("restricted = true;");
+        m.addBodyLine("}");
+        m.addBodyLine("return !restricted;");
+        topLevelClass.addMethod(m);
+
+        generated = true;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles() {
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        if (generated)
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateCriterionMatcherClass(),
+                    context.getJavaModelGeneratorConfiguration().getTargetProject()));
+        return files;
+    }
+
+    private void addCriteriaMatcher(InnerClass criteria, IntrospectedTable introspectedTable,
+                                    FullyQualifiedJavaType recordType) {
+
+        String matcher = config.criterionMatcherType.getShortName();
+        List<IntrospectedColumn> columns = introspectedTable.getNonBLOBColumns();
+
+        StringBuilder prefixes = new StringBuilder();
+        StringBuilder tolerances = new StringBuilder();
+        for (IntrospectedColumn column : columns) {
+            if (prefixes.length() > 0) {
+                prefixes.append(", ");
+                tolerances.append(", ");
+            }
+            prefixes.append('"').append(MyBatis3FormattingUtilities.getAliasedActualColumnName(column)).append(" \"");
+            tolerances.append(getDateTolerance(column)).append('L');
+        }
+
+        Field f = new Field("MATCHED_COLUMNS", new FullyQualifiedJavaType("java.lang.String[]"));
+        f.addJavaDocLine("/**");
+        f.addJavaDocLine(" * condition prefixes of the columns");
+        f.addJavaDocLine(" */");
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setStatic(true);
+        f.setFinal(true);
+        f.setInitializationString("{" + prefixes + "}");
+        criteria.addField(f);
+
+        f = new Field("DATE_TOLERANCES", new FullyQualifiedJavaType("long[]"));
+        f.addJavaDocLine("/**");
+        f.addJavaDocLine(" * tolerances of date comparisons per column in milliseconds, negative if not comparable");
+        f.addJavaDocLine(" */");
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setStatic(true);
+        f.setFinal(true);
+        f.setInitializationString("{" + tolerances + "}");
+        criteria.addField(f);
+
+        Method m = new Method("isEvaluable");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addBodyLine("for (Criterion criterion : criteria) {");
+        m.addBodyLine("int column = getMatchedColumn(criterion);");
+        m.addBodyLine("if (column < 0 || criterion.getTypeHandler() != null || !" + matcher
+                + ".isEvaluable(getOperator(criterion, column),");
+        m.addBodyLine("criterion.getValue(), criterion.getSecondValue(), DATE_TOLERANCES[column])) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        criteria.addMethod(m);
+
+        m = new Method("matches");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addParameter(new Parameter(recordType, "record"));
+        m.addBodyLine("for (Criterion criterion : criteria) {");
+        m.addBodyLine("int column = getMatchedColumn(criterion);");
+        m.addBodyLine("if (column < 0) {");
+        m.addBodyLine("throw new IllegalStateException(\"Criterion '\" + criterion.getCondition() + \"' is not evaluable\");");
+        m.addBodyLine("}");
+        m.addBodyLine("if (!" + matcher + ".matches(getOperator(criterion, column), getColumnValue(column, record),");
+        m.addBodyLine("criterion.getValue(), criterion.getSecondValue(), DATE_TOLERANCES[column])) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        criteria.addMethod(m);
+
+        FullyQualifiedJavaType criterionType = new FullyQualifiedJavaType("Criterion");
+
+        m = new Method("getMatchedColumn");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addBodyLine("for (int i = 0; i < MATCHED_COLUMNS.length; i++) {");
+        m.addBodyLine("if (criterion.getCondition().startsWith(MATCHED_COLUMNS[i])) {");
+        m.addBodyLine("return i;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return -1;");
+        criteria.addMethod(m);
+
+        m = new Method("getOperator");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getStringInstance());
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getIntInstance(), "column"));
+        m.addBodyLine("return criterion.getCondition().substring(MATCHED_COLUMNS[column].length()).trim();");
+        criteria.addMethod(m);
+
+        m = new Method("getColumnValue");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getIntInstance(), "column"));
+        m.addParameter(new Parameter(recordType, "record"));
+        for (int i = 0; i < columns.size(); i++) {
+            IntrospectedColumn column = columns.get(i);
+            m.addBodyLine("if (column == " + i + ") {");
+            m.addBodyLine("return record." + JavaBeansUtil.getGetterMethodName(column.getJavaProperty(),
+                    column.getFullyQualifiedJavaType()) + "();");
+            m.addBodyLine("}");
+        }
+        m.addBodyLine("return null;");
+        criteria.addMethod(m);
+    }
+
+    private static long getDateTolerance(IntrospectedColumn column) {
+        if (!"java.util.Date".equals(column.getFullyQualifiedJavaType().getFullyQualifiedName()))
+            return 0L;
+        return column.getJdbcType() == Types.TIMESTAMP ? timestampTolerance : -1L;
+    }
+
+    private TopLevelClass generateCriterionMatcherClass() {
+
+        FullyQualifiedJavaType booleanType = FullyQualifiedJavaType.getBooleanPrimitiveInstance();
+        FullyQualifiedJavaType objectType = FullyQualifiedJavaType.getObjectInstance();
+        FullyQualifiedJavaType stringType = FullyQualifiedJavaType.getStringInstance();
+        FullyQualifiedJavaType longType = new FullyQualifiedJavaType("long");
+
+        TopLevelClass clazz = new TopLevelClass(config.criterionMatcherType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setFinal(true);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigDecimal"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigInteger"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Collection"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Date"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.regex.Pattern"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Evaluates single example conditions in memory. Positive conditions match loosely (strings ignoring");
+        clazz.addJavaDocLine(" * case and trailing spaces, dates within the tolerance), negated ones strictly, so a record the");
+        clazz.addJavaDocLine(" * database would select is never reported as not matching. String conditions are evaluable only if");
+        clazz.addJavaDocLine(" * MATCH_STRINGS is set, as accent insensitive collations equate strings these comparisons do not.");
+        clazz.addJavaDocLine(" */");
+
+        PluginUtils.addConstant(clazz, "boolean", "MATCH_STRINGS", String.valueOf(config.matchStrings));
+
+        Method m = new Method(clazz.getType().getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("super();");
+        clazz.addMethod(m);
+
+        m = new Method("isEvaluable");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns whether the condition with the given operator and values can be evaluated.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(stringType, "operator"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(objectType, "secondValue"));
+        m.addParameter(new Parameter(longType, "tolerance"));
+        m.addBodyLine("if (\"is null\".equals(operator) || \"is not null\".equals(operator)) {");
+        m.addBodyLine("return true;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"=\".equals(operator)) {");
+        m.addBodyLine("return value instanceof String ? MATCH_STRINGS : isComparable(value, tolerance);");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"<>\".equals(operator) || \">\".equals(operator) || \">=\".equals(operator)"
+                + " || \"<\".equals(operator) || \"<=\".equals(operator)) {");
+        m.addBodyLine("return isComparable(value, tolerance);");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"between\".equals(operator) || \"not between\".equals(operator)) {");
+        m.addBodyLine("return isComparable(value, tolerance) && isComparable(secondValue, tolerance);");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"like\".equals(operator)) {");
+        m.addBodyLine("return MATCH_STRINGS && value instanceof String && ((String) value).indexOf('\\\\') < 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"in\".equals(operator) || \"not in\".equals(operator)) {");
+        m.addBodyLine("if (!(value instanceof Collection)) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("for (Object element : (Collection<?>) value) {");
+        m.addBodyLine("if (!(isComparable(element, tolerance) || MATCH_STRINGS && element instanceof String"
+                + " && \"in\".equals(operator))) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        m.addBodyLine("}");
+        m.addBodyLine("return false;");
+        clazz.addMethod(m);
+
+        m = new Method("matches");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns whether the column value (possibly) satisfies the condition. Only valid for evaluable");
+        m.addJavaDocLine(" * conditions, throws an IllegalArgumentException if the value cannot be compared with the column.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(stringType, "operator"));
+        m.addParameter(new Parameter(objectType, "column"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(objectType, "secondValue"));
+        m.addParameter(new Parameter(longType, "tolerance"));
+        m.addBodyLine("if (\"is null\".equals(operator)) {");
+        m.addBodyLine("return column == null;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"is not null\".equals(operator)) {");
+        m.addBodyLine("return column != null;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (column == null) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"=\".equals(operator)) {");
+        m.addBodyLine("return equalsLoosely(column, value, tolerance);");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"<>\".equals(operator)) {");
+        m.addBodyLine("return compare(column, value, 0L) != 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\">\".equals(operator)) {");
+        m.addBodyLine("return compare(column, value, 0L) > 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\">=\".equals(operator)) {");
+        m.addBodyLine("return compare(column, value, tolerance) >= 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"<\".equals(operator)) {");
+        m.addBodyLine("return compare(column, value, 0L) < 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"<=\".equals(operator)) {");
+        m.addBodyLine("return compare(column, value, tolerance) <= 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"between\".equals(operator)) {");
+        m.addBodyLine("return compare(column, value, tolerance) >= 0 && compare(column, secondValue, tolerance) <= 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"not between\".equals(operator)) {");
+        m.addBodyLine("return compare(column, value, 0L) < 0 || compare(column, secondValue, 0L) > 0;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"like\".equals(operator)) {");
+        m.addBodyLine("return like(column.toString(), (String) value);");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"in\".equals(operator)) {");
+        m.addBodyLine("for (Object element : (Collection<?>) value) {");
+        m.addBodyLine("if (equalsLoosely(column, element, tolerance)) {");
+        m.addBodyLine("return true;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"not in\".equals(operator)) {");
+        m.addBodyLine("for (Object element : (Collection<?>) value) {");
+        m.addBodyLine("if (compare(column, element, 0L) == 0) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        m.addBodyLine("}");
+        m.addBodyLine("throw new IllegalArgumentException(\"Operator '\" + operator + \"' is not evaluable\");");
+        clazz.addMethod(m);
+
+        m = new Method("isComparable");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(longType, "tolerance"));
+        m.addBodyLine("return value instanceof Long || value instanceof Integer || value instanceof Short"
+                + " || value instanceof Byte || value instanceof BigDecimal || value instanceof BigInteger"
+                + " || value instanceof Boolean || value instanceof Date && tolerance >= 0;");
+        clazz.addMethod(m);
+
+        m = new Method("equalsLoosely");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(objectType, "column"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(longType, "tolerance"));
+        m.addBodyLine("if (value instanceof String) {");
+        m.addBodyLine("return trimTrailing(column.toString()).equalsIgnoreCase(trimTrailing((String) value));");
+        m.addBodyLine("}");
+        m.addBodyLine("return compare(column, value, tolerance) == 0;");
+        clazz.addMethod(m);
+
+        m = new Method("compare");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Compares numbers by value, dates considering differences up to the tolerance as equal.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        m.addParameter(new Parameter(objectType, "column"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(longType, "tolerance"));
+        m.addBodyLine("if (column instanceof Number && value instanceof Number) {");
+        m.addBodyLine("return new BigDecimal(column.toString()).compareTo(new BigDecimal(value.toString()));");
+        m.addBodyLine("}");
+        m.addBodyLine("if (column instanceof Date && value instanceof Date) {");
+        m.addBodyLine("long difference = ((Date) column).getTime() - ((Date) value).getTime();");
+        m.addBodyLine("return Math.abs(difference) <= tolerance ? 0 : difference < 0 ? -1 : 1;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (column instanceof Boolean && value instanceof Boolean) {");
+        m.addBodyLine("return column.equals(value) ? 0 : 1;");
+        m.addBodyLine("}");
+        m.addBodyLine("throw new IllegalArgumentException(\"Cannot compare \" + column + \" with \" + value);");
+        clazz.addMethod(m);
+
+        m = new Method("like");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Matches ignoring case, the column value may be followed by trailing spaces trimmed on read.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(stringType, "column"));
+        m.addParameter(new Parameter(stringType, "pattern"));
+        m.addBodyLine("StringBuilder regexp = new StringBuilder();");
+        m.addBodyLine("StringBuilder literal = new StringBuilder();");
+        m.addBodyLine("for (int i = 0; i < pattern.length(); i++) {");
+        m.addBodyLine("char c = pattern.charAt(i);");
+        m.addBodyLine("if (c == '%' || c == '_') {");
+        m.addBodyLine("if (literal.length() > 0) {");
+        m.addBodyLine("regexp.append(Pattern.quote(literal.toString()));");
+        m.addBodyLine("literal.setLength(0);");
+        m.addBodyLine("}");
+        m.addBodyLine("regexp.append(c == '%' ? \".*\" : \".\");");
+        m.addBodyLine("} else {");
+        m.addBodyLine("literal.append(c);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("if (literal.length() > 0) {");
+        m.addBodyLine("regexp.append(Pattern.quote(literal.toString()));");
+        m.addBodyLine("}");
+        m.addBodyLine("Pattern compiled = Pattern.compile(regexp.toString(),"
+                + " Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);");
+        m.addBodyLine("StringBuilder value = new StringBuilder(trimTrailing(column));");
+        m.addBodyLine("for (int spaces = 0; spaces <= pattern.length(); spaces++) {");
+        m.addBodyLine("if (compiled.matcher(value).matches()) {");
+        m.addBodyLine("return true;");
+        m.addBodyLine("}");
+        m.addBodyLine("value.append(' ');");
+        m.addBodyLine("}");
+        m.addBodyLine("return false;");
+        clazz.addMethod(m);
+
+        m = new Method("trimTrailing");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(stringType);
+        m.addParameter(new Parameter(stringType, "value"));
+        m.addBodyLine("int end = value.length();");
+        m.addBodyLine("while (end > 0 && value.charAt(end - 1) == ' ') {");
+        m.addBodyLine("end--;");
+        m.addBodyLine("}");
+        m.addBodyLine("return value.substring(0, end);");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String supportPackageKey = "supportPackage";
+        private static final String matchStringsKey = "matchStrings";
+
+        private FullyQualifiedJavaType criterionMatcherType;
+
+        private boolean matchStrings;
+
+        private Config(Properties props, String defaultSupportPackage) {
+            super(props);
+            String supportPackage = props.getProperty(supportPackageKey, defaultSupportPackage);
+            this.criterionMatcherType = new FullyQualifiedJavaType(supportPackage + "." + criterionMatcherClassName);
+            this.matchStrings = Boolean.valueOf(props.getProperty(matchStringsKey, "false"));
+        }
+    }
+}
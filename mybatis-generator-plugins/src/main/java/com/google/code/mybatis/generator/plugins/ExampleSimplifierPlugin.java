@@ -0,0 +1,750 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Adds <tt>simplify()</tt> to the generated example classes, which rewrites the criteria before the sql is rendered:
+ * duplicate conditions and ored criteria are removed, ranges of a column are folded to the tightest bounds, ored
+ * criteria differing in a single equality of the same column are merged into an <tt>in</tt> list (e.g. <tt>(USERNAME
+ * = ?) or (USERNAME = ?)</tt> becomes <tt>(USERNAME in (?, ?))</tt>) and contradicting criteria (e.g. <tt>ID = 1 and
+ * ID = 2</tt>, <tt>ID &gt; 5 and ID &lt; 3</tt> or <tt>ID is null and ID = 1</tt>) are dropped. <tt>simplify()</tt>
+ * returns false if no row can match at all, so callers can skip the query. The sql providers leave the example passed
+ * to them unchanged: <tt>applyWhere</tt> simplifies a copy of its criteria by <tt>simplifyCopy()</tt>, which keeps
+ * the copy in the transient property <tt>simplified</tt> of the example, and renders the copy, binding its values
+ * through <tt>simplified</tt>, or a trivially false <tt>1 = 0</tt> where clause instead of contradicting conditions.
+ * Order and equality of values are only evaluated for exact numbers (integers and decimals) without type
+ * handler, as the comparison of strings, dates and floating point values depends on the collation and precision of the
+ * database.<br/> The plugin has to be configured before {@link SharedCriteriaPlugin}, which keeps the interface added
+ * to the criterions.<br/><br/> Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.ExampleSimplifierPlugin"&gt;
+ *          &lt;property name="supportPackage" value="com.mycompany.example" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * The plugin generates the <tt>SimplifiableCriterion</tt> interface implemented by the criterions and the
+ * <tt>CriteriaSimplifier</tt> helper class.<br/> Properties:<br/> <ul> <li><strong>supportPackage</strong>
+ * (optional) : the package of the generated support classes. Default: target package of the java model
+ * generator</li> <li><strong>excludeClassNamesRegexp</strong> (optional): classes to exclude from generation as
+ * regular expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class ExampleSimplifierPlugin extends PluginAdapter {
+
+    static final String simplifiableCriterionInterfaceName = "SimplifiableCriterion";
+
+    static final String criteriaSimplifierClassName = "CriteriaSimplifier";
+
+    private static final String simplifiedField = "simplified";
+
+    private Config config;
+
+    private boolean generated;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties(), context.getJavaModelGeneratorConfiguration().getTargetPackage());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelExampleClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(topLevelClass.getType()))
+            return true;
+
+        for (InnerClass innerClass : topLevelClass.getInnerClasses()) {
+            if (SharedCriteriaPlugin.criterionClassName.equals(innerClass.getType().getShortName()))
+                innerClass.addSuperInterface(config.simplifiableCriterionType);
+        }
+        topLevelClass.addImportedType(config.simplifiableCriterionType);
+        topLevelClass.addImportedType(config.criteriaSimplifierType);
+
+        String simplifier = config.criteriaSimplifierType.getShortName();
+        Method m = new Method("simplify");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Removes duplicate, implied and contradicting conditions and merges ored equalities of a column into in");
+        m.addJavaDocLine(" * lists. Returns false if the example can't match any row, its criteria may be partly simplified then.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addBodyLine("int valid = 0;");
+        m.addBodyLine("List<Criteria> contradicting = new ArrayList<Criteria>();");
+        m.addBodyLine("for (Criteria criteria : oredCriteria) {");
+        m.addBodyLine("if (!criteria.isValid()) {");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("valid++;");
+        m.addBodyLine("if (isSimplifiable(criteria) && !" + simplifier + ".simplify(criteria.getCriteria())) {");
+        m.addBodyLine("contradicting.add(criteria);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("if (valid > 0 && contradicting.size() == valid) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("oredCriteria.removeAll(contradicting);");
+        m.addBodyLine("for (int i = 0; i < oredCriteria.size(); i++) {");
+        m.addBodyLine("Criteria criteria = oredCriteria.get(i);");
+        m.addBodyLine("for (int j = i + 1; j < oredCriteria.size() && isSimplifiable(criteria); ) {");
+        m.addBodyLine("Criteria other = oredCriteria.get(j);");
+        m.addBodyLine("int index = isSimplifiable(other) ? " + simplifier
+                + ".getMergeIndex(criteria.getCriteria(), other.getCriteria()) : -1;");
+        m.addBodyLine("if (index >= 0) {");
+        m.addBodyLine("Criterion criterion = criteria.getCriteria().get(index);");
+        m.addBodyLine("criteria.getCriteria().set(index, new Criterion(" + simplifier + ".getInCondition(criterion),");
+        m.addBodyLine(simplifier + ".getMergedValues(criteria.getCriteria(), other.getCriteria(), index),");
+        m.addBodyLine("criterion.getTypeHandler()));");
+        m.addBodyLine("}");
+        m.addBodyLine("if (index == -1) {");
+        m.addBodyLine("j++;");
+        m.addBodyLine("} else {");
+        m.addBodyLine("oredCriteria.remove(j);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        topLevelClass.addMethod(m);
+
+        // the conditions of columns with type handlers are kept in separate lists, which are left alone
+        m = new Method("isSimplifiable");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("Criteria"), "criteria"));
+        m.addBodyLine("return criteria.isValid() && criteria.getAllCriteria().size() == criteria.getCriteria().size();");
+        topLevelClass.addMethod(m);
+
+        FullyQualifiedJavaType exampleType = topLevelClass.getType();
+        Field f = new Field(simplifiedField, exampleType);
+        f.addJavaDocLine("/**");
+        f.addJavaDocLine(" * copy of this example simplified by simplifyCopy(), rendered by the sql providers");
+        f.addJavaDocLine(" */");
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setTransient(true);
+        topLevelClass.addField(f);
+
+        m = new Method("getSimplified");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(exampleType);
+        m.addBodyLine("return " + simplifiedField + ";");
+        topLevelClass.addMethod(m);
+
+        // criteria which aren't simplifiable are never changed by simplify() and can be shared with the copy
+        m = new Method("simplifyCopy");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Simplifies a copy of the criteria of this example, which is kept as simplified, leaving this example");
+        m.addJavaDocLine(" * unchanged. Returns false if the example can't match any row.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addBodyLine(exampleType.getShortName() + " copy = new " + exampleType.getShortName() + "();");
+        m.addBodyLine("for (Criteria criteria : oredCriteria) {");
+        m.addBodyLine("if (isSimplifiable(criteria)) {");
+        m.addBodyLine("Criteria copied = copy.createCriteriaInternal();");
+        m.addBodyLine("copied.getCriteria().addAll(criteria.getCriteria());");
+        m.addBodyLine("copy.oredCriteria.add(copied);");
+        m.addBodyLine("} else {");
+        m.addBodyLine("copy.oredCriteria.add(criteria);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("boolean satisfiable = copy.simplify();");
+        m.addBodyLine(simplifiedField + " = copy;");
+        m.addBodyLine("return satisfiable;");
+        topLevelClass.addMethod(m);
+
+        generated = true;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean providerApplyWhereMethodGenerated(Method method, TopLevelClass topLevelClass,
+                                                     IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(introspectedTable.getExampleType()))
+            return true;
+
+        // the criteria and the bind parameters are taken from the simplified copy
+        List<String> lines = method.getBodyLines();
+        for (int i = 0; i < lines.size(); i++) {
+            lines.set(i, lines.get(i).replace("#{oredCriteria[", "#{" + simplifiedField + ".oredCriteria[")
+                    .replace("#{example.oredCriteria[", "#{example." + simplifiedField + ".oredCriteria[")
+                    .replace("example.getOredCriteria()", "example.getSimplified().getOredCriteria()"));
+        }
+
+        // right after the check of the example for null
+        method.addBodyLine(3, "if (!example.simplifyCopy()) {");
+        method.addBodyLine(4, "WHERE(\"1 = 0\");");
+        method.addBodyLine(5, "return;");
+        method.addBodyLine(6, "}");
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles() {
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        if (!generated)
+            return files;
+
+        String targetProject = context.getJavaModelGeneratorConfiguration().getTargetProject();
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateSimplifiableCriterionInterface(), targetProject));
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateCriteriaSimplifierClass(), targetProject));
+        return files;
+    }
+
+    private Interface generateSimplifiableCriterionInterface() {
+
+        Interface interfaze = new Interface(config.simplifiableCriterionType);
+        interfaze.setVisibility(JavaVisibility.PUBLIC);
+        interfaze.addJavaDocLine("/**");
+        interfaze.addJavaDocLine(" * Condition of a criteria as seen by " + criteriaSimplifierClassName + ".");
+        interfaze.addJavaDocLine(" */");
+
+        String[][] properties = {{"getCondition", "String"}, {"getValue", "Object"}, {"getSecondValue", "Object"},
+                {"isNoValue", "boolean"}, {"isSingleValue", "boolean"}, {"isBetweenValue", "boolean"},
+                {"isListValue", "boolean"}, {"getTypeHandler", "String"}};
+        for (String[] property : properties) {
+            Method m = new Method(property[0]);
+            m.setReturnType("String".equals(property[1]) ? FullyQualifiedJavaType.getStringInstance()
+                    : "Object".equals(property[1]) ? FullyQualifiedJavaType.getObjectInstance()
+                    : FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+            interfaze.addMethod(m);
+        }
+
+        return interfaze;
+    }
+
+    private TopLevelClass generateCriteriaSimplifierClass() {
+
+        FullyQualifiedJavaType booleanType = FullyQualifiedJavaType.getBooleanPrimitiveInstance();
+        FullyQualifiedJavaType intType = FullyQualifiedJavaType.getIntInstance();
+        FullyQualifiedJavaType objectType = FullyQualifiedJavaType.getObjectInstance();
+        FullyQualifiedJavaType stringType = FullyQualifiedJavaType.getStringInstance();
+        FullyQualifiedJavaType objectListType = new FullyQualifiedJavaType("List<Object>");
+        FullyQualifiedJavaType criterionType = config.simplifiableCriterionType;
+        FullyQualifiedJavaType criterionListType = new FullyQualifiedJavaType("List<? extends "
+                + simplifiableCriterionInterfaceName + ">");
+
+        TopLevelClass clazz = new TopLevelClass(config.criteriaSimplifierType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setFinal(true);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigDecimal"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigInteger"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.ArrayList"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.LinkedHashSet"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.List"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Simplifies the conditions of example criteria. Order and equality are only evaluated for exact numbers");
+        clazz.addJavaDocLine(" * without type handler, other conditions are only compared for identity.");
+        clazz.addJavaDocLine(" */");
+
+        Field f = new Field("OPERATORS", new FullyQualifiedJavaType("java.lang.String[]"));
+        f.addJavaDocLine("/**");
+        f.addJavaDocLine(" * operators of the conditions, an operator preceding the ones it ends with");
+        f.addJavaDocLine(" */");
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setStatic(true);
+        f.setFinal(true);
+        f.setInitializationString("{\"is not null\", \"is null\", \"not between\", \"between\", \"not in\", \"in\","
+                + " \"not like\", \"like\", \"<>\", \">=\", \"<=\", \"=\", \">\", \"<\"}");
+        clazz.addField(f);
+
+        Method m = new Method(clazz.getType().getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("super();");
+        clazz.addMethod(m);
+
+        m = new Method("simplify");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(criterionListType, "criterions"));
+        m.addBodyLine("for (int i = 0; i < criterions.size(); i++) {");
+        m.addBodyLine("for (int j = criterions.size() - 1; j > i; j--) {");
+        m.addBodyLine("if (isSame(criterions.get(i), criterions.get(j))) {");
+        m.addBodyLine("criterions.remove(j);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("boolean[] implied = new boolean[criterions.size()];");
+        m.addBodyLine("List<String> columns = new ArrayList<String>();");
+        m.addBodyLine("for (SimplifiableCriterion criterion : criterions) {");
+        m.addBodyLine("String column = getColumn(criterion);");
+        m.addBodyLine("if (column != null && !columns.contains(column)) {");
+        m.addBodyLine("columns.add(column);");
+        m.addBodyLine("if (!simplifyColumn(criterions, column, implied)) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("for (int i = implied.length - 1; i >= 0; i--) {");
+        m.addBodyLine("if (implied[i]) {");
+        m.addBodyLine("criterions.remove(i);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        clazz.addMethod(m);
+
+        m = new Method("getMergeIndex");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the index of the only condition of the first criteria which differs from the second one, if");
+        m.addJavaDocLine(" * both are equalities of the same column and can be merged into an in list. Returns -2 if the criteria");
+        m.addJavaDocLine(" * are equal and -1 if they can't be merged.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(intType);
+        m.addParameter(new Parameter(criterionListType, "criterions"));
+        m.addParameter(new Parameter(criterionListType, "others"));
+        m.addBodyLine("if (criterions.size() != others.size()) {");
+        m.addBodyLine("return -1;");
+        m.addBodyLine("}");
+        m.addBodyLine("int index = -2;");
+        m.addBodyLine("for (int i = 0; i < criterions.size(); i++) {");
+        m.addBodyLine("if (indexOf(others, criterions.get(i)) >= 0) {");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (index != -2) {");
+        m.addBodyLine("return -1;");
+        m.addBodyLine("}");
+        m.addBodyLine("index = i;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (index == -2) {");
+        m.addBodyLine("return index;");
+        m.addBodyLine("}");
+        m.addBodyLine("SimplifiableCriterion criterion = criterions.get(index);");
+        m.addBodyLine("SimplifiableCriterion other = getCounterpart(criterions, others);");
+        m.addBodyLine("if (other == null || !isEquality(criterion) || !isEquality(other)"
+                + " || !getColumn(criterion).equals(getColumn(other)) || !isEqual(criterion.getTypeHandler(),"
+                + " other.getTypeHandler())) {");
+        m.addBodyLine("return -1;");
+        m.addBodyLine("}");
+        m.addBodyLine("return index;");
+        clazz.addMethod(m);
+
+        m = new Method("getInCondition");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the in condition of the column of the given condition.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(stringType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addBodyLine("return getColumn(criterion) + \" in\";");
+        clazz.addMethod(m);
+
+        m = new Method("getMergedValues");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the values of the in list merging the differing conditions of the criteria.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(objectListType);
+        m.addParameter(new Parameter(criterionListType, "criterions"));
+        m.addParameter(new Parameter(criterionListType, "others"));
+        m.addParameter(new Parameter(intType, "index"));
+        m.addBodyLine("Set<Object> values = new LinkedHashSet<Object>();");
+        m.addBodyLine("for (SimplifiableCriterion criterion : new SimplifiableCriterion[]{criterions.get(index),"
+                + " getCounterpart(criterions, others)}) {");
+        m.addBodyLine("if (criterion.isListValue()) {");
+        m.addBodyLine("values.addAll((List<?>) criterion.getValue());");
+        m.addBodyLine("} else {");
+        m.addBodyLine("values.add(criterion.getValue());");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return new ArrayList<Object>(values);");
+        clazz.addMethod(m);
+
+        m = new Method("simplifyColumn");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(criterionListType, "criterions"));
+        m.addParameter(new Parameter(stringType, "column"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("boolean[]"), "implied"));
+        m.addBodyLine("boolean isNull = false;");
+        m.addBodyLine("boolean valued = false;");
+        m.addBodyLine("Object eq = null;");
+        m.addBodyLine("int lower = -1;");
+        m.addBodyLine("int upper = -1;");
+        m.addBodyLine("for (int i = 0; i < criterions.size(); i++) {");
+        m.addBodyLine("SimplifiableCriterion criterion = criterions.get(i);");
+        m.addBodyLine("if (!column.equals(getColumn(criterion))) {");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (\"is null\".equals(getOperator(criterion))) {");
+        m.addBodyLine("isNull = true;");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("valued = true;");
+        m.addBodyLine("if (\"=\".equals(getOperator(criterion)) && isExactNumber(criterion.getValue())"
+                + " && criterion.getTypeHandler() == null) {");
+        m.addBodyLine("if (eq != null && isComparable(eq, criterion.getValue()) && compare(eq,"
+                + " criterion.getValue()) != 0) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("eq = criterion.getValue();");
+        m.addBodyLine("}");
+        m.addBodyLine("if (getLowerBound(criterion) != null && (lower < 0 || isTighterLower(criterion,"
+                + " criterions.get(lower)))) {");
+        m.addBodyLine("lower = i;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (getUpperBound(criterion) != null && (upper < 0 || isTighterUpper(criterion,"
+                + " criterions.get(upper)))) {");
+        m.addBodyLine("upper = i;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("if (isNull) {");
+        m.addBodyLine("return !valued;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (lower >= 0 && upper >= 0 && isEmptyRange(criterions.get(lower), criterions.get(upper))) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("for (int i = 0; i < criterions.size(); i++) {");
+        m.addBodyLine("SimplifiableCriterion criterion = criterions.get(i);");
+        m.addBodyLine("if (!column.equals(getColumn(criterion)) || criterion.getTypeHandler() != null) {");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("String operator = getOperator(criterion);");
+        m.addBodyLine("if (eq != null) {");
+        m.addBodyLine("if (\"<>\".equals(operator) && isComparable(eq, criterion.getValue()) && compare(eq,"
+                + " criterion.getValue()) == 0) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("if ((\"in\".equals(operator) && containsValue(criterion.getValue(), eq) == 0)"
+                + " || (\"not in\".equals(operator) && containsValue(criterion.getValue(), eq) == 1)) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (!isWithin(eq, criterion, criterion)) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("boolean bound = \">\".equals(operator) || \">=\".equals(operator) || \"<\".equals(operator)"
+                + " || \"<=\".equals(operator);");
+        m.addBodyLine("if (bound && eq != null && isComparable(eq, criterion.getValue())) {");
+        m.addBodyLine("implied[i] = true;");
+        m.addBodyLine("} else if (bound && getLowerBound(criterion) != null && i != lower"
+                + " && isComparable(getLowerBound(criterion), getLowerBound(criterions.get(lower)))"
+                + " && !isTighterLower(criterion, criterions.get(lower))) {");
+        m.addBodyLine("implied[i] = true;");
+        m.addBodyLine("} else if (bound && getUpperBound(criterion) != null && i != upper"
+                + " && isComparable(getUpperBound(criterion), getUpperBound(criterions.get(upper)))"
+                + " && !isTighterUpper(criterion, criterions.get(upper))) {");
+        m.addBodyLine("implied[i] = true;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        clazz.addMethod(m);
+
+        m = new Method("isWithin");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns whether the value satisfies the lower bound of the first and the upper bound of the second");
+        m.addJavaDocLine(" * criterion. Bounds not comparable with the value are considered satisfied.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(criterionType, "lower"));
+        m.addParameter(new Parameter(criterionType, "upper"));
+        m.addBodyLine("Object bound = getLowerBound(lower);");
+        m.addBodyLine("if (bound != null && isComparable(value, bound)) {");
+        m.addBodyLine("int c = compare(value, bound);");
+        m.addBodyLine("if (c < 0 || (c == 0 && \">\".equals(getOperator(lower)))) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("bound = getUpperBound(upper);");
+        m.addBodyLine("if (bound != null && isComparable(value, bound)) {");
+        m.addBodyLine("int c = compare(value, bound);");
+        m.addBodyLine("if (c > 0 || (c == 0 && \"<\".equals(getOperator(upper)))) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return true;");
+        m.addBodyLine("}");
+        m.addBodyLine("private static boolean isEmptyRange(SimplifiableCriterion lower,"
+                + " SimplifiableCriterion upper) {");
+        m.addBodyLine("Object from = getLowerBound(lower);");
+        m.addBodyLine("Object to = getUpperBound(upper);");
+        m.addBodyLine("if (!isComparable(from, to)) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("int c = compare(from, to);");
+        m.addBodyLine("return c > 0 || (c == 0 && (\">\".equals(getOperator(lower))"
+                + " || \"<\".equals(getOperator(upper))));");
+        clazz.addMethod(m);
+
+        m = new Method("isTighterLower");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addParameter(new Parameter(criterionType, "other"));
+        m.addBodyLine("Object bound = getLowerBound(criterion);");
+        m.addBodyLine("Object otherBound = getLowerBound(other);");
+        m.addBodyLine("if (!isComparable(bound, otherBound)) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("int c = compare(bound, otherBound);");
+        m.addBodyLine("return c > 0 || (c == 0 && \">\".equals(getOperator(criterion))"
+                + " && !\">\".equals(getOperator(other)));");
+        clazz.addMethod(m);
+
+        m = new Method("isTighterUpper");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addParameter(new Parameter(criterionType, "other"));
+        m.addBodyLine("Object bound = getUpperBound(criterion);");
+        m.addBodyLine("Object otherBound = getUpperBound(other);");
+        m.addBodyLine("if (!isComparable(bound, otherBound)) {");
+        m.addBodyLine("return false;");
+        m.addBodyLine("}");
+        m.addBodyLine("int c = compare(bound, otherBound);");
+        m.addBodyLine("return c < 0 || (c == 0 && \"<\".equals(getOperator(criterion))"
+                + " && !\"<\".equals(getOperator(other)));");
+        clazz.addMethod(m);
+
+        m = new Method("getLowerBound");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(objectType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addBodyLine("String operator = getOperator(criterion);");
+        m.addBodyLine("if (criterion.getTypeHandler() == null && (\">\".equals(operator)"
+                + " || \">=\".equals(operator) || \"between\".equals(operator))"
+                + " && isExactNumber(criterion.getValue())) {");
+        m.addBodyLine("return criterion.getValue();");
+        m.addBodyLine("}");
+        m.addBodyLine("return null;");
+        clazz.addMethod(m);
+
+        m = new Method("getUpperBound");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(objectType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addBodyLine("String operator = getOperator(criterion);");
+        m.addBodyLine("if (criterion.getTypeHandler() == null && (\"<\".equals(operator)"
+                + " || \"<=\".equals(operator)) && isExactNumber(criterion.getValue())) {");
+        m.addBodyLine("return criterion.getValue();");
+        m.addBodyLine("}");
+        m.addBodyLine("if (criterion.getTypeHandler() == null && \"between\".equals(operator)"
+                + " && isExactNumber(criterion.getSecondValue())) {");
+        m.addBodyLine("return criterion.getSecondValue();");
+        m.addBodyLine("}");
+        m.addBodyLine("return null;");
+        clazz.addMethod(m);
+
+        m = new Method("containsValue");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns 1 if the list contains the value, 0 if not and -1 if undecidable.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(intType);
+        m.addParameter(new Parameter(objectType, "list"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addBodyLine("if (!(list instanceof List)) {");
+        m.addBodyLine("return -1;");
+        m.addBodyLine("}");
+        m.addBodyLine("for (Object element : (List<?>) list) {");
+        m.addBodyLine("if (!isComparable(element, value)) {");
+        m.addBodyLine("return -1;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (compare(element, value) == 0) {");
+        m.addBodyLine("return 1;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return 0;");
+        clazz.addMethod(m);
+
+        m = new Method("getCounterpart");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(criterionType);
+        m.addParameter(new Parameter(criterionListType, "criterions"));
+        m.addParameter(new Parameter(criterionListType, "others"));
+        m.addBodyLine("SimplifiableCriterion counterpart = null;");
+        m.addBodyLine("for (SimplifiableCriterion other : others) {");
+        m.addBodyLine("if (indexOf(criterions, other) < 0) {");
+        m.addBodyLine("if (counterpart != null) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("counterpart = other;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return counterpart;");
+        clazz.addMethod(m);
+
+        m = new Method("indexOf");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(intType);
+        m.addParameter(new Parameter(criterionListType, "criterions"));
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addBodyLine("for (int i = 0; i < criterions.size(); i++) {");
+        m.addBodyLine("if (isSame(criterions.get(i), criterion)) {");
+        m.addBodyLine("return i;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return -1;");
+        clazz.addMethod(m);
+
+        m = new Method("isSame");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addParameter(new Parameter(criterionType, "other"));
+        m.addBodyLine("return criterion.getCondition().equals(other.getCondition()) && isEqual(criterion.getValue(),"
+                + " other.getValue()) && isEqual(criterion.getSecondValue(), other.getSecondValue())"
+                + " && isEqual(criterion.getTypeHandler(), other.getTypeHandler())"
+                + " && criterion.isNoValue() == other.isNoValue()"
+                + " && criterion.isSingleValue() == other.isSingleValue()"
+                + " && criterion.isBetweenValue() == other.isBetweenValue()"
+                + " && criterion.isListValue() == other.isListValue();");
+        clazz.addMethod(m);
+
+        m = new Method("isEqual");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(objectType, "other"));
+        m.addBodyLine("return value == null ? other == null : value.equals(other);");
+        clazz.addMethod(m);
+
+        m = new Method("isEquality");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addBodyLine("String operator = getOperator(criterion);");
+        m.addBodyLine("return (\"=\".equals(operator) && criterion.isSingleValue()) || (\"in\".equals(operator)"
+                + " && criterion.isListValue());");
+        clazz.addMethod(m);
+
+        m = new Method("isExactNumber");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addBodyLine("return value instanceof Long || value instanceof Integer || value instanceof Short"
+                + " || value instanceof Byte || value instanceof BigInteger || value instanceof BigDecimal;");
+        clazz.addMethod(m);
+
+        m = new Method("isComparable");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(booleanType);
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(objectType, "other"));
+        m.addBodyLine("return isExactNumber(value) && isExactNumber(other) && value.getClass() == other.getClass();");
+        clazz.addMethod(m);
+
+        m = new Method("compare");
+        m.addAnnotation("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(intType);
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(objectType, "other"));
+        m.addBodyLine("return ((Comparable) value).compareTo(other);");
+        clazz.addMethod(m);
+
+        m = new Method("getColumn");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(stringType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addBodyLine("String condition = criterion.getCondition().trim();");
+        m.addBodyLine("for (String operator : OPERATORS) {");
+        m.addBodyLine("if (condition.endsWith(\" \" + operator)) {");
+        m.addBodyLine("return condition.substring(0, condition.length() - operator.length()).trim();");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return null;");
+        clazz.addMethod(m);
+
+        m = new Method("getOperator");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(stringType);
+        m.addParameter(new Parameter(criterionType, "criterion"));
+        m.addBodyLine("String column = getColumn(criterion);");
+        m.addBodyLine("if (column == null) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("return criterion.getCondition().trim().substring(column.length()).trim();");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String supportPackageKey = "supportPackage";
+
+        private FullyQualifiedJavaType simplifiableCriterionType;
+
+        private FullyQualifiedJavaType criteriaSimplifierType;
+
+        private Config(Properties props, String defaultSupportPackage) {
+            super(props);
+            String supportPackage = props.getProperty(supportPackageKey, defaultSupportPackage);
+            this.simplifiableCriterionType = new FullyQualifiedJavaType(supportPackage + "."
+                    + simplifiableCriterionInterfaceName);
+            this.criteriaSimplifierType = new FullyQualifiedJavaType(supportPackage + "." + criteriaSimplifierClassName);
+        }
+    }
+}
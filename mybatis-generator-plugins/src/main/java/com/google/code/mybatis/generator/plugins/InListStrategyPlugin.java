@@ -0,0 +1,489 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedColumn;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.codegen.mybatis3.MyBatis3FormattingUtilities;
+import org.mybatis.generator.internal.util.StringUtility;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the <tt>in</tt> / <tt>not in</tt> conditions of selected columns in the where clause of the sql providers
+ * by one of the following strategies instead of a placeholder per list element:<br/> <ul> <li><strong>bucket</strong>
+ * : the lists are padded to the next power of two by repeating their last element, so the lists of up to 1024
+ * elements share 11 statements in the statement cache of the driver instead of 1024.</li> <li><strong>chunk</strong>
+ * : lists longer than <tt>chunkSize</tt> are split into ored conditions (anded for <tt>not in</tt>) of at most
+ * <tt>chunkSize</tt> elements, keeping the lists within the limits of databases and drivers (e.g. 1000 elements on
+ * Oracle). May be combined with <strong>bucket</strong>, which then pads the last chunk.</li>
+ * <li><strong>array</strong> : the list is bound as a single sql array of the jdbc type of the column, rendered by
+ * the {@link Dialect} of the context (e.g. <tt>ID = ANY (?)</tt> on PostgreSQL, <tt>ID in (UNNEST(?))</tt> on HSQLDB),
+ * so a single statement serves lists of any size. The plugin generates the <tt>ListArrayTypeHandler</tt> binding the
+ * lists. Conditions with a type handler fall back to a placeholder per element, as do all lists if the dialect does
+ * not support arrays.</li> </ul> The strategy is chosen per condition in the generated <tt>applyWhere</tt> of the
+ * sql providers; the where clause of XML mappers is left alone.<br/><br/> Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.InListStrategyPlugin"&gt;
+ *          &lt;property name="chunkSize" value="1000" /&gt;
+ *          &lt;property name=".*UserMapper#ID" value="array" /&gt;
+ *          &lt;property name=".*Mapper#.*_ID" value="bucket, chunk" /&gt;
+ *          ...
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * This plugin can deal with any number of properties defined using following pattern:<br/>
+ * <ol>
+ * <li><strong>name</strong> is <strong>classNameRegexp#columnRegexp</strong>: a regular expression matching the fully
+ * qualified names of the mappers and one matching the names of the columns case insensitively. The first matching
+ * property (in alphabetical order) applies.</li>
+ * <li><strong>value</strong> is <strong>bucket</strong>, <strong>chunk</strong>, <strong>bucket, chunk</strong> or
+ * <strong>array</strong>.</li>
+ * </ol>
+ * Further properties:<br/> <ul> <li><strong>chunkSize</strong> (optional) : maximum number of elements of a chunk.
+ * Default: <strong>1000</strong></li> <li><strong>supportPackage</strong> (optional) : the package of the generated
+ * support classes. Default: target package of the java model generator</li>
+ * <li><strong>excludeClassNamesRegexp</strong> (optional): classes to exclude from generation as regular expression.
+ * Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class InListStrategyPlugin extends PluginAdapter {
+
+    static final String inListStrategyClassName = "InListStrategy";
+
+    static final String listArrayTypeHandlerClassName = "ListArrayTypeHandler";
+
+    private static final String strategiesField = "IN_LIST_STRATEGIES";
+
+    private Config config;
+
+    private boolean generated;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null) {
+            this.config = new Config(getProperties(), context.getJavaModelGeneratorConfiguration().getTargetPackage(),
+                    Dialect.getDialect(context));
+            for (InListRule rule : config.rules.getValues()) {
+                if (rule.array && config.dialect.arrayCondition("", false, "") == null)
+                    warnings.add("InListStrategyPlugin: dialect " + config.dialect + " does not support arrays, the"
+                            + " array strategy for " + rule.columnRegexp + " is ignored");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        config.resolve(introspectedTable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean providerApplyWhereMethodGenerated(Method method, TopLevelClass topLevelClass,
+                                                     IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(introspectedTable.getExampleType()))
+            return true;
+
+        String mapper = introspectedTable.getMyBatis3JavaMapperType();
+        String strategy = config.inListStrategyType.getShortName();
+        InitializationBlock block = new InitializationBlock(true);
+        for (IntrospectedColumn column : introspectedTable.getNonBLOBColumns()) {
+            InListRule rule = config.rules.getFirstMatch(mapper, column.getActualColumnName());
+            if (rule == null)
+                continue;
+
+            String name = MyBatis3FormattingUtilities.getAliasedActualColumnName(column);
+            for (boolean negated : new boolean[]{false, true}) {
+                // the array condition is rendered by the dialect as format of the parameter
+                String arrayCondition = config.dialect.arrayCondition(name.replace("%", "%%"), negated, "%s");
+                if (rule.array && arrayCondition == null)
+                    continue;
+
+                String factory = rule.array
+                        ? strategy + ".array(\"" + column.getJdbcTypeName() + "\", \""
+                        + StringUtility.escapeStringForJava(arrayCondition) + "\")"
+                        : strategy + ".expanded(" + rule.bucket + ", " + (rule.chunk ? config.chunkSize : 0) + ")";
+                block.addBodyLine(strategiesField + ".put(\"" + StringUtility.escapeStringForJava(name)
+                        + (negated ? " not in" : " in") + "\", " + factory + ");");
+                config.arrays |= rule.array;
+            }
+        }
+
+        List<String> lines = method.getBodyLines();
+        int from = lines.indexOf("} else if (criterion.isListValue()) {");
+        int to = lines.subList(Math.max(from, 0), lines.size()).indexOf("sb.append(')');");
+        if (block.getBodyLines().isEmpty() || from < 0 || to < 0)
+            return true;
+
+        lines.subList(from + 1, from + to + 1).clear();
+        lines.add(from + 1, strategy + " strategy = " + strategiesField + ".get(criterion.getCondition());");
+        lines.add(from + 2, "if (strategy == null) {");
+        lines.add(from + 3, "strategy = " + strategy + ".DEFAULT;");
+        lines.add(from + 4, "}");
+        lines.add(from + 5, "strategy.append(sb, criterion.getCondition(), ((List<?>) criterion.getValue()).size(),"
+                + " criterion.getTypeHandler(),");
+        lines.add(from + 6, "parmPhrase1, criterion.getTypeHandler() == null ? parmPhrase3 : parmPhrase3_th, i, j);");
+
+        Field f = new Field(strategiesField, new FullyQualifiedJavaType("java.util.Map<String, " + strategy + ">"));
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setStatic(true);
+        f.setFinal(true);
+        f.setInitializationString("new HashMap<String, " + strategy + ">()");
+        topLevelClass.addField(f);
+        topLevelClass.addInitializationBlock(block);
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.HashMap"));
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.Map"));
+        topLevelClass.addImportedType(config.inListStrategyType);
+
+        generated = true;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles() {
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        if (!generated)
+            return files;
+
+        String targetProject = context.getJavaModelGeneratorConfiguration().getTargetProject();
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateInListStrategyClass(), targetProject));
+        if (config.arrays)
+            files.add(PluginUtils.newGeneratedJavaFile(context, generateListArrayTypeHandlerClass(), targetProject));
+        return files;
+    }
+
+    private TopLevelClass generateInListStrategyClass() {
+
+        FullyQualifiedJavaType booleanType = FullyQualifiedJavaType.getBooleanPrimitiveInstance();
+        FullyQualifiedJavaType intType = FullyQualifiedJavaType.getIntInstance();
+        FullyQualifiedJavaType stringType = FullyQualifiedJavaType.getStringInstance();
+        FullyQualifiedJavaType strategyType = config.inListStrategyType;
+
+        TopLevelClass clazz = new TopLevelClass(strategyType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setFinal(true);
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Renders the in / not in condition of a list: a placeholder per element, optionally padded to the next");
+        clazz.addJavaDocLine(" * power of two and split into chunks, or a single array parameter.");
+        clazz.addJavaDocLine(" */");
+
+        Field f = new Field("DEFAULT", strategyType);
+        f.addJavaDocLine("/**");
+        f.addJavaDocLine(" * strategy rendering a placeholder per element");
+        f.addJavaDocLine(" */");
+        f.setVisibility(JavaVisibility.PUBLIC);
+        f.setStatic(true);
+        f.setFinal(true);
+        f.setInitializationString("new " + strategyType.getShortName() + "(false, 0, null, null)");
+        clazz.addField(f);
+
+        f = new Field("ARRAY_TYPE_HANDLER", stringType);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setStatic(true);
+        f.setFinal(true);
+        f.setInitializationString("\"" + config.listArrayTypeHandlerType.getFullyQualifiedName() + "\"");
+        clazz.addField(f);
+
+        String[][] properties = {{"bucket", "boolean"}, {"chunkSize", "int"}, {"arrayJdbcType", "String"},
+                {"arrayCondition", "String"}};
+        Method m = new Method(strategyType.getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        for (String[] property : properties) {
+            FullyQualifiedJavaType type = "String".equals(property[1]) ? stringType
+                    : "int".equals(property[1]) ? intType : booleanType;
+            f = new Field(property[0], type);
+            f.setVisibility(JavaVisibility.PRIVATE);
+            f.setFinal(true);
+            clazz.addField(f);
+            m.addParameter(new Parameter(type, property[0]));
+            m.addBodyLine("this." + property[0] + " = " + property[0] + ";");
+        }
+        clazz.addMethod(m);
+
+        m = new Method("expanded");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the strategy rendering a placeholder per element, padding the lists to the next power of two");
+        m.addJavaDocLine(" * if bucket and splitting the lists longer than chunkSize into chunks unless chunkSize is 0.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(strategyType);
+        m.addParameter(new Parameter(booleanType, "bucket"));
+        m.addParameter(new Parameter(intType, "chunkSize"));
+        m.addBodyLine("return new " + strategyType.getShortName() + "(bucket, chunkSize, null, null);");
+        clazz.addMethod(m);
+
+        m = new Method("array");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the strategy binding the list as an array of the given jdbc type, rendering the condition by");
+        m.addJavaDocLine(" * formatting the given one with the parameter.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(strategyType);
+        m.addParameter(new Parameter(stringType, "jdbcType"));
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addBodyLine("return new " + strategyType.getShortName() + "(false, 0, jdbcType, condition);");
+        clazz.addMethod(m);
+
+        m = new Method("append");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Appends the condition of a list of the given size. The value phrase is formatted with an empty");
+        m.addJavaDocLine(" * condition and the indexes of the criteria and criterion, the element phrase with these indexes, the");
+        m.addJavaDocLine(" * index of the element and the type handler. Lists with a type handler are never bound as array.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.lang.StringBuilder"), "sb"));
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addParameter(new Parameter(intType, "size"));
+        m.addParameter(new Parameter(stringType, "typeHandler"));
+        m.addParameter(new Parameter(stringType, "valuePhrase"));
+        m.addParameter(new Parameter(stringType, "elementPhrase"));
+        m.addParameter(new Parameter(intType, "i"));
+        m.addParameter(new Parameter(intType, "j"));
+        m.addBodyLine("if (arrayJdbcType != null && typeHandler == null) {");
+        m.addBodyLine("String parameter = String.format(valuePhrase, \"\", i, j).trim();");
+        m.addBodyLine("parameter = parameter.substring(0, parameter.length() - 1) + \",jdbcType=\" + arrayJdbcType");
+        m.addBodyLine("+ \",typeHandler=\" + ARRAY_TYPE_HANDLER + \"}\";");
+        m.addBodyLine("sb.append(String.format(arrayCondition, parameter));");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("int chunk = chunkSize > 0 && size > chunkSize ? chunkSize : size;");
+        m.addBodyLine("int chunks = chunk == 0 ? 1 : (size + chunk - 1) / chunk;");
+        m.addBodyLine("if (chunks > 1) {");
+        m.addBodyLine("sb.append('(');");
+        m.addBodyLine("}");
+        m.addBodyLine("for (int c = 0; c < chunks; c++) {");
+        m.addBodyLine("if (c > 0) {");
+        m.addBodyLine("sb.append(condition.endsWith(\" not in\") ? \" and \" : \" or \");");
+        m.addBodyLine("}");
+        m.addBodyLine("int from = c * chunk;");
+        m.addBodyLine("int length = Math.min(chunk, size - from);");
+        m.addBodyLine("int padded = length;");
+        m.addBodyLine("if (bucket && length > 0) {");
+        m.addBodyLine("padded = Integer.highestOneBit(length);");
+        m.addBodyLine("if (padded < length) {");
+        m.addBodyLine("padded <<= 1;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (chunkSize > 0 && padded > chunkSize) {");
+        m.addBodyLine("padded = chunkSize;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("sb.append(condition).append(\" (\");");
+        m.addBodyLine("for (int k = 0; k < padded; k++) {");
+        m.addBodyLine("if (k > 0) {");
+        m.addBodyLine("sb.append(\", \");");
+        m.addBodyLine("}");
+        m.addBodyLine("sb.append(String.format(elementPhrase, i, j, from + Math.min(k, length - 1), typeHandler));");
+        m.addBodyLine("}");
+        m.addBodyLine("sb.append(')');");
+        m.addBodyLine("}");
+        m.addBodyLine("if (chunks > 1) {");
+        m.addBodyLine("sb.append(')');");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private TopLevelClass generateListArrayTypeHandlerClass() {
+
+        FullyQualifiedJavaType listType = new FullyQualifiedJavaType("java.util.List<?>");
+        FullyQualifiedJavaType sqlExceptionType = new FullyQualifiedJavaType("java.sql.SQLException");
+        FullyQualifiedJavaType intType = FullyQualifiedJavaType.getIntInstance();
+        FullyQualifiedJavaType resultSetType = new FullyQualifiedJavaType("java.sql.ResultSet");
+
+        TopLevelClass clazz = new TopLevelClass(config.listArrayTypeHandlerType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setSuperClass(new FullyQualifiedJavaType("org.apache.ibatis.type.BaseTypeHandler<List<?>>"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.sql.Array"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.sql.CallableStatement"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.sql.PreparedStatement"));
+        clazz.addImportedType(resultSetType);
+        clazz.addImportedType(sqlExceptionType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Arrays"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.List"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.type.BaseTypeHandler"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.type.JdbcType"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Binds a list as sql array, the elements being of the jdbc type of the parameter.");
+        clazz.addJavaDocLine(" */");
+
+        Method m = new Method("setNonNullParameter");
+        m.addAnnotation("@Override");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.sql.PreparedStatement"), "ps"));
+        m.addParameter(new Parameter(intType, "i"));
+        m.addParameter(new Parameter(listType, "parameter"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("org.apache.ibatis.type.JdbcType"), "jdbcType"));
+        m.addException(sqlExceptionType);
+        m.addBodyLine("ps.setArray(i, ps.getConnection().createArrayOf(jdbcType.name(), parameter.toArray()));");
+        clazz.addMethod(m);
+
+        String[][] getters = {{"java.sql.ResultSet", "rs", "java.lang.String", "columnName"},
+                {"java.sql.ResultSet", "rs", "int", "columnIndex"},
+                {"java.sql.CallableStatement", "cs", "int", "columnIndex"}};
+        for (String[] getter : getters) {
+            m = new Method("getNullableResult");
+            m.addAnnotation("@Override");
+            m.setVisibility(JavaVisibility.PUBLIC);
+            m.setReturnType(listType);
+            m.addParameter(new Parameter(new FullyQualifiedJavaType(getter[0]), getter[1]));
+            m.addParameter(new Parameter(new FullyQualifiedJavaType(getter[2]), getter[3]));
+            m.addException(sqlExceptionType);
+            m.addBodyLine("return toList(" + getter[1] + ".getArray(" + getter[3] + "));");
+            clazz.addMethod(m);
+        }
+
+        m = new Method("toList");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(listType);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.sql.Array"), "array"));
+        m.addException(sqlExceptionType);
+        m.addBodyLine("if (array == null) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("try {");
+        m.addBodyLine("return Arrays.asList((Object[]) array.getArray());");
+        m.addBodyLine("} finally {");
+        m.addBodyLine("array.free();");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String chunkSizeKey = "chunkSize";
+
+        private static final String supportPackageKey = "supportPackage";
+
+        private static final List<String> reservedKeys = Arrays.asList(chunkSizeKey, supportPackageKey);
+
+        private Rules<InListRule> rules = new Rules<InListRule>();
+
+        private int chunkSize;
+
+        private Dialect dialect;
+
+        /**
+         * whether an array strategy has been generated
+         */
+        private boolean arrays;
+
+        private FullyQualifiedJavaType inListStrategyType;
+
+        private FullyQualifiedJavaType listArrayTypeHandlerType;
+
+        private Config(Properties props, String defaultSupportPackage, Dialect dialect) {
+            super(props);
+
+            this.chunkSize = Integer.parseInt(props.getProperty(chunkSizeKey, "1000"));
+            if (chunkSize <= 0)
+                throw new IllegalArgumentException("Wrong in list strategy configuration found! Expected: chunkSize > 0");
+            this.dialect = dialect;
+
+            String supportPackage = props.getProperty(supportPackageKey, defaultSupportPackage);
+            this.inListStrategyType = new FullyQualifiedJavaType(supportPackage + "." + inListStrategyClassName);
+            this.listArrayTypeHandlerType = new FullyQualifiedJavaType(supportPackage + "."
+                    + listArrayTypeHandlerClassName);
+
+            for (String key : getRuleKeys(props, reservedKeys)) {
+                InListRule rule = InListRule.valueOf(key, props.getProperty(key));
+                rules.add(rule.classRegexp, rule.columnRegexp, rule);
+            }
+        }
+
+        @Override
+        void resolve(IntrospectedTable introspectedTable) {
+            super.resolve(introspectedTable);
+            rules.resolve(introspectedTable.getMyBatis3JavaMapperType());
+        }
+    }
+
+    private static final class InListRule {
+
+        private Pattern classRegexp;
+
+        private Pattern columnRegexp;
+
+        private boolean bucket;
+
+        private boolean chunk;
+
+        private boolean array;
+
+        public static InListRule valueOf(String key, String value) {
+
+            if (key == null) throw new IllegalArgumentException("Property's key should be specified!");
+            if (value == null) throw new IllegalArgumentException("Property's value should be specified!");
+
+            if (!key.contains("#"))
+                throw new IllegalArgumentException("Wrong format for property key '" + key + "' found! Expected: "
+                        + "name=\"classRegexp#columnRegexp\"");
+
+            InListRule rule = new InListRule();
+            rule.classRegexp = Pattern.compile(key.substring(0, key.indexOf('#')));
+            rule.columnRegexp = Pattern.compile(key.substring(key.indexOf('#') + 1), Pattern.CASE_INSENSITIVE);
+            for (String strategy : value.trim().split("\\s*,\\s*")) {
+                if ("bucket".equals(strategy))
+                    rule.bucket = true;
+                else if ("chunk".equals(strategy))
+                    rule.chunk = true;
+                else if ("array".equals(strategy))
+                    rule.array = true;
+                else
+                    throw new IllegalArgumentException("Unknown in list strategy '" + strategy + "' in property '"
+                            + key + "' found! Expected: bucket, chunk or array");
+            }
+            if (rule.array && (rule.bucket || rule.chunk))
+                throw new IllegalArgumentException("Wrong in list strategy '" + value + "' in property '" + key
+                        + "' found! The array strategy can't be combined");
+            return rule;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces the allocations of the generated example classes. The lists of the example and its criteria are allocated
+ * on their first element with the configured capacities instead of the default ones, until then
+ * <tt>getOredCriteria()</tt> and <tt>getAllCriteria()</tt> return the shared empty list, so an example without
+ * conditions allocates no list at all. Criteria are added by <tt>or(Criteria)</tt>, <tt>getCriteria()</tt> allocates
+ * the list for callers adding conditions to it. <tt>reset()</tt> clears an example for reuse: its
+ * criteria objects and their lists are kept and handed out again by the next <tt>createCriteria()</tt> /
+ * <tt>or()</tt>, so an example reused on a thread allocates only the criterions of its conditions. Criteria obtained
+ * before <tt>reset()</tt> must not be used afterwards. Besides the criteria, <tt>reset()</tt> restores the order by
+ * clause, the distinct flag and the fields added to the example by plugins configured before this one to their
+ * defaults. The public API of the examples is unchanged.<br/><br/> Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.LeanExamplePlugin"&gt;
+ *          &lt;property name="criteriaCapacity" value="4" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * <br/> Properties:<br/> <ul> <li><strong>oredCriteriaCapacity</strong> (optional) : initial capacity of the list of
+ * ored criteria. Default: <strong>1</strong></li> <li><strong>criteriaCapacity</strong> (optional) : initial capacity
+ * of the criterion list of a criteria. Default: <strong>4</strong></li> <li><strong>excludeClassNamesRegexp</strong>
+ * (optional): classes to exclude from generation as regular expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class LeanExamplePlugin extends PluginAdapter {
+
+    /**
+     * fields of the generated example classes reset by clear()
+     */
+    private static final List<String> exampleFields = Arrays.asList("orderByClause", "distinct", "oredCriteria");
+
+    private static final String spareCriteriaField = "spareCriteria";
+
+    /**
+     * adding a criteria to the list of the example or of a copy, e.g. <tt>copy.oredCriteria.add(criteria);</tt>
+     */
+    private static final Pattern oredCriteriaAddPattern = Pattern.compile("^((?:\\w+\\.)?)oredCriteria\\.add\\(");
+
+    private Config config;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelExampleClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(topLevelClass.getType()))
+            return true;
+
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.Collections"));
+        allocateOredCriteriaLazily(topLevelClass);
+        for (InnerClass innerClass : topLevelClass.getInnerClasses()) {
+            if (!"GeneratedCriteria".equals(innerClass.getType().getShortName()))
+                continue;
+            allocateCriteriaLazily(innerClass);
+            // the lists of the columns having a type handler
+            presize(innerClass.getMethods(), "new ArrayList<Criterion>()", config.criteriaCapacity);
+        }
+
+        Method reset = new Method("reset");
+        reset.addJavaDocLine("/**");
+        reset.addJavaDocLine(" * Clears this example for reuse, keeping its criteria for the next conditions. Criteria obtained");
+        reset.addJavaDocLine(" * before must not be used afterwards.");
+        reset.addJavaDocLine(" */");
+        reset.setVisibility(JavaVisibility.PUBLIC);
+        reset.addBodyLine("if (" + spareCriteriaField + " == null) {");
+        reset.addBodyLine(spareCriteriaField + " = new ArrayList<Criteria>(oredCriteria.size());");
+        reset.addBodyLine("}");
+        reset.addBodyLine("for (Criteria reused : oredCriteria) {");
+        reset.addBodyLine("reused.getCriteria().clear();");
+        reset.addBodyLine(spareCriteriaField + ".add(reused);");
+        reset.addBodyLine("}");
+        reset.addBodyLine("clear();");
+        for (Field field : topLevelClass.getFields()) {
+            if (field.isStatic() || field.isFinal() || exampleFields.contains(field.getName()))
+                continue;
+            reset.addBodyLine(field.getName() + " = " + getDefaultValue(field.getType()) + ";");
+        }
+
+        Field f = new Field(spareCriteriaField, new FullyQualifiedJavaType("List<Criteria>"));
+        f.addJavaDocLine("/**");
+        f.addJavaDocLine(" * criteria released by reset() for reuse");
+        f.addJavaDocLine(" */");
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setTransient(true);
+        topLevelClass.addField(f);
+        topLevelClass.addMethod(reset);
+
+        for (Method m : topLevelClass.getMethods()) {
+            if (!"createCriteriaInternal".equals(m.getName()))
+                continue;
+
+            m.addBodyLine(0, "if (" + spareCriteriaField + " != null && !" + spareCriteriaField + ".isEmpty()) {");
+            m.addBodyLine(1, "return " + spareCriteriaField + ".remove(" + spareCriteriaField + ".size() - 1);");
+            m.addBodyLine(2, "}");
+        }
+
+        return true;
+    }
+
+    /**
+     * Starts the examples with the shared empty list and lets or(Criteria) allocate the list, which the other methods
+     * adding criteria call instead.
+     */
+    private void allocateOredCriteriaLazily(TopLevelClass example) {
+
+        for (Method m : example.getMethods()) {
+            List<String> lines = m.getBodyLines();
+            if (m.isConstructor()) {
+                for (int i = 0; i < lines.size(); i++) {
+                    lines.set(i, lines.get(i).replace("oredCriteria = new ArrayList<Criteria>();",
+                            "oredCriteria = Collections.emptyList();"));
+                }
+            } else if ("or".equals(m.getName()) && m.getParameters().size() == 1) {
+                lines.clear();
+                m.addBodyLine("if (oredCriteria == Collections.EMPTY_LIST) {");
+                m.addBodyLine("oredCriteria = new ArrayList<Criteria>(" + config.oredCriteriaCapacity + ");");
+                m.addBodyLine("}");
+                m.addBodyLine("oredCriteria.add(criteria);");
+            } else {
+                for (int i = 0; i < lines.size(); i++) {
+                    lines.set(i, oredCriteriaAddPattern.matcher(lines.get(i)).replaceFirst("$1or("));
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts the criteria with the shared empty list, which is replaced by the first condition added.
+     */
+    private void allocateCriteriaLazily(InnerClass generatedCriteria) {
+
+        for (Method m : generatedCriteria.getMethods()) {
+            List<String> lines = m.getBodyLines();
+            if (m.isConstructor()) {
+                for (int i = 0; i < lines.size(); i++) {
+                    lines.set(i, lines.get(i).replace("criteria = new ArrayList<Criterion>();",
+                            "criteria = Collections.<Criterion>emptyList();"));
+                }
+            } else if ("getCriteria".equals(m.getName()) && m.getParameters().isEmpty()) {
+                lines.clear();
+                m.addBodyLine("allocate();");
+                m.addBodyLine("return criteria;");
+            } else {
+                for (int i = 0; i < lines.size(); i++) {
+                    if (lines.get(i).startsWith("criteria.add("))
+                        lines.set(i, lines.get(i).substring("criteria.".length()));
+                }
+            }
+        }
+
+        Method m = new Method("add");
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("Criterion"), "criterion"));
+        m.addBodyLine("allocate();");
+        m.addBodyLine("criteria.add(criterion);");
+        generatedCriteria.addMethod(m);
+
+        m = new Method("allocate");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Replaces the shared empty list by an own one before the first condition is added.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("if (criteria == Collections.EMPTY_LIST) {");
+        m.addBodyLine("criteria = new ArrayList<Criterion>(" + config.criteriaCapacity + ");");
+        m.addBodyLine("}");
+        generatedCriteria.addMethod(m);
+    }
+
+    /**
+     * Adds the initial capacity to the list allocation of the constructors.
+     */
+    private static void presize(List<Method> methods, String allocation, int capacity) {
+
+        String presized = allocation.substring(0, allocation.length() - 1) + capacity + ")";
+        for (Method m : methods) {
+            if (!m.isConstructor())
+                continue;
+
+            List<String> lines = m.getBodyLines();
+            for (int i = 0; i < lines.size(); i++) {
+                lines.set(i, lines.get(i).replace(allocation, presized));
+            }
+        }
+    }
+
+    private static String getDefaultValue(FullyQualifiedJavaType type) {
+        if (!type.isPrimitive())
+            return "null";
+        if ("boolean".equals(type.getShortName()))
+            return "false";
+        if ("char".equals(type.getShortName()))
+            return "'\\0'";
+        return "0";
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String oredCriteriaCapacityKey = "oredCriteriaCapacity";
+
+        private static final String criteriaCapacityKey = "criteriaCapacity";
+
+        private int oredCriteriaCapacity;
+
+        private int criteriaCapacity;
+
+        private Config(Properties props) {
+            super(props);
+            this.oredCriteriaCapacity = Integer.parseInt(props.getProperty(oredCriteriaCapacityKey, "1"));
+            this.criteriaCapacity = Integer.parseInt(props.getProperty(criteriaCapacityKey, "4"));
+            if (oredCriteriaCapacity < 0 || criteriaCapacity < 0)
+                throw new IllegalArgumentException("Wrong capacity configuration found! Expected: oredCriteriaCapacity"
+                        + " >= 0 and criteriaCapacity >= 0");
+        }
+    }
+}
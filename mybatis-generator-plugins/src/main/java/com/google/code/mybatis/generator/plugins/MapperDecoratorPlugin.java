@@ -19,11 +19,11 @@ package com.google.code.mybatis.generator.plugins;
 import org.mybatis.generator.api.IntrospectedTable;
 import org.mybatis.generator.api.PluginAdapter;
 import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.internal.util.JavaBeansUtil;
 
-import java.util.Arrays;
-import java.util.Enumeration;
-import java.util.List;
-import java.util.Properties;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Decorates existing mapper methods.<br/> Example configuration:<br/> <tt>
@@ -46,15 +46,44 @@ import java.util.Properties;
  * </tt> <br/> Properties:<br/> <ul> <li><strong>methodToDecorate</strong> (required) : the name of the mapper method to
  * decorate.</li> <li><strong>methodToGenerate</strong> (required) : the name of the new mapper method to generate.</li>
  * <li><strong>excludeClassNamesRegexp</strong> (optional): classes to exclude from generation as regular expression.
- * Default: none</li> <li><strong>sql</strong> (required) : is an sql statement to use in the new method</li>
- * <li>(Optional) Any number of property definitions <tt>&lt;property name="propName" value="propType"/&gt;</tt>
- * describing new properties to add to the corresponding XXXExample class</li> </ul>
+ * Default: none</li> <li><strong>classNamesRegexp</strong> (optional): classes to restrict the generation to as
+ * regular expression. Default: all</li> <li><strong>sql</strong> (required) : is an sql statement to use in the new
+ * method</li> <li>(Optional) Any number of property definitions <tt>&lt;property name="propName"
+ * value="propType"/&gt;</tt> describing new properties to add to the corresponding XXXExample class</li> </ul>
+ * Several methods can be decorated by a single plugin declaration: properties prefixed with a rule name and a dot
+ * define one decoration each, e.g.<br/> <tt>
+ * <pre>
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.MapperDecoratorPlugin"&gt;
+ *          &lt;property name="decorated.methodToDecorate" value="selectByExample"/&gt;
+ *          &lt;property name="decorated.methodToGenerate" value="selectByExampleDecorated"/&gt;
+ *          &lt;property name="decorated.sql" value="select * from (#{methodToDecorate}) x"/&gt;
+ *          &lt;property name="ab.methodToDecorate" value="updateByExampleSelective"/&gt;
+ *          &lt;property name="ab.methodToGenerate" value="updateByExampleSelective2"/&gt;
+ *          &lt;property name="ab.sql" value="#{methodToDecorate} and a = ${a} and b = ${b}"/&gt;
+ *          &lt;property name="ab.classNamesRegexp" value=".*User.*"/&gt;
+ *          &lt;property name="ab.a" value="long"/&gt;
+ *          &lt;property name="ab.b" value="long"/&gt;
+ *      &lt;/plugin&gt;
+ * </pre>
+ * </tt> The rules are indexed by the decorated method, an unprefixed <strong>excludeClassNamesRegexp</strong> applies
+ * to all of them. The example properties of a rule are added to the example classes of the tables whose mapper the
+ * rule applies to.<br/> Within the sql <tt>#{methodToDecorate}</tt> stands for the decorated statement and
+ * <tt>#{orderByClause}</tt> for the order by clause of the example. References to the example properties of the rule,
+ * <tt>#{a}</tt> as well as <tt>${a}</tt>, become bind parameters of the example (<tt>#{a}</tt> or
+ * <tt>#{example.a}</tt>, depending on the provider method), so the sql text does not change with their values.
  *
  * @author Maxim Kalina
  * @version $Id$
  */
 public class MapperDecoratorPlugin extends PluginAdapter {
 
+    /**
+     * characters reserved per slot filled from the example when pre-sizing the decorated sql
+     */
+    private static final int textSlotCapacity = 16;
+
+    private static final String orderByClauseSlot = "orderByClause";
+
     private Config config;
 
     /**
@@ -67,26 +96,35 @@ public class MapperDecoratorPlugin extends PluginAdapter {
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        config.resolve(introspectedTable);
+    }
+
 
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public boolean modelExampleClassGenerated(TopLevelClass topLevelClass,
                                               IntrospectedTable introspectedTable) {
 
-        Properties props = getProperties();
-        Enumeration<String> propNames = (Enumeration<String>) props.propertyNames();
-        while (propNames.hasMoreElements()) {
-
-            String propName = propNames.nextElement();
-            if (propName == null || config.isReservedPropertyKey(propName))
-                continue;
+        Map<String, FullyQualifiedJavaType> exampleProperties = new LinkedHashMap<String, FullyQualifiedJavaType>();
+        String mapperType = introspectedTable.getMyBatis3JavaMapperType();
+        if (!config.shouldExclude(mapperType)) {
+            for (DecorationRule rule : config.rules) {
+                if (rule.appliesTo(mapperType))
+                    exampleProperties.putAll(rule.exampleProperties);
+            }
+        }
 
-            String propType = props.getProperty(propName);
+        for (Map.Entry<String, FullyQualifiedJavaType> property : exampleProperties.entrySet()) {
 
-            FullyQualifiedJavaType fqType = new FullyQualifiedJavaType(propType);
+            String propName = property.getKey();
+            FullyQualifiedJavaType fqType = property.getValue();
             Field f = new Field(propName, fqType);
             f.setVisibility(JavaVisibility.PROTECTED);
             topLevelClass.addField(f);
@@ -118,8 +156,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerSelectByExampleWithBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                    IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -129,8 +167,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerSelectByExampleWithoutBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                       IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -141,8 +179,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerCountByExampleMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                          IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -152,8 +190,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerDeleteByExampleMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                           IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -163,8 +201,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerInsertSelectiveMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                           IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -174,8 +212,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerUpdateByExampleSelectiveMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                    IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -185,8 +223,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerUpdateByExampleWithBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                    IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -196,8 +234,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerUpdateByExampleWithoutBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                       IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -207,8 +245,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean providerUpdateByPrimaryKeySelectiveMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                       IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedProviderMethod(method, topLevelClass, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedProviderMethod(rule, method, topLevelClass, introspectedTable));
         return true;
     }
 
@@ -218,8 +256,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientSelectByExampleWithBLOBsMethodGenerated(Method method, Interface interfaze,
                                                                  IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -230,8 +268,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientSelectByExampleWithoutBLOBsMethodGenerated(Method method, Interface interfaze,
                                                                     IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -241,8 +279,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientSelectByExampleWithBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                  IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -252,8 +290,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientSelectByExampleWithoutBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                     IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -263,8 +301,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientCountByExampleMethodGenerated(Method method, Interface interfaze,
                                                        IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -274,8 +312,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientCountByExampleMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                        IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -285,8 +323,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientDeleteByExampleMethodGenerated(Method method, Interface interfaze,
                                                         IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -296,8 +334,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientDeleteByExampleMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                         IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -307,8 +345,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientDeleteByPrimaryKeyMethodGenerated(Method method, Interface interfaze,
                                                            IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -318,8 +356,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientDeleteByPrimaryKeyMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                            IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -329,8 +367,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientInsertMethodGenerated(Method method, Interface interfaze,
                                                IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -340,8 +378,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientInsertMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -351,8 +389,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientSelectByPrimaryKeyMethodGenerated(Method method, Interface interfaze,
                                                            IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -362,8 +400,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientSelectByPrimaryKeyMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                            IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -373,8 +411,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByExampleSelectiveMethodGenerated(Method method, Interface interfaze,
                                                                  IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -384,8 +422,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByExampleSelectiveMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                  IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -395,8 +433,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByExampleWithBLOBsMethodGenerated(Method method, Interface interfaze,
                                                                  IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -406,8 +444,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByExampleWithBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                  IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -417,8 +455,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByExampleWithoutBLOBsMethodGenerated(Method method, Interface interfaze,
                                                                     IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -428,8 +466,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByExampleWithoutBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                     IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -439,8 +477,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByPrimaryKeySelectiveMethodGenerated(Method method, Interface interfaze,
                                                                     IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -450,8 +488,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByPrimaryKeySelectiveMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                     IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -461,8 +499,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByPrimaryKeyWithBLOBsMethodGenerated(Method method, Interface interfaze,
                                                                     IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -472,8 +510,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByPrimaryKeyWithBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                     IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -483,8 +521,8 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByPrimaryKeyWithoutBLOBsMethodGenerated(Method method, Interface interfaze,
                                                                        IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(interfaze.getType(), method))
-            interfaze.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            interfaze.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
@@ -494,15 +532,16 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     @Override
     public boolean clientUpdateByPrimaryKeyWithoutBLOBsMethodGenerated(Method method, TopLevelClass topLevelClass,
                                                                        IntrospectedTable introspectedTable) {
-        if (config.shouldApplyGeneration(topLevelClass.getType(), method))
-            topLevelClass.addMethod(generateDecoratedMapperMethod(method, introspectedTable));
+        for (DecorationRule rule : config.getRules(introspectedTable, method))
+            topLevelClass.addMethod(generateDecoratedMapperMethod(rule, method, introspectedTable));
         return true;
     }
 
 
-    private Method generateDecoratedMapperMethod(Method method, IntrospectedTable introspectedTable) {
+    private Method generateDecoratedMapperMethod(DecorationRule rule, Method method,
+                                                 IntrospectedTable introspectedTable) {
 
-        Method methodToGenerate = new Method(config.methodToGenerateName);
+        Method methodToGenerate = new Method(rule.methodToGenerateName);
         methodToGenerate.setVisibility(method.getVisibility());
         methodToGenerate.setReturnType(method.getReturnType());
         context.getCommentGenerator().addGeneralMethodComment(methodToGenerate, introspectedTable);
@@ -511,7 +550,7 @@ public class MapperDecoratorPlugin extends PluginAdapter {
 
         for (String a : annotations) {
             if (a.matches("@.*Provider.*")) {
-                methodToGenerate.addAnnotation(a.replace(config.methodToDecorateName, config.methodToGenerateName));
+                methodToGenerate.addAnnotation(a.replace(rule.methodToDecorateName, rule.methodToGenerateName));
             } else
                 methodToGenerate.addAnnotation(a);
         }
@@ -524,10 +563,10 @@ public class MapperDecoratorPlugin extends PluginAdapter {
     }
 
 
-    private Method generateDecoratedProviderMethod(Method method, TopLevelClass topLevelClass,
+    private Method generateDecoratedProviderMethod(DecorationRule rule, Method method, TopLevelClass topLevelClass,
                                                    IntrospectedTable introspectedTable) {
 
-        Method m = new Method(config.methodToGenerateName);
+        Method m = new Method(rule.methodToGenerateName);
         m.setVisibility(method.getVisibility());
         m.setReturnType(method.getReturnType());
         List<Parameter> params = method.getParameters();
@@ -547,49 +586,278 @@ public class MapperDecoratorPlugin extends PluginAdapter {
         sb.append(");");
 
         m.addBodyLine(sb.toString());
-        m.addBodyLine("return \"" + config.sql + "\".replace(\"#{methodToDecorate}\", sql);");
+
+        String example = getExampleExpression(params, introspectedTable);
+        String bindPrefix = example == null ? null : example.equals(params.get(0).getName()) ? "" : "example.";
+
+        // merges the bind parameters and the slots left to MyBatis into the literals, the remaining slots are filled at
+        // runtime
+        SqlTemplate template = new SqlTemplate();
+        StringBuilder literal = new StringBuilder(rule.sql.literals.get(0));
+        int literalLength = 0;
+        int innerSqlCount = 0;
+        for (int i = 0; i < rule.sql.slots.size(); i++) {
+            String slot = rule.sql.slots.get(i);
+            String marker = rule.sql.markers.get(i);
+            boolean bindable = marker.startsWith("#");
+            if ((slot.equals(SqlTemplate.innerSqlSlot) || slot.equals(orderByClauseSlot) && example != null)
+                    && bindable) {
+                template.literals.add(literal.toString());
+                template.slots.add(slot);
+                literalLength += literal.length();
+                literal.setLength(0);
+                if (slot.equals(SqlTemplate.innerSqlSlot))
+                    innerSqlCount++;
+            } else if (bindPrefix != null && rule.exampleProperties.containsKey(slot)) {
+                literal.append("#{").append(bindPrefix).append(slot);
+                String jdbcType = getJdbcType(rule.exampleProperties.get(slot));
+                if (jdbcType != null)
+                    literal.append(",jdbcType=").append(jdbcType);
+                literal.append("}");
+            } else {
+                literal.append(marker);
+            }
+            literal.append(rule.sql.literals.get(i + 1));
+        }
+        template.literals.add(literal.toString());
+        literalLength += literal.length();
+        int textSlotCount = template.slots.size() - innerSqlCount;
+
+        String exampleRef = example;
+        if (textSlotCount > 0 && !example.equals(params.get(0).getName())) {
+            exampleRef = "example";
+            m.addBodyLine(new FullyQualifiedJavaType(introspectedTable.getExampleType()).getShortName() + " "
+                    + exampleRef + " = " + example + ";");
+        }
+
+        StringBuilder capacity = new StringBuilder().append(literalLength);
+        if (innerSqlCount > 0)
+            capacity.append(" + ").append(innerSqlCount > 1 ? innerSqlCount + " * " : "").append("sql.length()");
+        if (textSlotCount > 0)
+            capacity.append(" + ").append(textSlotCount * textSlotCapacity);
+        m.addBodyLine("StringBuilder decorated = new StringBuilder(" + capacity + ");");
+
+        for (int i = 0; i < template.literals.size(); i++) {
+            if (template.literals.get(i).length() > 0)
+                m.addBodyLine("decorated.append(\"" + escapeJava(template.literals.get(i)) + "\");");
+            if (i == template.slots.size())
+                break;
+
+            String slot = template.slots.get(i);
+            if (slot.equals(SqlTemplate.innerSqlSlot)) {
+                m.addBodyLine("decorated.append(sql);");
+                continue;
+            }
+            String getter = exampleRef + "." + JavaBeansUtil.getGetterMethodName(slot,
+                    FullyQualifiedJavaType.getStringInstance()) + "()";
+            m.addBodyLine("if (" + getter + " != null) {");
+            m.addBodyLine("decorated.append(" + getter + ");");
+            m.addBodyLine("}");
+        }
+        m.addBodyLine("return decorated.toString();");
         return m;
     }
 
+    /**
+     * Returns the expression evaluating to the example passed to the provider method or null if there is none.
+     */
+    private static String getExampleExpression(List<Parameter> params, IntrospectedTable introspectedTable) {
+        if (params.isEmpty())
+            return null;
+        Parameter p = params.get(0);
+        if (p.getType().getFullyQualifiedName().equals(introspectedTable.getExampleType()))
+            return p.getName();
+        if (p.getType().getFullyQualifiedName().startsWith("java.util.Map"))
+            return "(" + new FullyQualifiedJavaType(introspectedTable.getExampleType()).getShortName() + ") "
+                    + p.getName() + ".get(\"example\")";
+        return null;
+    }
+
+    /**
+     * Returns the jdbc type of bind parameters of the given type which may be null, null if not needed or unknown.
+     */
+    private static String getJdbcType(FullyQualifiedJavaType type) {
+        if (type.isPrimitive())
+            return null;
+        String[][] jdbcTypes = {
+                {"java.lang.String", "VARCHAR"}, {"java.lang.Long", "BIGINT"}, {"java.lang.Integer", "INTEGER"},
+                {"java.lang.Short", "SMALLINT"}, {"java.lang.Byte", "TINYINT"}, {"java.lang.Boolean", "BOOLEAN"},
+                {"java.lang.Double", "DOUBLE"}, {"java.lang.Float", "REAL"}, {"java.math.BigDecimal", "DECIMAL"},
+                {"java.math.BigInteger", "NUMERIC"}, {"java.util.Date", "TIMESTAMP"}};
+        for (String[] jdbcType : jdbcTypes) {
+            if (jdbcType[0].equals(type.getFullyQualifiedName()))
+                return jdbcType[1];
+        }
+        return null;
+    }
+
+    private static String escapeJava(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r")
+                .replace("\t", "\\t");
+    }
+
 
     private static class Config extends BasePluginConfig {
 
+        private List<DecorationRule> rules = new ArrayList<DecorationRule>();
+
+        /**
+         * rules by name of the method to decorate
+         */
+        private Map<String, List<DecorationRule>> rulesByMethod = new HashMap<String, List<DecorationRule>>();
+
+        private Config(Properties props) {
+            super(props);
+
+            Properties singleRule = new Properties();
+            Map<String, Properties> namedRules = new LinkedHashMap<String, Properties>();
+            for (String key : getRuleKeys(props, Collections.<String>emptyList())) {
+                int dot = key.indexOf('.');
+                if (dot < 0) {
+                    singleRule.setProperty(key, props.getProperty(key));
+                    continue;
+                }
+                String name = key.substring(0, dot);
+                if (!namedRules.containsKey(name))
+                    namedRules.put(name, new Properties());
+                namedRules.get(name).setProperty(key.substring(dot + 1), props.getProperty(key));
+            }
+
+            if (!singleRule.isEmpty() || namedRules.isEmpty())
+                addRule(new DecorationRule(null, singleRule));
+            for (Map.Entry<String, Properties> namedRule : namedRules.entrySet()) {
+                addRule(new DecorationRule(namedRule.getKey(), namedRule.getValue()));
+            }
+        }
+
+        private void addRule(DecorationRule rule) {
+            rules.add(rule);
+            List<DecorationRule> methodRules = rulesByMethod.get(rule.methodToDecorateName);
+            if (methodRules == null) {
+                methodRules = new ArrayList<DecorationRule>();
+                rulesByMethod.put(rule.methodToDecorateName, methodRules);
+            }
+            methodRules.add(rule);
+        }
+
+        /**
+         * Returns the rules decorating the given method of the given table. The class name regular expressions are
+         * matched against the mapper type in every callback, including those of the sql provider.
+         */
+        List<DecorationRule> getRules(IntrospectedTable introspectedTable, Method method) {
+
+            String mapperType = introspectedTable.getMyBatis3JavaMapperType();
+            List<DecorationRule> methodRules = rulesByMethod.get(method.getName());
+            if (methodRules == null || shouldExclude(mapperType))
+                return Collections.emptyList();
+
+            List<DecorationRule> applying = new ArrayList<DecorationRule>(methodRules.size());
+            for (DecorationRule rule : methodRules) {
+                if (rule.appliesTo(mapperType))
+                    applying.add(rule);
+            }
+            return applying;
+        }
+    }
+
+
+    private static final class DecorationRule extends BasePluginConfig {
+
         private static final String methodToGenerateKey = "methodToGenerate";
         private static final String methodToDecorateKey = "methodToDecorate";
         private static final String sqlKey = "sql";
+        private static final String classNamesRegexpKey = "classNamesRegexp";
 
         private static final List<String> reservedPropertyKeys = Arrays.asList(methodToGenerateKey, methodToDecorateKey,
-                sqlKey);
+                sqlKey, classNamesRegexpKey);
 
-        private String sql;
+        private SqlTemplate sql;
         private String methodToDecorateName;
         private String methodToGenerateName;
 
-        private Config(Properties props) {
+        private Pattern classNamesRegexp;
+
+        /**
+         * decisions of appliesTo() by class name
+         */
+        private Map<String, Boolean> applying = new HashMap<String, Boolean>();
+
+        /**
+         * properties to add to the example classes by name
+         */
+        private Map<String, FullyQualifiedJavaType> exampleProperties =
+                new LinkedHashMap<String, FullyQualifiedJavaType>();
+
+        private DecorationRule(String name, Properties props) {
             super(props);
 
-            methodToGenerateName = props.getProperty(methodToGenerateKey);
-            if (methodToGenerateName == null)
-                throw new IllegalStateException("Property '" + methodToGenerateKey + "' should be specified for plugin "
-                        + this.getClass().getName());
+            methodToGenerateName = getRequiredProperty(name, props, methodToGenerateKey);
+            methodToDecorateName = getRequiredProperty(name, props, methodToDecorateKey);
+            sql = SqlTemplate.parse(getRequiredProperty(name, props, sqlKey));
 
-            methodToDecorateName = props.getProperty(methodToDecorateKey);
-            if (methodToDecorateName == null)
-                throw new IllegalStateException("Property '" + methodToDecorateKey + "' should be specified for plugin "
-                        + this.getClass().getName());
+            String regexp = props.getProperty(classNamesRegexpKey);
+            if (regexp != null)
+                classNamesRegexp = Pattern.compile(regexp);
 
-            sql = props.getProperty(sqlKey);
-            if (sql == null)
-                throw new IllegalStateException("Property '" + sqlKey + "' should be specified for plugin "
-                        + this.getClass().getName());
+            for (String key : getRuleKeys(props, reservedPropertyKeys)) {
+                exampleProperties.put(key, new FullyQualifiedJavaType(props.getProperty(key)));
+            }
         }
 
-        boolean isReservedPropertyKey(String key) {
-            return reservedPropertyKeys.contains(key);
+        private static String getRequiredProperty(String name, Properties props, String key) {
+            String value = props.getProperty(key);
+            if (value == null)
+                throw new IllegalStateException("Property '" + (name == null ? key : name + "." + key)
+                        + "' should be specified for plugin " + MapperDecoratorPlugin.class.getName());
+            return value;
         }
 
-        boolean shouldApplyGeneration(FullyQualifiedJavaType type, Method method) {
-            return !shouldExclude(type) && methodToDecorateName.equals(method.getName());
+        boolean appliesTo(String className) {
+            Boolean applies = applying.get(className);
+            if (applies == null) {
+                applies = !shouldExclude(className)
+                        && (classNamesRegexp == null || classNamesRegexp.matcher(className).matches());
+                applying.put(className, applies);
+            }
+            return applies;
+        }
+    }
+
+
+    /**
+     * The sql of a decoration split into literals and the named slots between them, i.e. <tt>#{name}</tt> or
+     * <tt>${name}</tt>.
+     */
+    private static final class SqlTemplate {
+
+        private static final String innerSqlSlot = "methodToDecorate";
+
+        private static final Pattern slotPattern = Pattern.compile("([#$])\\{(\\w+)\\}");
+
+        /**
+         * one literal more than slots, possibly empty
+         */
+        private List<String> literals = new ArrayList<String>();
+
+        private List<String> slots = new ArrayList<String>();
+
+        /**
+         * the slot markers as written, i.e. <tt>#{name}</tt> or <tt>${name}</tt>
+         */
+        private List<String> markers = new ArrayList<String>();
+
+        private static SqlTemplate parse(String sql) {
+            SqlTemplate template = new SqlTemplate();
+            Matcher matcher = slotPattern.matcher(sql);
+            int start = 0;
+            while (matcher.find()) {
+                template.literals.add(sql.substring(start, matcher.start()));
+                template.slots.add(matcher.group(2));
+                template.markers.add(matcher.group());
+                start = matcher.end();
+            }
+            template.literals.add(sql.substring(start));
+            return template;
         }
     }
 }
@@ -45,7 +45,7 @@ import java.util.Properties;
  *      &lt;plugin type="com.google.code.mybatis.generator.plugins.ModelBuilderPlugin"&gt;
  *          &lt;property name="builderClassName" value="MyBuilder" /&gt;
  *          &lt;property name="excludeClassNamesRegexp" value="com.mycompany.*My.*Class" /&gt;
- *      &lt;plugin&gt;
+ *      &lt;/plugin&gt;
  *      ...
  *
  *  &lt;/context&gt;
@@ -0,0 +1,1073 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.internal.util.JavaBeansUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Adds a compact hand-rolled binary codec (<tt>writeTo</tt> / <tt>readFrom</tt>) and a deep <tt>copy()</tt> method
+ * to the generated model classes. Additionally the plugin generates the <tt>BinaryModel</tt> interface implemented by
+ * the models, the <tt>BinaryModelCodec</tt> helper class and the <tt>BinaryModelCache</tt> decorator, which keeps
+ * cached entries in their encoded form and hands out a fresh copy on every read. Thus the isolation of a read-write
+ * cache is preserved without paying for java serialization on every put and get.<br/><br/> Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.ModelCodecPlugin"&gt;
+ *          &lt;property name="supportPackage" value="com.mycompany.cache" /&gt;
+ *          &lt;property name="compressionThreshold" value="1024" /&gt;
+ *          &lt;property name="excludeClassNamesRegexp" value="com.mycompany.*My.*Class" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt> <br/> The decorator is used in place of <tt>readWrite=true</tt> by the <tt>decorator</tt> attribute of the
+ * {@link CachePlugin}, e.g. <tt>decorator=com.mycompany.cache.BinaryModelCache.class</tt>, which wraps the evicting
+ * cache (LRU by default) and turns <tt>readWrite</tt> off unless configured explicitly. Do not configure it as the
+ * <tt>eviction</tt> of a @CacheNamespace: it would replace the LruCache and the unbounded PerpetualCache would keep
+ * every entry. Values other than models, lists of models and immutable values (strings, numbers, ...) fall back to
+ * java serialization.<br/> Properties:<br/> <ul>
+ * <li><strong>supportPackage</strong> (optional) : the package of the generated support classes. Default: target
+ * package of the java model generator</li> <li><strong>compressionThreshold</strong> (optional) : strings and byte
+ * arrays longer than the threshold are deflated by the codec, so wide text / BLOB columns take a fraction of the
+ * memory in a BinaryModelCache. A model read from the cache keeps such a value deflated in an additional
+ * <tt>xxxDeflated</tt> field until its getter is called first, copies share the deflated form. The field is volatile,
+ * so cached models may be read and copied by several threads while a getter inflates. Plugins iterating the
+ * fields of the models (e.g. the ModelBuilderPlugin) should be configured before this plugin. The histogram of the
+ * achieved compression ratios is available from <tt>BinaryModelCodec.getCompressionRatioHistogram()</tt>. Default: no compression</li>
+ * <li><strong>excludeClassNamesRegexp</strong> (optional): classes to exclude from generation as regular expression.
+ * Default: none</li> </ul>
+ * Immutable and constructor based models as well as fields declared by a configured <tt>rootClass</tt> are not
+ * covered by the codec.
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class ModelCodecPlugin extends PluginAdapter {
+
+    static final String binaryModelClassName = "BinaryModel";
+    static final String binaryModelCodecClassName = "BinaryModelCodec";
+    static final String binaryModelCacheClassName = "BinaryModelCache";
+
+    private static final FullyQualifiedJavaType dataInputType = new FullyQualifiedJavaType("java.io.DataInput");
+    private static final FullyQualifiedJavaType dataOutputType = new FullyQualifiedJavaType("java.io.DataOutput");
+    private static final FullyQualifiedJavaType ioExceptionType = new FullyQualifiedJavaType("java.io.IOException");
+
+    /**
+     * java type of a field -> name suffix of the BinaryModelCodec read / write methods
+     */
+    private static final Map<String, String> codecMethodSuffixes = new HashMap<String, String>();
+
+    /**
+     * primitive java type of a field -> name suffix of the DataInput / DataOutput read / write methods
+     */
+    private static final Map<String, String> primitiveMethodSuffixes = new HashMap<String, String>();
+
+    static {
+        codecMethodSuffixes.put("java.lang.String", "String");
+        codecMethodSuffixes.put("java.lang.Long", "Long");
+        codecMethodSuffixes.put("java.lang.Integer", "Integer");
+        codecMethodSuffixes.put("java.lang.Short", "Short");
+        codecMethodSuffixes.put("java.lang.Byte", "Byte");
+        codecMethodSuffixes.put("java.lang.Boolean", "Boolean");
+        codecMethodSuffixes.put("java.lang.Double", "Double");
+        codecMethodSuffixes.put("java.lang.Float", "Float");
+        codecMethodSuffixes.put("java.math.BigDecimal", "BigDecimal");
+        codecMethodSuffixes.put("java.util.Date", "Date");
+        codecMethodSuffixes.put("byte[]", "Bytes");
+
+        primitiveMethodSuffixes.put("long", "Long");
+        primitiveMethodSuffixes.put("int", "Int");
+        primitiveMethodSuffixes.put("short", "Short");
+        primitiveMethodSuffixes.put("byte", "Byte");
+        primitiveMethodSuffixes.put("boolean", "Boolean");
+        primitiveMethodSuffixes.put("double", "Double");
+        primitiveMethodSuffixes.put("float", "Float");
+        primitiveMethodSuffixes.put("char", "Char");
+    }
+
+    private Config config;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        this.initConfig();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelBaseRecordClassGenerated(TopLevelClass topLevelClass,
+                                                 IntrospectedTable introspectedTable) {
+        addCodec(topLevelClass, introspectedTable);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelPrimaryKeyClassGenerated(TopLevelClass topLevelClass,
+                                                 IntrospectedTable introspectedTable) {
+        addCodec(topLevelClass, introspectedTable);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelRecordWithBLOBsClassGenerated(TopLevelClass topLevelClass,
+                                                      IntrospectedTable introspectedTable) {
+        addCodec(topLevelClass, introspectedTable);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles() {
+
+        String targetProject = context.getJavaModelGeneratorConfiguration().getTargetProject();
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateBinaryModelInterface(), targetProject));
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateBinaryModelCodecClass(), targetProject));
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateBinaryModelCacheClass(), targetProject));
+        return files;
+    }
+
+    private void addCodec(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (!isCodecSupported(topLevelClass.getType(), introspectedTable))
+            return;
+
+        FullyQualifiedJavaType type = topLevelClass.getType();
+        boolean codecSuperClass = PluginUtils.getGeneratedSuperType(type, introspectedTable) != null;
+
+        if (!codecSuperClass) {
+            topLevelClass.addImportedType(config.binaryModelType);
+            topLevelClass.addSuperInterface(config.binaryModelType);
+        }
+        topLevelClass.addImportedType(config.binaryModelCodecType);
+        topLevelClass.addImportedType(dataInputType);
+        topLevelClass.addImportedType(dataOutputType);
+        topLevelClass.addImportedType(ioExceptionType);
+
+        Method writeTo = new Method("writeTo");
+        writeTo.setVisibility(JavaVisibility.PUBLIC);
+        writeTo.addParameter(new Parameter(dataOutputType, "out"));
+        writeTo.addException(ioExceptionType);
+
+        Method readFrom = new Method("readFrom");
+        readFrom.setVisibility(JavaVisibility.PUBLIC);
+        readFrom.addParameter(new Parameter(dataInputType, "in"));
+        readFrom.addException(ioExceptionType);
+
+        Method copyFrom = new Method("copyFrom");
+        copyFrom.setVisibility(JavaVisibility.PROTECTED);
+        copyFrom.addParameter(new Parameter(type, "source"));
+
+        if (codecSuperClass) {
+            writeTo.addBodyLine("super.writeTo(out);");
+            readFrom.addBodyLine("super.readFrom(in);");
+            copyFrom.addBodyLine("super.copyFrom(source);");
+        }
+
+        for (Field field : new ArrayList<Field>(topLevelClass.getFields())) {
+            if (field.isStatic())
+                continue;
+
+            String name = field.getName();
+            String fqn = field.getType().getFullyQualifiedName();
+            String primitiveSuffix = primitiveMethodSuffixes.get(fqn);
+            String codecSuffix = codecMethodSuffixes.get(fqn);
+            String codec = config.binaryModelCodecType.getShortName();
+
+            boolean compressible = config.compressionThreshold > 0
+                    && ("String".equals(codecSuffix) || "Bytes".equals(codecSuffix));
+            if (compressible) {
+                String deflated = addDeflatedField(topLevelClass, field, codecSuffix);
+                // the deflated form is read first, a concurrent getter inflates the value before discarding it
+                writeTo.addBodyLine("byte[] " + deflated + " = this." + deflated + ";");
+                writeTo.addBodyLine(codec + ".writeCompressible(out, this." + name + ", " + deflated + ");");
+                readFrom.addBodyLine("this." + deflated + " = " + codec + ".readDeflated(in);");
+                readFrom.addBodyLine("this." + name + " = this." + deflated + " == null ? " + codec + ".read"
+                        + codecSuffix + "(in) : null;");
+                copyFrom.addBodyLine("this." + deflated + " = source." + deflated + ";");
+            }
+
+            if (primitiveSuffix != null) {
+                writeTo.addBodyLine("out.write" + primitiveSuffix + "(this." + name + ");");
+                readFrom.addBodyLine("this." + name + " = in.read" + primitiveSuffix + "();");
+                copyFrom.addBodyLine("this." + name + " = source." + name + ";");
+            } else if (codecSuffix != null) {
+                if (!compressible) {
+                    writeTo.addBodyLine(codec + ".write" + codecSuffix + "(out, this." + name + ");");
+                    readFrom.addBodyLine("this." + name + " = " + codec + ".read" + codecSuffix + "(in);");
+                }
+                if ("Date".equals(codecSuffix) || "Bytes".equals(codecSuffix))
+                    copyFrom.addBodyLine("this." + name + " = " + codec + ".copy" + codecSuffix + "(source." + name + ");");
+                else
+                    copyFrom.addBodyLine("this." + name + " = source." + name + ";");
+            } else {
+                String shortName = field.getType().getShortName();
+                writeTo.addBodyLine(codec + ".writeObject(out, this." + name + ");");
+                readFrom.addBodyLine("this." + name + " = (" + shortName + ") " + codec + ".readObject(in);");
+                copyFrom.addBodyLine("this." + name + " = (" + shortName + ") " + codec + ".copyObject(source." + name + ");");
+            }
+        }
+
+        Method copy = new Method("copy");
+        copy.setVisibility(JavaVisibility.PUBLIC);
+        copy.setReturnType(type);
+        copy.addBodyLine(type.getShortName() + " copy = new " + type.getShortName() + "();");
+        copy.addBodyLine("copy.copyFrom(this);");
+        copy.addBodyLine("return copy;");
+
+        context.getCommentGenerator().addGeneralMethodComment(writeTo, introspectedTable);
+        context.getCommentGenerator().addGeneralMethodComment(readFrom, introspectedTable);
+        context.getCommentGenerator().addGeneralMethodComment(copy, introspectedTable);
+        context.getCommentGenerator().addGeneralMethodComment(copyFrom, introspectedTable);
+
+        topLevelClass.addMethod(writeTo);
+        topLevelClass.addMethod(readFrom);
+        topLevelClass.addMethod(copy);
+        topLevelClass.addMethod(copyFrom);
+    }
+
+    /**
+     * Adds the field holding the deflated value of the given field, which is inflated by the getter on first access
+     * and discarded by the setter. Returns the name of the added field. The field is volatile and the getter discards
+     * it after writing the inflated value, so threads sharing a cached model (copy(), writeTo(), the getters) read
+     * the deflated field first and see either the deflated form or the inflated value.
+     */
+    private String addDeflatedField(TopLevelClass topLevelClass, Field field, String codecSuffix) {
+
+        String name = field.getName();
+        String deflated = name + "Deflated";
+        Field f = new Field(deflated, new FullyQualifiedJavaType("byte[]"));
+        f.addJavaDocLine("/**");
+        f.addJavaDocLine(" * deflated value of " + name + " read by the codec, inflated on first access");
+        f.addJavaDocLine(" */");
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setVolatile(true);
+        topLevelClass.addField(f);
+
+        String getter = JavaBeansUtil.getGetterMethodName(name, field.getType());
+        String setter = JavaBeansUtil.getSetterMethodName(name);
+        for (Method m : topLevelClass.getMethods()) {
+            if (getter.equals(m.getName()) && m.getParameters().isEmpty()) {
+                m.addBodyLine(0, "byte[] " + deflated + " = this." + deflated + ";");
+                m.addBodyLine(1, "if (" + deflated + " != null) {");
+                m.addBodyLine(2, "this." + name + " = " + config.binaryModelCodecType.getShortName() + ".inflate"
+                        + codecSuffix + "(" + deflated + ");");
+                m.addBodyLine(3, "this." + deflated + " = null;");
+                m.addBodyLine(4, "}");
+            } else if (setter.equals(m.getName()) && m.getParameters().size() == 1) {
+                m.addBodyLine(0, "this." + deflated + " = null;");
+            }
+        }
+        return deflated;
+    }
+
+    /**
+     * Checks whether the given model class gets a codec. A model class extending another generated model class (e.g.
+     * XXXWithBLOBs extending XXX) is only supported if its super class is supported as well.
+     */
+    private boolean isCodecSupported(FullyQualifiedJavaType type, IntrospectedTable introspectedTable) {
+
+        if (introspectedTable.isImmutable() || introspectedTable.isConstructorBased())
+            return false;
+
+        if (!PluginUtils.isGeneratedModelType(type.getFullyQualifiedName(), introspectedTable) || config.shouldExclude(type))
+            return false;
+
+        FullyQualifiedJavaType superType = PluginUtils.getGeneratedSuperType(type, introspectedTable);
+        return superType == null || isCodecSupported(superType, introspectedTable);
+    }
+
+    private Interface generateBinaryModelInterface() {
+
+        Interface interfaze = new Interface(config.binaryModelType);
+        interfaze.setVisibility(JavaVisibility.PUBLIC);
+        interfaze.addImportedType(dataInputType);
+        interfaze.addImportedType(dataOutputType);
+        interfaze.addImportedType(ioExceptionType);
+        interfaze.addJavaDocLine("/**");
+        interfaze.addJavaDocLine(" * Model object providing a compact binary representation and a deep copy of itself.");
+        interfaze.addJavaDocLine(" */");
+
+        Method writeTo = new Method("writeTo");
+        writeTo.addParameter(new Parameter(dataOutputType, "out"));
+        writeTo.addException(ioExceptionType);
+        interfaze.addMethod(writeTo);
+
+        Method readFrom = new Method("readFrom");
+        readFrom.addParameter(new Parameter(dataInputType, "in"));
+        readFrom.addException(ioExceptionType);
+        interfaze.addMethod(readFrom);
+
+        Method copy = new Method("copy");
+        copy.setReturnType(config.binaryModelType);
+        interfaze.addMethod(copy);
+
+        return interfaze;
+    }
+
+    private TopLevelClass generateBinaryModelCodecClass() {
+
+        TopLevelClass clazz = new TopLevelClass(config.binaryModelCodecType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setFinal(true);
+        clazz.addImportedType(dataInputType);
+        clazz.addImportedType(dataOutputType);
+        clazz.addImportedType(ioExceptionType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.ByteArrayInputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.ByteArrayOutputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.ObjectInputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.ObjectOutputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigDecimal"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigInteger"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Date"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Null-safe binary read / write / copy helpers used by the generated model codecs.");
+        clazz.addJavaDocLine(" */");
+
+        PluginUtils.addConstant(clazz, "byte", "NULL", "0");
+        PluginUtils.addConstant(clazz, "byte", "ASCII", "1");
+        PluginUtils.addConstant(clazz, "byte", "UTF8", "2");
+        if (config.compressionThreshold > 0)
+            addCompressionSupport(clazz);
+
+        Method constructor = new Method(clazz.getType().getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PRIVATE);
+        constructor.addBodyLine("super();");
+        clazz.addMethod(constructor);
+
+        Method m = newWriteMethod("String", "java.lang.String");
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("out.writeByte(NULL);");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("int length = value.length();");
+        m.addBodyLine("for (int i = 0; i < length; i++) {");
+        m.addBodyLine("if (value.charAt(i) > 0x7f) {");
+        m.addBodyLine("byte[] bytes = value.getBytes(\"UTF-8\");");
+        m.addBodyLine("out.writeByte(UTF8);");
+        m.addBodyLine("out.writeInt(bytes.length);");
+        m.addBodyLine("out.write(bytes);");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("out.writeByte(ASCII);");
+        m.addBodyLine("out.writeInt(length);");
+        m.addBodyLine("out.writeBytes(value);");
+        clazz.addMethod(m);
+
+        m = newReadMethod("String", "java.lang.String");
+        m.addBodyLine("byte encoding = in.readByte();");
+        m.addBodyLine("if (encoding == NULL) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("byte[] bytes = new byte[in.readInt()];");
+        m.addBodyLine("in.readFully(bytes);");
+        m.addBodyLine("if (encoding == UTF8) {");
+        m.addBodyLine("return new String(bytes, \"UTF-8\");");
+        m.addBodyLine("}");
+        m.addBodyLine("char[] chars = new char[bytes.length];");
+        m.addBodyLine("for (int i = 0; i < bytes.length; i++) {");
+        m.addBodyLine("chars[i] = (char) bytes[i];");
+        m.addBodyLine("}");
+        m.addBodyLine("return new String(chars);");
+        clazz.addMethod(m);
+
+        String[][] wrappers = {{"Long", "Long"}, {"Integer", "Int"}, {"Short", "Short"}, {"Byte", "Byte"},
+                {"Boolean", "Boolean"}, {"Double", "Double"}, {"Float", "Float"}};
+        for (String[] wrapper : wrappers) {
+            m = newWriteMethod(wrapper[0], "java.lang." + wrapper[0]);
+            m.addBodyLine("out.writeBoolean(value != null);");
+            m.addBodyLine("if (value != null) {");
+            m.addBodyLine("out.write" + wrapper[1] + "(value);");
+            m.addBodyLine("}");
+            clazz.addMethod(m);
+
+            m = newReadMethod(wrapper[0], "java.lang." + wrapper[0]);
+            m.addBodyLine("return in.readBoolean() ? " + wrapper[0] + ".valueOf(in.read" + wrapper[1] + "()) : null;");
+            clazz.addMethod(m);
+        }
+
+        m = newWriteMethod("BigDecimal", "java.math.BigDecimal");
+        m.addBodyLine("out.writeBoolean(value != null);");
+        m.addBodyLine("if (value != null) {");
+        m.addBodyLine("out.writeInt(value.scale());");
+        m.addBodyLine("writeBytes(out, value.unscaledValue().toByteArray());");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = newReadMethod("BigDecimal", "java.math.BigDecimal");
+        m.addBodyLine("if (!in.readBoolean()) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("int scale = in.readInt();");
+        m.addBodyLine("return new BigDecimal(new BigInteger(readBytes(in)), scale);");
+        clazz.addMethod(m);
+
+        m = newWriteMethod("Date", "java.util.Date");
+        m.addBodyLine("out.writeBoolean(value != null);");
+        m.addBodyLine("if (value != null) {");
+        m.addBodyLine("out.writeLong(value.getTime());");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = newReadMethod("Date", "java.util.Date");
+        m.addBodyLine("return in.readBoolean() ? new Date(in.readLong()) : null;");
+        clazz.addMethod(m);
+
+        m = newWriteMethod("Bytes", "byte[]");
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("out.writeInt(-1);");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("out.writeInt(value.length);");
+        m.addBodyLine("out.write(value);");
+        clazz.addMethod(m);
+
+        m = newReadMethod("Bytes", "byte[]");
+        m.addBodyLine("int length = in.readInt();");
+        m.addBodyLine("if (length < 0) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("byte[] value = new byte[length];");
+        m.addBodyLine("in.readFully(value);");
+        m.addBodyLine("return value;");
+        clazz.addMethod(m);
+
+        m = newWriteMethod("Object", "java.lang.Object");
+        m.addBodyLine("writeBytes(out, value == null ? null : serialize(value));");
+        clazz.addMethod(m);
+
+        m = newReadMethod("Object", "java.lang.Object");
+        m.addBodyLine("byte[] bytes = readBytes(in);");
+        m.addBodyLine("return bytes == null ? null : deserialize(bytes);");
+        clazz.addMethod(m);
+
+        m = newCopyMethod("Date", "java.util.Date");
+        m.addBodyLine("return value == null ? null : new Date(value.getTime());");
+        clazz.addMethod(m);
+
+        m = newCopyMethod("Bytes", "byte[]");
+        m.addBodyLine("return value == null ? null : value.clone();");
+        clazz.addMethod(m);
+
+        m = newCopyMethod("Object", "java.lang.Object");
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("try {");
+        m.addBodyLine("return deserialize(serialize(value));");
+        m.addBodyLine("} catch (IOException e) {");
+        m.addBodyLine("throw new IllegalStateException(\"Error copying value of type \" + value.getClass().getName(), e);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("serialize");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(new FullyQualifiedJavaType("byte[]"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        m.addException(ioExceptionType);
+        m.addBodyLine("ByteArrayOutputStream bytes = new ByteArrayOutputStream();");
+        m.addBodyLine("ObjectOutputStream out = new ObjectOutputStream(bytes);");
+        m.addBodyLine("out.writeObject(value);");
+        m.addBodyLine("out.close();");
+        m.addBodyLine("return bytes.toByteArray();");
+        clazz.addMethod(m);
+
+        m = new Method("deserialize");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("byte[]"), "bytes"));
+        m.addException(ioExceptionType);
+        m.addBodyLine("ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));");
+        m.addBodyLine("try {");
+        m.addBodyLine("return in.readObject();");
+        m.addBodyLine("} catch (ClassNotFoundException e) {");
+        m.addBodyLine("IOException ioe = new IOException(\"Error deserializing value: \" + e.getMessage());");
+        m.addBodyLine("ioe.initCause(e);");
+        m.addBodyLine("throw ioe;");
+        m.addBodyLine("} finally {");
+        m.addBodyLine("in.close();");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    /**
+     * Adds the Deflater based compression of large strings and byte arrays to the codec class. The compressors are
+     * pooled up to the number of processors, Deflater and Inflater of compressors not fitting into the pool are ended.
+     */
+    private void addCompressionSupport(TopLevelClass clazz) {
+
+        FullyQualifiedJavaType compressorType = new FullyQualifiedJavaType("Compressor");
+        FullyQualifiedJavaType bytesType = new FullyQualifiedJavaType("byte[]");
+
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.UnsupportedEncodingException"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ArrayBlockingQueue"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.BlockingQueue"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.atomic.AtomicLongArray"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.zip.DataFormatException"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.zip.Deflater"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.zip.Inflater"));
+
+        PluginUtils.addConstant(clazz, "int", "COMPRESSION_THRESHOLD", String.valueOf(config.compressionThreshold));
+        PluginUtils.addConstant(clazz, "int", "MAX_RETAINED_BUFFER_SIZE", "64 * 1024");
+        PluginUtils.addConstant(clazz, "int", "MAX_POOLED_COMPRESSORS", "Runtime.getRuntime().availableProcessors()");
+
+        Field compressors = new Field("COMPRESSORS", new FullyQualifiedJavaType("BlockingQueue<Compressor>"));
+        compressors.setVisibility(JavaVisibility.PRIVATE);
+        compressors.setStatic(true);
+        compressors.setFinal(true);
+        compressors.setInitializationString("new ArrayBlockingQueue<Compressor>(MAX_POOLED_COMPRESSORS)");
+        clazz.addField(compressors);
+
+        Field ratios = new Field("COMPRESSION_RATIOS", new FullyQualifiedJavaType("AtomicLongArray"));
+        ratios.setVisibility(JavaVisibility.PRIVATE);
+        ratios.setStatic(true);
+        ratios.setFinal(true);
+        ratios.setInitializationString("new AtomicLongArray(11)");
+        clazz.addField(ratios);
+
+        Method m = new Method("getCompressionRatioHistogram");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the number of compressed values per compression ratio. Bucket i counts the values deflated");
+        m.addJavaDocLine(" * to i * 10% up to (i + 1) * 10% of their size, the last bucket counts values stored uncompressed.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(new FullyQualifiedJavaType("long[]"));
+        m.addBodyLine("long[] histogram = new long[COMPRESSION_RATIOS.length()];");
+        m.addBodyLine("for (int i = 0; i < histogram.length; i++) {");
+        m.addBodyLine("histogram[i] = COMPRESSION_RATIOS.get(i);");
+        m.addBodyLine("}");
+        m.addBodyLine("return histogram;");
+        clazz.addMethod(m);
+
+        for (String[] suffix : new String[][]{{"String", "java.lang.String"}, {"Bytes", "byte[]"}}) {
+            m = newWriteMethod("Compressible", suffix[1]);
+            m.addJavaDocLine("/**");
+            m.addJavaDocLine(" * Writes the deflated form if given, otherwise the value deflated if longer than the threshold.");
+            m.addJavaDocLine(" */");
+            m.addParameter(new Parameter(bytesType, "deflated"));
+            boolean string = "String".equals(suffix[0]);
+            m.addBodyLine("if (deflated == null && value != null && value.length" + (string ? "()" : "")
+                    + " > COMPRESSION_THRESHOLD) {");
+            m.addBodyLine("deflated = deflate(" + (string ? "value.getBytes(\"UTF-8\")" : "value") + ");");
+            m.addBodyLine("}");
+            m.addBodyLine("out.writeBoolean(deflated != null);");
+            m.addBodyLine("if (deflated != null) {");
+            m.addBodyLine("out.writeInt(deflated.length);");
+            m.addBodyLine("out.write(deflated);");
+            m.addBodyLine("} else {");
+            m.addBodyLine("write" + suffix[0] + "(out, value);");
+            m.addBodyLine("}");
+            clazz.addMethod(m);
+        }
+
+        m = newReadMethod("Deflated", "byte[]");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Reads the deflated form written by writeCompressible or null if the plain value follows.");
+        m.addJavaDocLine(" */");
+        m.addBodyLine("if (!in.readBoolean()) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("byte[] deflated = new byte[in.readInt()];");
+        m.addBodyLine("in.readFully(deflated);");
+        m.addBodyLine("return deflated;");
+        clazz.addMethod(m);
+
+        m = new Method("inflateString");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getStringInstance());
+        m.addParameter(new Parameter(bytesType, "deflated"));
+        m.addBodyLine("try {");
+        m.addBodyLine("return new String(inflateBytes(deflated), \"UTF-8\");");
+        m.addBodyLine("} catch (UnsupportedEncodingException e) {");
+        m.addBodyLine("throw new IllegalStateException(\"Error inflating value: \" + e.getMessage(), e);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("inflateBytes");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(bytesType);
+        m.addParameter(new Parameter(bytesType, "deflated"));
+        m.addBodyLine("Compressor compressor = borrowCompressor();");
+        m.addBodyLine("try {");
+        m.addBodyLine("return compressor.inflate(deflated);");
+        m.addBodyLine("} catch (DataFormatException e) {");
+        m.addBodyLine("throw new IllegalStateException(\"Error inflating value: \" + e.getMessage(), e);");
+        m.addBodyLine("} finally {");
+        m.addBodyLine("returnCompressor(compressor);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("deflate");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(bytesType);
+        m.addParameter(new Parameter(bytesType, "value"));
+        m.addBodyLine("Compressor compressor = borrowCompressor();");
+        m.addBodyLine("try {");
+        m.addBodyLine("return compressor.deflate(value);");
+        m.addBodyLine("} finally {");
+        m.addBodyLine("returnCompressor(compressor);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("borrowCompressor");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(compressorType);
+        m.addBodyLine("Compressor compressor = COMPRESSORS.poll();");
+        m.addBodyLine("return compressor != null ? compressor : new Compressor();");
+        clazz.addMethod(m);
+
+        m = new Method("returnCompressor");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.addParameter(new Parameter(compressorType, "compressor"));
+        m.addBodyLine("compressor.release();");
+        m.addBodyLine("if (!COMPRESSORS.offer(compressor)) {");
+        m.addBodyLine("compressor.end();");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        InnerClass compressor = new InnerClass(compressorType);
+        compressor.setVisibility(JavaVisibility.PRIVATE);
+        compressor.setStatic(true);
+        compressor.setFinal(true);
+
+        Field f = new Field("deflater", new FullyQualifiedJavaType("Deflater"));
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        f.setInitializationString("new Deflater(Deflater.BEST_SPEED)");
+        compressor.addField(f);
+
+        f = new Field("inflater", new FullyQualifiedJavaType("Inflater"));
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        f.setInitializationString("new Inflater()");
+        compressor.addField(f);
+
+        f = new Field("buffer", bytesType);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setInitializationString("new byte[256]");
+        compressor.addField(f);
+
+        m = new Method("deflate");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the original length followed by the deflated value or null if deflating does not pay.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(bytesType);
+        m.addParameter(new Parameter(bytesType, "value"));
+        m.addBodyLine("if (buffer.length < value.length) {");
+        m.addBodyLine("buffer = new byte[value.length];");
+        m.addBodyLine("}");
+        m.addBodyLine("deflater.reset();");
+        m.addBodyLine("deflater.setInput(value);");
+        m.addBodyLine("deflater.finish();");
+        m.addBodyLine("int length = 0;");
+        m.addBodyLine("while (!deflater.finished() && length < value.length) {");
+        m.addBodyLine("length += deflater.deflate(buffer, length, value.length - length);");
+        m.addBodyLine("}");
+        m.addBodyLine("int bucket = deflater.finished() ? (int) (length * 10L / value.length) : 10;");
+        m.addBodyLine("COMPRESSION_RATIOS.incrementAndGet(bucket);");
+        m.addBodyLine("// the deflated form is kept only if it is smaller than the value including its length prefix");
+        m.addBodyLine("if (!deflater.finished() || 4 + length >= value.length) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("byte[] deflated = new byte[4 + length];");
+        m.addBodyLine("deflated[0] = (byte) (value.length >>> 24);");
+        m.addBodyLine("deflated[1] = (byte) (value.length >>> 16);");
+        m.addBodyLine("deflated[2] = (byte) (value.length >>> 8);");
+        m.addBodyLine("deflated[3] = (byte) value.length;");
+        m.addBodyLine("System.arraycopy(buffer, 0, deflated, 4, length);");
+        m.addBodyLine("return deflated;");
+        compressor.addMethod(m);
+
+        m = new Method("inflate");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(bytesType);
+        m.addParameter(new Parameter(bytesType, "deflated"));
+        m.addException(new FullyQualifiedJavaType("DataFormatException"));
+        m.addBodyLine("byte[] value = new byte[(deflated[0] & 0xff) << 24 | (deflated[1] & 0xff) << 16");
+        m.addBodyLine("| (deflated[2] & 0xff) << 8 | deflated[3] & 0xff];");
+        m.addBodyLine("inflater.reset();");
+        m.addBodyLine("inflater.setInput(deflated, 4, deflated.length - 4);");
+        m.addBodyLine("int length = 0;");
+        m.addBodyLine("while (length < value.length) {");
+        m.addBodyLine("int inflated = inflater.inflate(value, length, value.length - length);");
+        m.addBodyLine("if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {");
+        m.addBodyLine("throw new DataFormatException(\"Truncated deflated value\");");
+        m.addBodyLine("}");
+        m.addBodyLine("length += inflated;");
+        m.addBodyLine("}");
+        m.addBodyLine("return value;");
+        compressor.addMethod(m);
+
+        m = new Method("release");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {");
+        m.addBodyLine("buffer = new byte[256];");
+        m.addBodyLine("}");
+        compressor.addMethod(m);
+
+        m = new Method("end");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("deflater.end();");
+        m.addBodyLine("inflater.end();");
+        compressor.addMethod(m);
+
+        clazz.addInnerClass(compressor);
+    }
+
+    private TopLevelClass generateBinaryModelCacheClass() {
+
+        FullyQualifiedJavaType cacheType = new FullyQualifiedJavaType("org.apache.ibatis.cache.Cache");
+        FullyQualifiedJavaType entryType = new FullyQualifiedJavaType("Entry");
+        FullyQualifiedJavaType bufferType = new FullyQualifiedJavaType("Buffer");
+        String binaryModel = config.binaryModelType.getShortName();
+
+        TopLevelClass clazz = new TopLevelClass(config.binaryModelCacheType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(cacheType);
+        clazz.addImportedType(cacheType);
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.cache.CacheException"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.ByteArrayInputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.ByteArrayOutputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.DataInputStream"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.DataOutputStream"));
+        clazz.addImportedType(ioExceptionType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.io.Serializable"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigDecimal"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.math.BigInteger"));
+        clazz.addImportedType(FullyQualifiedJavaType.getNewArrayListInstance());
+        clazz.addImportedType(FullyQualifiedJavaType.getNewListInstance());
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.locks.ReadWriteLock"));
+        clazz.addImportedType(config.binaryModelType);
+        clazz.addImportedType(config.binaryModelCodecType);
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Cache decorator storing " + binaryModel + " instances (and lists of them) in their binary form.");
+        clazz.addJavaDocLine(" * Every read decodes a fresh copy, so callers never share mutable instances. Other non-immutable");
+        clazz.addJavaDocLine(" * values fall back to java serialization. Wrap an evicting cache with it instead of using");
+        clazz.addJavaDocLine(" * readWrite=true.");
+        clazz.addJavaDocLine(" */");
+
+        PluginUtils.addConstant(clazz, "byte", "MODEL", "0");
+        PluginUtils.addConstant(clazz, "byte", "LIST", "1");
+        PluginUtils.addConstant(clazz, "byte", "SERIALIZED", "2");
+        PluginUtils.addConstant(clazz, "int", "MAX_RETAINED_BUFFER_SIZE", "64 * 1024");
+
+        Field buffers = new Field("BUFFERS", new FullyQualifiedJavaType("java.lang.ThreadLocal<Buffer>"));
+        buffers.setVisibility(JavaVisibility.PRIVATE);
+        buffers.setStatic(true);
+        buffers.setFinal(true);
+        buffers.setInitializationString("new ThreadLocal<Buffer>()");
+        clazz.addField(buffers);
+
+        PluginUtils.addDelegateField(clazz, cacheType);
+
+        Method putObject = new Method("putObject");
+        putObject.setVisibility(JavaVisibility.PUBLIC);
+        putObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        putObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        putObject.addBodyLine("delegate.putObject(key, encode(value));");
+
+        Method getObject = new Method("getObject");
+        getObject.setVisibility(JavaVisibility.PUBLIC);
+        getObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        getObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        getObject.addBodyLine("return decode(delegate.getObject(key));");
+
+        Method removeObject = new Method("removeObject");
+        removeObject.setVisibility(JavaVisibility.PUBLIC);
+        removeObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        removeObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        removeObject.addBodyLine("return decode(delegate.removeObject(key));");
+
+        PluginUtils.addDelegateMethods(clazz, putObject, getObject, removeObject);
+
+        Method m = new Method("encode");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        m.addBodyLine("if (isImmutable(value)) {");
+        m.addBodyLine("return value;");
+        m.addBodyLine("}");
+        m.addBodyLine("Buffer buffer = BUFFERS.get();");
+        m.addBodyLine("if (buffer == null) {");
+        m.addBodyLine("buffer = new Buffer();");
+        m.addBodyLine("BUFFERS.set(buffer);");
+        m.addBodyLine("}");
+        m.addBodyLine("try {");
+        m.addBodyLine("if (value instanceof " + binaryModel + ") {");
+        m.addBodyLine("((" + binaryModel + ") value).writeTo(buffer.out);");
+        m.addBodyLine("return new Entry(MODEL, value.getClass(), buffer.toByteArray());");
+        m.addBodyLine("}");
+        m.addBodyLine("Class<?> elementType = value instanceof List ? getElementType((List<?>) value) : null;");
+        m.addBodyLine("if (elementType != null) {");
+        m.addBodyLine("List<?> list = (List<?>) value;");
+        m.addBodyLine("buffer.out.writeInt(list.size());");
+        m.addBodyLine("for (Object element : list) {");
+        m.addBodyLine("buffer.out.writeBoolean(element != null);");
+        m.addBodyLine("if (element != null) {");
+        m.addBodyLine("((" + binaryModel + ") element).writeTo(buffer.out);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return new Entry(LIST, elementType, buffer.toByteArray());");
+        m.addBodyLine("}");
+        m.addBodyLine("if (value instanceof Serializable) {");
+        m.addBodyLine("return new Entry(SERIALIZED, null, " + config.binaryModelCodecType.getShortName()
+                + ".serialize(value));");
+        m.addBodyLine("}");
+        m.addBodyLine("} catch (IOException e) {");
+        m.addBodyLine("throw new CacheException(\"Error encoding cache value of type \" + value.getClass().getName(), e);");
+        m.addBodyLine("} finally {");
+        m.addBodyLine("buffer.release();");
+        m.addBodyLine("}");
+        m.addBodyLine("throw new CacheException(\"Shared caches must be " + binaryModel
+                + " or serializable: \" + value.getClass().getName());");
+        clazz.addMethod(m);
+
+        m = new Method("decode");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        m.addBodyLine("if (!(value instanceof Entry)) {");
+        m.addBodyLine("return value;");
+        m.addBodyLine("}");
+        m.addBodyLine("Entry entry = (Entry) value;");
+        m.addBodyLine("try {");
+        m.addBodyLine("if (entry.kind == SERIALIZED) {");
+        m.addBodyLine("return " + config.binaryModelCodecType.getShortName() + ".deserialize(entry.data);");
+        m.addBodyLine("}");
+        m.addBodyLine("DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.data));");
+        m.addBodyLine("if (entry.kind == MODEL) {");
+        m.addBodyLine("return newInstance(entry.type, in);");
+        m.addBodyLine("}");
+        m.addBodyLine("int size = in.readInt();");
+        m.addBodyLine("List<Object> list = new ArrayList<Object>(size);");
+        m.addBodyLine("for (int i = 0; i < size; i++) {");
+        m.addBodyLine("list.add(in.readBoolean() ? newInstance(entry.type, in) : null);");
+        m.addBodyLine("}");
+        m.addBodyLine("return list;");
+        m.addBodyLine("} catch (IOException e) {");
+        m.addBodyLine("throw new CacheException(\"Error decoding cache value of type \" + entry.type, e);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("newInstance");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(config.binaryModelType);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.lang.Class<?>"), "type"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.io.DataInputStream"), "in"));
+        m.addException(ioExceptionType);
+        m.addBodyLine(binaryModel + " model;");
+        m.addBodyLine("try {");
+        m.addBodyLine("model = (" + binaryModel + ") type.newInstance();");
+        m.addBodyLine("} catch (Exception e) {");
+        m.addBodyLine("throw new CacheException(\"Error instantiating \" + type.getName(), e);");
+        m.addBodyLine("}");
+        m.addBodyLine("model.readFrom(in);");
+        m.addBodyLine("return model;");
+        clazz.addMethod(m);
+
+        m = new Method("getElementType");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(new FullyQualifiedJavaType("java.lang.Class<?>"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.util.List<?>"), "list"));
+        m.addBodyLine("Class<?> type = null;");
+        m.addBodyLine("for (Object element : list) {");
+        m.addBodyLine("if (element == null) {");
+        m.addBodyLine("continue;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (!(element instanceof " + binaryModel + ") || (type != null && type != element.getClass())) {");
+        m.addBodyLine("return null;");
+        m.addBodyLine("}");
+        m.addBodyLine("type = element.getClass();");
+        m.addBodyLine("}");
+        m.addBodyLine("return type != null ? type : " + binaryModel + ".class;");
+        clazz.addMethod(m);
+
+        m = new Method("isImmutable");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setStatic(true);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        m.addBodyLine("return value == null || value instanceof String || value instanceof Integer"
+                + " || value instanceof Long || value instanceof Short || value instanceof Byte"
+                + " || value instanceof Boolean || value instanceof Character || value instanceof Double"
+                + " || value instanceof Float || value instanceof BigDecimal || value instanceof BigInteger"
+                + " || value instanceof Enum;");
+        clazz.addMethod(m);
+
+        InnerClass entry = new InnerClass(entryType);
+        entry.setVisibility(JavaVisibility.PRIVATE);
+        entry.setStatic(true);
+        entry.setFinal(true);
+        entry.addSuperInterface(new FullyQualifiedJavaType("java.io.Serializable"));
+        PluginUtils.addConstant(entry, "long", "serialVersionUID", "1L");
+        addFinalField(entry, "kind", new FullyQualifiedJavaType("byte"));
+        addFinalField(entry, "type", new FullyQualifiedJavaType("java.lang.Class<?>"));
+        addFinalField(entry, "data", new FullyQualifiedJavaType("byte[]"));
+        m = new Method(entryType.getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("byte"), "kind"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.lang.Class<?>"), "type"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("byte[]"), "data"));
+        m.addBodyLine("this.kind = kind;");
+        m.addBodyLine("this.type = type;");
+        m.addBodyLine("this.data = data;");
+        entry.addMethod(m);
+        clazz.addInnerClass(entry);
+
+        InnerClass buffer = new InnerClass(bufferType);
+        buffer.setVisibility(JavaVisibility.PRIVATE);
+        buffer.setStatic(true);
+        buffer.setFinal(true);
+        buffer.setSuperClass(new FullyQualifiedJavaType("java.io.ByteArrayOutputStream"));
+        Field out = new Field("out", new FullyQualifiedJavaType("java.io.DataOutputStream"));
+        out.setVisibility(JavaVisibility.PRIVATE);
+        out.setFinal(true);
+        out.setInitializationString("new DataOutputStream(this)");
+        buffer.addField(out);
+        m = new Method(bufferType.getShortName());
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("super(256);");
+        buffer.addMethod(m);
+        m = new Method("release");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("if (buf.length > MAX_RETAINED_BUFFER_SIZE) {");
+        m.addBodyLine("buf = new byte[256];");
+        m.addBodyLine("}");
+        m.addBodyLine("reset();");
+        buffer.addMethod(m);
+        clazz.addInnerClass(buffer);
+
+        return clazz;
+    }
+
+    private static void addFinalField(InnerClass clazz, String name, FullyQualifiedJavaType type) {
+        Field f = new Field(name, type);
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setFinal(true);
+        clazz.addField(f);
+    }
+
+    private Method newWriteMethod(String suffix, String valueType) {
+        Method m = new Method("write" + suffix);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.addParameter(new Parameter(dataOutputType, "out"));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType(valueType), "value"));
+        m.addException(ioExceptionType);
+        return m;
+    }
+
+    private Method newReadMethod(String suffix, String valueType) {
+        Method m = new Method("read" + suffix);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(new FullyQualifiedJavaType(valueType));
+        m.addParameter(new Parameter(dataInputType, "in"));
+        m.addException(ioExceptionType);
+        return m;
+    }
+
+    private Method newCopyMethod(String suffix, String valueType) {
+        Method m = new Method("copy" + suffix);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(new FullyQualifiedJavaType(valueType));
+        m.addParameter(new Parameter(new FullyQualifiedJavaType(valueType), "value"));
+        return m;
+    }
+
+    private void initConfig() {
+
+        if (this.config == null)
+            this.config = new Config(getProperties(), context.getJavaModelGeneratorConfiguration().getTargetPackage());
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String supportPackageKey = "supportPackage";
+        private static final String compressionThresholdKey = "compressionThreshold";
+
+        private FullyQualifiedJavaType binaryModelType;
+        private FullyQualifiedJavaType binaryModelCodecType;
+        private FullyQualifiedJavaType binaryModelCacheType;
+
+        private int compressionThreshold;
+
+        private Config(Properties props, String defaultSupportPackage) {
+            super(props);
+            String supportPackage = props.getProperty(supportPackageKey, defaultSupportPackage);
+            this.binaryModelType = new FullyQualifiedJavaType(supportPackage + "." + binaryModelClassName);
+            this.binaryModelCodecType = new FullyQualifiedJavaType(supportPackage + "." + binaryModelCodecClassName);
+            this.binaryModelCacheType = new FullyQualifiedJavaType(supportPackage + "." + binaryModelCacheClassName);
+            String threshold = props.getProperty(compressionThresholdKey, "0").trim();
+            try {
+                this.compressionThreshold = Integer.parseInt(threshold);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Wrong format for property '" + compressionThresholdKey + "' value '"
+                        + threshold + "' found! Expected: size in bytes as integer");
+            }
+        }
+    }
+
+}
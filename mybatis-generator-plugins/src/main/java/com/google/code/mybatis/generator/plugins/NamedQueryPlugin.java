@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.IntrospectedColumn;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.api.dom.xml.Attribute;
+import org.mybatis.generator.api.dom.xml.Document;
+import org.mybatis.generator.api.dom.xml.TextElement;
+import org.mybatis.generator.api.dom.xml.XmlElement;
+import org.mybatis.generator.codegen.mybatis3.MyBatis3FormattingUtilities;
+import org.mybatis.generator.internal.util.StringUtility;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates select methods of fixed shape declared in the plugin configuration. The statement of such a named query
+ * is rendered at generation time into a constant @Select annotation (annotated mappers) or select element (XML
+ * mappers), so executing it skips the sql provider, the SqlBuilder and the where clause rendering of the examples.
+ * <br/> Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.NamedQueryPlugin"&gt;
+ *          &lt;property name=".*BlogMapper#selectByUserId" value="userId = order by id desc" /&gt;
+ *          &lt;property name=".*UserMapper#selectByUsernameLike"
+ *                     value="username like and email is not null order by username" /&gt;
+ *          ...
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * This plugin can deal with any number of properties defined using following pattern:<br/>
+ * <ol>
+ * <li><strong>name</strong> is <strong>classNameRegexp#methodName</strong>: a regular expression matching the fully
+ * qualified names of the mappers and the name of the method to generate.</li>
+ * <li><strong>value</strong> is a list of conditions joined by <tt>and</tt>, optionally followed by <tt>order by</tt>
+ * and a comma separated list of columns with an optional <tt>asc</tt> / <tt>desc</tt>. A condition is a column
+ * followed by one of the operators <tt>=</tt>, <tt>&lt;&gt;</tt>, <tt>&lt;</tt>, <tt>&lt;=</tt>, <tt>&gt;</tt>,
+ * <tt>&gt;=</tt>, <tt>like</tt>, <tt>not like</tt>, <tt>between</tt>, <tt>is null</tt> and <tt>is not null</tt>.
+ * Columns are given by their name or by the name of their java property. The query may end with <tt>limit n</tt>
+ * and <tt>for update skip locked</tt>, rendered by the {@link Dialect} of the context.</li>
+ * </ol>
+ * The generated method takes a parameter per condition value, named after the java property of the column
+ * (<tt>xxxFrom</tt> / <tt>xxxTo</tt> for <tt>between</tt>), and returns the records mapped like the ones of
+ * <tt>selectByExample</tt>. Queries referring to columns unknown to a table or to syntax not supported by the dialect
+ * are skipped with a warning.<br/>
+ * Further properties:<br/> <ul> <li><strong>excludeClassNamesRegexp</strong> (optional): mappers to exclude from
+ * generation as regular expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class NamedQueryPlugin extends PluginAdapter {
+
+    private static final List<String> singleValueOperators = Arrays.asList("=", "<>", "!=", "<", "<=", ">", ">=",
+            "like", "not like");
+
+    private static final List<String> noValueOperators = Arrays.asList("is null", "is not null");
+
+    private static final String betweenOperator = "between";
+
+    private Config config;
+
+    private List<String> warnings;
+
+    /**
+     * statements by mapper and query name, null for queries not valid for the table of the mapper
+     */
+    private Map<String, Statement> statements = new HashMap<String, Statement>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties(), Dialect.getDialect(context));
+        this.warnings = warnings;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        config.resolve(introspectedTable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clientSelectByExampleWithBLOBsMethodGenerated(Method method, Interface interfaze,
+                                                                 IntrospectedTable introspectedTable) {
+        addQueryMethods(method, interfaze, introspectedTable);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clientSelectByExampleWithoutBLOBsMethodGenerated(Method method, Interface interfaze,
+                                                                    IntrospectedTable introspectedTable) {
+        if (!introspectedTable.getRules().generateSelectByExampleWithBLOBs())
+            addQueryMethods(method, interfaze, introspectedTable);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sqlMapDocumentGenerated(Document document, IntrospectedTable introspectedTable) {
+
+        String mapperType = introspectedTable.getMyBatis3JavaMapperType();
+        if (config.shouldExclude(mapperType) || !isSelectByExampleGenerated(introspectedTable))
+            return true;
+
+        String resultMap = introspectedTable.getRules().generateSelectByExampleWithBLOBs()
+                ? introspectedTable.getResultMapWithBLOBsId() : introspectedTable.getBaseResultMapId();
+        for (NamedQuery query : config.queries.getAllMatches(mapperType, null)) {
+            Statement statement = getStatement(query, introspectedTable);
+            if (statement == null)
+                continue;
+
+            XmlElement element = new XmlElement("select");
+            element.addAttribute(new Attribute("id", query.name));
+            element.addAttribute(new Attribute("resultMap", resultMap));
+            context.getCommentGenerator().addComment(element);
+            element.addElement(new TextElement(statement.sql.replace("&", "&amp;").replace("<", "&lt;")
+                    .replace(">", "&gt;")));
+            document.getRootElement().addElement(element);
+        }
+        return true;
+    }
+
+    private void addQueryMethods(Method method, Interface interfaze, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(interfaze.getType()))
+            return;
+
+        // annotated mappers map the results of selectByExample by annotations, XML mappers by a result map
+        boolean annotated = false;
+        for (String annotation : method.getAnnotations()) {
+            annotated |= annotation.startsWith("@SelectProvider");
+        }
+
+        for (NamedQuery query : config.queries.getAllMatches(interfaze.getType().getFullyQualifiedName(), null)) {
+            Statement statement = getStatement(query, introspectedTable);
+            if (statement == null)
+                continue;
+
+            Method m = new Method(query.name);
+            m.setVisibility(method.getVisibility());
+            m.setReturnType(method.getReturnType());
+            for (Parameter p : statement.parameters) {
+                interfaze.addImportedType(p.getType());
+                m.addParameter(p);
+            }
+            if (annotated) {
+                interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Select"));
+                m.addAnnotation("@Select(\"" + StringUtility.escapeStringForJava(statement.sql) + "\")");
+                for (String annotation : method.getAnnotations()) {
+                    if (!annotation.startsWith("@SelectProvider"))
+                        m.addAnnotation(annotation);
+                }
+            }
+            if (!statement.parameters.isEmpty())
+                interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+            context.getCommentGenerator().addGeneralMethodComment(m, introspectedTable);
+            interfaze.addMethod(m);
+        }
+    }
+
+    private Statement getStatement(NamedQuery query, IntrospectedTable introspectedTable) {
+
+        String key = introspectedTable.getMyBatis3JavaMapperType() + "#" + query.name;
+        if (!statements.containsKey(key))
+            statements.put(key, renderStatement(query, introspectedTable));
+        return statements.get(key);
+    }
+
+    private Statement renderStatement(NamedQuery query, IntrospectedTable introspectedTable) {
+
+        List<IntrospectedColumn> columns = introspectedTable.getRules().generateSelectByExampleWithBLOBs()
+                ? introspectedTable.getAllColumns() : introspectedTable.getNonBLOBColumns();
+
+        StringBuilder sql = new StringBuilder("select ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0)
+                sql.append(", ");
+            sql.append(MyBatis3FormattingUtilities.getSelectListPhrase(columns.get(i)));
+        }
+        sql.append(" from ").append(introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime());
+
+        Statement statement = new Statement();
+        Set<String> parameterNames = new HashSet<String>();
+        for (int i = 0; i < query.conditions.size(); i++) {
+            String[] condition = query.conditions.get(i);
+            IntrospectedColumn column = findColumn(query, condition[0], introspectedTable);
+            if (column == null)
+                return null;
+
+            sql.append(i == 0 ? " where " : " and ");
+            sql.append(MyBatis3FormattingUtilities.getAliasedEscapedColumnName(column)).append(' ').append(condition[1]);
+            if (betweenOperator.equals(condition[1])) {
+                sql.append(' ').append(addParameter(statement, parameterNames, column, "From"));
+                sql.append(" and ").append(addParameter(statement, parameterNames, column, "To"));
+            } else if (!noValueOperators.contains(condition[1])) {
+                sql.append(' ').append(addParameter(statement, parameterNames, column, ""));
+            }
+        }
+
+        for (int i = 0; i < query.orderBy.size(); i++) {
+            String[] order = query.orderBy.get(i);
+            IntrospectedColumn column = findColumn(query, order[0], introspectedTable);
+            if (column == null)
+                return null;
+
+            sql.append(i == 0 ? " order by " : ", ");
+            sql.append(MyBatis3FormattingUtilities.getAliasedEscapedColumnName(column)).append(order[1]);
+        }
+
+        statement.sql = sql.toString();
+        if (query.limit > 0)
+            statement.sql = config.dialect.limit(statement.sql, query.limit);
+        if (query.skipLocked) {
+            statement.sql = config.dialect.forUpdateSkipLocked(statement.sql);
+            if (statement.sql == null) {
+                warnings.add("NamedQueryPlugin: dialect " + config.dialect + " does not support for update skip locked"
+                        + " of query " + query.name + ", query skipped");
+                return null;
+            }
+        }
+        return statement;
+    }
+
+    private IntrospectedColumn findColumn(NamedQuery query, String name, IntrospectedTable introspectedTable) {
+
+        IntrospectedColumn column = introspectedTable.getColumn(name);
+        if (column == null) {
+            for (IntrospectedColumn c : introspectedTable.getAllColumns()) {
+                if (c.getJavaProperty().equals(name))
+                    column = c;
+            }
+        }
+        if (column == null)
+            warnings.add("NamedQueryPlugin: column '" + name + "' of query " + query.name + " not found in table "
+                    + introspectedTable.getFullyQualifiedTable() + ", query skipped");
+        return column;
+    }
+
+    /**
+     * Adds a parameter for the value of a condition on the given column and returns its placeholder.
+     */
+    private static String addParameter(Statement statement, Set<String> parameterNames, IntrospectedColumn column,
+                                       String suffix) {
+
+        String name = column.getJavaProperty() + suffix;
+        for (int i = 2; !parameterNames.add(name); i++) {
+            name = column.getJavaProperty() + suffix + i;
+        }
+        statement.parameters.add(new Parameter(column.getFullyQualifiedJavaType(), name, "@Param(\"" + name + "\")"));
+
+        StringBuilder placeholder = new StringBuilder("#{").append(name);
+        placeholder.append(",jdbcType=").append(column.getJdbcTypeName());
+        if (StringUtility.stringHasValue(column.getTypeHandler()))
+            placeholder.append(",typeHandler=").append(column.getTypeHandler());
+        return placeholder.append('}').toString();
+    }
+
+    private static boolean isSelectByExampleGenerated(IntrospectedTable introspectedTable) {
+        return introspectedTable.getRules().generateSelectByExampleWithBLOBs()
+                || introspectedTable.getRules().generateSelectByExampleWithoutBLOBs();
+    }
+
+    private static final class Statement {
+
+        private String sql;
+
+        private List<Parameter> parameters = new ArrayList<Parameter>();
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private Rules<NamedQuery> queries = new Rules<NamedQuery>();
+
+        private Dialect dialect;
+
+        private Config(Properties props, Dialect dialect) {
+            super(props);
+            this.dialect = dialect;
+
+            for (String key : getRuleKeys(props, Collections.<String>emptyList())) {
+                NamedQuery query = NamedQuery.valueOf(key, props.getProperty(key));
+                queries.add(query.classRegexp, null, query);
+            }
+        }
+
+        @Override
+        void resolve(IntrospectedTable introspectedTable) {
+            super.resolve(introspectedTable);
+            queries.resolve(introspectedTable.getMyBatis3JavaMapperType());
+        }
+    }
+
+    private static final class NamedQuery {
+
+        private static final Pattern orderByPattern = Pattern.compile("(?i)(^|\\s+)order\\s+by\\s+");
+
+        private static final Pattern andPattern = Pattern.compile("(?i)\\s+and\\s+");
+
+        private static final Pattern methodNamePattern = Pattern.compile("[A-Za-z_$][\\w$]*");
+
+        private static final Pattern skipLockedPattern = Pattern.compile(
+                "(?i)(^|\\s+)for\\s+update\\s+skip\\s+locked$");
+
+        private static final Pattern limitPattern = Pattern.compile("(?i)(^|\\s+)limit\\s+(\\d+)$");
+
+        private Pattern classRegexp;
+
+        private String name;
+
+        /**
+         * column and operator of the conditions
+         */
+        private List<String[]> conditions = new ArrayList<String[]>();
+
+        /**
+         * column and direction of the order by items
+         */
+        private List<String[]> orderBy = new ArrayList<String[]>();
+
+        /**
+         * maximum number of rows, 0 if unlimited
+         */
+        private int limit;
+
+        private boolean skipLocked;
+
+        public static NamedQuery valueOf(String key, String value) {
+
+            if (key == null) throw new IllegalArgumentException("Property's key should be specified!");
+            if (value == null) throw new IllegalArgumentException("Property's value should be specified!");
+
+            if (!key.contains("#") || !methodNamePattern.matcher(key.substring(key.lastIndexOf('#') + 1)).matches())
+                throw new IllegalArgumentException("Wrong format for property key '" + key + "' found! Expected: "
+                        + "name=\"classRegexp#methodName\"");
+
+            NamedQuery query = new NamedQuery();
+            query.classRegexp = Pattern.compile(key.substring(0, key.lastIndexOf('#')));
+            query.name = key.substring(key.lastIndexOf('#') + 1);
+
+            String rest = value.trim();
+            Matcher matcher = skipLockedPattern.matcher(rest);
+            if (matcher.find()) {
+                query.skipLocked = true;
+                rest = rest.substring(0, matcher.start());
+            }
+            matcher = limitPattern.matcher(rest);
+            if (matcher.find()) {
+                query.limit = Integer.parseInt(matcher.group(2));
+                rest = rest.substring(0, matcher.start());
+            }
+
+            String[] parts = orderByPattern.split(rest, 2);
+            if (parts[0].length() > 0) {
+                for (String condition : andPattern.split(parts[0])) {
+                    query.conditions.add(parseCondition(key, condition.trim()));
+                }
+            }
+            if (parts.length > 1) {
+                for (String order : parts[1].split(",")) {
+                    String[] tokens = order.trim().split("\\s+");
+                    if (tokens.length > 2 || (tokens.length == 2 && !tokens[1].matches("(?i)asc|desc")))
+                        throw new IllegalArgumentException("Wrong order by item '" + order + "' in property '" + key
+                                + "' found! Expected: column [asc|desc]");
+                    query.orderBy.add(new String[]{tokens[0], tokens.length == 2 ? " " + tokens[1].toLowerCase() : ""});
+                }
+            }
+            return query;
+        }
+
+        private static String[] parseCondition(String key, String condition) {
+
+            String[] tokens = condition.split("\\s+", 2);
+            String operator = tokens.length < 2 ? "" : tokens[1].toLowerCase().replaceAll("\\s+", " ");
+            if (!singleValueOperators.contains(operator) && !noValueOperators.contains(operator)
+                    && !betweenOperator.equals(operator))
+                throw new IllegalArgumentException("Wrong condition '" + condition + "' in property '" + key
+                        + "' found! Expected: column operator, operator one of " + singleValueOperators + ", "
+                        + noValueOperators + " or " + betweenOperator);
+            return new String[]{tokens[0], operator};
+        }
+    }
+}
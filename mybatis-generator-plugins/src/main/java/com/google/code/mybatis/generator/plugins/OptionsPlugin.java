@@ -21,6 +21,7 @@ import org.mybatis.generator.api.PluginAdapter;
 import org.mybatis.generator.api.dom.java.FullyQualifiedJavaType;
 import org.mybatis.generator.api.dom.java.Interface;
 import org.mybatis.generator.api.dom.java.Method;
+import org.mybatis.generator.api.dom.java.Parameter;
 import org.mybatis.generator.api.dom.java.TopLevelClass;
 
 import java.util.*;
@@ -34,10 +35,13 @@ import java.util.regex.Pattern;
  *  &lt;context ...&gt;
  * <p/>
  *      &lt;plugin type="com.google.code.mybatis.generator.plugins.OptionsPlugin"&gt;
- *          &lt;property name=".*UserMapper#.*ByExample"
- *                     value="fetchSize=1,timeout=0,useCache=true,flushCache=true" /&gt;
+ *          &lt;property name=".*UserMapper#.*@select|streaming"
+ *                     value="fetchSize=auto,timeout=0,useCache=true" /&gt;
+ *          &lt;property name=".*UserMapper#.*@insert|update|delete"
+ *                     value="timeout=0,flushCache=true" /&gt;
  *          &lt;property name=".*GroupMapper#.*ByExample"
- *                     value="fetchSize=10,timeout=10,useCache=false,flushCache=true" /&gt;
+ *                     value="fetchSize=10,timeout=10,useCache=false" /&gt;
+ *          &lt;property name="fetchBufferSize" value="65536" /&gt;
  *          ...
  * <p/>
  *      &lt;/plugin&gt;
@@ -49,88 +53,183 @@ import java.util.regex.Pattern;
  * This plugin can deal with any number of properties defined using following pattern:<br/>
  * <ol>
  * <li><strong>name</strong> is a regular expression pair to match a fully qualified name of the class / method.
- * It should be defined using following rule: <strong>classNameRegexp#methodnameRegexp</strong></li>
- * <li><strong>value</strong> is a value of the @Options annotation</li>
+ * It should be defined using following rule: <strong>classNameRegexp#methodnameRegexp</strong>, optionally followed
+ * by <strong>@kind|kind...</strong> to restrict the rule to statement kinds. The kinds are <tt>select</tt>,
+ * <tt>count</tt>, <tt>insert</tt>, <tt>update</tt>, <tt>delete</tt> and <tt>streaming</tt> (select methods taking a
+ * <tt>ResultHandler</tt>). A name consisting of kinds only (e.g. <tt>@count</tt>) applies to all mappers.</li>
+ * <li><strong>value</strong> is a value of the @Options annotation. <tt>fetchSize=auto</tt> derives the fetch size of
+ * select methods from the column widths of the table: as many rows as fit into <strong>fetchBufferSize</strong> bytes,
+ * at most <strong>maxFetchSize</strong>.</li>
  * </ol>
+ * The attributes of all matching rules are merged with the attributes of an existing @Options annotation (e.g. the
+ * generated keys of an insert), rules restricted to statement kinds override the unrestricted ones, otherwise rules
+ * override the ones with alphabetically smaller names. Setting
+ * <tt>flushCache=true</tt> on a select is reported as a warning, since it defeats the caching of that statement.
+ * <br/><br/>Further properties:<br/>
+ * <ul> <li><strong>fetchBufferSize</strong> (optional) : bytes fetched per round trip by <tt>fetchSize=auto</tt>.
+ * Default: <strong>65536</strong></li> <li><strong>maxFetchSize</strong> (optional) : upper bound of the derived
+ * fetch sizes. Default: <strong>1000</strong></li> <li><strong>excludeClassNamesRegexp</strong> (optional): mappers
+ * to exclude from generation as regular expression. Default: none</li> </ul>
  *
  * @author Maxim Kalina
  * @version $Id$
  */
 public class OptionsPlugin extends PluginAdapter {
 
+    static final String selectKind = "select";
+
+    static final String countKind = "count";
+
+    static final String insertKind = "insert";
+
+    static final String updateKind = "update";
+
+    static final String deleteKind = "delete";
+
+    static final String streamingKind = "streaming";
+
+    private static final String autoFetchSize = "auto";
+
+    /**
+     * assumed width of LOB columns in bytes
+     */
+    private static final int lobColumnBytes = 4096;
+
     private Config config;
 
+    private List<String> warnings;
+
     public boolean validate(List<String> warnings) {
         if (config == null)
             config = new Config(getProperties());
+        this.warnings = warnings;
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        config.resolve(introspectedTable);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean clientGenerated(Interface interfaze, TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
 
-        if (interfaze == null)
+        if (interfaze == null || config.shouldExclude(interfaze.getType()))
             return true;
 
 
         List<Method> methods = interfaze.getMethods();
         for (Method m : methods) {
 
-            String value = config.getOptionsValue(interfaze.getType().getFullyQualifiedName(), m.getName());
-            if (value != null) {
-
-                interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Options"));
-
-                String existingOptionsAnnotation = null;
-                List<String> annotations = m.getAnnotations();
-                Iterator<String> it = annotations.iterator();
-                while (it.hasNext()) {
-                    String annotation = it.next();
-                    if (annotation.startsWith("@Options")) {
-                        existingOptionsAnnotation = annotation;
-                        it.remove();
-                        break;
-                    }
-                }
-
-                if (existingOptionsAnnotation != null) {
-                    m.addAnnotation(existingOptionsAnnotation.replace(")", "," + value + ")"));
-                } else {
-                    m.addAnnotation("@Options(" + value + ")");
-                }
+            String kind = getStatementKind(m);
+            Map<String, String> options = config.getOptions(interfaze.getType().getFullyQualifiedName(), m.getName(),
+                    kind);
+            if (options.isEmpty())
+                continue;
+
+            boolean select = selectKind.equals(kind) || streamingKind.equals(kind);
+            if (autoFetchSize.equals(options.get("fetchSize"))) {
+                if (select)
+                    options.put("fetchSize", String.valueOf(deriveFetchSize(introspectedTable, m)));
+                else
+                    options.remove("fetchSize");
             }
+            if ((select || countKind.equals(kind)) && "true".equals(options.get("flushCache")))
+                warnings.add("OptionsPlugin: flushCache=true on " + kind + " " + interfaze.getType().getShortName()
+                        + "#" + m.getName() + " clears the caches on every call and disables caching of its results");
+
+            interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Options"));
 
+            PluginUtils.mergeAnnotation(m, "Options", options, true);
         }
 
 
         return true;
     }
 
-    private static final class Config {
+    /**
+     * Classifies the mapper method by its name, following the naming of the generated statements.
+     */
+    static String getStatementKind(Method m) {
+        String name = m.getName();
+        if (name.startsWith("count"))
+            return countKind;
+        if (name.startsWith("insert"))
+            return insertKind;
+        if (name.startsWith("update"))
+            return updateKind;
+        if (name.startsWith("delete"))
+            return deleteKind;
+        if (name.startsWith("select")) {
+            for (Parameter p : m.getParameters()) {
+                if ("org.apache.ibatis.session.ResultHandler".equals(p.getType().getFullyQualifiedName()))
+                    return streamingKind;
+            }
+            return selectKind;
+        }
+        return null;
+    }
 
-        private List<OptionsConfigItem> items;
+    private int deriveFetchSize(IntrospectedTable introspectedTable, Method m) {
+        int rowBytes = PluginUtils.estimateRowBytes(introspectedTable, m.getName(), lobColumnBytes);
+        return Math.max(1, Math.min(config.fetchBufferSize / Math.max(rowBytes, 1), config.maxFetchSize));
+    }
 
-        private Config(Properties props) {
+    private static final class Config extends BasePluginConfig {
+
+        private static final String fetchBufferSizeKey = "fetchBufferSize";
+
+        private static final String maxFetchSizeKey = "maxFetchSize";
+
+        private static final List<String> reservedKeys = Arrays.asList(fetchBufferSizeKey, maxFetchSizeKey);
+
+        private Rules<OptionsConfigItem> items;
 
-            this.items = new ArrayList<OptionsConfigItem>();
+        private int fetchBufferSize;
 
-            Enumeration e = props.propertyNames();
-            while (e.hasMoreElements()) {
-                String key = (String) e.nextElement();
-                items.add(OptionsConfigItem.valueOf(key, props.getProperty(key)));
+        private int maxFetchSize;
+
+        private Config(Properties props) {
+            super(props);
+
+            this.fetchBufferSize = Integer.parseInt(props.getProperty(fetchBufferSizeKey, "65536"));
+            this.maxFetchSize = Integer.parseInt(props.getProperty(maxFetchSizeKey, "1000"));
+            this.items = new Rules<OptionsConfigItem>();
+
+            // unrestricted rules first, so the rules for statement kinds override them
+            List<OptionsConfigItem> restricted = new ArrayList<OptionsConfigItem>();
+            for (String key : getRuleKeys(props, reservedKeys)) {
+                OptionsConfigItem item = OptionsConfigItem.valueOf(key, props.getProperty(key));
+                if (item.kinds.isEmpty())
+                    items.add(item.classRegexp, item.methodRegexp, item);
+                else
+                    restricted.add(item);
+            }
+            for (OptionsConfigItem item : restricted) {
+                items.add(item.classRegexp, item.methodRegexp, item);
             }
         }
 
-        private String getOptionsValue(String classFQN, String methodName) {
+        @Override
+        void resolve(IntrospectedTable introspectedTable) {
+            super.resolve(introspectedTable);
+            items.resolve(introspectedTable.getMyBatis3JavaMapperType());
+        }
+
+        private Map<String, String> getOptions(String classFQN, String methodName, String kind) {
 
-            for (OptionsConfigItem item : items) {
-                if (item.classRegexp.matcher(classFQN).matches() && item.methodRegexp.matcher(methodName).matches())
-                    return item.optionsValue;
+            Map<String, String> options = new LinkedHashMap<String, String>();
+            for (OptionsConfigItem item : items.getAllMatches(classFQN, methodName)) {
+                if (item.kinds.isEmpty() || item.kinds.contains(kind))
+                    options.putAll(item.options);
             }
-            return null;
+            return options;
 
         }
     }
@@ -138,16 +237,23 @@ public class OptionsPlugin extends PluginAdapter {
 
     private static final class OptionsConfigItem {
 
+        private static final List<String> knownKinds = Arrays.asList(selectKind, countKind, insertKind, updateKind,
+                deleteKind, streamingKind);
+
         private Pattern classRegexp;
 
         private Pattern methodRegexp;
 
-        private String optionsValue;
+        private Set<String> kinds;
+
+        private Map<String, String> options;
 
-        private OptionsConfigItem(Pattern classRegexp, Pattern methodRegexp, String optionsValue) {
+        private OptionsConfigItem(Pattern classRegexp, Pattern methodRegexp, Set<String> kinds,
+                                  Map<String, String> options) {
             this.classRegexp = classRegexp;
             this.methodRegexp = methodRegexp;
-            this.optionsValue = optionsValue;
+            this.kinds = kinds;
+            this.options = options;
         }
 
         public static final OptionsConfigItem valueOf(String key, String value) {
@@ -155,13 +261,28 @@ public class OptionsPlugin extends PluginAdapter {
             if (key == null) throw new IllegalArgumentException("Property's key should be specified!");
             if (value == null) throw new IllegalArgumentException("Property's value should be specified!");
 
-            if (!key.contains("#")) throw new IllegalArgumentException("Wrong format for property key '" + key + "' " +
-                    "found! Expected: name=\"classRegexp#methodRegexp\"");
+            String name = key;
+            Set<String> kinds = new HashSet<String>();
+            if (key.lastIndexOf('@') >= 0) {
+                name = key.substring(0, key.lastIndexOf('@'));
+                for (String kind : key.substring(key.lastIndexOf('@') + 1).split("\\|")) {
+                    if (!knownKinds.contains(kind.trim()))
+                        throw new IllegalArgumentException("Unknown statement kind '" + kind + "' in property key '"
+                                + key + "' found! Expected one of " + knownKinds);
+                    kinds.add(kind.trim());
+                }
+            }
+            if (name.length() == 0 && !kinds.isEmpty())
+                name = ".*#.*";
+
+            if (!name.contains("#")) throw new IllegalArgumentException("Wrong format for property key '" + key + "' " +
+                    "found! Expected: name=\"classRegexp#methodRegexp[@kind|kind]\"");
 
-            String classRegexp = key.substring(0, key.indexOf("#"));
-            String methodRegexp = key.substring(key.indexOf("#") + 1);
+            String classRegexp = name.substring(0, name.indexOf("#"));
+            String methodRegexp = name.substring(name.indexOf("#") + 1);
 
-            return new OptionsConfigItem(Pattern.compile(classRegexp), Pattern.compile(methodRegexp), value);
+            return new OptionsConfigItem(Pattern.compile(classRegexp), Pattern.compile(methodRegexp), kinds,
+                    PluginUtils.parseAnnotationAttributes(value));
 
         }
     }
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedColumn;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.config.Context;
+import org.mybatis.generator.config.PropertyRegistry;
+
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Helpers shared by the plugins generating additional java files.
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+final class PluginUtils {
+
+    private PluginUtils() {
+    }
+
+    static GeneratedJavaFile newGeneratedJavaFile(Context context, CompilationUnit unit, String targetProject) {
+        context.getCommentGenerator().addJavaFileComment(unit);
+        return new GeneratedJavaFile(unit, targetProject,
+                context.getProperty(PropertyRegistry.CONTEXT_JAVA_FILE_ENCODING), context.getJavaFormatter());
+    }
+
+    /**
+     * Adds the final "delegate" field and the constructor taking the decorated cache.
+     */
+    static void addDelegateField(TopLevelClass clazz, FullyQualifiedJavaType cacheType) {
+
+        Field delegate = new Field("delegate", cacheType);
+        delegate.setVisibility(JavaVisibility.PRIVATE);
+        delegate.setFinal(true);
+        clazz.addField(delegate);
+
+        Method constructor = new Method(clazz.getType().getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PUBLIC);
+        constructor.addParameter(new Parameter(cacheType, "delegate"));
+        constructor.addBodyLine("this.delegate = delegate;");
+        clazz.addMethod(constructor);
+    }
+
+    /**
+     * Adds all Cache methods which are not implemented by the given methods as plain delegation to the "delegate"
+     * field.
+     */
+    static void addDelegateMethods(TopLevelClass clazz, Method... implemented) {
+
+        List<String> names = new ArrayList<String>();
+        for (Method m : implemented) {
+            names.add(m.getName());
+        }
+
+        String[][] cacheMethods = {
+                {"getId", "java.lang.String", null, "return delegate.getId();"},
+                {"getSize", "int", null, "return delegate.getSize();"},
+                {"putObject", null, "key,value", "delegate.putObject(key, value);"},
+                {"getObject", "java.lang.Object", "key", "return delegate.getObject(key);"},
+                {"removeObject", "java.lang.Object", "key", "return delegate.removeObject(key);"},
+                {"clear", null, null, "delegate.clear();"},
+                {"getReadWriteLock", "java.util.concurrent.locks.ReadWriteLock", null,
+                        "return delegate.getReadWriteLock();"}};
+
+        for (String[] cacheMethod : cacheMethods) {
+            int index = names.indexOf(cacheMethod[0]);
+            if (index >= 0) {
+                clazz.addMethod(implemented[index]);
+                continue;
+            }
+
+            Method m = new Method(cacheMethod[0]);
+            m.setVisibility(JavaVisibility.PUBLIC);
+            if (cacheMethod[1] != null) {
+                FullyQualifiedJavaType returnType = new FullyQualifiedJavaType(cacheMethod[1]);
+                clazz.addImportedType(returnType);
+                m.setReturnType(returnType);
+            }
+            if (cacheMethod[2] != null) {
+                for (String param : cacheMethod[2].split(",")) {
+                    m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), param));
+                }
+            }
+            m.addBodyLine(cacheMethod[3]);
+            clazz.addMethod(m);
+        }
+    }
+
+    static void addConstant(InnerClass clazz, String type, String name, String value) {
+        Field f = new Field(name, new FullyQualifiedJavaType(type));
+        f.setVisibility(JavaVisibility.PRIVATE);
+        f.setStatic(true);
+        f.setFinal(true);
+        f.setInitializationString(value);
+        clazz.addField(f);
+    }
+
+    /**
+     * Returns the generated model class the given model class extends or null if there is none.
+     */
+    static FullyQualifiedJavaType getGeneratedSuperType(FullyQualifiedJavaType type,
+                                                        IntrospectedTable introspectedTable) {
+
+        String fqn = type.getFullyQualifiedName();
+        boolean baseRecordClass = introspectedTable.getRules().generateBaseRecordClass();
+        boolean primaryKeyClass = introspectedTable.getRules().generatePrimaryKeyClass();
+
+        if (fqn.equals(introspectedTable.getRecordWithBLOBsType()) && baseRecordClass)
+            return new FullyQualifiedJavaType(introspectedTable.getBaseRecordType());
+
+        if (!fqn.equals(introspectedTable.getPrimaryKeyType()) && primaryKeyClass)
+            return new FullyQualifiedJavaType(introspectedTable.getPrimaryKeyType());
+
+        return null;
+    }
+
+    /**
+     * Estimates the bytes of a row fetched by the given select statement: declared lengths of character and binary
+     * columns, fixed widths of the other types and the given width of LOBs or columns without length.
+     */
+    static int estimateRowBytes(IntrospectedTable introspectedTable, String statementId, int lobColumnBytes) {
+
+        List<IntrospectedColumn> columns = statementId.contains("WithBLOBs")
+                || statementId.equals(introspectedTable.getSelectByPrimaryKeyStatementId())
+                ? introspectedTable.getAllColumns() : introspectedTable.getNonBLOBColumns();
+
+        int rowBytes = 0;
+        for (IntrospectedColumn column : columns) {
+            // per column overhead of the driver's row buffer
+            rowBytes += 4;
+            if (column.isBLOBColumn()) {
+                rowBytes += lobColumnBytes;
+                continue;
+            }
+            switch (column.getJdbcType()) {
+                case Types.BIT:
+                case Types.BOOLEAN:
+                case Types.TINYINT:
+                    rowBytes += 1;
+                    break;
+                case Types.SMALLINT:
+                    rowBytes += 2;
+                    break;
+                case Types.INTEGER:
+                case Types.REAL:
+                    rowBytes += 4;
+                    break;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    rowBytes += column.getLength() > 0 ? column.getLength() / 2 + 2 : 16;
+                    break;
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.BINARY:
+                case Types.VARBINARY:
+                    rowBytes += column.getLength() > 0 ? column.getLength() : lobColumnBytes;
+                    break;
+                default:
+                    rowBytes += 8;
+            }
+        }
+        return rowBytes;
+    }
+
+    /**
+     * Merges the attributes into the given annotation of the method, adding the annotation if it is missing. Existing
+     * attributes are kept unless override is set.
+     */
+    static void mergeAnnotation(Method m, String annotationName, Map<String, String> attributes, boolean override) {
+
+        Map<String, String> merged = new LinkedHashMap<String, String>();
+        Iterator<String> it = m.getAnnotations().iterator();
+        while (it.hasNext()) {
+            String annotation = it.next();
+            if (annotation.equals("@" + annotationName) || annotation.startsWith("@" + annotationName + "(")) {
+                int start = annotation.indexOf('(');
+                if (start > 0)
+                    merged.putAll(parseAnnotationAttributes(annotation.substring(start + 1, annotation.lastIndexOf(')'))));
+                it.remove();
+                break;
+            }
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            if (override || !merged.containsKey(attribute.getKey()))
+                merged.put(attribute.getKey(), attribute.getValue());
+        }
+
+        StringBuilder sb = new StringBuilder("@").append(annotationName).append("(");
+        for (Map.Entry<String, String> attribute : merged.entrySet()) {
+            if (sb.charAt(sb.length() - 1) != '(')
+                sb.append(",");
+            sb.append(attribute.getKey()).append("=").append(attribute.getValue());
+        }
+        m.addAnnotation(sb.append(")").toString());
+    }
+
+    /**
+     * Splits a comma separated list of annotation attributes, ignoring the commas within quotes and array values.
+     */
+    static Map<String, String> parseAnnotationAttributes(String value) {
+
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+        int depth = 0;
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : ',';
+            if (c == '"' && (i == 0 || value.charAt(i - 1) != '\\'))
+                quoted = !quoted;
+            else if (!quoted && (c == '{' || c == '('))
+                depth++;
+            else if (!quoted && (c == '}' || c == ')'))
+                depth--;
+            else if (!quoted && depth == 0 && c == ',') {
+                String attribute = value.substring(start, i).trim();
+                start = i + 1;
+                if (attribute.length() == 0)
+                    continue;
+                int eq = attribute.indexOf('=');
+                if (eq < 0)
+                    throw new IllegalArgumentException("Wrong format for annotation attribute '" + attribute + "' " +
+                            "found! Expected: name=value");
+                attributes.put(attribute.substring(0, eq).trim(), attribute.substring(eq + 1).trim());
+            }
+        }
+        return attributes;
+    }
+
+    static boolean isGeneratedModelType(String fqn, IntrospectedTable introspectedTable) {
+        return (fqn.equals(introspectedTable.getBaseRecordType()) && introspectedTable.getRules().generateBaseRecordClass())
+                || (fqn.equals(introspectedTable.getPrimaryKeyType()) && introspectedTable.getRules().generatePrimaryKeyClass())
+                || (fqn.equals(introspectedTable.getRecordWithBLOBsType()) && introspectedTable.getRules().generateRecordWithBLOBsClass());
+    }
+
+}
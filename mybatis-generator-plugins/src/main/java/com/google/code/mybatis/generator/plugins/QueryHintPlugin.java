@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.internal.util.StringUtility;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Adds optimizer hints (e.g. an index hint, the parallel degree or first rows) to the statements of the specified
+ * mapper methods, placed by the {@link Dialect} of the context: the sql of the provider methods and the sql of the
+ * static <tt>@Select</tt>, <tt>@Insert</tt>, <tt>@Update</tt> and <tt>@Delete</tt> annotations gets the hint, so
+ * hinted statements differ in their text from unhinted ones and are kept apart by the plan caches.<br/>
+ * Example configuration:<br/>
+ * <tt><pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.QueryHintPlugin"&gt;
+ *          &lt;property name=".*UserMapper#selectByExample.*" value="INDEX(T_USER IDX_USERNAME)" /&gt;
+ *          &lt;property name=".*BlogMapper#countByExample" value="PARALLEL(4)" /&gt;
+ *          ...
+ *
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre></tt>
+ * This plugin can deal with any number of properties defined using following pattern:<br/>
+ * <ol>
+ * <li><strong>name</strong> is a regular expression pair to match a fully qualified name of the mapper / method:
+ * <strong>classNameRegexp#methodnameRegexp</strong>. Provider methods are matched by the name of their mapper method.
+ * </li>
+ * <li><strong>value</strong> is the hint without the comment delimiters. The hints of all matching rules are joined
+ * in the alphabetical order of the property names.</li>
+ * </ol>
+ * The plugin should be configured after the plugins adding statements. Statements of XML mappers and precompiled
+ * examples are left alone. Provider methods not building their statement by SqlBuilder (e.g. the ones added by
+ * {@link MapperDecoratorPlugin}, which embed the statement of the decorated method with its own hint) are left
+ * unhinted with a warning.<br/><br/>Further properties:<br/>
+ * <ul> <li><strong>excludeClassNamesRegexp</strong> (optional): mappers to exclude from generation as regular
+ * expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class QueryHintPlugin extends PluginAdapter {
+
+    private static final Pattern sqlAnnotationPattern = Pattern.compile("@(Select|Insert|Update|Delete)\\(.*");
+
+    /**
+     * SqlBuilder calls starting a statement and the verb they render
+     */
+    private static final String[][] sqlBuilderVerbs = {{"SELECT(", "SELECT"}, {"SELECT_DISTINCT(", "SELECT"},
+            {"INSERT_INTO(", "INSERT"}, {"UPDATE(", "UPDATE"}, {"DELETE_FROM(", "DELETE"}};
+
+    private Config config;
+
+    private List<String> warnings;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties(), Dialect.getDialect(context));
+        this.warnings = warnings;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        config.resolve(introspectedTable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clientGenerated(Interface interfaze, TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (interfaze == null || config.shouldExclude(interfaze.getType()))
+            return true;
+
+        for (Method m : interfaze.getMethods()) {
+            String hint = config.getHint(interfaze.getType().getFullyQualifiedName(), m.getName());
+            if (hint != null)
+                addHint(m.getAnnotations(), StringUtility.escapeStringForJava(hint));
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean providerGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        String mapperType = introspectedTable.getMyBatis3JavaMapperType();
+        if (config.shouldExclude(mapperType))
+            return true;
+
+        for (Method m : topLevelClass.getMethods()) {
+            String hint = config.getHint(mapperType, m.getName());
+            if (hint == null)
+                continue;
+
+            List<String> lines = m.getBodyLines();
+            String verb = getVerb(lines);
+            if (lines.isEmpty() || !"return SQL();".equals(lines.get(lines.size() - 1)) || verb == null) {
+                warnings.add("QueryHintPlugin: method " + m.getName() + " of " + topLevelClass.getType().getShortName()
+                        + " does not build its statement by SqlBuilder, hint '" + hint + "' not applied");
+                continue;
+            }
+
+            // the sql rendered by SqlBuilder starts with the verb, which is replaced by the hinted one
+            lines.set(lines.size() - 1, "return \"" + StringUtility.escapeStringForJava(config.dialect.hint(verb, hint))
+                    + "\" + SQL().substring(" + verb.length() + ");");
+        }
+        return true;
+    }
+
+    /**
+     * Hints the first string literal of the first sql annotation, which starts with the verb of the statement.
+     */
+    private void addHint(List<String> annotations, String hint) {
+
+        for (int i = 0; i < annotations.size(); i++) {
+            if (!sqlAnnotationPattern.matcher(annotations.get(i)).matches())
+                continue;
+
+            for (int j = i; j < annotations.size(); j++) {
+                String line = annotations.get(j);
+                int quote = line.indexOf('"');
+                if (quote < 0)
+                    continue;
+
+                annotations.set(j, line.substring(0, quote + 1) + config.dialect.hint(line.substring(quote + 1), hint));
+                return;
+            }
+        }
+    }
+
+    private static String getVerb(List<String> lines) {
+        for (String line : lines) {
+            for (String[] verb : sqlBuilderVerbs) {
+                if (line.startsWith(verb[0]))
+                    return verb[1];
+            }
+        }
+        return null;
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private Rules<String> hints = new Rules<String>();
+
+        private Dialect dialect;
+
+        private Config(Properties props, Dialect dialect) {
+            super(props);
+            this.dialect = dialect;
+
+            for (String key : getRuleKeys(props, Collections.<String>emptyList())) {
+                String hint = props.getProperty(key).trim();
+                if (!key.contains("#"))
+                    throw new IllegalArgumentException("Wrong format for property key '" + key + "' found! Expected: "
+                            + "name=\"classRegexp#methodRegexp\"");
+                if (hint.length() == 0 || hint.contains("*/"))
+                    throw new IllegalArgumentException("Wrong hint '" + hint + "' in property '" + key + "' found! "
+                            + "Expected: the hint without comment delimiters");
+                hints.add(Pattern.compile(key.substring(0, key.indexOf('#'))),
+                        Pattern.compile(key.substring(key.indexOf('#') + 1)), hint);
+            }
+        }
+
+        @Override
+        void resolve(IntrospectedTable introspectedTable) {
+            super.resolve(introspectedTable);
+            hints.resolve(introspectedTable.getMyBatis3JavaMapperType());
+        }
+
+        /**
+         * Returns the joined hints of the matching rules or null.
+         */
+        private String getHint(String classFQN, String methodName) {
+            List<String> matches = hints.getAllMatches(classFQN, methodName);
+            if (matches.isEmpty())
+                return null;
+
+            StringBuilder sb = new StringBuilder();
+            for (String hint : matches) {
+                if (sb.length() > 0)
+                    sb.append(' ');
+                sb.append(hint);
+            }
+            return sb.toString();
+        }
+    }
+}
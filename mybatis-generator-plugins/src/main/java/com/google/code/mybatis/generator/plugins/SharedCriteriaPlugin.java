@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.config.PropertyRegistry;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves the fields and getters of the <tt>Criterion</tt> class and the untyped part of <tt>GeneratedCriteria</tt>
+ * (the criterion list, its getters and the <tt>addCriterion</tt> methods) of the generated example classes into the
+ * classes <tt>Criterion</tt> and <tt>AbstractCriteria</tt>, which are generated once per context.
+ * <tt>XxxExample.Criterion</tt> remains as a thin subclass of the shared <tt>Criterion</tt> declaring its constructors
+ * only, and <tt>AbstractCriteria</tt> is typed by it, so the public API of the examples and the sql providers is
+ * unchanged. The shared <tt>addCriterion</tt> methods create the criterions through the protected factory
+ * <tt>newCriterion(condition, value, secondValue)</tt>, which the <tt>GeneratedCriteria</tt> of every example
+ * implements. The examples keep the typed column methods, every table saves roughly 80 lines of source and 1.3 KB of
+ * bytecode, while the shared classes cost about 150 lines and 5 KB once, so the plugin pays off from four tables
+ * on. Methods overridden by the example (e.g. <tt>getAllCriteria()</tt> of tables with type handlers) are kept, the
+ * interfaces implemented by the criterions (see {@link ExampleSimplifierPlugin}) move to the shared class. The plugin should be configured after the plugins
+ * extending the example classes.<br/><br/> Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.SharedCriteriaPlugin"&gt;
+ *          &lt;property name="supportPackage" value="com.mycompany.example" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * <br/> Properties:<br/> <ul> <li><strong>supportPackage</strong> (optional) : the package of the generated support
+ * classes. Default: target package of the java model generator</li> <li><strong>excludeClassNamesRegexp</strong>
+ * (optional): classes to exclude from generation as regular expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class SharedCriteriaPlugin extends PluginAdapter {
+
+    static final String abstractCriteriaClassName = "AbstractCriteria";
+
+    static final String criterionClassName = "Criterion";
+
+    private static final Pattern criteriaAllocationPattern = Pattern.compile("criteria = (.+);");
+
+    /**
+     * criterion constructions of the generated addCriterion methods and the equivalent calls of the shared factory
+     */
+    private static final String[][] criterionConstructions = {
+            {"criteria.add(", "add("},
+            {"new Criterion(condition)", "newCriterion(condition, null, null)"},
+            {"new Criterion(condition, value)", "newCriterion(condition, value, null)"},
+            {"new Criterion(condition, value1, value2)", "newCriterion(condition, value1, value2)"}};
+
+    private Config config;
+
+    private boolean generated;
+
+    /**
+     * super interfaces added to the removed criterion classes by other plugins
+     */
+    private final Set<FullyQualifiedJavaType> criterionInterfaces = new LinkedHashSet<FullyQualifiedJavaType>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties(), context.getJavaModelGeneratorConfiguration().getTargetPackage());
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        config.resolve(introspectedTable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean modelExampleClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+
+        if (config.shouldExclude(topLevelClass.getType()))
+            return true;
+
+        List<Method> sharedMethods = generateAbstractCriteriaClass().getMethods();
+        for (Iterator<InnerClass> it = topLevelClass.getInnerClasses().iterator(); it.hasNext(); ) {
+            InnerClass innerClass = it.next();
+            String name = innerClass.getType().getShortName();
+            if (criterionClassName.equals(name)) {
+                criterionInterfaces.addAll(innerClass.getSuperInterfaceTypes());
+                thinCriterion(innerClass);
+            } else if ("GeneratedCriteria".equals(name)) {
+                innerClass.setSuperClass(new FullyQualifiedJavaType(config.abstractCriteriaType.getFullyQualifiedName()
+                        + "<" + criterionClassName + ">"));
+                removeSharedMembers(innerClass, sharedMethods);
+                innerClass.addMethod(generateNewCriterionMethod());
+            }
+        }
+        topLevelClass.addImportedType(config.abstractCriteriaType);
+
+        generated = true;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles() {
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        if (!generated)
+            return files;
+
+        String targetProject = context.getJavaModelGeneratorConfiguration().getTargetProject();
+        TopLevelClass abstractCriteria = generateAbstractCriteriaClass();
+        context.getCommentGenerator().addJavaFileComment(abstractCriteria);
+        // the file is named by the short name of the class, which includes its type parameter
+        files.add(new GeneratedJavaFile(abstractCriteria, targetProject,
+                context.getProperty(PropertyRegistry.CONTEXT_JAVA_FILE_ENCODING), context.getJavaFormatter()) {
+            @Override
+            public String getFileName() {
+                return abstractCriteriaClassName + ".java";
+            }
+        });
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateCriterionClass(), targetProject));
+        return files;
+    }
+
+    /**
+     * Reduces the criterion class of an example to its constructors, passing their parameters to the shared class.
+     */
+    private void thinCriterion(InnerClass criterion) {
+
+        criterion.getSuperInterfaceTypes().clear();
+        criterion.getFields().clear();
+        // the shared class has the same simple name, so it is extended by its fully qualified name
+        criterion.setSuperClass(new FullyQualifiedJavaType(config.criterionType.getFullyQualifiedName()) {
+            @Override
+            public String getShortName() {
+                return getFullyQualifiedName();
+            }
+        });
+
+        for (Iterator<Method> it = criterion.getMethods().iterator(); it.hasNext(); ) {
+            Method m = it.next();
+            if (!m.isConstructor()) {
+                it.remove();
+                continue;
+            }
+            StringBuilder sb = new StringBuilder("super(");
+            for (Parameter p : m.getParameters()) {
+                if (sb.length() > "super(".length())
+                    sb.append(", ");
+                sb.append(p.getName());
+            }
+            m.getBodyLines().clear();
+            m.addBodyLine(sb.append(");").toString());
+        }
+    }
+
+    /**
+     * Removes the criterion list and the methods identical to the ones of the shared class from GeneratedCriteria.
+     */
+    private static void removeSharedMembers(InnerClass generatedCriteria, List<Method> sharedMethods) {
+
+        for (Iterator<Field> it = generatedCriteria.getFields().iterator(); it.hasNext(); ) {
+            if ("criteria".equals(it.next().getName()))
+                it.remove();
+        }
+
+        for (Iterator<Method> it = generatedCriteria.getMethods().iterator(); it.hasNext(); ) {
+            Method m = it.next();
+            if (m.isConstructor()) {
+                moveCriteriaAllocation(m);
+                continue;
+            }
+            for (Method shared : sharedMethods) {
+                if (isSame(m, shared)) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the criterion of the example for the shared addCriterion methods.
+     */
+    private static Method generateNewCriterionMethod() {
+
+        FullyQualifiedJavaType criterionType = new FullyQualifiedJavaType(criterionClassName);
+        Method m = new Method("newCriterion");
+        m.addAnnotation("@Override");
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.setReturnType(criterionType);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "condition"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "secondValue"));
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("return new Criterion(condition);");
+        m.addBodyLine("}");
+        m.addBodyLine("if (secondValue == null) {");
+        m.addBodyLine("return new Criterion(condition, value);");
+        m.addBodyLine("}");
+        m.addBodyLine("return new Criterion(condition, value, secondValue);");
+        return m;
+    }
+
+    /**
+     * Replaces the allocation of the criterion list by the call of the shared constructor, keeping the list.
+     */
+    private static void moveCriteriaAllocation(Method constructor) {
+
+        List<String> lines = constructor.getBodyLines();
+        for (int i = 0; i < lines.size(); i++) {
+            Matcher matcher = criteriaAllocationPattern.matcher(lines.get(i).trim());
+            if (!matcher.matches())
+                continue;
+
+            lines.remove(i);
+            lines.remove("super();");
+            lines.add(0, "super(" + matcher.group(1) + ");");
+            return;
+        }
+    }
+
+    private static boolean isSame(Method m, Method shared) {
+
+        if (!m.getName().equals(shared.getName()) || m.getParameters().size() != shared.getParameters().size())
+            return false;
+        for (int i = 0; i < m.getParameters().size(); i++) {
+            if (!m.getParameters().get(i).getType().getShortName().equals(
+                    shared.getParameters().get(i).getType().getShortName()))
+                return false;
+        }
+        if (m.getBodyLines().size() != shared.getBodyLines().size())
+            return false;
+        for (int i = 0; i < m.getBodyLines().size(); i++) {
+            String line = m.getBodyLines().get(i);
+            for (String[] construction : criterionConstructions) {
+                line = line.replace(construction[0], construction[1]);
+            }
+            if (!line.equals(shared.getBodyLines().get(i)))
+                return false;
+        }
+        return true;
+    }
+
+    private TopLevelClass generateAbstractCriteriaClass() {
+
+        FullyQualifiedJavaType criterionListType = new FullyQualifiedJavaType("List<T>");
+        FullyQualifiedJavaType stringType = FullyQualifiedJavaType.getStringInstance();
+        FullyQualifiedJavaType objectType = FullyQualifiedJavaType.getObjectInstance();
+
+        // typed by the criterion class of the example, so the criterion lists keep the element type of the examples
+        TopLevelClass clazz = new TopLevelClass(new FullyQualifiedJavaType(
+                config.abstractCriteriaType.getFullyQualifiedName() + "<T extends " + criterionClassName + ">"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Base class of the criteria of all example classes, holding the conditions of a criteria.");
+        clazz.addJavaDocLine(" */");
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setAbstract(true);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.ArrayList"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.List"));
+
+        Field f = new Field("criteria", criterionListType);
+        f.setVisibility(JavaVisibility.PROTECTED);
+        clazz.addField(f);
+
+        Method m = new Method(abstractCriteriaClassName);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.addBodyLine("criteria = new ArrayList<T>();");
+        clazz.addMethod(m);
+
+        m = new Method(abstractCriteriaClassName);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.addParameter(new Parameter(criterionListType, "criteria"));
+        m.addBodyLine("this.criteria = criteria;");
+        clazz.addMethod(m);
+
+        m = new Method("newCriterion");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Creates the criterion of the example, the values are null if the condition takes less.");
+        m.addJavaDocLine(" */");
+        // rendered abstract, as it has no body
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.setReturnType(new FullyQualifiedJavaType("T"));
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(objectType, "secondValue"));
+        clazz.addMethod(m);
+
+        m = new Method("addCriterion");
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addBodyLine("if (condition == null) {");
+        m.addBodyLine("throw new RuntimeException(\"Value for condition cannot be null\");");
+        m.addBodyLine("}");
+        m.addBodyLine("add(newCriterion(condition, null, null));");
+        clazz.addMethod(m);
+
+        m = new Method("addCriterion");
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(stringType, "property"));
+        m.addBodyLine("if (value == null) {");
+        m.addBodyLine("throw new RuntimeException(\"Value for \" + property + \" cannot be null\");");
+        m.addBodyLine("}");
+        m.addBodyLine("add(newCriterion(condition, value, null));");
+        clazz.addMethod(m);
+
+        m = new Method("addCriterion");
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addParameter(new Parameter(objectType, "value1"));
+        m.addParameter(new Parameter(objectType, "value2"));
+        m.addParameter(new Parameter(stringType, "property"));
+        m.addBodyLine("if (value1 == null || value2 == null) {");
+        m.addBodyLine("throw new RuntimeException(\"Between values for \" + property + \" cannot be null\");");
+        m.addBodyLine("}");
+        m.addBodyLine("add(newCriterion(condition, value1, value2));");
+        clazz.addMethod(m);
+
+        m = new Method("add");
+        m.setVisibility(JavaVisibility.PROTECTED);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("T"), "criterion"));
+        m.addBodyLine("criteria.add(criterion);");
+        clazz.addMethod(m);
+
+        m = new Method("isValid");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addBodyLine("return criteria.size() > 0;");
+        clazz.addMethod(m);
+
+        m = new Method("getAllCriteria");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(criterionListType);
+        m.addBodyLine("return criteria;");
+        clazz.addMethod(m);
+
+        m = new Method("getCriteria");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(criterionListType);
+        m.addBodyLine("return criteria;");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private TopLevelClass generateCriterionClass() {
+
+        FullyQualifiedJavaType stringType = FullyQualifiedJavaType.getStringInstance();
+        FullyQualifiedJavaType objectType = FullyQualifiedJavaType.getObjectInstance();
+        FullyQualifiedJavaType booleanType = FullyQualifiedJavaType.getBooleanPrimitiveInstance();
+
+        TopLevelClass clazz = new TopLevelClass(config.criterionType);
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Condition of a criteria of an example class with its values.");
+        clazz.addJavaDocLine(" */");
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.List"));
+        for (FullyQualifiedJavaType criterionInterface : criterionInterfaces) {
+            clazz.addSuperInterface(criterionInterface);
+            clazz.addImportedType(criterionInterface);
+        }
+
+        String[][] properties = {{"condition", "String"}, {"value", "Object"}, {"secondValue", "Object"},
+                {"noValue", "boolean"}, {"singleValue", "boolean"}, {"betweenValue", "boolean"},
+                {"listValue", "boolean"}, {"typeHandler", "String"}};
+        for (String[] property : properties) {
+            FullyQualifiedJavaType type = "String".equals(property[1]) ? stringType
+                    : "Object".equals(property[1]) ? objectType : booleanType;
+
+            Field f = new Field(property[0], type);
+            f.setVisibility(JavaVisibility.PRIVATE);
+            clazz.addField(f);
+
+            String prefix = type == booleanType ? "is" : "get";
+            Method m = new Method(prefix + Character.toUpperCase(property[0].charAt(0)) + property[0].substring(1));
+            m.setVisibility(JavaVisibility.PUBLIC);
+            m.setReturnType(type);
+            m.addBodyLine("return " + property[0] + ";");
+            clazz.addMethod(m);
+        }
+
+        Method m = new Method(criterionClassName);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addBodyLine("this.condition = condition;");
+        m.addBodyLine("this.noValue = true;");
+        clazz.addMethod(m);
+
+        m = new Method(criterionClassName);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(stringType, "typeHandler"));
+        m.addBodyLine("this.condition = condition;");
+        m.addBodyLine("this.value = value;");
+        m.addBodyLine("this.typeHandler = typeHandler;");
+        m.addBodyLine("if (value instanceof List<?>) {");
+        m.addBodyLine("this.listValue = true;");
+        m.addBodyLine("} else {");
+        m.addBodyLine("this.singleValue = true;");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method(criterionClassName);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addBodyLine("this(condition, value, null);");
+        clazz.addMethod(m);
+
+        m = new Method(criterionClassName);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(objectType, "secondValue"));
+        m.addParameter(new Parameter(stringType, "typeHandler"));
+        m.addBodyLine("this.condition = condition;");
+        m.addBodyLine("this.value = value;");
+        m.addBodyLine("this.secondValue = secondValue;");
+        m.addBodyLine("this.typeHandler = typeHandler;");
+        m.addBodyLine("this.betweenValue = true;");
+        clazz.addMethod(m);
+
+        m = new Method(criterionClassName);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(stringType, "condition"));
+        m.addParameter(new Parameter(objectType, "value"));
+        m.addParameter(new Parameter(objectType, "secondValue"));
+        m.addBodyLine("this(condition, value, secondValue, null);");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String supportPackageKey = "supportPackage";
+
+        private FullyQualifiedJavaType abstractCriteriaType;
+
+        private FullyQualifiedJavaType criterionType;
+
+        private Config(Properties props, String defaultSupportPackage) {
+            super(props);
+            String supportPackage = props.getProperty(supportPackageKey, defaultSupportPackage);
+            this.abstractCriteriaType = new FullyQualifiedJavaType(supportPackage + "." + abstractCriteriaClassName);
+            this.criterionType = new FullyQualifiedJavaType(supportPackage + "." + criterionClassName);
+        }
+    }
+}
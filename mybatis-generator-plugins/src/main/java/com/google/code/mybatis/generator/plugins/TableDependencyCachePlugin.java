@@ -0,0 +1,709 @@
+/*
+ * Copyright (c) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.code.mybatis.generator.plugins;
+
+import org.mybatis.generator.api.FullyQualifiedTable;
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.*;
+import org.mybatis.generator.internal.db.ConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Generates a second level cache decorator invalidating cached results across mapper namespaces by the tables they
+ * depend on. The foreign keys between the generated tables are read from the database at generation time, the cached
+ * entries record the tables derived from them:<br/>
+ * <ul>
+ * <li>results of the generated select and count statements depend on the table of the namespace and on all tables
+ * whose writes cascade into it (<tt>ON DELETE / ON UPDATE CASCADE, SET NULL, SET DEFAULT</tt>, transitively)</li>
+ * <li>results of any other statement (e.g. hand-written joins) depend on all tables connected to the table of the
+ * namespace by foreign keys</li>
+ * </ul>
+ * A write to a table (MyBatis clears the cache of the writing namespace) removes every entry depending on that table
+ * from the caches of all namespaces, entries of other namespaces not depending on it stay cached.<br/><br/>
+ * Example configuration:<br/>
+ * <tt>
+ * <pre>
+ * &lt;generatorConfiguration&gt;
+ *  &lt;context ...&gt;
+ *
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.TableDependencyCachePlugin"&gt;
+ *          &lt;property name="supportPackage" value="com.mycompany.cache" /&gt;
+ *      &lt;/plugin&gt;
+ *      &lt;plugin type="com.google.code.mybatis.generator.plugins.CachePlugin"&gt;
+ *          &lt;property name=".*Mapper"
+ *                     value="eviction=org.apache.ibatis.cache.decorators.LruCache.class,decorator=com.mycompany.cache.TableDependencyCache.class" /&gt;
+ *      &lt;/plugin&gt;
+ *      ...
+ *
+ *  &lt;/context&gt;
+ * &lt;/generatorConfiguration&gt;
+ * </pre>
+ * </tt>
+ * The plugin generates the <tt>TableDependencies</tt> class holding the dependency graph and the
+ * <tt>TableDependencyCache</tt> decorator, which is used via the <tt>decorator</tt> attribute of the
+ * {@link CachePlugin} or as <tt>@CacheNamespace(eviction = TableDependencyCache.class)</tt>. It has to decorate the
+ * caches of all dependent namespaces. The generated <tt>TableDependencyInterceptor</tt> records the statement of
+ * every cached query, it is registered in the MyBatis configuration before other interceptors of
+ * <tt>Executor.query</tt> (e.g. the <tt>ExampleCacheKeyInterceptor</tt>). Without it all entries depend on the
+ * connected tables. Entries removed or evicted from the decorated cache leave the index of the decorator, the
+ * namespace is cleared only if the index holds more than 10000 keys of entries still cached.<br/> Properties:<br/> <ul> <li><strong>supportPackage</strong> (optional) : the
+ * package of the generated support classes. Default: target package of the java model generator</li>
+ * <li><strong>excludeClassNamesRegexp</strong> (optional): mapper namespaces to exclude from the dependency graph as
+ * regular expression. Default: none</li> </ul>
+ *
+ * @author Maxim Kalina
+ * @version $Id$
+ */
+public class TableDependencyCachePlugin extends PluginAdapter {
+
+    static final String tableDependenciesClassName = "TableDependencies";
+    static final String tableDependencyCacheClassName = "TableDependencyCache";
+    static final String tableDependencyInterceptorClassName = "TableDependencyInterceptor";
+
+    private static final FullyQualifiedJavaType cacheType = new FullyQualifiedJavaType("org.apache.ibatis.cache.Cache");
+    private static final FullyQualifiedJavaType stringArrayType = new FullyQualifiedJavaType("java.lang.String[]");
+
+    private Config config;
+
+    private List<String> warnings;
+
+    /**
+     * tables of the dependency graph in the order of introspection
+     */
+    private List<IntrospectedTable> tables = new ArrayList<IntrospectedTable>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean validate(List<String> warnings) {
+        if (this.config == null)
+            this.config = new Config(getProperties(), context.getJavaModelGeneratorConfiguration().getTargetPackage());
+        this.warnings = warnings;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialized(IntrospectedTable introspectedTable) {
+        if (!config.shouldExclude(introspectedTable.getMyBatis3SqlMapNamespace()))
+            tables.add(introspectedTable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles() {
+
+        List<GeneratedJavaFile> files = new ArrayList<GeneratedJavaFile>();
+        if (tables.isEmpty())
+            return files;
+
+        Map<IntrospectedTable, Map<IntrospectedTable, Boolean>> foreignKeys = readForeignKeys();
+
+        String targetProject = context.getJavaModelGeneratorConfiguration().getTargetProject();
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateTableDependenciesClass(foreignKeys),
+                targetProject));
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateTableDependencyCacheClass(), targetProject));
+        files.add(PluginUtils.newGeneratedJavaFile(context, generateTableDependencyInterceptorClass(), targetProject));
+        return files;
+    }
+
+    /**
+     * Returns child table -> parent table -> whether writes of the parent cascade into the child.
+     */
+    private Map<IntrospectedTable, Map<IntrospectedTable, Boolean>> readForeignKeys() {
+
+        Map<IntrospectedTable, Map<IntrospectedTable, Boolean>> foreignKeys =
+                new HashMap<IntrospectedTable, Map<IntrospectedTable, Boolean>>();
+        for (IntrospectedTable table : tables) {
+            foreignKeys.put(table, new LinkedHashMap<IntrospectedTable, Boolean>());
+        }
+
+        Connection connection = null;
+        try {
+            connection = ConnectionFactory.getInstance().getConnection(context.getJdbcConnectionConfiguration());
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (IntrospectedTable table : tables) {
+                FullyQualifiedTable fqt = table.getFullyQualifiedTable();
+                ResultSet rs = metaData.getImportedKeys(fqt.getIntrospectedCatalog(), fqt.getIntrospectedSchema(),
+                        fqt.getIntrospectedTableName());
+                try {
+                    while (rs.next()) {
+                        IntrospectedTable parent = findTable(rs.getString("PKTABLE_SCHEM"), rs.getString("PKTABLE_NAME"));
+                        if (parent == null || parent == table)
+                            continue;
+
+                        boolean cascade = isCascade(rs.getShort("UPDATE_RULE")) || isCascade(rs.getShort("DELETE_RULE"));
+                        Map<IntrospectedTable, Boolean> parents = foreignKeys.get(table);
+                        parents.put(parent, cascade || Boolean.TRUE.equals(parents.get(parent)));
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+        } catch (SQLException e) {
+            warnings.add("TableDependencyCachePlugin: foreign keys could not be read, tables are treated as"
+                    + " independent: " + e.getMessage());
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    // ignore
+                }
+            }
+        }
+        return foreignKeys;
+    }
+
+    private IntrospectedTable findTable(String schema, String tableName) {
+        for (IntrospectedTable table : tables) {
+            FullyQualifiedTable fqt = table.getFullyQualifiedTable();
+            if (!fqt.getIntrospectedTableName().equalsIgnoreCase(tableName))
+                continue;
+            if (schema == null || fqt.getIntrospectedSchema() == null
+                    || fqt.getIntrospectedSchema().equalsIgnoreCase(schema))
+                return table;
+        }
+        return null;
+    }
+
+    private static boolean isCascade(short rule) {
+        return rule == DatabaseMetaData.importedKeyCascade || rule == DatabaseMetaData.importedKeySetNull
+                || rule == DatabaseMetaData.importedKeySetDefault;
+    }
+
+    /**
+     * Returns the table and all tables reachable from it by the given edges, following only the cascading ones if
+     * requested.
+     */
+    private static Set<IntrospectedTable> reachableTables(IntrospectedTable table,
+                                                          Map<IntrospectedTable, Map<IntrospectedTable, Boolean>> edges,
+                                                          boolean cascadingOnly) {
+
+        Set<IntrospectedTable> reached = new LinkedHashSet<IntrospectedTable>();
+        LinkedList<IntrospectedTable> queue = new LinkedList<IntrospectedTable>();
+        queue.add(table);
+        while (!queue.isEmpty()) {
+            IntrospectedTable current = queue.removeFirst();
+            if (!reached.add(current))
+                continue;
+            for (Map.Entry<IntrospectedTable, Boolean> edge : edges.get(current).entrySet()) {
+                if (!cascadingOnly || edge.getValue())
+                    queue.add(edge.getKey());
+            }
+        }
+        return reached;
+    }
+
+    private TopLevelClass generateTableDependenciesClass(
+            Map<IntrospectedTable, Map<IntrospectedTable, Boolean>> foreignKeys) {
+
+        // undirected view of the foreign keys
+        Map<IntrospectedTable, Map<IntrospectedTable, Boolean>> connections =
+                new HashMap<IntrospectedTable, Map<IntrospectedTable, Boolean>>();
+        for (IntrospectedTable table : tables) {
+            connections.put(table, new LinkedHashMap<IntrospectedTable, Boolean>(foreignKeys.get(table)));
+        }
+        for (IntrospectedTable table : tables) {
+            for (IntrospectedTable parent : foreignKeys.get(table).keySet()) {
+                connections.get(parent).put(table, Boolean.TRUE);
+            }
+        }
+
+        String dependencies = config.tableDependenciesType.getShortName();
+
+        TopLevelClass clazz = new TopLevelClass(config.tableDependenciesType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.setFinal(true);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Arrays"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.HashMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.HashSet"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Map"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Tables the cached results of the mapper namespaces depend on, derived from the foreign keys at");
+        clazz.addJavaDocLine(" * generation time.");
+        clazz.addJavaDocLine(" */");
+
+        Field namespaces = new Field("namespaces",
+                new FullyQualifiedJavaType("java.util.Map<String, " + dependencies + ">"));
+        namespaces.setVisibility(JavaVisibility.PRIVATE);
+        namespaces.setStatic(true);
+        namespaces.setFinal(true);
+        namespaces.setInitializationString("new HashMap<String, " + dependencies + ">()");
+        clazz.addField(namespaces);
+
+        InitializationBlock block = new InitializationBlock(true);
+        for (IntrospectedTable table : tables) {
+            String namespace = table.getMyBatis3SqlMapNamespace();
+            block.addBodyLine("namespaces.put(\"" + namespace + "\", new " + dependencies + "(\""
+                    + table.getFullyQualifiedTable().getFullyQualifiedTableNameAtRuntime() + "\",");
+            block.addBodyLine("new String[] {" + toLiterals(getGeneratedQueries(table)) + "},");
+            block.addBodyLine("new String[] {" + toLiterals(getTableNames(reachableTables(table, foreignKeys, true)))
+                    + "},");
+            block.addBodyLine("new String[] {" + toLiterals(getTableNames(reachableTables(table, connections, false)))
+                    + "}));");
+        }
+        clazz.addInitializationBlock(block);
+
+        Field table = new Field("table", FullyQualifiedJavaType.getStringInstance());
+        table.setVisibility(JavaVisibility.PRIVATE);
+        table.setFinal(true);
+        clazz.addField(table);
+
+        Field generatedQueries = new Field("generatedQueries", new FullyQualifiedJavaType("java.util.Set<String>"));
+        generatedQueries.setVisibility(JavaVisibility.PRIVATE);
+        generatedQueries.setFinal(true);
+        clazz.addField(generatedQueries);
+
+        Field generatedQueryTables = new Field("generatedQueryTables", stringArrayType);
+        generatedQueryTables.setVisibility(JavaVisibility.PRIVATE);
+        generatedQueryTables.setFinal(true);
+        clazz.addField(generatedQueryTables);
+
+        Field connectedTables = new Field("connectedTables", stringArrayType);
+        connectedTables.setVisibility(JavaVisibility.PRIVATE);
+        connectedTables.setFinal(true);
+        clazz.addField(connectedTables);
+
+        Method m = new Method(dependencies);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "table"));
+        m.addParameter(new Parameter(stringArrayType, "generatedQueries"));
+        m.addParameter(new Parameter(stringArrayType, "generatedQueryTables"));
+        m.addParameter(new Parameter(stringArrayType, "connectedTables"));
+        m.addBodyLine("this.table = table;");
+        m.addBodyLine("this.generatedQueries = new HashSet<String>(Arrays.asList(generatedQueries));");
+        m.addBodyLine("this.generatedQueryTables = generatedQueryTables;");
+        m.addBodyLine("this.connectedTables = connectedTables;");
+        clazz.addMethod(m);
+
+        m = new Method("forNamespace");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the dependencies of the given mapper namespace or null if it is not known.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.setReturnType(config.tableDependenciesType);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "namespace"));
+        m.addBodyLine("return namespaces.get(namespace);");
+        clazz.addMethod(m);
+
+        m = new Method("getTable");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the table written by the namespace.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getStringInstance());
+        m.addBodyLine("return table;");
+        clazz.addMethod(m);
+
+        m = new Method("getTables");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Returns the tables the results of the given statement depend on. Statements other than the");
+        m.addJavaDocLine(" * generated queries (or unknown ones) depend on all tables connected by foreign keys.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(stringArrayType);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "statementId"));
+        m.addBodyLine("if (statementId != null && generatedQueries.contains(statementId)) {");
+        m.addBodyLine("return generatedQueryTables;");
+        m.addBodyLine("}");
+        m.addBodyLine("return connectedTables;");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private static List<String> getGeneratedQueries(IntrospectedTable table) {
+
+        String namespace = table.getMyBatis3SqlMapNamespace() + ".";
+        List<String> queries = new ArrayList<String>();
+        if (table.getRules().generateSelectByExampleWithoutBLOBs())
+            queries.add(namespace + table.getSelectByExampleStatementId());
+        if (table.getRules().generateSelectByExampleWithBLOBs())
+            queries.add(namespace + table.getSelectByExampleWithBLOBsStatementId());
+        if (table.getRules().generateSelectByPrimaryKey())
+            queries.add(namespace + table.getSelectByPrimaryKeyStatementId());
+        if (table.getRules().generateCountByExample())
+            queries.add(namespace + table.getCountByExampleStatementId());
+        return queries;
+    }
+
+    private static List<String> getTableNames(Collection<IntrospectedTable> tables) {
+        List<String> names = new ArrayList<String>();
+        for (IntrospectedTable table : tables) {
+            names.add(table.getFullyQualifiedTable().getFullyQualifiedTableNameAtRuntime());
+        }
+        return names;
+    }
+
+    private static String toLiterals(List<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append('"').append(value).append('"');
+        }
+        return sb.toString();
+    }
+
+    private TopLevelClass generateTableDependencyCacheClass() {
+
+        String cache = config.tableDependencyCacheType.getShortName();
+        String dependencies = config.tableDependenciesType.getShortName();
+
+        TopLevelClass clazz = new TopLevelClass(config.tableDependencyCacheType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(cacheType);
+        clazz.addImportedType(cacheType);
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.ArrayList"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Collections"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.HashMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.HashSet"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Map"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.WeakHashMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ConcurrentHashMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ConcurrentMap"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.locks.ReadWriteLock"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Cache decorator recording the tables every cached result depends on (see " + dependencies + ").");
+        clazz.addJavaDocLine(" * Clearing the cache of a namespace (MyBatis does on every write) removes the entries depending on");
+        clazz.addJavaDocLine(" * its table from the caches of all namespaces. Only entries depending on tables of other namespaces");
+        clazz.addJavaDocLine(" * are indexed. Removed entries leave the index at once, entries evicted by the decorated cache when");
+        clazz.addJavaDocLine(" * they are missed or the index exceeds MAX_INDEXED_KEYS, the namespace is cleared only if most of");
+        clazz.addJavaDocLine(" * the indexed entries are still cached then. The statements of the keys are recorded by the");
+        clazz.addJavaDocLine(" * " + config.tableDependencyInterceptorType.getShortName() + ", without it every entry depends on all connected tables.");
+        clazz.addJavaDocLine(" */");
+
+        PluginUtils.addConstant(clazz, "int", "MAX_INDEXED_KEYS", "10000");
+
+        Field caches = new Field("caches",
+                new FullyQualifiedJavaType("java.util.concurrent.ConcurrentMap<String, " + cache + ">"));
+        caches.setVisibility(JavaVisibility.PRIVATE);
+        caches.setStatic(true);
+        caches.setFinal(true);
+        caches.setInitializationString("new ConcurrentHashMap<String, " + cache + ">()");
+        clazz.addField(caches);
+
+        Field statementIds = new Field("statementIds", new FullyQualifiedJavaType("java.util.Map<Object, String>"));
+        statementIds.addJavaDocLine("/**");
+        statementIds.addJavaDocLine(" * cache key of a running query -> id of its statement");
+        statementIds.addJavaDocLine(" */");
+        statementIds.setVisibility(JavaVisibility.PRIVATE);
+        statementIds.setStatic(true);
+        statementIds.setFinal(true);
+        statementIds.setInitializationString("Collections.synchronizedMap(new WeakHashMap<Object, String>())");
+        clazz.addField(statementIds);
+
+        Field delegate = new Field("delegate", cacheType);
+        delegate.setVisibility(JavaVisibility.PRIVATE);
+        delegate.setFinal(true);
+        clazz.addField(delegate);
+
+        Field dependenciesField = new Field("dependencies", config.tableDependenciesType);
+        dependenciesField.setVisibility(JavaVisibility.PRIVATE);
+        dependenciesField.setFinal(true);
+        clazz.addField(dependenciesField);
+
+        Field keysByTable = new Field("keysByTable",
+                new FullyQualifiedJavaType("java.util.Map<String, java.util.Set<Object>>"));
+        keysByTable.addJavaDocLine("/**");
+        keysByTable.addJavaDocLine(" * table of another namespace -> keys of the entries depending on it");
+        keysByTable.addJavaDocLine(" */");
+        keysByTable.setVisibility(JavaVisibility.PRIVATE);
+        keysByTable.setFinal(true);
+        keysByTable.setInitializationString("new HashMap<String, Set<Object>>()");
+        clazz.addField(keysByTable);
+
+        Field tablesByKey = new Field("tablesByKey", new FullyQualifiedJavaType("java.util.Map<Object, String[]>"));
+        tablesByKey.addJavaDocLine("/**");
+        tablesByKey.addJavaDocLine(" * indexed key -> tables the entry depends on, guarded by keysByTable");
+        tablesByKey.addJavaDocLine(" */");
+        tablesByKey.setVisibility(JavaVisibility.PRIVATE);
+        tablesByKey.setFinal(true);
+        tablesByKey.setInitializationString("new HashMap<Object, String[]>()");
+        clazz.addField(tablesByKey);
+
+        Method m = new Method(cache);
+        m.setConstructor(true);
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(cacheType, "delegate"));
+        m.addBodyLine("this.delegate = delegate;");
+        m.addBodyLine("this.dependencies = " + dependencies + ".forNamespace(delegate.getId());");
+        m.addBodyLine("caches.put(delegate.getId(), this);");
+        clazz.addMethod(m);
+
+        m = new Method("tableWritten");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Removes the entries depending on the given table from the caches of all namespaces, e.g. after");
+        m.addJavaDocLine(" * the table has been written bypassing MyBatis.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "table"));
+        m.addBodyLine("for (" + cache + " cache : caches.values()) {");
+        m.addBodyLine("cache.invalidate(table);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("queried");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Records the statement a cache key has been created for until the result is put. Called by the");
+        m.addJavaDocLine(" * interceptor and by code putting into the cache directly, e.g. the generated CacheWarmUp.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setStatic(true);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "statementId"));
+        m.addBodyLine("statementIds.put(key, statementId);");
+        clazz.addMethod(m);
+
+        Method getObject = new Method("getObject");
+        getObject.setVisibility(JavaVisibility.PUBLIC);
+        getObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        getObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        getObject.addBodyLine("Object value = delegate.getObject(key);");
+        getObject.addBodyLine("if (value == null && dependencies != null) {");
+        getObject.addBodyLine("synchronized (keysByTable) {");
+        getObject.addBodyLine("unindex(key);");
+        getObject.addBodyLine("}");
+        getObject.addBodyLine("}");
+        getObject.addBodyLine("return value;");
+
+        Method putObject = new Method("putObject");
+        putObject.setVisibility(JavaVisibility.PUBLIC);
+        putObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        putObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "value"));
+        putObject.addBodyLine("delegate.putObject(key, value);");
+        putObject.addBodyLine("if (dependencies == null) {");
+        putObject.addBodyLine("return;");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("String[] tables = dependencies.getTables(statementIds.remove(key));");
+        putObject.addBodyLine("synchronized (keysByTable) {");
+        putObject.addBodyLine("unindex(key);");
+        putObject.addBodyLine("for (String table : tables) {");
+        putObject.addBodyLine("if (table.equals(dependencies.getTable())) {");
+        putObject.addBodyLine("continue;");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("Set<Object> keys = keysByTable.get(table);");
+        putObject.addBodyLine("if (keys == null) {");
+        putObject.addBodyLine("keys = new HashSet<Object>();");
+        putObject.addBodyLine("keysByTable.put(table, keys);");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("keys.add(key);");
+        putObject.addBodyLine("tablesByKey.put(key, tables);");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("if (tablesByKey.size() > MAX_INDEXED_KEYS && !sweep()) {");
+        putObject.addBodyLine("clearLocally();");
+        putObject.addBodyLine("}");
+        putObject.addBodyLine("}");
+
+        Method removeObject = new Method("removeObject");
+        removeObject.setVisibility(JavaVisibility.PUBLIC);
+        removeObject.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        removeObject.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        removeObject.addBodyLine("Object value = delegate.removeObject(key);");
+        removeObject.addBodyLine("if (dependencies != null) {");
+        removeObject.addBodyLine("synchronized (keysByTable) {");
+        removeObject.addBodyLine("unindex(key);");
+        removeObject.addBodyLine("}");
+        removeObject.addBodyLine("}");
+        removeObject.addBodyLine("return value;");
+
+        Method clear = new Method("clear");
+        clear.setVisibility(JavaVisibility.PUBLIC);
+        clear.addBodyLine("if (dependencies == null) {");
+        clear.addBodyLine("clearLocally();");
+        clear.addBodyLine("} else {");
+        clear.addBodyLine("tableWritten(dependencies.getTable());");
+        clear.addBodyLine("}");
+
+        PluginUtils.addDelegateMethods(clazz, getObject, putObject, removeObject, clear);
+
+        m = new Method("invalidate");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "table"));
+        m.addBodyLine("if (dependencies == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("if (table.equals(dependencies.getTable())) {");
+        m.addBodyLine("clearLocally();");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("Set<Object> keys;");
+        m.addBodyLine("synchronized (keysByTable) {");
+        m.addBodyLine("keys = keysByTable.get(table);");
+        m.addBodyLine("if (keys == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("keys = new HashSet<Object>(keys);");
+        m.addBodyLine("for (Object key : keys) {");
+        m.addBodyLine("unindex(key);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("for (Object key : keys) {");
+        m.addBodyLine("delegate.removeObject(key);");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("unindex");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Removes the given key from the index, the caller holds the lock of keysByTable.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "key"));
+        m.addBodyLine("String[] tables = tablesByKey.remove(key);");
+        m.addBodyLine("if (tables == null) {");
+        m.addBodyLine("return;");
+        m.addBodyLine("}");
+        m.addBodyLine("for (String table : tables) {");
+        m.addBodyLine("Set<Object> keys = keysByTable.get(table);");
+        m.addBodyLine("if (keys != null && keys.remove(key) && keys.isEmpty()) {");
+        m.addBodyLine("keysByTable.remove(table);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        clazz.addMethod(m);
+
+        m = new Method("sweep");
+        m.addJavaDocLine("/**");
+        m.addJavaDocLine(" * Removes the keys evicted by the decorated cache from the index, returns whether at least half of");
+        m.addJavaDocLine(" * MAX_INDEXED_KEYS is free again. The caller holds the lock of keysByTable.");
+        m.addJavaDocLine(" */");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.setReturnType(FullyQualifiedJavaType.getBooleanPrimitiveInstance());
+        m.addBodyLine("for (Object key : new ArrayList<Object>(tablesByKey.keySet())) {");
+        m.addBodyLine("if (delegate.getObject(key) == null) {");
+        m.addBodyLine("unindex(key);");
+        m.addBodyLine("}");
+        m.addBodyLine("}");
+        m.addBodyLine("return tablesByKey.size() <= MAX_INDEXED_KEYS / 2;");
+        clazz.addMethod(m);
+
+        m = new Method("clearLocally");
+        m.setVisibility(JavaVisibility.PRIVATE);
+        m.addBodyLine("synchronized (keysByTable) {");
+        m.addBodyLine("keysByTable.clear();");
+        m.addBodyLine("tablesByKey.clear();");
+        m.addBodyLine("}");
+        m.addBodyLine("delegate.clear();");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private TopLevelClass generateTableDependencyInterceptorClass() {
+
+        String cache = config.tableDependencyCacheType.getShortName();
+        FullyQualifiedJavaType invocationType = new FullyQualifiedJavaType("org.apache.ibatis.plugin.Invocation");
+
+        TopLevelClass clazz = new TopLevelClass(config.tableDependencyInterceptorType);
+        clazz.setVisibility(JavaVisibility.PUBLIC);
+        clazz.addSuperInterface(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Interceptor"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Interceptor"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Intercepts"));
+        clazz.addImportedType(invocationType);
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Plugin"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.plugin.Signature"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.cache.CacheKey"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.executor.Executor"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.mapping.BoundSql"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.mapping.MappedStatement"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.ResultHandler"));
+        clazz.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.RowBounds"));
+        clazz.addImportedType(new FullyQualifiedJavaType("java.util.Properties"));
+        clazz.addJavaDocLine("/**");
+        clazz.addJavaDocLine(" * Records the statement of every cached query for the " + cache + ", which indexes the entries");
+        clazz.addJavaDocLine(" * of the generated queries by their own dependencies then. Register it before other interceptors of");
+        clazz.addJavaDocLine(" * Executor.query, it creates the cache key of the 4 argument variant and passes the query on to the");
+        clazz.addJavaDocLine(" * 6 argument one, whose key is recorded as given.");
+        clazz.addJavaDocLine(" */");
+        clazz.addAnnotation("@Intercepts({@Signature(type = Executor.class, method = \"query\", args = {MappedStatement.class,"
+                + " Object.class, RowBounds.class, ResultHandler.class}),");
+        clazz.addAnnotation("@Signature(type = Executor.class, method = \"query\", args = {MappedStatement.class,"
+                + " Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})})");
+
+        Method m = new Method("intercept");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(invocationType, "invocation"));
+        m.addException(new FullyQualifiedJavaType("java.lang.Throwable"));
+        m.addBodyLine("Object[] args = invocation.getArgs();");
+        m.addBodyLine("MappedStatement ms = (MappedStatement) args[0];");
+        m.addBodyLine("if (ms.getCache() == null || !ms.isUseCache()) {");
+        m.addBodyLine("return invocation.proceed();");
+        m.addBodyLine("}");
+        m.addBodyLine("if (args.length == 6) {");
+        m.addBodyLine(cache + ".queried(args[4], ms.getId());");
+        m.addBodyLine("return invocation.proceed();");
+        m.addBodyLine("}");
+        m.addBodyLine("RowBounds rowBounds = (RowBounds) args[2];");
+        m.addBodyLine("BoundSql boundSql = ms.getBoundSql(args[1]);");
+        m.addBodyLine("Executor executor = (Executor) invocation.getTarget();");
+        m.addBodyLine("CacheKey key = executor.createCacheKey(ms, args[1], rowBounds, boundSql);");
+        m.addBodyLine(cache + ".queried(key, ms.getId());");
+        m.addBodyLine("return executor.query(ms, args[1], rowBounds, (ResultHandler) args[3], key, boundSql);");
+        clazz.addMethod(m);
+
+        m = new Method("plugin");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.setReturnType(FullyQualifiedJavaType.getObjectInstance());
+        m.addParameter(new Parameter(FullyQualifiedJavaType.getObjectInstance(), "target"));
+        m.addBodyLine("return Plugin.wrap(target, this);");
+        clazz.addMethod(m);
+
+        m = new Method("setProperties");
+        m.setVisibility(JavaVisibility.PUBLIC);
+        m.addParameter(new Parameter(new FullyQualifiedJavaType("java.util.Properties"), "properties"));
+        m.addBodyLine("// no properties");
+        clazz.addMethod(m);
+
+        return clazz;
+    }
+
+    private static final class Config extends BasePluginConfig {
+
+        private static final String supportPackageKey = "supportPackage";
+
+        private FullyQualifiedJavaType tableDependenciesType;
+        private FullyQualifiedJavaType tableDependencyCacheType;
+        private FullyQualifiedJavaType tableDependencyInterceptorType;
+
+        private Config(Properties props, String defaultSupportPackage) {
+            super(props);
+            String supportPackage = props.getProperty(supportPackageKey, defaultSupportPackage);
+            this.tableDependenciesType = new FullyQualifiedJavaType(supportPackage + "." + tableDependenciesClassName);
+            this.tableDependencyCacheType =
+                    new FullyQualifiedJavaType(supportPackage + "." + tableDependencyCacheClassName);
+            this.tableDependencyInterceptorType =
+                    new FullyQualifiedJavaType(supportPackage + "." + tableDependencyInterceptorClassName);
+        }
+    }
+}